@@ -44,10 +44,15 @@ import org.kitteh.irc.client.library.event.helper.UnexpectedChannelLeaveEvent;
 import org.kitteh.irc.client.library.event.user.PrivateCTCPQueryEvent;
 import org.kitteh.irc.client.library.feature.AuthManager;
 import org.kitteh.irc.client.library.feature.CapabilityManager;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
 import org.kitteh.irc.client.library.feature.EventManager;
 import org.kitteh.irc.client.library.feature.ISupportManager;
 import org.kitteh.irc.client.library.feature.MessageTagManager;
+import org.kitteh.irc.client.library.feature.MonitorManager;
+import org.kitteh.irc.client.library.feature.ReplyManager;
 import org.kitteh.irc.client.library.feature.ServerInfo;
+import org.kitteh.irc.client.library.feature.UserRegistry;
+import org.kitteh.irc.client.library.feature.capture.TrafficReplay;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageMap;
 import org.kitteh.irc.client.library.feature.sending.MessageSendingQueue;
 import org.kitteh.irc.client.library.feature.sending.SingleDelaySender;
@@ -63,8 +68,11 @@ import javax.net.ssl.TrustManagerFactory;
 import java.io.File;
 import java.lang.reflect.Constructor;
 import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -116,6 +124,25 @@ public interface Client {
         @Nonnull
         Builder bindPort(int port);
 
+        /**
+         * Sets a file to keep tracked channel state in across restarts.
+         * <p>
+         * On shutdown, the modes, topic and tracked mode info lists of each
+         * channel are written to the file. On building, they are read back
+         * and restored when each channel is joined again, instead of being
+         * queried right away. Restored state is provisional, see {@link
+         * Channel#isProvisional()}, and is confirmed by the server gradually
+         * while connected. State for a channel not joined for seven days is
+         * dropped.
+         * <p>
+         * By default, no file is used.
+         *
+         * @param file file to keep state in, or null to not keep state
+         * @return this builder
+         */
+        @Nonnull
+        Builder channelStateFile(@Nullable Path file);
+
         /**
          * Sets default messages.
          *
@@ -126,6 +153,28 @@ public interface Client {
         @Nonnull
         Builder defaultMessageMap(@Nonnull DefaultMessageMap defaultMessageMap);
 
+        /**
+         * Sets up timing of event handlers. Handlers running longer than
+         * the threshold are reported to the exception listener, as a
+         * {@link org.kitteh.irc.client.library.exception.KittehSlowHandlerException}
+         * carrying a stack sampled from the running handler, and to the
+         * {@link ClientMetrics}.
+         * <p>
+         * Reported handlers can optionally be isolated, running on a
+         * separate executor from then on. Isolated handlers no longer run
+         * in order with other handlers of the same event, and the library's
+         * own handlers are never isolated.
+         * <p>
+         * By default, handlers are not timed.
+         *
+         * @param threshold time, in milliseconds, a handler may run before
+         * being reported, or 0 to not time handlers
+         * @param isolate true to isolate reported handlers
+         * @return this builder
+         */
+        @Nonnull
+        Builder eventHandlerWatchdog(long threshold, boolean isolate);
+
         /**
          * Sets a listener for all thrown exceptions on this client. By default,
          * a consumer exists which calls Throwable#printStackTrace() on all
@@ -139,6 +188,21 @@ public interface Client {
         @Nonnull
         Builder listenException(@Nullable Consumer<Exception> listener);
 
+        /**
+         * Sets a listener for all thrown exceptions on this client,
+         * receiving them in batches as described in {@link #listenInput(Consumer, int, long)}.
+         *
+         * @param listener exception listener or null to not listen
+         * @param maxBatch most exceptions in one batch
+         * @param maxWait milliseconds to wait for a batch to fill, or 0 to
+         * pass whatever is waiting without delay
+         * @return this builder
+         * @throws IllegalArgumentException if maxBatch is less than 1 or
+         * maxWait is negative
+         */
+        @Nonnull
+        Builder listenException(@Nullable Consumer<List<Exception>> listener, int maxBatch, long maxWait);
+
         /**
          * Sets a listener for all incoming messages from the server.
          * <p>
@@ -150,6 +214,26 @@ public interface Client {
         @Nonnull
         Builder listenInput(@Nullable Consumer<String> listener);
 
+        /**
+         * Sets a listener for all incoming messages from the server,
+         * receiving them in batches rather than one at a time. A batch
+         * holds up to the given number of messages, collected for up to the
+         * given time after the first arrives. Batches suit consumers that
+         * do better with fewer, larger writes, such as to disk.
+         * <p>
+         * All batches are passed from a single, separate thread.
+         *
+         * @param listener input listener or null to not listen
+         * @param maxBatch most messages in one batch
+         * @param maxWait milliseconds to wait for a batch to fill, or 0 to
+         * pass whatever is waiting without delay
+         * @return this builder
+         * @throws IllegalArgumentException if maxBatch is less than 1 or
+         * maxWait is negative
+         */
+        @Nonnull
+        Builder listenInput(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait);
+
         /**
          * Sets a listener for all outgoing messages to the server.
          * <p>
@@ -161,6 +245,21 @@ public interface Client {
         @Nonnull
         Builder listenOutput(@Nullable Consumer<String> listener);
 
+        /**
+         * Sets a listener for all outgoing messages to the server,
+         * receiving them in batches as described in {@link #listenInput(Consumer, int, long)}.
+         *
+         * @param listener output listener or null to not listen
+         * @param maxBatch most messages in one batch
+         * @param maxWait milliseconds to wait for a batch to fill, or 0 to
+         * pass whatever is waiting without delay
+         * @return this builder
+         * @throws IllegalArgumentException if maxBatch is less than 1 or
+         * maxWait is negative
+         */
+        @Nonnull
+        Builder listenOutput(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait);
+
         /**
          * Sets the supplier of message sending queues.
          *
@@ -171,6 +270,18 @@ public interface Client {
         @Nonnull
         Builder messageSendingQueueSupplier(@Nonnull Function<Client, ? extends MessageSendingQueue> supplier);
 
+        /**
+         * Sets the receiver of metrics about the client's activity.
+         * <p>
+         * By default, metrics are not collected.
+         *
+         * @param metrics metrics receiver or null to not collect metrics
+         * @return this builder
+         * @see ClientMetrics
+         */
+        @Nonnull
+        Builder metrics(@Nullable ClientMetrics metrics);
+
         /**
          * Names the client, for internal labeling.
          *
@@ -216,6 +327,20 @@ public interface Client {
         @Nonnull
         Builder realName(@Nonnull String name);
 
+        /**
+         * Sets how long requests awaiting a reply from the server wait
+         * before failing with a {@link java.util.concurrent.TimeoutException}.
+         * <p>
+         * By default, requests wait 30 seconds.
+         *
+         * @param milliseconds time to wait, in milliseconds, or 0 to wait
+         * indefinitely
+         * @return this builder
+         * @see ReplyManager
+         */
+        @Nonnull
+        Builder replyTimeout(long milliseconds);
+
         /**
          * Sets the server password.
          * <p>
@@ -316,6 +441,22 @@ public interface Client {
         @Nonnull
         Builder user(@Nonnull String user);
 
+        /**
+         * Sets the registry of user identities to share with other clients
+         * connected to the same network.
+         * <p>
+         * By default, each client has its own registry. Clients of a
+         * {@link ClientGroup} share a registry if one is set here.
+         *
+         * @param registry registry created by {@link UserRegistry#create()},
+         * or null for a registry of this client's own
+         * @return this builder
+         * @throws IllegalArgumentException if registry was not created by
+         * {@link UserRegistry#create()}
+         */
+        @Nonnull
+        Builder userRegistry(@Nullable UserRegistry registry);
+
         /**
          * Sets all the information for, and enables, WebIRC.
          * <p>
@@ -341,6 +482,20 @@ public interface Client {
         @Nonnull
         Builder webircRemove();
 
+        /**
+         * Sets how long WHOIS replies are reused by
+         * {@link ReplyManager#getWhois(String)}, unless the user is seen
+         * changing nick, host or account, quitting or going away.
+         * <p>
+         * By default, replies are reused for 60 seconds.
+         *
+         * @param milliseconds time to reuse replies, in milliseconds, or 0 to
+         * not reuse them
+         * @return this builder
+         */
+        @Nonnull
+        Builder whoisCacheLifetime(long milliseconds);
+
         /**
          * Sets the storage manager for STS (strict transport security) support.
          * <p>
@@ -369,6 +524,41 @@ public interface Client {
          */
         @Nonnull
         Client build();
+
+        /**
+         * Builds a client that never connects, for replaying captured
+         * traffic into it. Any {@link #afterBuildConsumer(Consumer)} is run
+         * on the calling thread before this returns. The {@link
+         * #channelStateFile(Path) channel state file} is not used, so that
+         * a replay cannot overwrite the state of a live client.
+         *
+         * @return a replay feeding a client designed to your liking
+         */
+        @Nonnull
+        TrafficReplay buildReplay();
+
+        /**
+         * Builds a group of clients connected to the same server, sharing
+         * out channels between them. The first client takes the given nick
+         * and the rest take the nick followed by their index, with the
+         * nick cut short once the server's nick length limit is known so
+         * that the index fits. Each client is passed to the
+         * {@link #afterBuildConsumer(Consumer)}.
+         * <p>
+         * Each client after the first writes its channel state to the
+         * {@link #channelStateFile(Path)} with its index appended. The STS
+         * storage manager and any input and output listeners are shared
+         * by all clients, so per-client traffic captures should be
+         * attached in the after build consumer.
+         *
+         * @param nick nick of the first client
+         * @param connections number of clients
+         * @return a group of clients designed to your liking
+         * @throws IllegalArgumentException if nick is null or invalid, or
+         * connections is not positive
+         */
+        @Nonnull
+        ClientGroup buildGroup(@Nonnull String nick, int connections);
     }
 
     /**
@@ -479,6 +669,20 @@ public interface Client {
      */
     void addChannel(@Nonnull String... channels);
 
+    /**
+     * Adds a channel to this client, completing once joined.
+     * <p>
+     * Joins the channel if already connected, or once connected.
+     *
+     * @param channel channel to add
+     * @return future completing with the channel once joined, or
+     * exceptionally if the server refuses the join or the reply times out
+     * @throws IllegalArgumentException if null or invalid
+     * @see ReplyManager
+     */
+    @Nonnull
+    CompletableFuture<Channel> addChannelAsync(@Nonnull String channel);
+
     /**
      * Adds a key-protected channel to this client.
      * <p>
@@ -616,6 +820,22 @@ public interface Client {
     @Nonnull
     MessageTagManager getMessageTagManager();
 
+    /**
+     * Gets the receiver of metrics about this client's activity.
+     *
+     * @return metrics receiver
+     */
+    @Nonnull
+    ClientMetrics getMetrics();
+
+    /**
+     * Gets the manager of the MONITOR list.
+     *
+     * @return monitor manager
+     */
+    @Nonnull
+    MonitorManager getMonitorManager();
+
     /**
      * Gets the client name. This name is just an internal name for reference
      * and is not visible from IRC.
@@ -633,6 +853,14 @@ public interface Client {
     @Nonnull
     String getNick();
 
+    /**
+     * Gets the manager of requests awaiting replies from the server.
+     *
+     * @return reply manager
+     */
+    @Nonnull
+    ReplyManager getReplyManager();
+
     /**
      * Gets information about the server to which the client is currently
      * connected. As long as the client remains connected the information
@@ -948,8 +1176,28 @@ public interface Client {
      */
     void setInputListener(@Nullable Consumer<String> listener);
 
+    /**
+     * Sets a listener for all incoming messages from the server, receiving them in
+     * batches rather than one at a time. A batch holds up to the given
+     * number of messages, collected for up to the given time after the
+     * first arrives.
+     * <p>
+     * All batches are passed from a single, separate thread.
+     *
+     * @param listener input listener or null to not listen
+     * @param maxBatch most messages in one batch
+     * @param maxWait milliseconds to wait for a batch to fill, or 0 to
+     * pass whatever is waiting without delay
+     * @throws IllegalArgumentException if maxBatch is less than 1 or
+     * maxWait is negative
+     * @see Builder#listenInput(Consumer, int, long)
+     */
+    void setInputListener(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait);
+
     /**
      * Sets the default message cutter to use for multi-line messages.
+     * Cutters used by the client are given a size limit in UTF-8 encoded
+     * bytes, and the default is a {@link Cutter.Utf8WordCutter}.
      *
      * @param cutter cutter to set
      */
@@ -979,6 +1227,24 @@ public interface Client {
      */
     void setOutputListener(@Nullable Consumer<String> listener);
 
+    /**
+     * Sets a listener for all outgoing messages to the server, receiving them in
+     * batches rather than one at a time. A batch holds up to the given
+     * number of messages, collected for up to the given time after the
+     * first arrives.
+     * <p>
+     * All batches are passed from a single, separate thread.
+     *
+     * @param listener output listener or null to not listen
+     * @param maxBatch most messages in one batch
+     * @param maxWait milliseconds to wait for a batch to fill, or 0 to
+     * pass whatever is waiting without delay
+     * @throws IllegalArgumentException if maxBatch is less than 1 or
+     * maxWait is negative
+     * @see Builder#listenOutput(Consumer, int, long)
+     */
+    void setOutputListener(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait);
+
     /**
      * Shuts down the client without a quit message.
      */
@@ -0,0 +1,127 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A group of {@link Client}s connected to one network, sharing out
+ * channels between them so that the group can be in more channels and
+ * send more messages than one connection's limits allow.
+ * <p>
+ * Channels are assigned to clients by consistent hashing, so adding or
+ * removing a channel never moves others. Once a server reports its
+ * channel limits, channels over a client's limit are moved to the next
+ * client with room.
+ *
+ * @see Client.Builder#buildGroup(String, int)
+ */
+public interface ClientGroup {
+    /**
+     * Gets the clients of this group. The first client is the one through
+     * which messages to targets other than channels are sent.
+     *
+     * @return clients in the group
+     */
+    @Nonnull
+    List<Client> getClients();
+
+    /**
+     * Gets the client a channel is assigned to.
+     *
+     * @param channel channel
+     * @return client assigned the channel, if the channel was added
+     * @throws IllegalArgumentException if channel is null
+     */
+    @Nonnull
+    Optional<Client> getClient(@Nonnull String channel);
+
+    /**
+     * Adds channels, each joined by the client it is assigned to.
+     *
+     * @param channels channel(s) to add
+     * @throws IllegalArgumentException if null or invalid channel names
+     * @see Client#addChannel(String...)
+     */
+    void addChannel(@Nonnull String... channels);
+
+    /**
+     * Removes a channel, parted by the client it was assigned to.
+     *
+     * @param channel channel to remove
+     * @throws IllegalArgumentException if channel is null or invalid
+     * @see Client#removeChannel(String)
+     */
+    void removeChannel(@Nonnull String channel);
+
+    /**
+     * Registers an event listener with every client in the group. Events
+     * received by a client are posted on that client's event manager, and
+     * an event about a user in channels assigned to several clients is
+     * received once from each.
+     *
+     * @param listener listener to register
+     * @throws IllegalArgumentException if listener is null
+     */
+    void registerEventListener(@Nonnull Object listener);
+
+    /**
+     * Unregisters an event listener from every client in the group.
+     *
+     * @param listener listener to unregister
+     * @throws IllegalArgumentException if listener is null
+     */
+    void unregisterEventListener(@Nonnull Object listener);
+
+    /**
+     * Sends a message to a target, through the client assigned the target
+     * if it is a channel, else through the first client.
+     *
+     * @param target target
+     * @param message message
+     * @throws IllegalArgumentException for null parameters
+     * @see Client#sendMessage(String, String)
+     */
+    void sendMessage(@Nonnull String target, @Nonnull String message);
+
+    /**
+     * Sends a notice to a target, through the client assigned the target
+     * if it is a channel, else through the first client.
+     *
+     * @param target target
+     * @param message message
+     * @throws IllegalArgumentException for null parameters
+     * @see Client#sendNotice(String, String)
+     */
+    void sendNotice(@Nonnull String target, @Nonnull String message);
+
+    /**
+     * Shuts down every client in the group.
+     *
+     * @see Client#shutdown()
+     */
+    void shutdown();
+}
@@ -24,6 +24,7 @@
 package org.kitteh.irc.client.library.command;
 
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.util.LineBuilder;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
 
@@ -33,6 +34,10 @@ import javax.annotation.Nonnull;
  * A command only executed on a channel.
  */
 public abstract class ChannelCommand extends Command {
+    private static final int MAXIMUM_LINE_LENGTH = 510;
+    // Used until the client's own user is known, as for messages
+    private static final int UNKNOWN_SELF_PREFIX_LENGTH = 100;
+
     private final String channel;
 
     /**
@@ -59,6 +64,18 @@ public abstract class ChannelCommand extends Command {
         return this.channel;
     }
 
+    /**
+     * Gets the most bytes a line may hold, excluding the line ending, so
+     * that it still fits once the server relays it to the channel behind
+     * the client's own {@code :nick!user@host } prefix.
+     *
+     * @return line length limit
+     */
+    protected int getRelayedLineLimit() {
+        int prefixLength = this.getClient().getUser().map(user -> LineBuilder.getByteLength(user.getName())).orElse(UNKNOWN_SELF_PREFIX_LENGTH);
+        return MAXIMUM_LINE_LENGTH - prefixLength - 2; // Colon and space
+    }
+
     @Nonnull
     @Override
     protected ToStringer toStringer() {
@@ -24,12 +24,15 @@
 package org.kitteh.irc.client.library.command;
 
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
 import org.kitteh.irc.client.library.element.ISupportParameter;
 import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.element.mode.ChannelMode;
 import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
 import org.kitteh.irc.client.library.element.mode.ModeStatus;
 import org.kitteh.irc.client.library.element.mode.ModeStatusList;
+import org.kitteh.irc.client.library.feature.ReplyManager;
+import org.kitteh.irc.client.library.util.LineBuilder;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
 
@@ -38,9 +41,14 @@ import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Commands a la MODE.
+ * <p>
+ * Changes are sent in order in as few lines as possible, each holding as
+ * many changes as both the server's MODES limit and the line length limit
+ * allow.
  */
 public class ChannelModeCommand extends ChannelCommand {
     private static final int PARAMETER_MODES_PER_LINE = 3;
@@ -118,9 +126,38 @@ public class ChannelModeCommand extends ChannelCommand {
 
     @Override
     public synchronized void execute() {
+        this.getLines().forEach(this.getClient()::sendRawLine);
+    }
+
+    /**
+     * Executes the command, completing once the server has replied with
+     * the channel modes, or echoed every line of mode changes.
+     * <p>
+     * Servers do not echo changes which change nothing, such as setting a
+     * mode already set, so lines consisting only of such changes end in a
+     * timeout.
+     *
+     * @return future completing with the channel, or exceptionally if the
+     * server refuses or the reply times out
+     */
+    @Nonnull
+    public synchronized CompletableFuture<Channel> executeAsync() {
+        List<String> lines = this.getLines();
+        List<CompletableFuture<Channel>> futures = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            futures.add(this.getClient().getReplyManager().await(ReplyManager.ReplyType.CHANNEL_MODE, this.getChannel()));
+        }
+        lines.forEach(this.getClient()::sendRawLine);
+        CompletableFuture<Channel> last = futures.get(futures.size() - 1);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenCompose(ignored -> last);
+    }
+
+    @Nonnull
+    private List<String> getLines() {
+        List<String> lines = new ArrayList<>();
         if (this.changes.isEmpty()) {
-            this.getClient().sendRawLine("MODE " + this.getChannel());
-            return;
+            lines.add("MODE " + this.getChannel());
+            return lines;
         }
         int parameterModesPerLine = -1;
         Optional<ISupportParameter.Modes> modes = this.getClient().getServerInfo().getISupportParameter("MODES", ISupportParameter.Modes.class);
@@ -130,25 +167,45 @@ public class ChannelModeCommand extends ChannelCommand {
         if (parameterModesPerLine < 1) {
             parameterModesPerLine = PARAMETER_MODES_PER_LINE;
         }
+        // Each line is filled up to both the parameter limit and the byte limit
+        int prefixLength = LineBuilder.getByteLength("MODE " + this.getChannel() + ' ', "Channel");
+        int limit = this.getRelayedLineLimit();
         List<ModeStatus<ChannelMode>> queue = new ArrayList<>();
-        int currentParamModes = 0;
+        int length = prefixLength;
+        int parameterModes = 0;
         for (ModeStatus<ChannelMode> modeChange : this.changes) {
-            if (modeChange.getParameter().isPresent()) {
-                if (++currentParamModes > parameterModesPerLine) {
-                    this.send(queue);
-                    currentParamModes = 0;
-                }
+            boolean parameter = modeChange.getParameter().isPresent();
+            int changeLength = this.getLength(modeChange, queue);
+            if (!queue.isEmpty() && (((length + changeLength) > limit) || (parameter && (parameterModes == parameterModesPerLine)))) {
+                lines.add(this.getLine(queue));
+                length = prefixLength;
+                parameterModes = 0;
+                changeLength = this.getLength(modeChange, queue);
             }
             queue.add(modeChange);
+            length += changeLength;
+            if (parameter) {
+                parameterModes++;
+            }
         }
-        if (!queue.isEmpty()) {
-            this.send(queue);
+        lines.add(this.getLine(queue));
+        return lines;
+    }
+
+    private int getLength(@Nonnull ModeStatus<ChannelMode> modeChange, @Nonnull List<ModeStatus<ChannelMode>> queue) {
+        boolean sameSign = !queue.isEmpty() && (queue.get(queue.size() - 1).isSetting() == modeChange.isSetting());
+        int length = sameSign ? 1 : 2;
+        if (modeChange.getParameter().isPresent()) {
+            length += 1 + LineBuilder.getByteLength(modeChange.getParameter().get(), "Parameter");
         }
+        return length;
     }
 
-    private void send(@Nonnull List<ModeStatus<ChannelMode>> queue) {
-        this.getClient().sendRawLine("MODE " + this.getChannel() + ' ' + ModeStatusList.of(new ArrayList<>(queue)).getStatusString());
+    @Nonnull
+    private String getLine(@Nonnull List<ModeStatus<ChannelMode>> queue) {
+        String line = "MODE " + this.getChannel() + ' ' + ModeStatusList.of(new ArrayList<>(queue)).getStatusString();
         queue.clear();
+        return line;
     }
 
     @Nonnull
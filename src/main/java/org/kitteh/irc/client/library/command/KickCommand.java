@@ -25,19 +25,29 @@ package org.kitteh.irc.client.library.command;
 
 import org.kitteh.irc.client.library.Client;
 import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.ISupportParameter;
 import org.kitteh.irc.client.library.element.User;
+import org.kitteh.irc.client.library.feature.ReplyManager;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageType;
+import org.kitteh.irc.client.library.util.LineBuilder;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Get your KICKs on Route 66.
+ * <p>
+ * Multiple targets are kicked in as few lines as the server's TARGMAX limit
+ * for KICK and the line length limit allow.
  */
 public class KickCommand extends ChannelCommand {
-    private String target;
+
+    private final List<String> targets = new ArrayList<>();
     @Nullable
     private String reason;
 
@@ -56,20 +66,22 @@ public class KickCommand extends ChannelCommand {
     }
 
     /**
-     * Sets the target of this kick.
+     * Sets the target of this kick, replacing any others.
      *
      * @param target target
      * @return this command
      * @throws IllegalArgumentException if target is null or contains invalid characters
      */
     @Nonnull
-    public KickCommand target(@Nonnull String target) {
-        this.target = Sanity.safeMessageCheck(target, "Target");
+    public synchronized KickCommand target(@Nonnull String target) {
+        Sanity.safeMessageCheck(target, "Target");
+        this.targets.clear();
+        this.targets.add(target);
         return this;
     }
 
     /**
-     * Sets the target of this kick.
+     * Sets the target of this kick, replacing any others.
      *
      * @param target target
      * @return this command
@@ -83,6 +95,35 @@ public class KickCommand extends ChannelCommand {
         return this;
     }
 
+    /**
+     * Adds a target to this kick.
+     *
+     * @param target target
+     * @return this command
+     * @throws IllegalArgumentException if target is null or contains invalid characters
+     */
+    @Nonnull
+    public synchronized KickCommand addTarget(@Nonnull String target) {
+        Sanity.safeMessageCheck(target, "Target");
+        Sanity.truthiness(target.indexOf(',') == -1, "Target cannot contain commas");
+        this.targets.add(target);
+        return this;
+    }
+
+    /**
+     * Adds a target to this kick.
+     *
+     * @param target target
+     * @return this command
+     * @throws IllegalArgumentException if target is null or from a different Client
+     */
+    @Nonnull
+    public KickCommand addTarget(@Nonnull User target) {
+        Sanity.nullCheck(target, "Target cannot be null");
+        Sanity.truthiness(target.getClient() == this.getClient(), "User comes from a different client");
+        return this.addTarget(target.getNick());
+    }
+
     /**
      * Sets the reason for this kick.
      *
@@ -102,16 +143,66 @@ public class KickCommand extends ChannelCommand {
      * @throws IllegalStateException if target is not defined
      */
     @Override
-    public void execute() {
-        if (this.target == null) {
+    public synchronized void execute() {
+        this.getLines().forEach(this.getClient()::sendRawLine);
+    }
+
+    /**
+     * Executes the command, completing once the server has echoed the kick.
+     *
+     * @return future completing with the channel, or exceptionally if the
+     * server refuses or the reply times out
+     * @throws IllegalStateException if target is not defined
+     */
+    @Nonnull
+    public synchronized CompletableFuture<Channel> executeAsync() {
+        List<String> lines = this.getLines();
+        // The server echoes a KICK per target, even for multi-target lines
+        List<CompletableFuture<Channel>> futures = new ArrayList<>(this.targets.size());
+        for (int i = 0; i < this.targets.size(); i++) {
+            futures.add(this.getClient().getReplyManager().await(ReplyManager.ReplyType.KICK, this.getChannel()));
+        }
+        lines.forEach(this.getClient()::sendRawLine);
+        CompletableFuture<Channel> last = futures.get(futures.size() - 1);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenCompose(ignored -> last);
+    }
+
+    @Nonnull
+    private List<String> getLines() {
+        if (this.targets.isEmpty()) {
             throw new IllegalStateException("Target not defined");
         }
-        this.getClient().sendRawLine("KICK " + this.getChannel() + ' ' + this.target + (this.reason != null ? (" :" + this.reason) : ""));
+        int targetsPerLine = this.getClient().getServerInfo().getISupportParameter(ISupportParameter.TargMax.NAME, ISupportParameter.TargMax.class).map(targMax -> targMax.getLimit("KICK")).orElse(1);
+        String suffix = (this.reason != null) ? (" :" + this.reason) : "";
+        int fixedLength = LineBuilder.getByteLength("KICK " + this.getChannel() + ' ', "Channel") + LineBuilder.getByteLength(suffix, "Reason");
+        int limit = this.getRelayedLineLimit();
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        int length = fixedLength;
+        int count = 0;
+        for (String target : this.targets) {
+            int targetLength = LineBuilder.getByteLength(target, "Target");
+            if ((count > 0) && ((count == targetsPerLine) || ((length + 1 + targetLength) > limit))) {
+                lines.add("KICK " + this.getChannel() + ' ' + line + suffix);
+                line.setLength(0);
+                length = fixedLength;
+                count = 0;
+            }
+            if (count > 0) {
+                line.append(',');
+                length++;
+            }
+            line.append(target);
+            length += targetLength;
+            count++;
+        }
+        lines.add("KICK " + this.getChannel() + ' ' + line + suffix);
+        return lines;
     }
 
     @Nonnull
     @Override
     protected ToStringer toStringer() {
-        return super.toStringer().add("target", this.target).add("reason", this.reason);
+        return super.toStringer().add("targets", this.targets).add("reason", this.reason);
     }
 }
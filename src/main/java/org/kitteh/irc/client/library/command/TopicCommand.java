@@ -24,11 +24,14 @@
 package org.kitteh.irc.client.library.command;
 
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.feature.ReplyManager;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * TOPICal command support.
@@ -77,6 +80,20 @@ public class TopicCommand extends ChannelCommand {
         this.getClient().sendRawLine("TOPIC " + this.getChannel() + (this.topic == null ? "" : (" :" + this.topic)));
     }
 
+    /**
+     * Executes the command, completing once the server has replied with
+     * the topic, or echoed the topic change.
+     *
+     * @return future completing with the channel, or exceptionally if the
+     * server refuses or the reply times out
+     */
+    @Nonnull
+    public synchronized CompletableFuture<Channel> executeAsync() {
+        CompletableFuture<Channel> future = this.getClient().getReplyManager().await(ReplyManager.ReplyType.TOPIC, this.getChannel());
+        this.execute();
+        return future;
+    }
+
     @Nonnull
     @Override
     protected ToStringer toStringer() {
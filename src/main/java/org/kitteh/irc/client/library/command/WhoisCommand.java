@@ -24,11 +24,14 @@
 package org.kitteh.irc.client.library.command;
 
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.WhoisData;
+import org.kitteh.irc.client.library.feature.ReplyManager;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Sends a WHOIS request to the server.
@@ -90,6 +93,30 @@ public class WhoisCommand extends Command {
         this.getClient().sendRawLine(builder.toString());
     }
 
+    /**
+     * Executes the command, completing once the server has replied.
+     * <p>
+     * If no server is set, this is {@link ReplyManager#getWhois(String)},
+     * so a recently cached reply or a WHOIS already in flight for the
+     * target is shared rather than sending another.
+     *
+     * @return future completing with the WHOIS reply, or exceptionally if
+     * the nick or server is unknown or the reply times out
+     * @throws IllegalStateException if target is not defined
+     */
+    @Nonnull
+    public CompletableFuture<WhoisData> executeAsync() {
+        if (this.target == null) {
+            throw new IllegalStateException("Target not defined");
+        }
+        if (this.server == null) {
+            return this.getClient().getReplyManager().getWhois(this.target);
+        }
+        CompletableFuture<WhoisData> future = this.getClient().getReplyManager().await(ReplyManager.ReplyType.WHOIS, this.target);
+        this.execute();
+        return future;
+    }
+
     @Override
     public String toString() {
         return new ToStringer(this).add("client", this.getClient()).add("server", this.server).add("target", this.target).toString();
@@ -200,13 +200,28 @@ public interface Channel extends MessageReceiver, Staleable {
 
     /**
      * Gets if this Channel has complete user data available, only possible
-     * if the Client is in the channel and the WHO list has sent.
+     * if the Client is in the channel and the WHO list has sent, or, with
+     * the userhost-in-names, multi-prefix, extended-join, account-notify
+     * and away-notify capabilities all enabled, the NAMES list has sent.
+     * In the latter case no WHO is sent, so the accounts, real names and
+     * away states of users already in the channel upon joining are not
+     * known until they change.
      *
-     * @return true if Client is in channel and WHO has finished
+     * @return true if Client is in channel and WHO or NAMES has finished
      * @see ChannelUsersUpdatedEvent
      */
     boolean hasCompleteUserData();
 
+    /**
+     * Gets if any of this Channel's modes, topic or mode info lists were
+     * restored from a previous session and have not yet been confirmed by
+     * the server.
+     *
+     * @return true if some state is provisional
+     * @see Client.Builder#channelStateFile(java.nio.file.Path)
+     */
+    boolean isProvisional();
+
     /**
      * Joins the channel.
      *
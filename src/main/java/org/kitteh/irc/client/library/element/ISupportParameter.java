@@ -28,6 +28,7 @@ import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
 
 import javax.annotation.Nonnull;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
@@ -140,6 +141,24 @@ public interface ISupportParameter extends ClientLinked {
         String NAME = "MODES";
     }
 
+    /**
+     * Represents support for MONITOR and the size of the MONITOR list.
+     */
+    interface Monitor extends ISupportParameter {
+        /**
+         * Parameter name.
+         */
+        String NAME = "MONITOR";
+
+        /**
+         * Gets the maximum number of nicks on the MONITOR list.
+         *
+         * @return limit, or empty if unlimited
+         */
+        @Nonnull
+        Optional<Integer> getLimit();
+    }
+
     /**
      * Represents the network name.
      */
@@ -196,6 +215,36 @@ public interface ISupportParameter extends ClientLinked {
         String NAME = "WHOX";
     }
 
+    /**
+     * Represents the maximum number of targets per command.
+     */
+    interface TargMax extends ISupportParameter {
+        /**
+         * Parameter name.
+         */
+        String NAME = "TARGMAX";
+
+        /**
+         * Gets the target limits. Commands without a limit map to
+         * {@link Integer#MAX_VALUE}, and commands not listed accept only
+         * one target.
+         *
+         * @return limits by upper case command
+         */
+        @Nonnull
+        Map<String, Integer> getLimits();
+
+        /**
+         * Gets the target limit of a command.
+         *
+         * @param command command
+         * @return maximum number of targets
+         */
+        default int getLimit(@Nonnull String command) {
+            return this.getLimits().getOrDefault(command.toUpperCase(Locale.ENGLISH), 1);
+        }
+    }
+
     /**
      * Represents the length limit of topics.
      */
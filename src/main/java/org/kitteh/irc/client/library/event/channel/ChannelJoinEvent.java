@@ -29,13 +29,16 @@ import org.kitteh.irc.client.library.element.ServerMessage;
 import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.event.abstractbase.ActorChannelEventBase;
 import org.kitteh.irc.client.library.event.helper.ChannelUserListChangeEvent;
+import org.kitteh.irc.client.library.event.user.NetjoinEvent;
 
 import javax.annotation.Nonnull;
 import java.util.List;
 import java.util.Optional;
 
 /**
- * A {@link User} has joined a {@link Channel}!
+ * A {@link User} has joined a {@link Channel}! Users rejoining in a
+ * netjoin are also reported together by a {@link NetjoinEvent}, fired
+ * after their join events once the whole netjoin is known.
  */
 public class ChannelJoinEvent extends ActorChannelEventBase<User> implements ChannelUserListChangeEvent {
     /**
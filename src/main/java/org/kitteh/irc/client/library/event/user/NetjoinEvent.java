@@ -0,0 +1,101 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.event.user;
+
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.ServerMessage;
+import org.kitteh.irc.client.library.element.User;
+import org.kitteh.irc.client.library.event.abstractbase.ServerMessageEventBase;
+import org.kitteh.irc.client.library.event.channel.ChannelJoinEvent;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Split servers have rejoined, and the {@link User}s behind the split have
+ * rejoined their channels at once. Fired once for the whole IRCv3 netjoin
+ * batch, after a {@link ChannelJoinEvent} for each join.
+ */
+public class NetjoinEvent extends ServerMessageEventBase {
+    private final List<User> users;
+    private final List<Channel> channels;
+    private final List<String> servers;
+
+    /**
+     * Constructs the event.
+     *
+     * @param client the client
+     * @param originalMessages original messages
+     * @param users users who joined
+     * @param channels channels joined
+     * @param servers names of the servers rejoined
+     */
+    public NetjoinEvent(@Nonnull Client client, @Nonnull List<ServerMessage> originalMessages, @Nonnull List<User> users, @Nonnull List<Channel> channels, @Nonnull List<String> servers) {
+        super(client, originalMessages);
+        this.users = Collections.unmodifiableList(new ArrayList<>(Sanity.nullCheck(users, "Users cannot be null")));
+        this.channels = Collections.unmodifiableList(new ArrayList<>(Sanity.nullCheck(channels, "Channels cannot be null")));
+        this.servers = Collections.unmodifiableList(new ArrayList<>(Sanity.nullCheck(servers, "Servers cannot be null")));
+    }
+
+    /**
+     * Gets the users who joined.
+     *
+     * @return users who joined
+     */
+    @Nonnull
+    public List<User> getUsers() {
+        return this.users;
+    }
+
+    /**
+     * Gets the channels joined, after all joins.
+     *
+     * @return channels joined
+     */
+    @Nonnull
+    public List<Channel> getChannels() {
+        return this.channels;
+    }
+
+    /**
+     * Gets the names of the servers rejoined.
+     *
+     * @return server names
+     */
+    @Nonnull
+    public List<String> getServers() {
+        return this.servers;
+    }
+
+    @Override
+    @Nonnull
+    protected ToStringer toStringer() {
+        return super.toStringer().add("users", this.users).add("channels", this.channels).add("servers", this.servers);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.event.user;
+
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.ServerMessage;
+import org.kitteh.irc.client.library.element.User;
+import org.kitteh.irc.client.library.event.abstractbase.ServerMessageEventBase;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Servers have split, and all the {@link User}s behind the split have quit
+ * at once. Fired once for the whole split, after a {@link UserQuitEvent}
+ * for each user. Splits are recognized by IRCv3
+ * netsplit batches, or by the traditional quit message naming the two
+ * servers on servers not supporting batches.
+ */
+public class NetsplitEvent extends ServerMessageEventBase {
+    private final List<User> users;
+    private final List<String> servers;
+
+    /**
+     * Constructs the event.
+     *
+     * @param client the client
+     * @param originalMessages original messages
+     * @param users users who quit
+     * @param servers names of the servers split apart, if known
+     */
+    public NetsplitEvent(@Nonnull Client client, @Nonnull List<ServerMessage> originalMessages, @Nonnull List<User> users, @Nonnull List<String> servers) {
+        super(client, originalMessages);
+        this.users = Collections.unmodifiableList(new ArrayList<>(Sanity.nullCheck(users, "Users cannot be null")));
+        this.servers = Collections.unmodifiableList(new ArrayList<>(Sanity.nullCheck(servers, "Servers cannot be null")));
+    }
+
+    /**
+     * Gets the users who quit, as they were before quitting.
+     *
+     * @return users who quit
+     */
+    @Nonnull
+    public List<User> getUsers() {
+        return this.users;
+    }
+
+    /**
+     * Gets the names of the servers split apart, if known.
+     *
+     * @return server names, or an empty list if unknown
+     */
+    @Nonnull
+    public List<String> getServers() {
+        return this.servers;
+    }
+
+    @Override
+    @Nonnull
+    protected ToStringer toStringer() {
+        return super.toStringer().add("users", this.users).add("servers", this.servers);
+    }
+}
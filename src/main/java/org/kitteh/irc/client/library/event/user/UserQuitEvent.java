@@ -35,7 +35,9 @@ import java.util.List;
 import java.util.Optional;
 
 /**
- * A {@link User} has quit the server!
+ * A {@link User} has quit the server! Users quitting in a netsplit are
+ * also reported together by a {@link NetsplitEvent}, fired after their
+ * quit events once the whole split is known.
  */
 public class UserQuitEvent extends ActorMessageEventBase<User> implements ChannelUserListChangeEvent {
     /**
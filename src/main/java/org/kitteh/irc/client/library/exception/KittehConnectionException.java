@@ -42,6 +42,17 @@ public class KittehConnectionException extends Exception {
         this.fatal = fatal;
     }
 
+    /**
+     * Constructs this event.
+     *
+     * @param message the detail message
+     * @param fatal true if the exception indicates death of the connection
+     */
+    public KittehConnectionException(@Nonnull String message, boolean fatal) {
+        super(message);
+        this.fatal = fatal;
+    }
+
     /**
      * Gets if the connection has died.
      *
@@ -0,0 +1,68 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.exception;
+
+import org.kitteh.irc.client.library.element.ServerMessage;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Indicates the server replied to a request with an error numeric.
+ */
+public class KittehRequestRefusedException extends RuntimeException {
+    private final ServerMessage serverMessage;
+    private final int numeric;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param serverMessage error reply from the server
+     * @param numeric error numeric
+     * @param reason reason given by the server
+     */
+    public KittehRequestRefusedException(@Nonnull ServerMessage serverMessage, int numeric, @Nonnull String reason) {
+        super("Request refused (" + numeric + "): " + reason);
+        this.serverMessage = serverMessage;
+        this.numeric = numeric;
+    }
+
+    /**
+     * Gets the error reply from the server.
+     *
+     * @return message
+     */
+    @Nonnull
+    public ServerMessage getServerMessage() {
+        return this.serverMessage;
+    }
+
+    /**
+     * Gets the error numeric.
+     *
+     * @return numeric
+     */
+    public int getNumeric() {
+        return this.numeric;
+    }
+}
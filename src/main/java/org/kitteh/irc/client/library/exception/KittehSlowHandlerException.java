@@ -0,0 +1,84 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.exception;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+
+/**
+ * Reports an event handler which took longer than the configured threshold.
+ * The stack trace of this exception is that of the handler's thread,
+ * sampled while the handler was still running, or empty if the handler
+ * finished before it could be sampled.
+ */
+public class KittehSlowHandlerException extends Exception {
+    private final Method handler;
+    private final Class<?> eventType;
+    private final long elapsed;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param handler the slow handler
+     * @param eventType type of event being handled
+     * @param elapsed time taken when reported, in milliseconds
+     * @param stack sampled stack of the handler's thread
+     */
+    public KittehSlowHandlerException(@Nonnull Method handler, @Nonnull Class<?> eventType, long elapsed, @Nonnull StackTraceElement[] stack) {
+        super("Handler " + handler.getDeclaringClass().getName() + '#' + handler.getName() + " took " + elapsed + "ms handling " + eventType.getName());
+        this.handler = handler;
+        this.eventType = eventType;
+        this.elapsed = elapsed;
+        this.setStackTrace(stack);
+    }
+
+    /**
+     * Gets the slow handler.
+     *
+     * @return handler method
+     */
+    @Nonnull
+    public Method getHandler() {
+        return this.handler;
+    }
+
+    /**
+     * Gets the type of event being handled.
+     *
+     * @return event type
+     */
+    @Nonnull
+    public Class<?> getEventType() {
+        return this.eventType;
+    }
+
+    /**
+     * Gets the time the handler had taken when reported.
+     *
+     * @return elapsed time, in milliseconds
+     */
+    public long getElapsed() {
+        return this.elapsed;
+    }
+}
@@ -30,6 +30,8 @@ import org.kitteh.irc.client.library.element.MessageTag;
 import org.kitteh.irc.client.library.element.ServerMessage;
 import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.event.channel.ChannelInviteEvent;
+import org.kitteh.irc.client.library.event.user.NetjoinEvent;
+import org.kitteh.irc.client.library.event.user.NetsplitEvent;
 import org.kitteh.irc.client.library.event.user.UserHostnameChangeEvent;
 import org.kitteh.irc.client.library.event.user.UserUserStringChangeEvent;
 import org.kitteh.irc.client.library.feature.auth.SaslECDSANIST256PChallenge;
@@ -80,6 +82,15 @@ public interface CapabilityManager {
          */
         public static final String AWAY_NOTIFY = "away-notify";
 
+        /**
+         * Batched messages, grouping the quits of a netsplit and the joins
+         * of a netjoin.
+         *
+         * @see NetsplitEvent
+         * @see NetjoinEvent
+         */
+        public static final String BATCH = "batch";
+
         /**
          * Self-sent message echoing, not utilized unless requested.
          */
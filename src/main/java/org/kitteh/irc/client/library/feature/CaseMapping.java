@@ -97,11 +97,18 @@ public enum CaseMapping {
         Sanity.nullCheck(input, "Input cannot be null");
         char[] arr = input.toCharArray();
         for (int i = 0; i < arr.length; i++) {
-            char c = arr[i];
-            if ((c >= 'A') && (c <= this.upperbound)) {
-                arr[i] += (char) 32;
-            }
+            arr[i] = this.toLowerCase(arr[i]);
         }
         return new String(arr);
     }
+
+    /**
+     * Converts a given character to lowercase per spec.
+     *
+     * @param c character to be lowercased
+     * @return lowercased character
+     */
+    public char toLowerCase(char c) {
+        return ((c >= 'A') && (c <= this.upperbound)) ? (char) (c + 32) : c;
+    }
 }
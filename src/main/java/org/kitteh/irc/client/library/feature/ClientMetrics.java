@@ -0,0 +1,149 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature;
+
+import org.kitteh.irc.client.library.Client;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+
+/**
+ * Receives measurements of a client's activity, for feeding counters,
+ * gauges and histograms of whatever metrics system is in use.
+ * <p>
+ * All methods default to doing nothing, so implementations need only
+ * override what they are interested in. Methods are called from the
+ * client's own threads, including its networking threads, and must
+ * return quickly. One instance may be shared across clients, with the
+ * client passed to every method.
+ */
+public interface ClientMetrics {
+    /**
+     * Metrics receiver which ignores everything, used by default.
+     */
+    ClientMetrics NONE = new ClientMetrics() {
+    };
+
+    /**
+     * Called when a line is received from the server.
+     *
+     * @param client client receiving the line
+     * @param bytes bytes received, excluding the line ending
+     */
+    default void lineReceived(@Nonnull Client client, int bytes) {
+    }
+
+    /**
+     * Called when a line is sent to the server.
+     *
+     * @param client client sending the line
+     * @param bytes bytes sent, including the line ending
+     */
+    default void lineSent(@Nonnull Client client, int bytes) {
+    }
+
+    /**
+     * Called when a received line is queued for processing.
+     *
+     * @param client client receiving the line
+     * @param depth number of lines waiting to be processed
+     */
+    default void inputQueueDepth(@Nonnull Client client, int depth) {
+    }
+
+    /**
+     * Called when a line is queued for sending.
+     *
+     * @param client client sending the line
+     * @param queue name of the sending queue
+     * @param depth number of lines waiting in the queue
+     */
+    default void sendQueueDepth(@Nonnull Client client, @Nonnull String queue, int depth) {
+    }
+
+    /**
+     * Called when a received line has been parsed, prior to its event
+     * being fired.
+     *
+     * @param client client receiving the line
+     * @param nanos time spent parsing, in nanoseconds
+     */
+    default void lineParsed(@Nonnull Client client, long nanos) {
+    }
+
+    /**
+     * Called when an event has been dispatched to all synchronous
+     * listeners.
+     *
+     * @param client client firing the event
+     * @param eventType type of the event
+     * @param nanos time spent dispatching, in nanoseconds
+     */
+    default void eventDispatched(@Nonnull Client client, @Nonnull Class<?> eventType, long nanos) {
+    }
+
+    /**
+     * Called when an event handler takes longer than the configured
+     * threshold, see {@link Client.Builder#eventHandlerWatchdog(long,
+     * boolean)}.
+     *
+     * @param client client firing the event
+     * @param handler the slow handler
+     * @param eventType type of event being handled
+     * @param millis time taken when reported, in milliseconds
+     * @param stack stack of the handler's thread, sampled while still
+     * running, or empty if the handler finished first
+     */
+    default void slowHandler(@Nonnull Client client, @Nonnull Method handler, @Nonnull Class<?> eventType, long millis, @Nonnull StackTraceElement[] stack) {
+    }
+
+    /**
+     * Called when a snapshot of a channel, user or other actor is rebuilt
+     * after a change.
+     *
+     * @param client client tracking the actor
+     * @param snapshotType type of the snapshot
+     * @param nanos time spent building, in nanoseconds
+     */
+    default void snapshotBuilt(@Nonnull Client client, @Nonnull Class<?> snapshotType, long nanos) {
+    }
+
+    /**
+     * Called when the client attempts to reconnect.
+     *
+     * @param client client reconnecting
+     */
+    default void reconnecting(@Nonnull Client client) {
+    }
+
+    /**
+     * Called when a message sending queue has held back a line to respect
+     * its delay.
+     *
+     * @param client client sending the line
+     * @param millis time spent waiting, in milliseconds
+     */
+    default void sendDelayed(@Nonnull Client client, long millis) {
+    }
+}
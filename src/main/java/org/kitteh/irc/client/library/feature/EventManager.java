@@ -26,6 +26,7 @@ package org.kitteh.irc.client.library.feature;
 import net.engio.mbassy.listener.Handler;
 import org.kitteh.irc.client.library.Client;
 import org.kitteh.irc.client.library.feature.filter.FilterProcessor;
+import org.kitteh.irc.client.library.util.Flow;
 
 import javax.annotation.Nonnull;
 import java.lang.annotation.Annotation;
@@ -37,6 +38,30 @@ import java.util.Set;
  * event manager utilizes MBassador, a lightweight event bus.
  */
 public interface EventManager {
+    /**
+     * What happens to an event published to a subscriber whose buffer is
+     * full.
+     */
+    enum OverflowStrategy {
+        /**
+         * Blocks event dispatch until the subscriber requests more events,
+         * stalling the client but never losing an event.
+         */
+        BLOCK,
+        /**
+         * Discards the event.
+         */
+        DROP_NEWEST,
+        /**
+         * Discards the oldest event in the buffer to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Fails the subscription with an {@link IllegalStateException}.
+         */
+        ERROR
+    }
+
     /**
      * Calls an event, triggering any registered methods for the event class.
      *
@@ -61,6 +86,24 @@ public interface EventManager {
     @Nonnull
     Map<Class<? extends Annotation>, FilterProcessor<?, ? extends Annotation>> getAnnotationFilters();
 
+    /**
+     * Gets a publisher of events of the given type, including subtypes.
+     * Each subscriber has its own buffer, holding events published until
+     * the subscriber requests them. Events are delivered on the client's
+     * own pool of daemon subscriber threads, one at a time per subscriber.
+     * Subscriptions complete when the client shuts down.
+     *
+     * @param eventType type of events to publish
+     * @param bufferSize number of events each subscriber's buffer holds
+     * @param strategy what happens to events published to a full buffer
+     * @param <T> type of events
+     * @return a new publisher
+     * @throws IllegalArgumentException for null parameters or a buffer
+     * size less than 1
+     */
+    @Nonnull
+    <T> Flow.Publisher<T> getPublisher(@Nonnull Class<T> eventType, int bufferSize, @Nonnull OverflowStrategy strategy);
+
     /**
      * Registers an annotation to be used in filtering events if present on
      * a handler method. Annotations are only processed on listeners
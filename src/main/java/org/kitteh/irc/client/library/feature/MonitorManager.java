@@ -0,0 +1,114 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Maintains the server's MONITOR list, tracking whether monitored nicks are
+ * online.
+ * <p>
+ * Changes are sent to the server as the difference between the nicks to
+ * monitor and the server's list, and the whole list is sent again after
+ * reconnecting. If the server limits the size of the list, the nicks of
+ * highest priority are monitored, earlier additions first among equals.
+ */
+public interface MonitorManager {
+    /**
+     * Status of a nick.
+     */
+    enum Status {
+        /**
+         * Monitored and online.
+         */
+        ONLINE,
+        /**
+         * Monitored and offline.
+         */
+        OFFLINE,
+        /**
+         * Monitored, with no status received yet.
+         */
+        UNKNOWN,
+        /**
+         * Not on the server's MONITOR list.
+         */
+        NOT_MONITORED
+    }
+
+    /**
+     * Adds a nick to monitor, with priority 0.
+     *
+     * @param nick nick
+     * @throws IllegalArgumentException if nick is null or invalid
+     */
+    void addNick(@Nonnull String nick);
+
+    /**
+     * Adds nicks to monitor, or changes the priority of nicks already added.
+     *
+     * @param nicks nicks
+     * @param priority priority, with higher priorities kept when the
+     * server's list is full
+     * @throws IllegalArgumentException if nicks is null or a nick is invalid
+     */
+    void addNicks(@Nonnull Collection<String> nicks, int priority);
+
+    /**
+     * Removes a nick from monitoring.
+     *
+     * @param nick nick
+     * @throws IllegalArgumentException if nick is null
+     */
+    void removeNick(@Nonnull String nick);
+
+    /**
+     * Removes nicks from monitoring.
+     *
+     * @param nicks nicks
+     * @throws IllegalArgumentException if nicks is null
+     */
+    void removeNicks(@Nonnull Collection<String> nicks);
+
+    /**
+     * Gets the nicks added for monitoring, including those not monitored
+     * for lack of room on the server's list.
+     *
+     * @return nicks
+     */
+    @Nonnull
+    Set<String> getNicks();
+
+    /**
+     * Gets the status of a nick.
+     *
+     * @param nick nick
+     * @return status
+     * @throws IllegalArgumentException if nick is null
+     */
+    @Nonnull
+    Status getStatus(@Nonnull String nick);
+}
@@ -0,0 +1,177 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature;
+
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.WhoisData;
+import org.kitteh.irc.client.library.element.mode.ModeInfo;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Matches replies from the server to requests awaiting them, so that any
+ * number of requests can be in flight at once, each completing on its own.
+ * <p>
+ * Futures complete exceptionally with a
+ * {@link org.kitteh.irc.client.library.exception.KittehRequestRefusedException}
+ * if the server replies with an error numeric, with a
+ * {@link TimeoutException} if no reply arrives in time, or with a
+ * {@link org.kitteh.irc.client.library.exception.KittehConnectionException}
+ * if the connection is lost first. Timeouts of requests made while not
+ * connected start once the client connects.
+ */
+public interface ReplyManager {
+    /**
+     * A type of reply, matched to requests by target.
+     *
+     * @param <T> type of value a request completes with
+     */
+    final class ReplyType<T> {
+        /**
+         * WHOIS, by nick.
+         */
+        public static final ReplyType<WhoisData> WHOIS = new ReplyType<>("WHOIS", true);
+        /**
+         * WHO of a channel, by channel name.
+         */
+        public static final ReplyType<Channel> WHO = new ReplyType<>("WHO", true);
+        /**
+         * NAMES of a channel, by channel name.
+         */
+        public static final ReplyType<Channel> NAMES = new ReplyType<>("NAMES", true);
+        /**
+         * Joining of a channel by the client, by channel name.
+         */
+        public static final ReplyType<Channel> JOIN = new ReplyType<>("JOIN", true);
+        /**
+         * Topic of a channel, queried or set by the client, by channel name.
+         */
+        public static final ReplyType<Channel> TOPIC = new ReplyType<>("TOPIC", true);
+        /**
+         * Modes of a channel, queried or changed by the client, by channel
+         * name. Each acknowledgement completes only the oldest request.
+         */
+        public static final ReplyType<Channel> CHANNEL_MODE = new ReplyType<>("CHANNEL_MODE", false);
+        /**
+         * Kick by the client, by channel name. Each acknowledgement
+         * completes only the oldest request.
+         */
+        public static final ReplyType<Channel> KICK = new ReplyType<>("KICK", false);
+
+        /**
+         * Gets the type for a mode info list of a channel, by channel name.
+         *
+         * @param mode mode character of the list
+         * @return type
+         */
+        @Nonnull
+        public static ReplyType<List<ModeInfo>> modeInfoList(char mode) {
+            return new ReplyType<>("MODE_INFO_LIST " + mode, true);
+        }
+
+        private final String name;
+        private final boolean shared;
+
+        private ReplyType(@Nonnull String name, boolean shared) {
+            this.name = name;
+            this.shared = shared;
+        }
+
+        /**
+         * Gets the name of this type, unique to the type.
+         *
+         * @return name
+         */
+        @Nonnull
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets if a reply completes all requests awaiting it, or only the
+         * oldest.
+         *
+         * @return true if a reply completes all requests
+         */
+        public boolean isShared() {
+            return this.shared;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("name", this.name).add("shared", this.shared).toString();
+        }
+    }
+
+    /**
+     * Gets a future completing with the next reply of the given type for the
+     * given target, or timing out after the client's default reply timeout.
+     * <p>
+     * The request must be awaited before it is sent.
+     *
+     * @param type reply type
+     * @param target target
+     * @param <T> type of value
+     * @return future
+     */
+    @Nonnull
+    <T> CompletableFuture<T> await(@Nonnull ReplyType<T> type, @Nonnull String target);
+
+    /**
+     * Gets a future completing with the next reply of the given type for the
+     * given target, or timing out after the given time.
+     * <p>
+     * The request must be awaited before it is sent.
+     *
+     * @param type reply type
+     * @param target target
+     * @param timeout time to wait, or 0 to wait indefinitely
+     * @param unit unit of the timeout
+     * @param <T> type of value
+     * @return future
+     */
+    @Nonnull
+    <T> CompletableFuture<T> await(@Nonnull ReplyType<T> type, @Nonnull String target, long timeout, @Nonnull TimeUnit unit);
+
+    /**
+     * Gets the WHOIS reply for a nick. A cached reply is used if one was
+     * received within the client's WHOIS cache lifetime and the user has not
+     * been seen changing since. Otherwise, a WHOIS is sent unless one for
+     * the nick is already awaiting a reply, in which case that reply is
+     * shared.
+     *
+     * @param nick nick
+     * @return future completing with the WHOIS reply, or exceptionally if
+     * the nick is unknown or the reply times out
+     * @throws IllegalArgumentException if nick is null or invalid
+     */
+    @Nonnull
+    CompletableFuture<WhoisData> getWhois(@Nonnull String nick);
+}
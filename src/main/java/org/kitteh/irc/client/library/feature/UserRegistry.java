@@ -0,0 +1,64 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature;
+
+import org.kitteh.irc.client.library.Client;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Constructor;
+
+/**
+ * Identities of users shared by all {@link Client}s built with the same
+ * registry, so that clients connected to the same network hold one copy of
+ * each user's nick, user string, host, account and the like rather than
+ * one copy per client. Channel membership is still tracked by each client.
+ * <p>
+ * Identities are only weakly held, vanishing once no client tracks them.
+ *
+ * @see Client.Builder#userRegistry(UserRegistry)
+ */
+public interface UserRegistry {
+    /**
+     * Creates a registry to share between clients of one network.
+     *
+     * @return a new registry
+     */
+    @Nonnull
+    static UserRegistry create() {
+        try {
+            Constructor<?> constructor = Class.forName(Client.class.getPackage().getName() + ".implementation.SharedUserRegistry").getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (UserRegistry) constructor.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Kitteh IRC Client Library cannot create a user registry.", e);
+        }
+    }
+
+    /**
+     * Gets the number of distinct user identities currently held.
+     *
+     * @return number of identities
+     */
+    int size();
+}
@@ -0,0 +1,287 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature.capture;
+
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The capture file format written by {@link TrafficRecorder}, and reading
+ * of captures.
+ * <p>
+ * A capture file starts with a header of the magic bytes {@code KCAP}, a
+ * format version byte and the start time in milliseconds since the epoch.
+ * Each record follows as a direction byte, the milliseconds since the
+ * previous record (or the start time) and the UTF-8 encoded line prefixed
+ * by its length, both numbers being unsigned variable length integers.
+ */
+public final class TrafficCapture {
+    /**
+     * Direction of a captured line.
+     */
+    public enum Direction {
+        /**
+         * Received from the server.
+         */
+        INPUT,
+        /**
+         * Sent to the server.
+         */
+        OUTPUT
+    }
+
+    /**
+     * A captured line.
+     */
+    public static final class Record {
+        private final Direction direction;
+        private final long timestamp;
+        private final String line;
+
+        private Record(@Nonnull Direction direction, long timestamp, @Nonnull String line) {
+            this.direction = direction;
+            this.timestamp = timestamp;
+            this.line = line;
+        }
+
+        /**
+         * Gets the direction of the line.
+         *
+         * @return direction
+         */
+        @Nonnull
+        public Direction getDirection() {
+            return this.direction;
+        }
+
+        /**
+         * Gets when the line was captured.
+         *
+         * @return milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        /**
+         * Gets the line, without line ending.
+         *
+         * @return line
+         */
+        @Nonnull
+        public String getLine() {
+            return this.line;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("direction", this.direction).add("timestamp", this.timestamp).add("line", this.line).toString();
+        }
+    }
+
+    /**
+     * Reads records in order from a sequence of capture files.
+     */
+    public static final class Reader implements Closeable {
+        private final List<Path> files;
+        private int nextFile;
+        private DataInputStream input;
+        private long timestamp;
+
+        /**
+         * Creates a reader of the given files, in the order given.
+         *
+         * @param files capture files
+         * @see #getFiles(Path, String)
+         */
+        public Reader(@Nonnull List<Path> files) {
+            Sanity.nullCheck(files, "Files cannot be null");
+            this.files = new ArrayList<>(files);
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return next record or null if none remain
+         * @throws IOException if a file cannot be read or is not a capture
+         */
+        @Nullable
+        public Record next() throws IOException {
+            while (true) {
+                if (this.input == null) {
+                    if (this.nextFile >= this.files.size()) {
+                        return null;
+                    }
+                    this.open(this.files.get(this.nextFile++));
+                }
+                int direction = this.input.read();
+                if (direction == -1) {
+                    this.input.close();
+                    this.input = null;
+                    continue;
+                }
+                if ((direction < 0) || (direction >= DIRECTIONS.length)) {
+                    throw new IOException("Unknown direction " + direction);
+                }
+                this.timestamp += readVarLong(this.input);
+                byte[] bytes = new byte[(int) readVarLong(this.input)];
+                this.input.readFully(bytes);
+                return new Record(DIRECTIONS[direction], this.timestamp, new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+
+        private void open(@Nonnull Path file) throws IOException {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                input.readFully(magic);
+                for (int i = 0; i < magic.length; i++) {
+                    if (magic[i] != MAGIC[i]) {
+                        throw new IOException("Not a capture file: " + file);
+                    }
+                }
+                int version = input.read();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported capture version " + version + ": " + file);
+                }
+                this.timestamp = input.readLong();
+            } catch (IOException e) {
+                input.close();
+                throw (e instanceof EOFException) ? new IOException("Truncated capture file: " + file, e) : e;
+            }
+            this.input = input;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.nextFile = this.files.size();
+            if (this.input != null) {
+                this.input.close();
+                this.input = null;
+            }
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("files", this.files).toString();
+        }
+    }
+
+    /**
+     * File extension of capture files.
+     */
+    public static final String EXTENSION = ".kcap";
+
+    static final byte[] MAGIC = {'K', 'C', 'A', 'P'};
+    static final int VERSION = 1;
+    static final int BUFFER_SIZE = 65536;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private TrafficCapture() {
+    }
+
+    /**
+     * Gets the capture files written by a {@link TrafficRecorder}, oldest
+     * first.
+     *
+     * @param directory directory the recorder writes to
+     * @param name name given to the recorder
+     * @return capture files in order
+     * @throws IOException if the directory cannot be read
+     */
+    @Nonnull
+    public static List<Path> getFiles(@Nonnull Path directory, @Nonnull String name) throws IOException {
+        Sanity.nullCheck(directory, "Directory cannot be null");
+        Sanity.nullCheck(name, "Name cannot be null");
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (getIndex(file, name) >= 0) {
+                    files.add(file);
+                }
+            }
+        }
+        // Indexes are zero padded, so names sort in order
+        Collections.sort(files);
+        return files;
+    }
+
+    static int getIndex(@Nonnull Path file, @Nonnull String name) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.startsWith(name + '.') || !fileName.endsWith(EXTENSION)) {
+            return -1;
+        }
+        String index = fileName.substring(name.length() + 1, fileName.length() - EXTENSION.length());
+        if (index.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < index.length(); i++) {
+            if ((index.charAt(i) < '0') || (index.charAt(i) > '9')) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(index);
+    }
+
+    static int writeVarLong(@Nonnull DataOutputStream output, long value) throws IOException {
+        int written = 1;
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            written++;
+        }
+        output.write((int) value);
+        return written;
+    }
+
+    static long readVarLong(@Nonnull DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int read = input.readUnsignedByte();
+            value |= (long) (read & 0x7F) << shift;
+            if ((read & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
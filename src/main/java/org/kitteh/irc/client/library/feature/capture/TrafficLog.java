@@ -0,0 +1,749 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature.capture;
+
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a client's traffic as plain text lines to rotating log files.
+ * <p>
+ * Each line is written as a UTC timestamp, a direction of {@code <} for
+ * received or {@code >} for sent, and the line itself, for example
+ * {@code 2016-10-19T12:00:00.123Z < :irc.kitteh.org 001 Kitteh :Welcome}.
+ * When lines are dropped or cut short, a line with the direction
+ * {@code !} notes how many.
+ * <p>
+ * Lines are handed to a single writer thread, which collects them in a
+ * large direct buffer and writes the buffer once full or once no more
+ * lines are waiting. Segment files are named after the log with a
+ * sequence number, continuing after any segments already present, and
+ * are extended to their full size when opened. Once a segment cannot fit
+ * more lines, it is cut to the length written and the next is opened.
+ * Completed segments, including the last on closing, may be compressed
+ * with gzip on a separate thread.
+ * <p>
+ * Lines waiting for the writer are limited to a number of bytes, so a
+ * slow disk cannot exhaust memory. Lines recorded while the limit is
+ * reached are dropped and counted instead.
+ * <p>
+ * Each line is written whole within one buffer, so a line longer than a
+ * third of the buffer size in characters may be cut short, and is
+ * counted. The minimum buffer size of {@value #MINIMUM_BUFFER_SIZE}
+ * bytes always fits the longest valid IRC line, with tags.
+ */
+public class TrafficLog implements Closeable {
+    /**
+     * Builds a {@link TrafficLog}.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private final String name;
+        private long segmentSize = 64L * 1024 * 1024;
+        private int maxSegments = 10;
+        private int bufferSize = 1024 * 1024;
+        private long maxPendingBytes = 16L * 1024 * 1024;
+        private boolean memoryMapped;
+        private boolean compressRotated;
+
+        private Builder(@Nonnull Path directory, @Nonnull String name) {
+            this.directory = directory;
+            this.name = name;
+        }
+
+        /**
+         * Sets the size of each segment, by default 64 MiB. Cannot be
+         * smaller than the buffer size.
+         *
+         * @param segmentSize size in bytes
+         * @return this builder
+         * @throws IllegalArgumentException if not positive
+         */
+        @Nonnull
+        public Builder segmentSize(long segmentSize) {
+            Sanity.truthiness(segmentSize > 0, "Segment size must be positive");
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of segments to keep, deleting the oldest, by
+         * default 10.
+         *
+         * @param maxSegments number of segments
+         * @return this builder
+         * @throws IllegalArgumentException if not positive
+         */
+        @Nonnull
+        public Builder maxSegments(int maxSegments) {
+            Sanity.truthiness(maxSegments > 0, "Maximum segments must be positive");
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * Sets the size of the writer's buffer, by default 1 MiB. Lines
+         * longer than a third of this, in characters, may be cut short.
+         *
+         * @param bufferSize size in bytes
+         * @return this builder
+         * @throws IllegalArgumentException if less than
+         * {@link TrafficLog#MINIMUM_BUFFER_SIZE}
+         */
+        @Nonnull
+        public Builder bufferSize(int bufferSize) {
+            Sanity.truthiness(bufferSize >= MINIMUM_BUFFER_SIZE, "Buffer size must be at least " + MINIMUM_BUFFER_SIZE);
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the most memory, approximately in bytes, that lines waiting
+         * for the writer may use, by default 16 MiB.
+         *
+         * @param maxPendingBytes size in bytes
+         * @return this builder
+         * @throws IllegalArgumentException if not positive
+         */
+        @Nonnull
+        public Builder maxPendingBytes(long maxPendingBytes) {
+            Sanity.truthiness(maxPendingBytes > 0, "Maximum pending bytes must be positive");
+            this.maxPendingBytes = maxPendingBytes;
+            return this;
+        }
+
+        /**
+         * Sets if segments are written through a memory mapping rather
+         * than file writes, by default false. Where a mapped file cannot
+         * be cut to length, such as on Windows, a rotated segment keeps
+         * its full size with the unwritten remainder zero filled.
+         *
+         * @param memoryMapped true to map segments
+         * @return this builder
+         */
+        @Nonnull
+        public Builder memoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+
+        /**
+         * Sets if segments are compressed with gzip once complete, by
+         * default false. Compressed segments have {@link #COMPRESSED_EXTENSION}
+         * appended.
+         *
+         * @param compressRotated true to compress
+         * @return this builder
+         */
+        @Nonnull
+        public Builder compressRotated(boolean compressRotated) {
+            this.compressRotated = compressRotated;
+            return this;
+        }
+
+        /**
+         * Creates the log, starting its writer thread.
+         *
+         * @return a new log
+         * @throws IllegalArgumentException if the segment size is smaller
+         * than the buffer size
+         * @throws IOException if the directory cannot be read or created
+         */
+        @Nonnull
+        public TrafficLog build() throws IOException {
+            Sanity.truthiness(this.segmentSize >= this.bufferSize, "Segment size cannot be smaller than buffer size");
+            return new TrafficLog(this);
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("directory", this.directory).add("name", this.name).add("segmentSize", this.segmentSize).add("maxSegments", this.maxSegments).toString();
+        }
+    }
+
+    private static final class Entry {
+        private final long timestamp;
+        private final byte direction;
+        private final String line;
+
+        private Entry(long timestamp, byte direction, @Nonnull String line) {
+            this.timestamp = timestamp;
+            this.direction = direction;
+            this.line = line;
+        }
+    }
+
+    /**
+     * File extension of segments.
+     */
+    public static final String EXTENSION = ".log";
+    /**
+     * Extension appended to compressed segments.
+     */
+    public static final String COMPRESSED_EXTENSION = ".gz";
+    /**
+     * Smallest buffer size, fitting an IRC line of 8191 bytes of tags and
+     * 512 bytes of message even at three bytes per character.
+     */
+    public static final int MINIMUM_BUFFER_SIZE = 32 * 1024;
+
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.").withZone(ZoneOffset.UTC);
+    private static final byte INPUT = '<';
+    private static final byte OUTPUT = '>';
+    private static final byte NOTE = '!';
+    // Timestamp, direction and separators
+    private static final int PREFIX_SIZE = 28;
+    // Rough memory cost of a waiting line beyond its characters
+    private static final int ENTRY_OVERHEAD = 64;
+    // Most lines handed over at once by an attached client
+    private static final int ATTACH_BATCH = 256;
+
+    private final Path directory;
+    private final String name;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final long maxPendingBytes;
+    private final boolean memoryMapped;
+    private final ExecutorService compressor;
+    private final Thread writer;
+
+    // Guarded by this
+    private ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    private long dropped;
+    private long droppedTotal;
+    private long truncatedTotal;
+    private long recorded;
+    private long written;
+    private boolean closing;
+    private volatile IOException failure;
+
+    // Writer thread only
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final byte[] secondPrefix = new byte[20];
+    private long prefixSecond = Long.MIN_VALUE;
+    private int nextIndex;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private Path segment;
+    private long position;
+
+    private TrafficLog(@Nonnull Builder builder) throws IOException {
+        this.directory = Sanity.nullCheck(builder.directory, "Directory cannot be null");
+        this.name = builder.name;
+        this.segmentSize = builder.segmentSize;
+        this.maxSegments = builder.maxSegments;
+        this.maxPendingBytes = builder.maxPendingBytes;
+        this.memoryMapped = builder.memoryMapped;
+        this.buffer = ByteBuffer.allocateDirect(builder.bufferSize);
+        Files.createDirectories(this.directory);
+        NavigableMap<Integer, List<Path>> existing = this.getSegments();
+        if (!existing.isEmpty()) {
+            this.nextIndex = existing.lastKey() + 1;
+        }
+        this.compressor = builder.compressRotated ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Kitteh IRC Client Traffic Log Compressor (" + this.name + ')');
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.writer = new Thread(this::write, "Kitteh IRC Client Traffic Log (" + this.name + ')');
+        this.writer.start();
+    }
+
+    /**
+     * Creates a builder of a log.
+     *
+     * @param directory directory to write segments to
+     * @param name name used for segments
+     * @return a new builder
+     * @throws IllegalArgumentException for a null directory or an invalid
+     * name
+     */
+    @Nonnull
+    public static Builder builder(@Nonnull Path directory, @Nonnull String name) {
+        Sanity.nullCheck(directory, "Directory cannot be null");
+        Sanity.safeMessageCheck(name, "Name");
+        Sanity.truthiness((name.indexOf('/') < 0) && (name.indexOf('\\') < 0), "Name cannot contain a path separator");
+        return new Builder(directory, name);
+    }
+
+    /**
+     * Attaches this log as the input and output listener of a client,
+     * replacing any listeners already set. Lines are handed over in
+     * batches of whatever is waiting, without delay, so their timestamps
+     * stay accurate.
+     *
+     * @param client client to log
+     */
+    public void attach(@Nonnull Client client) {
+        Sanity.nullCheck(client, "Client cannot be null");
+        client.setInputListener(this.inputBatches(), ATTACH_BATCH, 0);
+        client.setOutputListener(this.outputBatches(), ATTACH_BATCH, 0);
+    }
+
+    /**
+     * Gets a consumer logging lines as received.
+     *
+     * @return input consumer
+     * @see Client#setInputListener(Consumer)
+     */
+    @Nonnull
+    public Consumer<String> input() {
+        return line -> this.record(TrafficCapture.Direction.INPUT, line);
+    }
+
+    /**
+     * Gets a consumer logging lines as sent.
+     *
+     * @return output consumer
+     * @see Client#setOutputListener(Consumer)
+     */
+    @Nonnull
+    public Consumer<String> output() {
+        return line -> this.record(TrafficCapture.Direction.OUTPUT, line);
+    }
+
+    /**
+     * Gets a consumer logging batches of lines as received, for a
+     * batching listener.
+     *
+     * @return input batch consumer
+     * @see Client.Builder#listenInput(Consumer, int, long)
+     */
+    @Nonnull
+    public Consumer<List<String>> inputBatches() {
+        return lines -> this.record(TrafficCapture.Direction.INPUT, lines);
+    }
+
+    /**
+     * Gets a consumer logging batches of lines as sent, for a batching
+     * listener.
+     *
+     * @return output batch consumer
+     * @see Client.Builder#listenOutput(Consumer, int, long)
+     */
+    @Nonnull
+    public Consumer<List<String>> outputBatches() {
+        return lines -> this.record(TrafficCapture.Direction.OUTPUT, lines);
+    }
+
+    /**
+     * Records a line. Failures to write stop logging and are thrown from
+     * {@link #flush()} or {@link #close()}.
+     *
+     * @param direction direction of the line
+     * @param line line, without line ending
+     */
+    public void record(@Nonnull TrafficCapture.Direction direction, @Nonnull String line) {
+        Sanity.nullCheck(direction, "Direction cannot be null");
+        Sanity.nullCheck(line, "Line cannot be null");
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            this.queue(now, direction, line);
+        }
+    }
+
+    /**
+     * Records lines, all timestamped now.
+     *
+     * @param direction direction of the lines
+     * @param lines lines, without line endings
+     */
+    public void record(@Nonnull TrafficCapture.Direction direction, @Nonnull List<String> lines) {
+        Sanity.nullCheck(direction, "Direction cannot be null");
+        Sanity.nullCheck(lines, "Lines cannot be null");
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (String line : lines) {
+                this.queue(now, direction, Sanity.nullCheck(line, "Line cannot be null"));
+            }
+        }
+    }
+
+    private void queue(long now, @Nonnull TrafficCapture.Direction direction, @Nonnull String line) {
+        if (this.closing) {
+            return;
+        }
+        long size = ((long) line.length() * 2) + ENTRY_OVERHEAD;
+        // An empty queue always takes the line, so even oversized lines are logged
+        if (!this.pending.isEmpty() && ((this.pendingBytes + size) > this.maxPendingBytes)) {
+            this.dropped++;
+            this.droppedTotal++;
+            return;
+        }
+        if (this.pending.isEmpty()) {
+            this.notifyAll();
+        }
+        this.pending.add(new Entry(now, (direction == TrafficCapture.Direction.INPUT) ? INPUT : OUTPUT, line));
+        this.pendingBytes += size;
+        this.recorded++;
+    }
+
+    /**
+     * Gets the number of lines dropped for exceeding the memory limit.
+     *
+     * @return lines dropped
+     */
+    public synchronized long getDroppedLines() {
+        return this.droppedTotal;
+    }
+
+    /**
+     * Gets the number of lines cut short for not fitting the buffer.
+     *
+     * @return lines cut short
+     */
+    public synchronized long getTruncatedLines() {
+        return this.truncatedTotal;
+    }
+
+    /**
+     * Waits until lines recorded so far are written.
+     *
+     * @throws IOException if logging has failed
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            long target = this.recorded;
+            while ((this.written < target) && (this.failure == null) && this.writer.isAlive()) {
+                try {
+                    this.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing");
+                }
+            }
+        }
+        this.throwFailure();
+    }
+
+    /**
+     * Stops logging, writing lines already recorded and waiting for
+     * compression to finish.
+     *
+     * @throws IOException if logging has failed
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.closing = true;
+            this.notifyAll();
+        }
+        try {
+            this.writer.join();
+            if (this.compressor != null) {
+                this.compressor.shutdown();
+                this.compressor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing");
+        }
+        this.throwFailure();
+    }
+
+    private void throwFailure() throws IOException {
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException("Logging failed", failure);
+        }
+    }
+
+    private void write() {
+        ArrayDeque<Entry> entries = new ArrayDeque<>();
+        try {
+            while (true) {
+                long droppedLines;
+                synchronized (this) {
+                    while (this.pending.isEmpty() && !this.closing) {
+                        this.wait();
+                    }
+                    if (this.pending.isEmpty()) {
+                        break;
+                    }
+                    // Swap queues, so recording continues while this batch is written
+                    ArrayDeque<Entry> swap = this.pending;
+                    this.pending = entries;
+                    entries = swap;
+                    this.pendingBytes = 0;
+                    droppedLines = this.dropped;
+                    this.dropped = 0;
+                }
+                int count = entries.size();
+                long last = entries.peekLast().timestamp;
+                int truncatedLines = 0;
+                Entry entry;
+                while ((entry = entries.poll()) != null) {
+                    if (!this.encode(entry)) {
+                        truncatedLines++;
+                    }
+                }
+                if (droppedLines > 0) {
+                    this.encode(new Entry(last, NOTE, droppedLines + " lines dropped"));
+                }
+                if (truncatedLines > 0) {
+                    this.encode(new Entry(last, NOTE, truncatedLines + " lines truncated"));
+                }
+                this.flushBuffer();
+                synchronized (this) {
+                    this.truncatedTotal += truncatedLines;
+                    this.written += count;
+                    this.notifyAll();
+                }
+            }
+            this.closeSegment();
+        } catch (IOException e) {
+            this.failure = e;
+        } catch (InterruptedException e) {
+            this.failure = new InterruptedIOException("Writer interrupted");
+        } finally {
+            synchronized (this) {
+                this.closing = true;
+                this.pending.clear();
+                this.notifyAll();
+            }
+            if (this.channel != null) {
+                try {
+                    this.channel.close();
+                } catch (IOException ignored) {
+                    // Already failed
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes an entry into the buffer, flushing it first if the entry
+     * might not fit.
+     *
+     * @param entry entry to encode
+     * @return false if the line was cut short to fit an empty buffer
+     * @throws IOException if flushing fails
+     */
+    private boolean encode(@Nonnull Entry entry) throws IOException {
+        int maxLength = (this.buffer.capacity() - PREFIX_SIZE) / 3;
+        boolean whole = entry.line.length() <= maxLength;
+        String line = whole ? entry.line : entry.line.substring(0, maxLength);
+        if (this.buffer.remaining() < (PREFIX_SIZE + (line.length() * 3))) {
+            this.flushBuffer();
+        }
+        long second = Math.floorDiv(entry.timestamp, 1000);
+        if (second != this.prefixSecond) {
+            this.prefixSecond = second;
+            byte[] formatted = SECOND_FORMAT.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(formatted, 0, this.secondPrefix, 0, this.secondPrefix.length);
+        }
+        int millis = (int) Math.floorMod(entry.timestamp, 1000);
+        this.buffer.put(this.secondPrefix);
+        this.buffer.put((byte) ('0' + (millis / 100)));
+        this.buffer.put((byte) ('0' + ((millis / 10) % 10)));
+        this.buffer.put((byte) ('0' + (millis % 10)));
+        this.buffer.put((byte) 'Z');
+        this.buffer.put((byte) ' ');
+        this.buffer.put(entry.direction);
+        this.buffer.put((byte) ' ');
+        this.encoder.reset();
+        this.encoder.encode(CharBuffer.wrap(line), this.buffer, true);
+        this.encoder.flush(this.buffer);
+        this.buffer.put((byte) '\n');
+        return whole;
+    }
+
+    private void flushBuffer() throws IOException {
+        this.buffer.flip();
+        if (this.buffer.hasRemaining()) {
+            if ((this.channel == null) || (this.buffer.remaining() > (this.segmentSize - this.position))) {
+                this.closeSegment();
+                this.openSegment();
+            }
+            if (this.mapped != null) {
+                this.position += this.buffer.remaining();
+                this.mapped.put(this.buffer);
+            } else {
+                while (this.buffer.hasRemaining()) {
+                    this.position += this.channel.write(this.buffer, this.position);
+                }
+            }
+        }
+        this.buffer.clear();
+    }
+
+    private void openSegment() throws IOException {
+        this.segment = this.directory.resolve(String.format("%s.%06d%s", this.name, this.nextIndex++, EXTENSION));
+        this.channel = FileChannel.open(this.segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.position = 0;
+        if (this.memoryMapped) {
+            // Mapping extends the file to the full size
+            this.mapped = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        } else {
+            this.channel.write(ByteBuffer.allocate(1), this.segmentSize - 1);
+        }
+        NavigableMap<Integer, List<Path>> segments = this.getSegments();
+        int excess = segments.size() - this.maxSegments;
+        for (List<Path> files : segments.values()) {
+            if (excess-- <= 0) {
+                break;
+            }
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (this.channel == null) {
+            return;
+        }
+        if (this.mapped != null) {
+            this.mapped.force();
+            this.mapped = null;
+            try {
+                this.channel.truncate(this.position);
+            } catch (IOException ignored) {
+                // Platform cannot cut a mapped file, so it stays padded
+            }
+        } else {
+            this.channel.truncate(this.position);
+        }
+        this.channel.close();
+        this.channel = null;
+        Path rotated = this.segment;
+        if (this.compressor != null) {
+            this.compressor.execute(() -> this.compress(rotated));
+        }
+    }
+
+    private void compress(@Nonnull Path file) {
+        Path compressed = file.resolveSibling(file.getFileName() + COMPRESSED_EXTENSION);
+        Path partial = file.resolveSibling(compressed.getFileName() + ".part");
+        try {
+            try (InputStream input = Files.newInputStream(file);
+                 OutputStream output = new GZIPOutputStream(Files.newOutputStream(partial), 65536)) {
+                byte[] bytes = new byte[65536];
+                int read;
+                while ((read = input.read(bytes)) >= 0) {
+                    output.write(bytes, 0, read);
+                }
+            }
+            Files.move(partial, compressed, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(file);
+        } catch (NoSuchFileException e) {
+            // Rotated out before it could be compressed
+            this.deleteQuietly(partial);
+        } catch (IOException e) {
+            this.deleteQuietly(partial);
+            this.failure = e;
+        }
+    }
+
+    private void deleteQuietly(@Nonnull Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Best effort
+        }
+    }
+
+    /**
+     * Gets the segment files by index, oldest first, a segment possibly
+     * having both a plain and a compressed file while being compressed.
+     *
+     * @return files by index
+     * @throws IOException if the directory cannot be read
+     */
+    @Nonnull
+    private NavigableMap<Integer, List<Path>> getSegments() throws IOException {
+        NavigableMap<Integer, List<Path>> segments = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+            for (Path file : stream) {
+                int index = this.getIndex(file.getFileName().toString());
+                if (index >= 0) {
+                    segments.computeIfAbsent(index, i -> new ArrayList<>()).add(file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private int getIndex(@Nonnull String fileName) {
+        String trimmed = fileName.endsWith(COMPRESSED_EXTENSION) ? fileName.substring(0, fileName.length() - COMPRESSED_EXTENSION.length()) : fileName;
+        if (!trimmed.startsWith(this.name + '.') || !trimmed.endsWith(EXTENSION)) {
+            return -1;
+        }
+        String index = trimmed.substring(this.name.length() + 1, trimmed.length() - EXTENSION.length());
+        if (index.isEmpty() || (index.length() > 9)) {
+            return -1;
+        }
+        for (int i = 0; i < index.length(); i++) {
+            if ((index.charAt(i) < '0') || (index.charAt(i) > '9')) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(index);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("directory", this.directory).add("name", this.name).add("segmentSize", this.segmentSize).add("maxSegments", this.maxSegments).add("memoryMapped", this.memoryMapped).toString();
+    }
+}
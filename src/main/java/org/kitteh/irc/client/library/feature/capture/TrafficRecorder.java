@@ -0,0 +1,217 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature.capture;
+
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records a client's traffic to timestamped capture files, rotating to a
+ * new file once a file reaches a maximum size and keeping a limited number
+ * of files.
+ * <p>
+ * Files are named after the recorder with a sequence number, continuing
+ * after any files already present. See {@link TrafficCapture} for the
+ * format and for reading captures.
+ */
+public class TrafficRecorder implements Closeable {
+    private final Path directory;
+    private final String name;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private DataOutputStream output;
+    private long fileSize;
+    private int nextIndex;
+    private long lastTimestamp;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param directory directory to write capture files to
+     * @param name name used for capture files
+     * @param maxFileSize size in bytes at which to rotate to a new file
+     * @param maxFiles number of files to keep, deleting the oldest
+     * @throws IOException if the directory cannot be read or created
+     */
+    public TrafficRecorder(@Nonnull Path directory, @Nonnull String name, long maxFileSize, int maxFiles) throws IOException {
+        this.directory = Sanity.nullCheck(directory, "Directory cannot be null");
+        this.name = Sanity.safeMessageCheck(name, "Name");
+        Sanity.truthiness((name.indexOf('/') < 0) && (name.indexOf('\\') < 0), "Name cannot contain a path separator");
+        Sanity.truthiness(maxFileSize > 0, "Maximum file size must be positive");
+        Sanity.truthiness(maxFiles > 0, "Maximum files must be positive");
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        Files.createDirectories(directory);
+        List<Path> existing = TrafficCapture.getFiles(directory, name);
+        if (!existing.isEmpty()) {
+            this.nextIndex = TrafficCapture.getIndex(existing.get(existing.size() - 1), name) + 1;
+        }
+    }
+
+    /**
+     * Attaches this recorder as the input and output listener of a client,
+     * replacing any listeners already set.
+     *
+     * @param client client to record
+     */
+    public void attach(@Nonnull Client client) {
+        Sanity.nullCheck(client, "Client cannot be null");
+        client.setInputListener(this.input());
+        client.setOutputListener(this.output());
+    }
+
+    /**
+     * Gets a consumer recording lines as received.
+     *
+     * @return input consumer
+     * @see Client#setInputListener(Consumer)
+     */
+    @Nonnull
+    public Consumer<String> input() {
+        return line -> this.record(TrafficCapture.Direction.INPUT, line);
+    }
+
+    /**
+     * Gets a consumer recording lines as sent.
+     *
+     * @return output consumer
+     * @see Client#setOutputListener(Consumer)
+     */
+    @Nonnull
+    public Consumer<String> output() {
+        return line -> this.record(TrafficCapture.Direction.OUTPUT, line);
+    }
+
+    /**
+     * Records a line. Failures to write stop recording and are thrown
+     * from {@link #flush()} or {@link #close()}.
+     *
+     * @param direction direction of the line
+     * @param line line, without line ending
+     */
+    public synchronized void record(@Nonnull TrafficCapture.Direction direction, @Nonnull String line) {
+        Sanity.nullCheck(direction, "Direction cannot be null");
+        Sanity.nullCheck(line, "Line cannot be null");
+        if (this.closed || (this.failure != null)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if ((this.output == null) || (this.fileSize >= this.maxFileSize)) {
+                this.rotate(now);
+            }
+            long delta = Math.max(0, now - this.lastTimestamp);
+            this.lastTimestamp += delta;
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            this.output.write(direction.ordinal());
+            int written = 1 + TrafficCapture.writeVarLong(this.output, delta);
+            written += TrafficCapture.writeVarLong(this.output, bytes.length);
+            this.output.write(bytes);
+            this.fileSize += written + bytes.length;
+        } catch (IOException e) {
+            this.failure = e;
+        }
+    }
+
+    /**
+     * Writes buffered records to disk.
+     *
+     * @throws IOException if recording has failed
+     */
+    public synchronized void flush() throws IOException {
+        this.throwFailure();
+        if (this.output != null) {
+            try {
+                this.output.flush();
+            } catch (IOException e) {
+                this.failure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops recording, closing the current file.
+     *
+     * @throws IOException if recording has failed or closing fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.output != null) {
+            DataOutputStream output = this.output;
+            this.output = null;
+            output.close();
+        }
+        this.throwFailure();
+    }
+
+    private void throwFailure() throws IOException {
+        if (this.failure != null) {
+            throw new IOException("Recording failed", this.failure);
+        }
+    }
+
+    private void rotate(long now) throws IOException {
+        if (this.output != null) {
+            this.output.close();
+            this.output = null;
+        }
+        Path file = this.directory.resolve(String.format("%s.%06d%s", this.name, this.nextIndex++, TrafficCapture.EXTENSION));
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), TrafficCapture.BUFFER_SIZE));
+        this.output.write(TrafficCapture.MAGIC);
+        this.output.write(TrafficCapture.VERSION);
+        this.output.writeLong(now);
+        this.fileSize = TrafficCapture.MAGIC.length + 1 + Long.BYTES;
+        this.lastTimestamp = now;
+        List<Path> files = TrafficCapture.getFiles(this.directory, this.name);
+        for (int i = 0; i < (files.size() - this.maxFiles); i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("directory", this.directory).add("name", this.name).add("maxFileSize", this.maxFileSize).add("maxFiles", this.maxFiles).toString();
+    }
+}
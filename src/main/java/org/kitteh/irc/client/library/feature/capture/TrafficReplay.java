@@ -0,0 +1,74 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature.capture;
+
+import org.kitteh.irc.client.library.Client;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Feeds captured traffic into a client with no connection, as if received
+ * from the server. Lines the client sends in response only reach its
+ * output listener.
+ *
+ * @see Client.Builder#buildReplay()
+ * @see TrafficRecorder
+ */
+public interface TrafficReplay {
+    /**
+     * Speed of a replay.
+     */
+    enum Speed {
+        /**
+         * Lines are fed with the timing at which they were captured.
+         */
+        ORIGINAL,
+        /**
+         * Lines are fed as fast as possible.
+         */
+        MAXIMUM
+    }
+
+    /**
+     * Gets the client being fed.
+     *
+     * @return client
+     */
+    @Nonnull
+    Client getClient();
+
+    /**
+     * Feeds the received lines of a capture to the client, blocking until
+     * the client has processed all of them. Sent lines in the capture are
+     * skipped.
+     *
+     * @param reader capture to replay, which is not closed
+     * @param speed speed of the replay
+     * @return number of lines fed
+     * @throws IOException if the capture cannot be read
+     * @throws InterruptedException if interrupted while replaying
+     */
+    long replay(@Nonnull TrafficCapture.Reader reader, @Nonnull Speed speed) throws IOException, InterruptedException;
+}
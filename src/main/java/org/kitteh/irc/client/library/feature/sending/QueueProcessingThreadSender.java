@@ -40,6 +40,7 @@ public class QueueProcessingThreadSender extends QueueProcessingThread<String> i
     private Consumer<String> consumer = string -> {
     };
     private final Object sendingLock = new Object();
+    private final String queueName;
     private volatile boolean waiting = true;
 
     /**
@@ -51,6 +52,13 @@ public class QueueProcessingThreadSender extends QueueProcessingThread<String> i
     public QueueProcessingThreadSender(@Nonnull Client client, @Nonnull String name) {
         super("Kitteh IRC Client " + name + " Sending Queue (" + Sanity.nullCheck(client, "Client cannot be null").getName() + ')');
         this.client = client;
+        this.queueName = name;
+    }
+
+    @Override
+    public void queue(@Nonnull String message) {
+        super.queue(message);
+        this.client.getMetrics().sendQueueDepth(this.client, this.queueName, this.getQueueSize());
     }
 
     @Override
@@ -68,6 +68,7 @@ public class SingleDelaySender extends QueueProcessingThreadSender {
         if (currentDelay == 0) {
             return true; // Get out as fast as possible OMG!
         }
+        long start = System.currentTimeMillis();
         long now;
         long remaining;
         do {
@@ -82,6 +83,9 @@ public class SingleDelaySender extends QueueProcessingThreadSender {
                 }
             }
         } while (remaining > 0);
+        if (now > start) {
+            this.getClient().getMetrics().sendDelayed(this.getClient(), now - start);
+        }
         this.last = now;
         return true;
     }
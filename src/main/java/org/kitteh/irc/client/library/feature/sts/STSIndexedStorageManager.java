@@ -0,0 +1,368 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.feature.sts;
+
+import org.kitteh.irc.client.library.exception.KittehSTSException;
+import org.kitteh.irc.client.library.util.STSUtil;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * STS storage holding all policies in memory, indexed by hostname, with
+ * expiry tracked in a priority queue so lookups never scan the store.
+ * <p>
+ * Changes are written behind to a properties file, in the same format as
+ * {@link STSPropertiesStorageManager}, by writing a temporary file and
+ * renaming it over the original. Expiring a policy never triggers a write,
+ * as expired entries are skipped when the file is next read. A single
+ * instance may be safely shared by any number of clients.
+ * <p>
+ * Changes not yet written are written when a client using this store
+ * shuts down, and when the JVM exits normally. With a write delay of 0,
+ * changes are written before the change returns.
+ */
+public class STSIndexedStorageManager implements STSStorageManager {
+    private static final class Entry {
+        private final String hostname;
+        private final long expiry;
+        private final String data;
+
+        private Entry(@Nonnull String hostname, long expiry, @Nonnull String data) {
+            this.hostname = hostname;
+            this.expiry = expiry;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Default delay, in milliseconds, between a change and it being written.
+     */
+    public static final long DEFAULT_WRITE_DELAY = 1000;
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "KICL STS Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Instances with a write scheduled are held strongly by the writer, so are never lost from here
+    private static final Set<STSIndexedStorageManager> INSTANCES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            synchronized (INSTANCES) {
+                for (STSIndexedStorageManager instance : INSTANCES) {
+                    try {
+                        instance.flush();
+                    } catch (KittehSTSException ignored) {
+                        // Nothing left to report to
+                    }
+                }
+            }
+        }, "KICL STS Writer Shutdown"));
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final PriorityQueue<Entry> expiries = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.expiry));
+    private volatile long nextExpiry = Long.MAX_VALUE;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Object writeLock = new Object();
+    private final Path filePath;
+    private final long writeDelay;
+
+    /**
+     * Creates a store backed by the given properties file, writing changes
+     * after the {@link #DEFAULT_WRITE_DELAY}.
+     *
+     * @param filePath the path to the properties file used to persist the data
+     */
+    public STSIndexedStorageManager(@Nonnull Path filePath) {
+        this(filePath, DEFAULT_WRITE_DELAY);
+    }
+
+    /**
+     * Creates a store backed by the given properties file.
+     *
+     * @param filePath the path to the properties file used to persist the data
+     * @param writeDelay delay, in milliseconds, between a change and it
+     * being written, allowing bursts of changes to share one write, or 0 to
+     * write each change immediately
+     */
+    public STSIndexedStorageManager(@Nonnull Path filePath, long writeDelay) {
+        this.filePath = Sanity.nullCheck(filePath, "Must provide a valid path to the properties file to use.");
+        Sanity.truthiness(writeDelay >= 0, "Write delay cannot be negative.");
+        this.writeDelay = writeDelay;
+        this.readData();
+        INSTANCES.add(this);
+    }
+
+    private void readData() {
+        if (!Files.exists(this.filePath)) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        try (BufferedReader bufferedReader = Files.newBufferedReader(this.filePath, StandardCharsets.UTF_8)) {
+            properties.load(bufferedReader);
+        } catch (IOException e) {
+            throw new KittehSTSException(e.getMessage(), e);
+        }
+        long now = System.currentTimeMillis();
+        for (String hostname : properties.stringPropertyNames()) {
+            String[] components = properties.getProperty(hostname).split("; ", 2);
+            if (components.length != 2) {
+                continue;
+            }
+            long expiry;
+            try {
+                expiry = ZonedDateTime.parse(components[0], DATE_TIME_FORMATTER).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (expiry > now) {
+                this.put(new Entry(hostname, expiry, components[1]));
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the store, scheduling a write of the backing file.
+     *
+     * @throws KittehSTSException if written immediately and the file
+     * could not be written
+     *
+     * @param hostname the hostname (as sent in the SNI by the client)
+     * @param duration the length (in seconds) until the expiry of this stored policy
+     * @param policy the STS policy instance, including all data sent from the server
+     */
+    @Override
+    public void addEntry(@Nonnull String hostname, long duration, @Nonnull STSPolicy policy) {
+        Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
+        Sanity.nullCheck(policy, "A valid policy must be provided to be inserted.");
+        if (!policy.getOptions().containsKey(STSPolicy.POLICY_OPTION_KEY_DURATION)) {
+            policy.getOptions().put(STSPolicy.POLICY_OPTION_KEY_DURATION, String.valueOf(duration));
+        }
+        this.put(new Entry(hostname, System.currentTimeMillis() + (duration * 1000), this.reserializeData(policy)));
+        this.scheduleWrite();
+    }
+
+    /**
+     * Gets an STS policy from the store, looking it up via hostname.
+     *
+     * @param hostname the hostname (as sent in the SNI by the client)
+     * @return all data sent by the server in the CAP LS "sts" value when we connected securely
+     */
+    @Nonnull
+    @Override
+    public Optional<STSPolicy> getEntry(@Nonnull String hostname) {
+        Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
+        Entry entry = this.getLiveEntry(hostname);
+        return (entry == null) ? Optional.empty() : Optional.of(STSUtil.getSTSPolicyFromString(",", entry.data));
+    }
+
+    /**
+     * Checks if a policy has been stored for the hostname.
+     *
+     * @param hostname the hostname to check
+     * @return whether the entry exists in the store
+     */
+    @Override
+    public boolean hasEntry(@Nonnull String hostname) {
+        Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
+        return this.getLiveEntry(hostname) != null;
+    }
+
+    /**
+     * Deletes an entry from the store (used for 0 duration policies).
+     * <p>
+     * Requests to remove entries that do not exist are ignored.
+     *
+     * @param hostname the hostname to remove the policy for
+     * @throws KittehSTSException if written immediately and the file
+     * could not be written
+     */
+    @Override
+    public void removeEntry(@Nonnull String hostname) {
+        Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
+        Entry removed = this.entries.remove(hostname);
+        if (removed != null) {
+            this.dequeue(removed);
+            this.scheduleWrite();
+        }
+    }
+
+    /**
+     * Immediately writes any changes not yet written to the backing file.
+     *
+     * @throws KittehSTSException if the file could not be written
+     */
+    public void flush() {
+        synchronized (this.writeLock) {
+            if (!this.dirty.getAndSet(false)) {
+                return;
+            }
+            try {
+                this.saveData();
+            } catch (IOException e) {
+                this.dirty.set(true);
+                throw new KittehSTSException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private Entry getLiveEntry(@Nonnull String hostname) {
+        this.pruneEntries();
+        Entry entry = this.entries.get(hostname);
+        // Covers the window between expiry and the prune catching up
+        return ((entry == null) || (entry.expiry <= System.currentTimeMillis())) ? null : entry;
+    }
+
+    private void put(@Nonnull Entry entry) {
+        synchronized (this.expiries) {
+            Entry previous = this.entries.put(entry.hostname, entry);
+            if (previous != null) {
+                this.expiries.remove(previous);
+            }
+            this.expiries.add(entry);
+            this.nextExpiry = this.expiries.peek().expiry;
+        }
+    }
+
+    private void dequeue(@Nonnull Entry entry) {
+        synchronized (this.expiries) {
+            this.expiries.remove(entry);
+            Entry head = this.expiries.peek();
+            this.nextExpiry = (head == null) ? Long.MAX_VALUE : head.expiry;
+        }
+    }
+
+    /**
+     * Drops expired entries, only touching the queue when its head has
+     * expired.
+     */
+    private void pruneEntries() {
+        long now = System.currentTimeMillis();
+        if (this.nextExpiry > now) {
+            return;
+        }
+        synchronized (this.expiries) {
+            Entry head;
+            while (((head = this.expiries.peek()) != null) && (head.expiry <= now)) {
+                this.expiries.poll();
+                this.entries.remove(head.hostname, head);
+            }
+            this.nextExpiry = (head == null) ? Long.MAX_VALUE : head.expiry;
+        }
+    }
+
+    private void scheduleWrite() {
+        if (this.writeDelay == 0) {
+            this.dirty.set(true);
+            this.flush();
+        } else if (!this.dirty.getAndSet(true)) {
+            WRITER.schedule(() -> {
+                try {
+                    this.flush();
+                } catch (KittehSTSException ignored) {
+                    // Still dirty, so the next change or flush will retry
+                }
+            }, this.writeDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void saveData() throws IOException {
+        Properties properties = new Properties();
+        for (Entry entry : this.entries.values()) {
+            properties.setProperty(entry.hostname, ZonedDateTime.ofInstant(Instant.ofEpochMilli(entry.expiry), ZoneOffset.UTC).format(DATE_TIME_FORMATTER) + "; " + entry.data);
+        }
+        Path directory = this.filePath.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, this.filePath.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter bufferedWriter = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                properties.store(bufferedWriter, "This file contains all the gathered STS policies.");
+            }
+            try {
+                Files.move(temporary, this.filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, this.filePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reserialize the STS policy in the same form as used in the spec.
+     *
+     * @param policy The map of keys -> optional string values
+     * @return a serialized string
+     */
+    @Nonnull
+    private String reserializeData(@Nonnull STSPolicy policy) {
+        StringBuilder sb = new StringBuilder((policy.getOptions().size() * 10) + (policy.getFlags().size() * 5));
+        synchronized (policy.getFlags()) {
+            sb.append(String.join(",", policy.getFlags()));
+        }
+        if (!policy.getFlags().isEmpty()) {
+            sb.append(',');
+        }
+        sb.append(policy.getOptions().entrySet().stream().map(e -> e.getKey() + '=' + e.getValue()).collect(Collectors.joining(",")));
+        return sb.toString();
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("filePath", this.filePath).add("entries", this.entries.size()).toString();
+    }
+}
@@ -45,7 +45,8 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * Simple example implementation of an STSStorageManager.
+ * Simple example implementation of an STSStorageManager. May be shared
+ * by several clients.
  */
 public class STSPropertiesStorageManager implements STSStorageManager {
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
@@ -82,7 +83,7 @@ public class STSPropertiesStorageManager implements STSStorageManager {
      * @param policy the STS policy instance, including all data sent from the server
      */
     @Override
-    public void addEntry(@Nonnull String hostname, long duration, @Nonnull STSPolicy policy) {
+    public synchronized void addEntry(@Nonnull String hostname, long duration, @Nonnull STSPolicy policy) {
         Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
         Sanity.nullCheck(policy, "A valid policy must be provided to be inserted.");
         if (!policy.getOptions().containsKey("duration")) {
@@ -111,7 +112,7 @@ public class STSPropertiesStorageManager implements STSStorageManager {
      */
     @Override
     @Nonnull
-    public Optional<STSPolicy> getEntry(@Nonnull String hostname) {
+    public synchronized Optional<STSPolicy> getEntry(@Nonnull String hostname) {
         Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
 
         this.pruneEntries();
@@ -132,7 +133,7 @@ public class STSPropertiesStorageManager implements STSStorageManager {
      * @return whether the entry exists in the store
      */
     @Override
-    public boolean hasEntry(@Nonnull String hostname) {
+    public synchronized boolean hasEntry(@Nonnull String hostname) {
         Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
 
         this.pruneEntries();
@@ -166,7 +167,7 @@ public class STSPropertiesStorageManager implements STSStorageManager {
      * @param hostname the hostname to remove the policy for
      */
     @Override
-    public void removeEntry(@Nonnull String hostname) {
+    public synchronized void removeEntry(@Nonnull String hostname) {
         Sanity.nullCheck(hostname, "A valid hostname must be provided for this entry.");
 
         this.pruneEntries();
@@ -30,7 +30,6 @@ import org.kitteh.irc.client.library.command.KickCommand;
 import org.kitteh.irc.client.library.command.TopicCommand;
 import org.kitteh.irc.client.library.element.Actor;
 import org.kitteh.irc.client.library.element.Channel;
-import org.kitteh.irc.client.library.element.ISupportParameter;
 import org.kitteh.irc.client.library.element.Server;
 import org.kitteh.irc.client.library.element.Staleable;
 import org.kitteh.irc.client.library.element.User;
@@ -39,6 +38,8 @@ import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
 import org.kitteh.irc.client.library.element.mode.ModeInfo;
 import org.kitteh.irc.client.library.element.mode.ModeStatus;
 import org.kitteh.irc.client.library.element.mode.ModeStatusList;
+import org.kitteh.irc.client.library.feature.ReplyManager;
+import org.kitteh.irc.client.library.feature.ServerInfo;
 import org.kitteh.irc.client.library.util.CIKeyMap;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
@@ -49,21 +50,22 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 class ActorProvider implements Resettable {
@@ -134,28 +136,49 @@ class ActorProvider implements Resettable {
         }
     }
 
+    private static final class VersionedSnapshot<T> {
+        private final long version;
+        private final T snapshot;
+
+        private VersionedSnapshot(long version, @Nonnull T snapshot) {
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+    }
+
     private class IRCStaleable<T extends Staleable> extends IRCActor {
-        @Nullable
-        private T snapshot;
+        private final AtomicLong version = new AtomicLong();
+        private final AtomicReference<VersionedSnapshot<T>> snapshot = new AtomicReference<>();
 
         IRCStaleable(@Nonnull String name) {
             super(name);
         }
 
         boolean isStale(@Nonnull T potentiallyStale) {
-            return this.snapshot != potentiallyStale;
+            VersionedSnapshot<T> current = this.snapshot.get();
+            return (current == null) || (current.snapshot != potentiallyStale) || (current.version != this.version.get());
         }
 
         void markStale() {
-            this.snapshot = null;
+            this.version.incrementAndGet();
         }
 
         @Nonnull
-        synchronized T snapshot(@Nonnull Supplier<T> supplier) {
-            if (this.snapshot != null) {
-                return this.snapshot;
+        T snapshot(@Nonnull Supplier<T> supplier) {
+            long version = this.version.get();
+            VersionedSnapshot<T> current = this.snapshot.get();
+            if ((current != null) && (current.version == version)) {
+                return current.snapshot;
             }
-            return this.snapshot = supplier.get();
+            long start = System.nanoTime();
+            VersionedSnapshot<T> built = new VersionedSnapshot<>(version, supplier.get());
+            ActorProvider.this.client.getMetrics().snapshotBuilt(ActorProvider.this.client, built.snapshot.getClass(), System.nanoTime() - start);
+            if (this.snapshot.compareAndSet(current, built)) {
+                return built.snapshot;
+            }
+            // Another reader got there first, use theirs if just as current
+            VersionedSnapshot<T> winner = this.snapshot.get();
+            return ((winner != null) && (winner.version >= version)) ? winner.snapshot : built.snapshot;
         }
     }
 
@@ -163,20 +186,25 @@ class ActorProvider implements Resettable {
         private final Map<Character, ModeStatus<ChannelMode>> channelModes = new HashMap<>();
         private final Map<Character, List<ModeInfo>> modeInfoLists = new HashMap<>();
         private final Set<Character> trackedModes = new HashSet<>();
-        private final Map<String, Set<ChannelUserMode>> modes;
+        private final ChannelMemberTable members;
         private final IRCChannelCommands commands;
         private volatile boolean fullListReceived;
-        private long lastWho = System.currentTimeMillis();
+        private final AtomicLong lastWho = new AtomicLong(System.currentTimeMillis());
         private String topic;
         private Actor topicSetter;
         private Instant topicTime;
         private volatile boolean tracked;
+        // Restored from a previous session, until confirmed by the server
+        private volatile boolean provisionalModes;
+        private volatile boolean provisionalTopic;
+        private final Set<Character> provisionalModeInfoLists = ConcurrentHashMap.newKeySet();
+        private volatile boolean resyncRequested;
 
         private IRCChannel(@Nonnull String channel) {
-            super(channel);
-            this.modes = new CIKeyMap<>(ActorProvider.this.client);
-            this.commands = new IRCChannelCommands(channel);
-            ActorProvider.this.trackedChannels.put(channel, this);
+            super(ActorProvider.this.registry.intern(channel));
+            this.members = new ChannelMemberTable(ActorProvider.this.client);
+            this.commands = new IRCChannelCommands(this.getName());
+            ActorProvider.this.trackedChannels.put(this.getName(), this);
         }
 
         void setListReceived() {
@@ -186,11 +214,12 @@ class ActorProvider implements Resettable {
 
         private void setTracked(boolean tracked) {
             this.tracked = tracked;
-            this.modes.keySet().forEach(ActorProvider.this::staleUser);
+            this.members.getNicks().forEach(ActorProvider.this::staleUser);
             this.markStale();
         }
 
         void setTopic(@Nonnull String topic) {
+            this.provisionalTopic = false;
             this.topic = topic;
             this.topicTime = null;
             this.topicSetter = null;
@@ -207,13 +236,11 @@ class ActorProvider implements Resettable {
         @Nonnull
         IRCChannelSnapshot snapshot() {
             if (ActorProvider.this.client.getConfig().getNotNull(Config.QUERY_CHANNEL_INFO)) {
-                synchronized (this.modes) {
-                    if (this.tracked && !this.fullListReceived) {
-                        long now = System.currentTimeMillis();
-                        if ((now - this.lastWho) > 5000) {
-                            this.lastWho = now;
-                            ActorProvider.this.client.sendRawLineAvoidingDuplication("WHO " + this.getName() + (ActorProvider.this.client.getServerInfo().hasWhoXSupport() ? " %cuhsnfar" : ""));
-                        }
+                if (this.tracked && !this.fullListReceived) {
+                    long now = System.currentTimeMillis();
+                    long last = this.lastWho.get();
+                    if (((now - last) > 5000) && this.lastWho.compareAndSet(last, now) && !ActorProvider.this.client.getCapabilityManager().providesMemberData()) {
+                        ActorProvider.this.client.sendRawLineAvoidingDuplication(ActorProvider.this.client.getReplyManager().getWhoLine(this.getName()));
                     }
                 }
             }
@@ -225,10 +252,12 @@ class ActorProvider implements Resettable {
                 new ChannelModeCommand(ActorProvider.this.client, this.getName()).add(true, mode).execute();
             } else if (!track) {
                 this.trackedModes.remove(mode.getChar());
+                this.provisionalModeInfoLists.remove(mode.getChar());
             }
         }
 
         void setModeInfoList(char character, @Nonnull List<ModeInfo> modeInfoList) {
+            this.provisionalModeInfoLists.remove(character);
             if (!this.trackedModes.contains(character)) {
                 return;
             }
@@ -273,47 +302,158 @@ class ActorProvider implements Resettable {
                     }
                 }
             }
-            if (!this.modes.containsKey(nickname) || this.modes.get(nickname).isEmpty()) {
+            if (this.members.get(nickname) <= 0) { // Absent or no modes
                 this.setModes(nickname, modes);
             }
             this.markStale();
         }
 
         void trackUserModeAdd(@Nonnull String nick, @Nonnull ChannelUserMode mode) {
-            this.getModes(nick).add(mode);
+            this.members.update(ActorProvider.this.registry.intern(nick), ChannelMemberTable.bit(this.getPrefixOrder(), mode), 0);
             this.markStale();
         }
 
         void trackUserModeRemove(@Nonnull String nick, @Nonnull ChannelUserMode mode) {
-            this.getModes(nick).remove(mode);
+            this.members.update(ActorProvider.this.registry.intern(nick), 0, ChannelMemberTable.bit(this.getPrefixOrder(), mode));
             this.markStale();
         }
 
         private void trackUserNick(@Nonnull String oldNick, @Nonnull String newNick) {
-            Set<ChannelUserMode> modes = this.modes.remove(oldNick);
-            if (modes != null) {
-                this.setModes(newNick, modes);
+            int modes = this.members.remove(oldNick);
+            if (modes != ChannelMemberTable.ABSENT) {
+                ActorProvider.this.forgetUntrackedUser(newNick);
+                this.members.put(ActorProvider.this.registry.intern(newNick), modes);
             }
             this.markStale();
         }
 
         void trackUserPart(@Nonnull String nick) {
-            this.modes.remove(nick);
+            this.members.remove(nick);
             ActorProvider.this.checkUserForTracking(nick);
             ActorProvider.this.staleUser(nick);
             this.markStale();
         }
 
+        void trackUsers(@Nonnull Collection<IRCUser> users) {
+            for (IRCUser user : users) {
+                ActorProvider.this.trackUser(user);
+                // Keeps any modes already set by the server within the batch
+                this.members.update(ActorProvider.this.registry.intern(user.getNick()), 0, 0);
+                user.markStale();
+            }
+            this.markStale();
+        }
+
+        private void trackUsersPart(@Nonnull Collection<String> nicks) {
+            boolean changed = false;
+            for (String nick : nicks) {
+                changed |= this.members.remove(nick) != ChannelMemberTable.ABSENT;
+            }
+            if (changed) {
+                this.markStale();
+            }
+        }
+
+        boolean hasMember(@Nonnull String nick) {
+            return this.members.contains(nick);
+        }
+
         @Nonnull
-        private Set<ChannelUserMode> getModes(@Nonnull String nick) {
-            return this.modes.computeIfAbsent(nick, k -> new HashSet<>());
+        private List<ChannelUserMode> getPrefixOrder() {
+            return ActorProvider.this.client.getServerInfo().getChannelUserModes();
         }
 
         private void setModes(@Nonnull String nick, @Nonnull Set<ChannelUserMode> modes) {
-            this.modes.put(nick, new HashSet<>(modes));
+            ActorProvider.this.forgetUntrackedUser(nick);
+            this.members.put(ActorProvider.this.registry.intern(nick), ChannelMemberTable.encode(this.getPrefixOrder(), modes));
+            this.markStale();
+        }
+
+        /**
+         * Gets if any state restored from a previous session awaits
+         * confirmation by the server.
+         *
+         * @return true if provisional
+         */
+        boolean isProvisional() {
+            return this.provisionalModes || this.provisionalTopic || !this.provisionalModeInfoLists.isEmpty();
+        }
+
+        /**
+         * Confirms the channel modes are about to be listed in full,
+         * dropping restored modes.
+         */
+        void confirmModes() {
+            if (this.provisionalModes) {
+                this.provisionalModes = false;
+                this.channelModes.clear();
+                this.markStale();
+            }
+        }
+
+        /**
+         * Confirms the topic has been sent if there is one, dropping a
+         * restored topic the server did not send.
+         */
+        void confirmTopic() {
+            if (this.provisionalTopic) {
+                this.provisionalTopic = false;
+                this.topic = null;
+                this.topicTime = null;
+                this.topicSetter = null;
+                this.markStale();
+            }
+        }
+
+        @Nonnull
+        ChannelStateStore.ChannelState toState() {
+            Map<Character, String> modes = new LinkedHashMap<>();
+            this.channelModes.forEach((character, status) -> modes.put(character, status.getParameter().orElse(null)));
+            Map<Character, List<ChannelStateStore.ModeInfoState>> lists = new LinkedHashMap<>();
+            this.modeInfoLists.forEach((character, list) -> lists.put(character, list.stream()
+                    .map(info -> new ChannelStateStore.ModeInfoState(info.getMask().asString(), info.getCreator().orElse(null), info.getCreationTime().map(Instant::toEpochMilli).orElse(-1L)))
+                    .collect(Collectors.toList())));
+            return new ChannelStateStore.ChannelState(this.getName(), this.topic, (this.topicTime == null) ? -1 : this.topicTime.toEpochMilli(),
+                    (this.topicSetter == null) ? null : this.topicSetter.getName(), modes, lists, System.currentTimeMillis());
+        }
+
+        private void restore(@Nonnull ChannelStateStore.ChannelState state) {
+            if ((this.topic == null) && (state.getTopic() != null)) {
+                this.topic = state.getTopic();
+                this.topicTime = (state.getTopicTime() < 0) ? null : Instant.ofEpochMilli(state.getTopicTime());
+                this.topicSetter = (state.getTopicSetter() == null) ? null : ActorProvider.this.getActor(state.getTopicSetter()).snapshot();
+                this.provisionalTopic = true;
+            }
+            ServerInfo serverInfo = ActorProvider.this.client.getServerInfo();
+            state.getModes().forEach((character, parameter) -> serverInfo.getChannelMode(character)
+                    .filter(mode -> !(mode instanceof ChannelUserMode) && (mode.getType() != ChannelMode.Type.A_MASK))
+                    .ifPresent(mode -> this.channelModes.putIfAbsent(character, (parameter == null) ? new ModeStatus<>(true, mode) : new ModeStatus<>(true, mode, parameter))));
+            this.provisionalModes = true;
+            Channel channel = this.snapshot();
+            state.getModeInfoLists().forEach((character, list) -> serverInfo.getChannelMode(character).filter(mode -> mode.getType() == ChannelMode.Type.A_MASK).ifPresent(mode -> {
+                List<ModeInfo> modeInfos = new ArrayList<>(list.size());
+                for (ChannelStateStore.ModeInfoState info : list) {
+                    modeInfos.add(new ModeData.IRCModeInfo(ActorProvider.this.client, channel, mode, info.getMask(), Optional.ofNullable(info.getCreator()),
+                            (info.getCreationTime() < 0) ? Optional.empty() : Optional.of(Instant.ofEpochMilli(info.getCreationTime()))));
+                }
+                this.trackedModes.add(character);
+                this.modeInfoLists.put(character, modeInfos);
+                this.provisionalModeInfoLists.add(character);
+            }));
             this.markStale();
         }
 
+        private void resync() {
+            this.resyncRequested = true;
+            if (this.provisionalModes) {
+                ActorProvider.this.client.getReplyManager().expect(ReplyManager.ReplyType.CHANNEL_MODE, this.getName());
+                ActorProvider.this.client.sendRawLine("MODE " + this.getName());
+            }
+            for (char character : this.provisionalModeInfoLists) {
+                ActorProvider.this.client.getServerInfo().getChannelMode(character).ifPresent(mode -> new ChannelModeCommand(ActorProvider.this.client, this.getName()).add(true, mode).execute());
+            }
+        }
+
         void updateChannelModes(ModeStatusList<ChannelMode> statusList) {
             statusList.getStatuses().stream().filter(status -> (status.getMode() instanceof ChannelUserMode) && (status.getParameter().isPresent())).forEach(status -> {
                 if (status.isSetting()) {
@@ -378,17 +518,20 @@ class ActorProvider implements Resettable {
     class IRCChannelSnapshot extends IRCActorSnapshot implements Channel {
         private final ModeStatusList<ChannelMode> channelModes;
         private final Map<Character, List<ModeInfo>> modeInfoLists;
-        private final Map<String, SortedSet<ChannelUserMode>> modes;
+        private final ChannelMemberTable members;
+        private final List<ChannelUserMode> prefixOrder;
         private final List<String> names;
         private final Map<String, User> nickMap;
         private final List<User> users;
         private final boolean complete;
+        private final boolean provisional;
         private final Topic topic;
         private final IRCChannelCommands commands;
 
         private IRCChannelSnapshot(@Nonnull IRCChannel channel, @Nonnull Topic topic) {
             super(channel);
             this.complete = channel.fullListReceived;
+            this.provisional = channel.isProvisional();
             this.channelModes = ModeStatusList.of(channel.channelModes.values());
             this.topic = topic;
             this.commands = channel.commands;
@@ -397,17 +540,10 @@ class ActorProvider implements Resettable {
                 this.modeInfoLists.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
             }
             channel.trackedModes.stream().filter(character -> !this.modeInfoLists.containsKey(character)).forEach(character -> this.modeInfoLists.put(character, Collections.unmodifiableList(new ArrayList<>())));
-            Map<String, SortedSet<ChannelUserMode>> newModes = new CIKeyMap<>(ActorProvider.this.client);
-            Optional<ISupportParameter.Prefix> prefix = ActorProvider.this.client.getServerInfo().getISupportParameter("PREFIX", ISupportParameter.Prefix.class);
-            Comparator<ChannelUserMode> comparator = prefix.isPresent() ? Comparator.comparingInt(prefix.get().getModes()::indexOf) : Comparator.comparing(ChannelUserMode::getChar);
-            for (Map.Entry<String, Set<ChannelUserMode>> entry : channel.modes.entrySet()) {
-                SortedSet<ChannelUserMode> newSet = new TreeSet<>(comparator);
-                newSet.addAll(entry.getValue());
-                newModes.put(entry.getKey(), newSet);
-            }
-            this.modes = Collections.unmodifiableMap(newModes);
-            this.names = Collections.unmodifiableList(new ArrayList<>(this.modes.keySet()));
-            this.nickMap = Collections.unmodifiableMap(channel.modes.keySet().stream().map(ActorProvider.this.trackedUsers::get).filter(Objects::nonNull).map(IRCUser::snapshot).collect(Collectors.toMap(User::getNick, Function.identity())));
+            this.members = channel.members.copy();
+            this.prefixOrder = channel.getPrefixOrder();
+            this.names = Collections.unmodifiableList(this.members.getNicks());
+            this.nickMap = Collections.unmodifiableMap(this.names.stream().map(ActorProvider.this.trackedUsers::get).filter(Objects::nonNull).map(IRCUser::snapshot).collect(Collectors.toMap(User::getNick, Function.identity())));
             this.users = Collections.unmodifiableList(new ArrayList<>(this.nickMap.values()));
         }
 
@@ -460,7 +596,8 @@ class ActorProvider implements Resettable {
         @Override
         public Optional<SortedSet<ChannelUserMode>> getUserModes(@Nonnull String nick) {
             Sanity.nullCheck(nick, "Nick cannot be null");
-            return Optional.ofNullable(this.modes.get(nick));
+            int modes = this.members.get(nick);
+            return (modes == ChannelMemberTable.ABSENT) ? Optional.empty() : Optional.of(ChannelMemberTable.decode(this.prefixOrder, modes));
         }
 
         @Nonnull
@@ -474,6 +611,11 @@ class ActorProvider implements Resettable {
             return this.complete;
         }
 
+        @Override
+        public boolean isProvisional() {
+            return this.provisional;
+        }
+
         @Override
         public void setModeInfoTracking(@Nonnull ChannelMode mode, boolean track) {
             Sanity.nullCheck(mode, "Mode cannot be null");
@@ -538,63 +680,51 @@ class ActorProvider implements Resettable {
     }
 
     class IRCUser extends IRCStaleable<IRCUserSnapshot> {
-        private String account;
-        private String host;
-        private String nick;
-        private String user;
-        private boolean isAway;
-        private String realName;
-        private String server;
+        private volatile UserIdentity identity;
 
         private IRCUser(@Nonnull String mask, @Nonnull String nick, @Nonnull String user, @Nonnull String host) {
             super(mask);
-            this.nick = nick;
-            this.user = user;
-            this.host = host;
+            this.identity = ActorProvider.this.registry.intern(new UserIdentity(mask, nick, user, host, null, null, null, false));
+            this.setName(this.identity.getMask());
         }
 
         @Nonnull
         String getNick() {
-            return this.nick;
+            return this.identity.getNick();
         }
 
         private void setNick(@Nonnull String newNick) {
-            this.nick = newNick;
-            this.updateName();
+            this.setIdentity(this.identity.withNick(ActorProvider.this.registry.intern(newNick)));
         }
 
         void setAccount(@Nullable String account) {
-            this.account = account;
-            this.markStale();
+            this.setIdentity(this.identity.withAccount(ActorProvider.this.registry.internNullable(account)));
         }
 
         void setAway(boolean isAway) {
-            this.isAway = isAway;
-            this.markStale();
+            this.setIdentity(this.identity.withAway(isAway));
         }
 
         void setRealName(@Nonnull String realName) {
-            this.realName = realName;
-            this.markStale();
+            this.setIdentity(this.identity.withRealName(ActorProvider.this.registry.intern(realName)));
         }
 
         void setHost(@Nonnull String host) {
-            this.host = host;
-            this.updateName();
+            this.setIdentity(this.identity.withHost(ActorProvider.this.registry.intern(host)));
         }
 
         void setUser(@Nonnull String user) {
-            this.user = user;
-            this.updateName();
+            this.setIdentity(this.identity.withUser(ActorProvider.this.registry.intern(user)));
         }
 
         void setServer(@Nonnull String server) {
-            this.server = server;
-            this.markStale();
+            this.setIdentity(this.identity.withServer(ActorProvider.this.registry.intern(server)));
         }
 
-        private void updateName() {
-            this.setName(this.nick + '!' + this.user + '@' + this.host);
+        private void setIdentity(@Nonnull UserIdentity identity) {
+            // Only the changed string is pooled, unless another client may share the identity
+            this.identity = ActorProvider.this.registry.isShared() ? ActorProvider.this.registry.intern(identity) : identity;
+            this.setName(this.identity.getMask());
             this.markStale();
         }
 
@@ -623,14 +753,15 @@ class ActorProvider implements Resettable {
 
         private IRCUserSnapshot(@Nonnull IRCUser user) {
             super(user);
-            this.account = Optional.ofNullable(user.account);
-            this.isAway = user.isAway;
-            this.nick = user.nick;
-            this.user = user.user;
-            this.host = user.host;
-            this.realName = Optional.ofNullable(user.realName);
-            this.server = Optional.ofNullable(user.server);
-            this.channels = Collections.unmodifiableSet(ActorProvider.this.trackedChannels.values().stream().filter(channel -> channel.modes.containsKey(this.nick)).map(IRCChannel::getName).collect(Collectors.toSet()));
+            UserIdentity identity = user.identity;
+            this.account = Optional.ofNullable(identity.getAccount());
+            this.isAway = identity.isAway();
+            this.nick = identity.getNick();
+            this.user = identity.getUser();
+            this.host = identity.getHost();
+            this.realName = Optional.ofNullable(identity.getRealName());
+            this.server = Optional.ofNullable(identity.getServer());
+            this.channels = Collections.unmodifiableSet(ActorProvider.this.trackedChannels.values().stream().filter(channel -> channel.hasMember(this.nick)).map(IRCChannel::getName).collect(Collectors.toSet()));
         }
 
         @Override
@@ -733,34 +864,107 @@ class ActorProvider implements Resettable {
         }
     }
 
-    // Valid nick chars: \w\[]^`{}|-_
-    // Pattern unescaped: ([\w\\\[\]\^`\{\}\|\-_]+)!([~\w]+)@([\w\.\-:]+)
-    // You know what? Screw it.
-    // Let's just do it assuming no IRCD can handle following the rules.
-    // New pattern: ([^!@]+)!([^!@]+)@([^!@]+)
-    private static final Pattern NICK_PATTERN = Pattern.compile("([^!@]+)!([^!@]+)@([^!@]+)");
-    private static final Pattern SERVER_PATTERN = Pattern.compile("(?!-)(?:[a-zA-Z\\d\\-]{0,62}[a-zA-Z\\d]\\.){1,126}(?!\\d+)[a-zA-Z\\d]{1,63}");
+    /**
+     * Small access-ordered map, evicting the least recently used entry once
+     * full.
+     */
+    private static final class LeastRecentlyUsedMap<Value> extends LinkedHashMap<String, Value> {
+        private final int capacity;
+
+        private LeastRecentlyUsedMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Value> eldest) {
+            return this.size() > this.capacity;
+        }
+    }
+
+    private static final int UNTRACKED_CACHE_SIZE = 128;
+    // Restored state for a channel not joined in this long is dropped, rather than kept and saved forever
+    private static final long RESTORED_CHANNEL_LIFETIME = TimeUnit.DAYS.toMillis(7);
 
     private final InternalClient client;
+    private final SharedUserRegistry registry;
 
     private final Map<String, IRCChannel> trackedChannels;
     private final Map<String, IRCUser> trackedUsers;
+    private final Map<String, ChannelStateStore.ChannelState> restoredChannels;
+
+    // Recently seen sources which are not tracked, to avoid re-parsing and
+    // re-allocating them for every line. Users are keyed by lower case nick.
+    private final Map<String, IRCActor> untrackedActors = new LeastRecentlyUsedMap<>(UNTRACKED_CACHE_SIZE);
+    private final Map<String, IRCUser> untrackedUsers = new LeastRecentlyUsedMap<>(UNTRACKED_CACHE_SIZE);
 
     ActorProvider(@Nonnull InternalClient client) {
+        this(client, new SharedUserRegistry(false));
+    }
+
+    ActorProvider(@Nonnull InternalClient client, @Nonnull SharedUserRegistry registry) {
         this.client = client;
+        this.registry = registry;
         this.trackedChannels = new CIKeyMap<>(this.client);
         this.trackedUsers = new CIKeyMap<>(this.client);
+        this.restoredChannels = new CIKeyMap<>(this.client);
     }
 
     @Override
     public void reset() {
+        this.expireRestoredChannels();
         this.trackedChannels.forEach((name, channel) -> channel.markStale());
         this.trackedUsers.forEach((name, user) -> user.markStale());
+        synchronized (this.untrackedActors) {
+            this.untrackedActors.clear();
+        }
+        synchronized (this.untrackedUsers) {
+            this.untrackedUsers.clear();
+        }
     }
 
     void trackChannel(@Nonnull IRCChannel channel) {
         this.trackedChannels.put(channel.getName(), channel);
         channel.setTracked(true);
+        ChannelStateStore.ChannelState state = this.restoredChannels.remove(channel.getName());
+        if (state != null) {
+            channel.restore(state);
+        }
+    }
+
+    /**
+     * Sets channel state from a previous session, to be restored as
+     * provisional state on joining each channel.
+     *
+     * @param states channel states
+     */
+    void setRestoredChannels(@Nonnull Collection<ChannelStateStore.ChannelState> states) {
+        this.restoredChannels.clear();
+        states.forEach(state -> this.restoredChannels.put(state.getName(), state));
+        this.expireRestoredChannels();
+    }
+
+    private void expireRestoredChannels() {
+        long now = System.currentTimeMillis();
+        for (ChannelStateStore.ChannelState state : this.restoredChannels.values()) {
+            if ((now - state.getLastJoined()) > RESTORED_CHANNEL_LIFETIME) {
+                this.restoredChannels.remove(state.getName());
+            }
+        }
+    }
+
+    /**
+     * Requests confirmation of restored state for the next channel still
+     * holding unconfirmed provisional state, if any. Meant to be called
+     * periodically, spreading the queries out.
+     */
+    void resyncProvisionalChannel() {
+        for (IRCChannel channel : this.trackedChannels.values()) {
+            if (!channel.resyncRequested && (channel.provisionalModes || !channel.provisionalModeInfoLists.isEmpty())) {
+                channel.resync();
+                return;
+            }
+        }
     }
 
     void unTrackChannel(@Nonnull IRCChannel channel) {
@@ -770,23 +974,93 @@ class ActorProvider implements Resettable {
 
     @Nonnull
     IRCActor getActor(@Nonnull String name) {
-        Matcher nickMatcher = NICK_PATTERN.matcher(name);
-        if (nickMatcher.matches()) {
-            String nick = nickMatcher.group(1);
+        // Valid nick chars: \w\[]^`{}|-_
+        // Let's just do it assuming no IRCD can handle following the rules.
+        // nick!user@host where no part is empty or contains ! or @
+        int exclamation = name.indexOf('!');
+        int at = name.indexOf('@');
+        if ((exclamation > 0) && (at > (exclamation + 1)) && (at < (name.length() - 1)) && (name.indexOf('!', exclamation + 1) < 0) && (name.indexOf('@', at + 1) < 0)) {
+            String nick = name.substring(0, exclamation);
             IRCUser user = this.trackedUsers.get(nick);
             if (user != null) {
                 return user;
             }
-            return new IRCUser(name, nick, nickMatcher.group(2), nickMatcher.group(3));
+            String lowerNick = this.client.getServerInfo().getCaseMapping().toLowerCase(nick);
+            synchronized (this.untrackedUsers) {
+                user = this.untrackedUsers.get(lowerNick);
+                if ((user == null) || !user.getName().equals(name)) {
+                    user = new IRCUser(name, nick, name.substring(exclamation + 1, at), name.substring(at + 1));
+                    this.untrackedUsers.put(lowerNick, user);
+                }
+            }
+            return user;
         }
         IRCChannel channel = this.getChannel(name);
         if (channel != null) {
             return channel;
         }
-        if (name.isEmpty() || SERVER_PATTERN.matcher(name).matches()) {
-            return new IRCServer(name);
+        synchronized (this.untrackedActors) {
+            IRCActor actor = this.untrackedActors.get(name);
+            if (actor == null) {
+                actor = (name.isEmpty() || isServerName(name)) ? new IRCServer(name) : new IRCActor(name);
+                this.untrackedActors.put(name, actor);
+            }
+            return actor;
         }
-        return new IRCActor(name);
+    }
+
+    /**
+     * Gets if a name is a valid server hostname, with at least two labels.
+     * Matches (?!-)(?:[a-zA-Z\d\-]{0,62}[a-zA-Z\d]\.){1,126}(?!\d+)[a-zA-Z\d]{1,63}
+     *
+     * @param name name to check
+     * @return true if a server name
+     */
+    static boolean isServerName(@Nonnull String name) {
+        int length = name.length();
+        if ((length == 0) || (name.charAt(0) == '-')) {
+            return false;
+        }
+        int labels = 0;
+        int labelStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c == '.') {
+                int labelLength = i - labelStart;
+                if ((labelLength == 0) || (labelLength > 63) || !isAlphanumeric(name.charAt(i - 1)) || (++labels > 126)) {
+                    return false;
+                }
+                labelStart = i + 1;
+            } else if (!isAlphanumeric(c) && (c != '-')) {
+                return false;
+            }
+        }
+        int lastLength = length - labelStart;
+        if ((labels == 0) || (lastLength == 0) || (lastLength > 63) || ((name.charAt(labelStart) >= '0') && (name.charAt(labelStart) <= '9'))) {
+            return false;
+        }
+        for (int i = labelStart; i < length; i++) {
+            if (!isAlphanumeric(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'));
+    }
+
+    /**
+     * Gets the pooled instance of a string, shared by all actors of this
+     * client and of any clients sharing its user registry.
+     *
+     * @param string string to pool
+     * @return pooled string
+     */
+    @Nonnull
+    String intern(@Nonnull String string) {
+        return this.registry.intern(string);
     }
 
     @Nullable
@@ -813,16 +1087,50 @@ class ActorProvider implements Resettable {
         return this.trackedChannels.values();
     }
 
+    /**
+     * Gets the state of tracked channels for saving, along with state
+     * restored for channels not yet rejoined unless not joined for too
+     * long. Only call from the input processing thread, or once it has
+     * stopped.
+     *
+     * @return channel states
+     */
+    @Nonnull
+    List<ChannelStateStore.ChannelState> getChannelStates() {
+        this.expireRestoredChannels();
+        List<ChannelStateStore.ChannelState> states = this.trackedChannels.values().stream().map(IRCChannel::toState).collect(Collectors.toList());
+        this.restoredChannels.forEach((name, state) -> {
+            if (!this.trackedChannels.containsKey(name)) {
+                states.add(state);
+            }
+        });
+        return states;
+    }
+
     @Nullable
     IRCUser getUser(@Nonnull String nick) {
         return this.trackedUsers.get(nick);
     }
 
+    @Nonnull
+    Set<String> getTrackedUserNicks() {
+        return this.trackedUsers.keySet();
+    }
+
     private void staleUser(String nick) {
         IRCUser user = this.getUser(nick);
         if (user != null) {
             user.markStale();
         }
+        this.forgetUntrackedUser(nick);
+    }
+
+    private void forgetUntrackedUser(@Nonnull String nick) {
+        synchronized (this.untrackedUsers) {
+            if (!this.untrackedUsers.isEmpty()) {
+                this.untrackedUsers.remove(this.client.getServerInfo().getCaseMapping().toLowerCase(nick));
+            }
+        }
     }
 
     void setUserAccount(@Nonnull String nick, @Nullable String account) {
@@ -830,6 +1138,7 @@ class ActorProvider implements Resettable {
     }
 
     void trackUser(@Nonnull IRCUser user) {
+        this.forgetUntrackedUser(user.getNick());
         if (!this.trackedUsers.containsKey(user.getNick())) {
             this.trackedUsers.put(user.getNick(), user);
         }
@@ -865,9 +1174,26 @@ class ActorProvider implements Resettable {
         this.checkUserForTracking(nick);
     }
 
+    /**
+     * Tracks many users quitting at once, as in a netsplit, touching each
+     * channel once.
+     *
+     * @param nicks nicks of users quitting
+     */
+    void trackUserQuits(@Nonnull Collection<String> nicks) {
+        this.trackedChannels.values().forEach(channel -> channel.trackUsersPart(nicks));
+        for (String nick : nicks) {
+            IRCUser removed = this.trackedUsers.remove(nick);
+            if (removed != null) {
+                removed.markStale();
+            }
+            this.forgetUntrackedUser(nick);
+        }
+    }
+
     private void checkUserForTracking(@Nonnull String nick) {
         if (!this.client.getServerInfo().getCaseMapping().areEqualIgnoringCase(nick, this.client.getNick())
-                && this.trackedChannels.values().stream().noneMatch(channel -> channel.modes.containsKey(nick))) {
+                && this.trackedChannels.values().stream().noneMatch(channel -> channel.hasMember(nick))) {
             IRCUser removed = this.trackedUsers.remove(nick);
             if (removed != null) {
                 removed.markStale();
@@ -24,8 +24,6 @@
 package org.kitteh.irc.client.library.implementation;
 
 import javax.annotation.Nonnull;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /*
  * A note on CTCP handling:
@@ -64,10 +62,6 @@ final class CTCPUtil {
     private static final char CTCP_DELIMITER = '\u0001';
     private static final char CTCP_MQUOTE = '\u0016';
 
-    private static final Pattern CTCP_ESCAPABLE_CHAR = Pattern.compile("[\n\r\u0000" + CTCP_DELIMITER + CTCP_MQUOTE + "\\\\]");
-    private static final Pattern CTCP_ESCAPED_CHAR = Pattern.compile("([" + CTCP_MQUOTE + "\\\\])(.)");
-    private static final Pattern CTCP_MESSAGE = Pattern.compile(CTCP_DELIMITER + "([^" + CTCP_DELIMITER + "]*)" + CTCP_DELIMITER + "[^" + CTCP_DELIMITER + "]*");
-
     private CTCPUtil() {
     }
 
@@ -79,46 +73,32 @@ final class CTCPUtil {
      */
     @Nonnull
     static String fromCTCP(@Nonnull String message) {
-        final String ctcpContent = message.substring(1, message.indexOf(CTCP_DELIMITER, 1)); // Strip the delimiters
-        StringBuilder builder = new StringBuilder(ctcpContent.length());
-        int currentIndex = 0;
-        Matcher matcher = CTCP_ESCAPED_CHAR.matcher(ctcpContent);
-        while (matcher.find()) {
-            if (matcher.start() > currentIndex) {
-                builder.append(ctcpContent.substring(currentIndex, matcher.start()));
+        final int end = message.indexOf(CTCP_DELIMITER, 1); // Strip the delimiters
+        StringBuilder builder = new StringBuilder(end - 1);
+        for (int i = 1; i < end; i++) {
+            char ch = message.charAt(i);
+            if (((ch != CTCP_MQUOTE) && (ch != '\\')) || ((i + 1) == end)) {
+                builder.append(ch);
+                continue;
             }
-            switch (matcher.group(1)) {
-                case CTCP_MQUOTE + "":
-                    switch (matcher.group(2)) {
-                        case "n":
-                            builder.append('\n');
-                            break;
-                        case "r":
-                            builder.append('\r');
-                            break;
-                        case "0":
-                            builder.append('\u0000');
-                            break;
-                        default:
-                            builder.append(matcher.group(2)); // If not one of the above, disregard the MQUOTE. If MQUOTE, it's covered here anyway.
-                    }
-                    break;
-                case "\\":
-                    switch (matcher.group(2)) {
-                        case "a":
-                            builder.append(CTCP_DELIMITER);
-                            break;
-                        default:
-                            builder.append(matcher.group(2)); // If not one of the above, disregard the \. If \, it's covered here anyway.
-                    }
-                default:
-                    // NOOP
-                    break;
+            char escaped = message.charAt(++i);
+            if (ch == CTCP_MQUOTE) {
+                switch (escaped) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case '0':
+                        builder.append('\u0000');
+                        break;
+                    default:
+                        builder.append(escaped); // If not one of the above, disregard the MQUOTE. If MQUOTE, it's covered here anyway.
+                }
+            } else {
+                builder.append((escaped == 'a') ? CTCP_DELIMITER : escaped); // If not \a, disregard the \. If \, it's covered here anyway.
             }
-            currentIndex = matcher.end();
-        }
-        if (currentIndex < ctcpContent.length()) {
-            builder.append(ctcpContent.substring(currentIndex));
         }
         return builder.toString();
     }
@@ -130,7 +110,11 @@ final class CTCPUtil {
      * @return true if the message is a CTCP message
      */
     static boolean isCTCP(@Nonnull String message) {
-        return CTCP_MESSAGE.matcher(message).matches();
+        if (message.isEmpty() || (message.charAt(0) != CTCP_DELIMITER)) {
+            return false;
+        }
+        int end = message.indexOf(CTCP_DELIMITER, 1);
+        return (end > 0) && (message.indexOf(CTCP_DELIMITER, end + 1) < 0);
     }
 
     /**
@@ -141,41 +125,32 @@ final class CTCPUtil {
      */
     @Nonnull
     static String toCTCP(@Nonnull String message) {
-        StringBuilder builder = new StringBuilder(message.length());
+        StringBuilder builder = new StringBuilder(message.length() + 8);
         builder.append(CTCP_DELIMITER);
-        int currentIndex = 0;
-        Matcher matcher = CTCP_ESCAPABLE_CHAR.matcher(message);
-        while (matcher.find()) {
-            if (matcher.start() > currentIndex) {
-                builder.append(message.substring(currentIndex, matcher.start()));
-            }
-            switch (matcher.group()) {
-                case "\n":
+        for (int i = 0; i < message.length(); i++) {
+            char ch = message.charAt(i);
+            switch (ch) {
+                case '\n':
                     builder.append(CTCP_MQUOTE).append('n');
                     break;
-                case "\r":
+                case '\r':
                     builder.append(CTCP_MQUOTE).append('r');
                     break;
-                case "\u0000":
+                case '\u0000':
                     builder.append(CTCP_MQUOTE).append('0');
                     break;
-                case CTCP_MQUOTE + "":
+                case CTCP_MQUOTE:
                     builder.append(CTCP_MQUOTE).append(CTCP_MQUOTE);
                     break;
-                case CTCP_DELIMITER + "":
+                case CTCP_DELIMITER:
                     builder.append("\\a");
                     break;
-                case "\\":
+                case '\\':
                     builder.append("\\\\");
                     break;
                 default:
-                    // NOOP
-                    break;
+                    builder.append(ch);
             }
-            currentIndex = matcher.end();
-        }
-        if (currentIndex < message.length()) {
-            builder.append(message.substring(currentIndex));
         }
         builder.append(CTCP_DELIMITER);
         return builder.toString();
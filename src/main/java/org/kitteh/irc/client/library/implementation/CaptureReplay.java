@@ -0,0 +1,87 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.feature.capture.TrafficCapture;
+import org.kitteh.irc.client.library.feature.capture.TrafficReplay;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays captures into an unconnected {@link IRCClient}.
+ */
+final class CaptureReplay implements TrafficReplay {
+    private final IRCClient client;
+
+    CaptureReplay(@Nonnull IRCClient client) {
+        this.client = client;
+        client.startReplay();
+    }
+
+    @Nonnull
+    @Override
+    public Client getClient() {
+        return this.client;
+    }
+
+    @Override
+    public long replay(@Nonnull TrafficCapture.Reader reader, @Nonnull Speed speed) throws IOException, InterruptedException {
+        Sanity.nullCheck(reader, "Reader cannot be null");
+        Sanity.nullCheck(speed, "Speed cannot be null");
+        long fed = 0;
+        long firstTimestamp = -1;
+        long startNanos = System.nanoTime();
+        TrafficCapture.Record record;
+        while ((record = reader.next()) != null) {
+            if (record.getDirection() != TrafficCapture.Direction.INPUT) {
+                continue;
+            }
+            if (speed == Speed.ORIGINAL) {
+                if (firstTimestamp < 0) {
+                    firstTimestamp = record.getTimestamp();
+                }
+                long wait = TimeUnit.MILLISECONDS.toNanos(record.getTimestamp() - firstTimestamp) - (System.nanoTime() - startNanos);
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            this.client.getInputListener().queue(record.getLine());
+            this.client.processLine(record.getLine());
+            fed++;
+        }
+        this.client.awaitProcessing();
+        return fed;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("client", this.client).toString();
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
+import org.kitteh.irc.client.library.feature.CaseMapping;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Members of a channel and their prefix modes, stored in an open addressing
+ * table keyed by nick under the client's {@link CaseMapping}. Modes are
+ * stored as bits indexed by position in the server's PREFIX list.
+ */
+final class ChannelMemberTable {
+    /**
+     * Returned for nicks not in the table.
+     */
+    static final int ABSENT = -1;
+
+    private static final int MINIMUM_CAPACITY = 8;
+
+    private final Client client;
+    private CaseMapping caseMapping;
+    private String[] nicks;
+    private int[] hashes;
+    private int[] modes;
+    private int size;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param client client whose case mapping keys the table
+     */
+    ChannelMemberTable(@Nonnull Client client) {
+        this.client = client;
+        this.caseMapping = client.getServerInfo().getCaseMapping();
+        this.allocate(MINIMUM_CAPACITY);
+    }
+
+    private ChannelMemberTable(@Nonnull ChannelMemberTable table) {
+        this.client = table.client;
+        this.caseMapping = table.caseMapping;
+        this.nicks = table.nicks.clone();
+        this.hashes = table.hashes.clone();
+        this.modes = table.modes.clone();
+        this.size = table.size;
+    }
+
+    /**
+     * Encodes modes as bits indexed by position in the given order.
+     *
+     * @param order channel user modes in PREFIX order
+     * @param modes modes to encode
+     * @return encoded modes
+     */
+    static int encode(@Nonnull List<ChannelUserMode> order, @Nonnull Collection<ChannelUserMode> modes) {
+        int bits = 0;
+        for (ChannelUserMode mode : modes) {
+            bits |= bit(order, mode);
+        }
+        return bits;
+    }
+
+    /**
+     * Gets the bit for a mode indexed by position in the given order.
+     *
+     * @param order channel user modes in PREFIX order
+     * @param mode mode
+     * @return the bit, or 0 if the mode is not in the order
+     */
+    static int bit(@Nonnull List<ChannelUserMode> order, @Nonnull ChannelUserMode mode) {
+        int index = order.indexOf(mode);
+        return ((index < 0) || (index >= Integer.SIZE)) ? 0 : (1 << index);
+    }
+
+    /**
+     * Decodes modes from bits indexed by position in the given order.
+     *
+     * @param order channel user modes in PREFIX order
+     * @param bits encoded modes
+     * @return modes sorted by PREFIX order
+     */
+    @Nonnull
+    static SortedSet<ChannelUserMode> decode(@Nonnull List<ChannelUserMode> order, int bits) {
+        SortedSet<ChannelUserMode> set = new TreeSet<>(Comparator.comparingInt(order::indexOf));
+        for (int index = 0; (index < order.size()) && (index < Integer.SIZE); index++) {
+            if ((bits & (1 << index)) != 0) {
+                set.add(order.get(index));
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Gets if a nick is in the table.
+     *
+     * @param nick nick
+     * @return true if present
+     */
+    synchronized boolean contains(@Nonnull String nick) {
+        return this.find(nick) >= 0;
+    }
+
+    /**
+     * Gets the modes of a nick.
+     *
+     * @param nick nick
+     * @return encoded modes or {@link #ABSENT} if not present
+     */
+    synchronized int get(@Nonnull String nick) {
+        int slot = this.find(nick);
+        return (slot < 0) ? ABSENT : this.modes[slot];
+    }
+
+    /**
+     * Sets the modes of a nick, adding it if not present.
+     *
+     * @param nick nick
+     * @param modes encoded modes
+     * @return previous encoded modes or {@link #ABSENT} if not present
+     */
+    synchronized int put(@Nonnull String nick, int modes) {
+        int slot = this.find(nick);
+        if (slot >= 0) {
+            int previous = this.modes[slot];
+            this.nicks[slot] = nick;
+            this.modes[slot] = modes;
+            return previous;
+        }
+        this.insert(nick, this.hash(nick), modes);
+        return ABSENT;
+    }
+
+    /**
+     * Adds and removes modes of a nick, adding it if not present.
+     *
+     * @param nick nick
+     * @param add encoded modes to add
+     * @param remove encoded modes to remove
+     */
+    synchronized void update(@Nonnull String nick, int add, int remove) {
+        int slot = this.find(nick);
+        if (slot >= 0) {
+            this.modes[slot] = (this.modes[slot] | add) & ~remove;
+        } else {
+            this.insert(nick, this.hash(nick), add & ~remove);
+        }
+    }
+
+    /**
+     * Removes a nick.
+     *
+     * @param nick nick
+     * @return previous encoded modes or {@link #ABSENT} if not present
+     */
+    synchronized int remove(@Nonnull String nick) {
+        int slot = this.find(nick);
+        if (slot < 0) {
+            return ABSENT;
+        }
+        int previous = this.modes[slot];
+        this.size--;
+        // Backward shift deletion, keeping probe sequences unbroken
+        int mask = this.nicks.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (this.nicks[next] == null) {
+                break;
+            }
+            int home = this.hashes[next] & mask;
+            boolean stays = (hole <= next) ? ((hole < home) && (home <= next)) : ((hole < home) || (home <= next));
+            if (!stays) {
+                this.nicks[hole] = this.nicks[next];
+                this.hashes[hole] = this.hashes[next];
+                this.modes[hole] = this.modes[next];
+                hole = next;
+            }
+        }
+        this.nicks[hole] = null;
+        this.hashes[hole] = 0;
+        this.modes[hole] = 0;
+        return previous;
+    }
+
+    /**
+     * Gets the nicks in the table.
+     *
+     * @return a new list of nicks
+     */
+    @Nonnull
+    synchronized List<String> getNicks() {
+        List<String> list = new ArrayList<>(this.size);
+        for (String nick : this.nicks) {
+            if (nick != null) {
+                list.add(nick);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the number of nicks in the table.
+     *
+     * @return size
+     */
+    synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Creates an independent copy of this table.
+     *
+     * @return copy
+     */
+    @Nonnull
+    synchronized ChannelMemberTable copy() {
+        return new ChannelMemberTable(this);
+    }
+
+    private int find(@Nonnull String nick) {
+        int hash = this.hash(nick);
+        int mask = this.nicks.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String candidate = this.nicks[slot];
+            if (candidate == null) {
+                return -1;
+            }
+            if ((this.hashes[slot] == hash) && this.equal(candidate, nick)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(@Nonnull String nick, int hash, int modes) {
+        if (((this.size + 1) * 3) > (this.nicks.length * 2)) {
+            this.rehash(this.nicks.length * 2);
+        }
+        int mask = this.nicks.length - 1;
+        int slot = hash & mask;
+        while (this.nicks[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        this.nicks[slot] = nick;
+        this.hashes[slot] = hash;
+        this.modes[slot] = modes;
+        this.size++;
+    }
+
+    private void allocate(int capacity) {
+        this.nicks = new String[capacity];
+        this.hashes = new int[capacity];
+        this.modes = new int[capacity];
+        this.size = 0;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldNicks = this.nicks;
+        int[] oldModes = this.modes;
+        this.allocate(capacity);
+        for (int i = 0; i < oldNicks.length; i++) {
+            if (oldNicks[i] != null) {
+                int slot = this.find(oldNicks[i]);
+                if (slot >= 0) { // Newly equal under a changed case mapping
+                    this.modes[slot] |= oldModes[i];
+                } else {
+                    this.insert(oldNicks[i], this.hash(oldNicks[i]), oldModes[i]);
+                }
+            }
+        }
+    }
+
+    private int hash(@Nonnull String nick) {
+        CaseMapping current = this.client.getServerInfo().getCaseMapping();
+        if (current != this.caseMapping) {
+            this.caseMapping = current;
+            this.rehash(this.nicks.length);
+        }
+        int hash = 0;
+        for (int i = 0; i < nick.length(); i++) {
+            hash = (31 * hash) + current.toLowerCase(nick.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean equal(@Nonnull String one, @Nonnull String two) {
+        if (one.length() != two.length()) {
+            return false;
+        }
+        for (int i = 0; i < one.length(); i++) {
+            if (this.caseMapping.toLowerCase(one.charAt(i)) != this.caseMapping.toLowerCase(two.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized String toString() {
+        return new ToStringer(this).add("size", this.size).toString();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores tracked channel state in a compact binary file, so that a client
+ * restarting can start from the state it had instead of querying every
+ * channel again.
+ */
+final class ChannelStateStore {
+    /**
+     * State of one channel.
+     */
+    static final class ChannelState {
+        private final String name;
+        @Nullable
+        private final String topic;
+        private final long topicTime;
+        @Nullable
+        private final String topicSetter;
+        private final Map<Character, String> modes;
+        private final Map<Character, List<ModeInfoState>> modeInfoLists;
+        private final long lastJoined;
+
+        ChannelState(@Nonnull String name, @Nullable String topic, long topicTime, @Nullable String topicSetter, @Nonnull Map<Character, String> modes, @Nonnull Map<Character, List<ModeInfoState>> modeInfoLists, long lastJoined) {
+            this.name = name;
+            this.topic = topic;
+            this.topicTime = topicTime;
+            this.topicSetter = topicSetter;
+            this.modes = modes;
+            this.modeInfoLists = modeInfoLists;
+            this.lastJoined = lastJoined;
+        }
+
+        @Nonnull
+        String getName() {
+            return this.name;
+        }
+
+        @Nullable
+        String getTopic() {
+            return this.topic;
+        }
+
+        /**
+         * Gets the time the topic was set.
+         *
+         * @return milliseconds since the epoch, or -1 if unknown
+         */
+        long getTopicTime() {
+            return this.topicTime;
+        }
+
+        @Nullable
+        String getTopicSetter() {
+            return this.topicSetter;
+        }
+
+        /**
+         * Gets the channel modes, excluding list and prefix modes.
+         *
+         * @return parameter by mode character, null for no parameter
+         */
+        @Nonnull
+        Map<Character, String> getModes() {
+            return this.modes;
+        }
+
+        @Nonnull
+        Map<Character, List<ModeInfoState>> getModeInfoLists() {
+            return this.modeInfoLists;
+        }
+
+        /**
+         * Gets the last time the channel was joined, so that state for a
+         * channel never rejoined can be let go.
+         *
+         * @return milliseconds since the epoch
+         */
+        long getLastJoined() {
+            return this.lastJoined;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("name", this.name).add("modes", this.modes.size()).add("modeInfoLists", this.modeInfoLists.keySet()).toString();
+        }
+    }
+
+    /**
+     * State of one mode info list entry.
+     */
+    static final class ModeInfoState {
+        private final String mask;
+        @Nullable
+        private final String creator;
+        private final long creationTime;
+
+        ModeInfoState(@Nonnull String mask, @Nullable String creator, long creationTime) {
+            this.mask = mask;
+            this.creator = creator;
+            this.creationTime = creationTime;
+        }
+
+        @Nonnull
+        String getMask() {
+            return this.mask;
+        }
+
+        @Nullable
+        String getCreator() {
+            return this.creator;
+        }
+
+        /**
+         * Gets the time the entry was created.
+         *
+         * @return milliseconds since the epoch, or -1 if unknown
+         */
+        long getCreationTime() {
+            return this.creationTime;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("mask", this.mask).add("creator", this.creator).add("creationTime", this.creationTime).toString();
+        }
+    }
+
+    private static final int MAGIC = 0x4B435354; // KCST
+    private static final int VERSION = 2;
+    // Version 1 files lack the time each channel was last joined
+    private static final int VERSION_WITHOUT_JOIN_TIME = 1;
+
+    private ChannelStateStore() {
+    }
+
+    /**
+     * Reads channel state.
+     *
+     * @param file file to read
+     * @return channel states
+     * @throws IOException if the file cannot be read or is not a state file
+     */
+    @Nonnull
+    static List<ChannelState> read(@Nonnull Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a channel state file: " + file);
+            }
+            int version = input.readUnsignedByte();
+            if ((version != VERSION) && (version != VERSION_WITHOUT_JOIN_TIME)) {
+                throw new IOException("Not a channel state file: " + file);
+            }
+            long now = System.currentTimeMillis();
+            int channelCount = input.readInt();
+            List<ChannelState> channels = new ArrayList<>(channelCount);
+            for (int i = 0; i < channelCount; i++) {
+                String name = input.readUTF();
+                String topic = readNullable(input);
+                long topicTime = input.readLong();
+                String topicSetter = readNullable(input);
+                int modeCount = input.readUnsignedShort();
+                Map<Character, String> modes = new LinkedHashMap<>();
+                for (int j = 0; j < modeCount; j++) {
+                    modes.put(input.readChar(), readNullable(input));
+                }
+                int listCount = input.readUnsignedShort();
+                Map<Character, List<ModeInfoState>> lists = new LinkedHashMap<>();
+                for (int j = 0; j < listCount; j++) {
+                    char mode = input.readChar();
+                    int entryCount = input.readInt();
+                    List<ModeInfoState> entries = new ArrayList<>(entryCount);
+                    for (int k = 0; k < entryCount; k++) {
+                        entries.add(new ModeInfoState(input.readUTF(), readNullable(input), input.readLong()));
+                    }
+                    lists.put(mode, entries);
+                }
+                long lastJoined = (version == VERSION) ? input.readLong() : now;
+                channels.add(new ChannelState(name, topic, topicTime, topicSetter, modes, lists, lastJoined));
+            }
+            return channels;
+        }
+    }
+
+    /**
+     * Writes channel state, replacing the file only once fully written.
+     *
+     * @param file file to write
+     * @param channels channel states
+     * @throws IOException if the file cannot be written
+     */
+    static void write(@Nonnull Path file, @Nonnull Collection<ChannelState> channels) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeByte(VERSION);
+                output.writeInt(channels.size());
+                for (ChannelState channel : channels) {
+                    output.writeUTF(channel.name);
+                    writeNullable(output, channel.topic);
+                    output.writeLong(channel.topicTime);
+                    writeNullable(output, channel.topicSetter);
+                    output.writeShort(channel.modes.size());
+                    for (Map.Entry<Character, String> mode : channel.modes.entrySet()) {
+                        output.writeChar(mode.getKey());
+                        writeNullable(output, mode.getValue());
+                    }
+                    output.writeShort(channel.modeInfoLists.size());
+                    for (Map.Entry<Character, List<ModeInfoState>> list : channel.modeInfoLists.entrySet()) {
+                        output.writeChar(list.getKey());
+                        output.writeInt(list.getValue().size());
+                        for (ModeInfoState entry : list.getValue()) {
+                            output.writeUTF(entry.mask);
+                            writeNullable(output, entry.creator);
+                            output.writeLong(entry.creationTime);
+                        }
+                    }
+                    output.writeLong(channel.lastJoined);
+                }
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Nullable
+    private static String readNullable(@Nonnull DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeNullable(@Nonnull DataOutputStream output, @Nullable String string) throws IOException {
+        output.writeBoolean(string != null);
+        if (string != null) {
+            output.writeUTF(string);
+        }
+    }
+}
@@ -25,6 +25,10 @@ package org.kitteh.irc.client.library.implementation;
 
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.ClientGroup;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.kitteh.irc.client.library.feature.UserRegistry;
+import org.kitteh.irc.client.library.feature.capture.TrafficReplay;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageMap;
 import org.kitteh.irc.client.library.feature.sending.MessageSendingQueue;
 import org.kitteh.irc.client.library.feature.sts.STSStorageManager;
@@ -38,6 +42,8 @@ import javax.net.ssl.TrustManagerFactory;
 import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -77,6 +83,13 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder channelStateFile(@Nullable Path file) {
+        this.config.set(Config.CHANNEL_STATE_FILE, file);
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder defaultMessageMap(@Nonnull DefaultMessageMap defaultMessageMap) {
@@ -84,6 +97,15 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder eventHandlerWatchdog(long threshold, boolean isolate) {
+        Sanity.truthiness(threshold >= 0, "Threshold cannot be negative");
+        this.config.set(Config.HANDLER_WATCHDOG_THRESHOLD, threshold);
+        this.config.set(Config.HANDLER_WATCHDOG_ISOLATE, isolate);
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder listenException(@Nullable Consumer<Exception> listener) {
@@ -91,6 +113,15 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder listenException(@Nullable Consumer<List<Exception>> listener, int maxBatch, long maxWait) {
+        Sanity.truthiness(maxBatch > 0, "Batch size must be positive");
+        Sanity.truthiness(maxWait >= 0, "Wait cannot be negative");
+        this.config.set(Config.LISTENER_EXCEPTION, (listener == null) ? null : new Config.ExceptionConsumerWrapper(listener, maxBatch, maxWait));
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder listenInput(@Nullable Consumer<String> listener) {
@@ -98,6 +129,15 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder listenInput(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait) {
+        Sanity.truthiness(maxBatch > 0, "Batch size must be positive");
+        Sanity.truthiness(maxWait >= 0, "Wait cannot be negative");
+        this.config.set(Config.LISTENER_INPUT, (listener == null) ? null : new Config.StringConsumerWrapper(listener, maxBatch, maxWait));
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder listenOutput(@Nullable Consumer<String> listener) {
@@ -105,6 +145,15 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder listenOutput(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait) {
+        Sanity.truthiness(maxBatch > 0, "Batch size must be positive");
+        Sanity.truthiness(maxWait >= 0, "Wait cannot be negative");
+        this.config.set(Config.LISTENER_OUTPUT, (listener == null) ? null : new Config.StringConsumerWrapper(listener, maxBatch, maxWait));
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder messageSendingQueueSupplier(@Nonnull Function<Client, ? extends MessageSendingQueue> supplier) {
@@ -112,6 +161,13 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder metrics(@Nullable ClientMetrics metrics) {
+        this.config.set(Config.METRICS, (metrics == null) ? ClientMetrics.NONE : metrics);
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder name(@Nonnull String name) {
@@ -149,6 +205,14 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder replyTimeout(long milliseconds) {
+        Sanity.truthiness(milliseconds >= 0, "Timeout cannot be negative");
+        this.config.set(Config.REPLY_TIMEOUT, milliseconds);
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder secure(boolean ssl) {
@@ -207,6 +271,14 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder userRegistry(@Nullable UserRegistry registry) {
+        Sanity.truthiness((registry == null) || (registry instanceof SharedUserRegistry), "Registry must be created by UserRegistry.create()");
+        this.config.set(Config.USER_REGISTRY, registry);
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder webirc(@Nonnull String password, @Nonnull String user, @Nonnull String host, @Nonnull InetAddress ip) {
@@ -237,6 +309,14 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ClientBuilder whoisCacheLifetime(long milliseconds) {
+        Sanity.truthiness(milliseconds >= 0, "Lifetime cannot be negative");
+        this.config.set(Config.WHOIS_CACHE_LIFETIME, milliseconds);
+        return this;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder stsStorageManager(@Nullable STSStorageManager storageManager) {
@@ -276,6 +356,62 @@ final class ClientBuilder implements Client.Builder, Cloneable {
         return client;
     }
 
+    @Nonnull
+    @Override
+    public TrafficReplay buildReplay() {
+        return this.buildReplay(false);
+    }
+
+    /**
+     * Builds a replay, keeping the channel state file only if asked to.
+     * Left out by default, so replaying does not overwrite the state
+     * saved by a live client sharing this configuration.
+     *
+     * @param keepChannelState true to read and write the channel state
+     * file as a live client would
+     * @return a new replay
+     */
+    @Nonnull
+    TrafficReplay buildReplay(boolean keepChannelState) {
+        this.updateInetEntries();
+        Config config = this.config.clone();
+        if (!keepChannelState) {
+            config.set(Config.CHANNEL_STATE_FILE, null);
+        }
+        IRCClient client = new IRCClient(config);
+        if (this.after != null) {
+            this.after.accept(client);
+        }
+        return new CaptureReplay(client);
+    }
+
+    @Nonnull
+    @Override
+    public ClientGroup buildGroup(@Nonnull String nick, int connections) {
+        Sanity.safeMessageCheck(nick, "Nick");
+        Sanity.truthiness(!nick.contains(" "), "Nick cannot contain spaces");
+        Sanity.truthiness(connections > 0, "Connections must be positive");
+        return new IRCClientGroup(this, this.after, nick, connections);
+    }
+
+    /**
+     * Gets a copy of this builder for a client of a group, giving each
+     * client after the first its own channel state file, named with its
+     * index appended.
+     *
+     * @param index index of the client in the group
+     * @return a new builder
+     */
+    @Nonnull
+    ClientBuilder cloneForGroup(int index) {
+        ClientBuilder clientBuilder = this.clone();
+        Path channelStateFile = this.config.get(Config.CHANNEL_STATE_FILE);
+        if ((index > 0) && (channelStateFile != null)) {
+            clientBuilder.channelStateFile(channelStateFile.resolveSibling(channelStateFile.getFileName().toString() + '.' + index));
+        }
+        return clientBuilder;
+    }
+
     @Nonnull
     @Override
     public ClientBuilder clone() {
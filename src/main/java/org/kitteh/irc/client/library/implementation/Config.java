@@ -24,6 +24,8 @@
 package org.kitteh.irc.client.library.implementation;
 
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.kitteh.irc.client.library.feature.UserRegistry;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageMap;
 import org.kitteh.irc.client.library.feature.sending.SingleDelaySender;
 import org.kitteh.irc.client.library.feature.sts.STSStorageManager;
@@ -38,6 +40,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
@@ -98,14 +102,27 @@ final class Config {
 
     abstract static class Wrapper<Type> {
         private final Consumer<Type> consumer;
+        private final Consumer<List<Type>> batchConsumer;
+        private final int maxBatch;
+        private final long maxWait;
 
         Wrapper(@Nonnull Consumer<Type> consumer) {
             this.consumer = consumer;
+            this.batchConsumer = null;
+            this.maxBatch = 1;
+            this.maxWait = 0;
+        }
+
+        Wrapper(@Nonnull Consumer<List<Type>> batchConsumer, int maxBatch, long maxWait) {
+            this.consumer = null;
+            this.batchConsumer = batchConsumer;
+            this.maxBatch = maxBatch;
+            this.maxWait = maxWait;
         }
 
         @Nonnull
-        Consumer<Type> getConsumer() {
-            return this.consumer;
+        Listener<Type> createListener(@Nonnull String clientName) {
+            return (this.batchConsumer == null) ? new Listener<>(clientName, this.consumer) : new Listener<>(clientName, this.batchConsumer, this.maxBatch, this.maxWait);
         }
     }
 
@@ -114,6 +131,10 @@ final class Config {
             super(consumer);
         }
 
+        ExceptionConsumerWrapper(@Nonnull Consumer<List<Exception>> batchConsumer, int maxBatch, long maxWait) {
+            super(batchConsumer, maxBatch, maxWait);
+        }
+
         @Nonnull
         @Override
         public String toString() {
@@ -126,6 +147,10 @@ final class Config {
             super(consumer);
         }
 
+        StringConsumerWrapper(@Nonnull Consumer<List<String>> batchConsumer, int maxBatch, long maxWait) {
+            super(batchConsumer, maxBatch, maxWait);
+        }
+
         @Nonnull
         @Override
         public String toString() {
@@ -135,13 +160,18 @@ final class Config {
 
     static final Entry<String> NAME = new Entry<>("Unnamed", String.class);
     static final Entry<InetSocketAddress> BIND_ADDRESS = new Entry<>(null, InetSocketAddress.class);
+    static final Entry<Path> CHANNEL_STATE_FILE = new Entry<>(null, Path.class);
     static final Entry<DefaultMessageMap> DEFAULT_MESSAGE_MAP = new Entry<>(null, DefaultMessageMap.class);
+    static final Entry<Long> HANDLER_WATCHDOG_THRESHOLD = new Entry<>(0L, Long.class);
+    static final Entry<Boolean> HANDLER_WATCHDOG_ISOLATE = new Entry<>(false, Boolean.class);
     static final Entry<ExceptionConsumerWrapper> LISTENER_EXCEPTION = new Entry<>(new ExceptionConsumerWrapper(Throwable::printStackTrace), ExceptionConsumerWrapper.class);
     static final Entry<StringConsumerWrapper> LISTENER_INPUT = new Entry<>(null, StringConsumerWrapper.class);
     static final Entry<StringConsumerWrapper> LISTENER_OUTPUT = new Entry<>(null, StringConsumerWrapper.class);
+    static final Entry<ClientMetrics> METRICS = new Entry<>(ClientMetrics.NONE, ClientMetrics.class);
     static final Entry<Function> MESSAGE_DELAY = new Entry<>(SingleDelaySender.getSupplier(SingleDelaySender.DEFAULT_MESSAGE_DELAY), Function.class);
     static final Entry<String> NICK = new Entry<>("Kitteh", String.class);
     static final Entry<Boolean> QUERY_CHANNEL_INFO = new Entry<>(true, Boolean.class);
+    static final Entry<Long> REPLY_TIMEOUT = new Entry<>(30000L, Long.class);
     static final Entry<String> REAL_NAME = new Entry<>("KICL " + Version.getVersion() + " - kitteh.org", String.class);
     static final Entry<InetSocketAddress> SERVER_ADDRESS = new Entry<>(new InetSocketAddress("localhost", 6697), InetSocketAddress.class);
     static final Entry<String> SERVER_PASSWORD = new Entry<>(null, String.class, true);
@@ -151,7 +181,9 @@ final class Config {
     static final Entry<String> SSL_KEY_PASSWORD = new Entry<>(null, String.class, true);
     static final Entry<TrustManagerFactory> SSL_TRUST_MANAGER_FACTORY = new Entry<>(null, TrustManagerFactory.class);
     static final Entry<STSStorageManager> STS_STORAGE_MANAGER = new Entry<>(null, STSStorageManager.class);
+    static final Entry<Long> WHOIS_CACHE_LIFETIME = new Entry<>(60000L, Long.class);
     static final Entry<String> USER = new Entry<>("Kitteh", String.class);
+    static final Entry<UserRegistry> USER_REGISTRY = new Entry<>(null, UserRegistry.class);
     static final Entry<String> WEBIRC_HOST = new Entry<>(null, String.class);
     static final Entry<InetAddress> WEBIRC_IP = new Entry<>(null, InetAddress.class);
     static final Entry<String> WEBIRC_PASSWORD = new Entry<>(null, String.class, true);
@@ -26,8 +26,11 @@ package org.kitteh.irc.client.library.implementation;
 import net.engio.mbassy.listener.Handler;
 import net.engio.mbassy.listener.References;
 import org.kitteh.irc.client.library.command.CapabilityRequestCommand;
+import org.kitteh.irc.client.library.element.Actor;
 import org.kitteh.irc.client.library.element.CapabilityState;
 import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.ISupportParameter;
+import org.kitteh.irc.client.library.element.MessageTag;
 import org.kitteh.irc.client.library.element.Server;
 import org.kitteh.irc.client.library.element.ServerMessage;
 import org.kitteh.irc.client.library.element.User;
@@ -77,6 +80,8 @@ import org.kitteh.irc.client.library.event.user.MonitoredNickListEvent;
 import org.kitteh.irc.client.library.event.user.MonitoredNickListFullEvent;
 import org.kitteh.irc.client.library.event.user.MonitoredNickOfflineEvent;
 import org.kitteh.irc.client.library.event.user.MonitoredNickOnlineEvent;
+import org.kitteh.irc.client.library.event.user.NetjoinEvent;
+import org.kitteh.irc.client.library.event.user.NetsplitEvent;
 import org.kitteh.irc.client.library.event.user.PrivateCTCPQueryEvent;
 import org.kitteh.irc.client.library.event.user.PrivateCTCPReplyEvent;
 import org.kitteh.irc.client.library.event.user.PrivateMessageEvent;
@@ -89,28 +94,34 @@ import org.kitteh.irc.client.library.event.user.UserQuitEvent;
 import org.kitteh.irc.client.library.event.user.UserUserStringChangeEvent;
 import org.kitteh.irc.client.library.event.user.WallopsEvent;
 import org.kitteh.irc.client.library.event.user.WhoisEvent;
+import org.kitteh.irc.client.library.exception.KittehRequestRefusedException;
 import org.kitteh.irc.client.library.exception.KittehServerMessageException;
 import org.kitteh.irc.client.library.feature.CapabilityManager;
+import org.kitteh.irc.client.library.feature.ReplyManager;
 import org.kitteh.irc.client.library.feature.filter.CommandFilter;
 import org.kitteh.irc.client.library.feature.filter.NumericFilter;
 import org.kitteh.irc.client.library.util.StringUtil;
 import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.time.DateTimeException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 @net.engio.mbassy.listener.Listener(references = References.Strong)
-class EventListener {
+class EventListener implements Resettable {
     private final InternalClient client;
 
     EventListener(InternalClient client) {
@@ -158,8 +169,14 @@ class EventListener {
     @NumericFilter(5)
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void iSupport(ClientReceiveNumericEvent event) {
+        boolean monitor = false;
         for (int i = 1; i < event.getParameters().size(); i++) {
-            this.client.getServerInfo().addISupportParameter(this.client.getISupportManager().getParameter(event.getParameters().get(i)));
+            ISupportParameter parameter = this.client.getISupportManager().getParameter(event.getParameters().get(i));
+            this.client.getServerInfo().addISupportParameter(parameter);
+            monitor |= parameter instanceof ISupportParameter.Monitor;
+        }
+        if (monitor) {
+            this.client.getMonitorManager().sync();
         }
     }
 
@@ -192,13 +209,15 @@ class EventListener {
         this.fire(new ClientAwayStatusChangeEvent(this.client, event.getOriginalMessages(), event.getNumeric() == 306));
     }
 
-    private WhoisBuilder whoisBuilder;
+    @Nonnull
+    private String getKey(@Nonnull String target) {
+        return this.client.getServerInfo().getCaseMapping().toLowerCase(target);
+    }
+
+    private final Map<String, WhoisBuilder> whoisBuilders = new HashMap<>();
 
     private WhoisBuilder getWhoisBuilder(String nick) {
-        if ((this.whoisBuilder == null) || !this.client.getServerInfo().getCaseMapping().areEqualIgnoringCase(this.whoisBuilder.getNick(), nick)) {
-            this.whoisBuilder = new WhoisBuilder(this.client, nick);
-        }
-        return this.whoisBuilder;
+        return this.whoisBuilders.computeIfAbsent(this.getKey(nick), key -> new WhoisBuilder(this.client, nick));
     }
 
     @NumericFilter(301) // WHOISAWAY
@@ -318,33 +337,43 @@ class EventListener {
             this.trackException(event, "WHOIS END response of incorrect length");
             return;
         }
-        WhoisData whois = this.getWhoisBuilder(event.getParameters().get(1)).build();
+        String nick = event.getParameters().get(1);
+        WhoisBuilder whoisBuilder = this.whoisBuilders.remove(this.getKey(nick));
+        WhoisData whois = ((whoisBuilder == null) ? new WhoisBuilder(this.client, nick) : whoisBuilder).build();
         if (this.client.getServerInfo().getCaseMapping().areEqualIgnoringCase(whois.getNick(), this.client.getNick()) && (this.client.getActorProvider().getUser(whois.getNick()) == null)) {
             this.client.getActorProvider().trackUser((ActorProvider.IRCUser) this.client.getActorProvider().getActor(whois.getName()));
         }
         this.fire(new WhoisEvent(this.client, whois));
-        this.whoisBuilder = null;
+        this.client.getReplyManager().completeWhois(nick, whois);
     }
 
-    private final List<ServerMessage> whoMessages = new ArrayList<>();
+    private final Map<String, List<ServerMessage>> whoMessages = new HashMap<>();
 
     @NumericFilter(352) // WHO
     @NumericFilter(354) // WHOX
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void who(ClientReceiveNumericEvent event) {
-        if (event.getParameters().size() < ((event.getNumeric() == 352) ? 8 : 9)) {
-            this.trackException(event, "WHO response of incorrect length");
+        // WHOX replies start with the query token, if of a request for our fields
+        final int offset = (event.getNumeric() == 352) ? 0 : 1;
+        if (event.getParameters().size() < ((event.getNumeric() == 352) ? 8 : 10)) {
+            if (event.getNumeric() == 352) {
+                this.trackException(event, "WHO response of incorrect length");
+            }
             return;
         }
-        final ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
+        final String target = (offset == 0) ? event.getParameters().get(1) : this.client.getReplyManager().getWhoTarget(event.getParameters().get(1));
+        if (target == null) {
+            return; // Not a reply to a request for our fields
+        }
+        final ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(1 + offset));
         if (channel != null) {
-            final String ident = event.getParameters().get(2);
-            final String host = event.getParameters().get(3);
-            final String server = event.getParameters().get(4);
-            final String nick = event.getParameters().get(5);
+            final String ident = event.getParameters().get(2 + offset);
+            final String host = event.getParameters().get(3 + offset);
+            final String server = event.getParameters().get(4 + offset);
+            final String nick = event.getParameters().get(5 + offset);
             final ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.client.getActorProvider().getActor(nick + '!' + ident + '@' + host);
             user.setServer(server);
-            final String status = event.getParameters().get(6);
+            final String status = event.getParameters().get(6 + offset);
             String realName;
             switch (event.getNumeric()) {
                 case 352:
@@ -352,9 +381,9 @@ class EventListener {
                     break;
                 case 354:
                 default:
-                    String account = event.getParameters().get(7);
+                    String account = event.getParameters().get(8);
                     user.setAccount("0".equals(account) ? null : account);
-                    realName = event.getParameters().get(8);
+                    realName = event.getParameters().get(9);
                     break;
             }
             user.setRealName(realName);
@@ -372,7 +401,7 @@ class EventListener {
                 }
             }
             channel.trackUser(user, modes);
-            this.whoMessages.add(event.getServerMessage());
+            this.whoMessages.computeIfAbsent(this.getKey(target), key -> new ArrayList<>()).add(event.getServerMessage());
         } // No else, server might send other WHO information about non-channels.
     }
 
@@ -383,12 +412,19 @@ class EventListener {
             this.trackException(event, "WHO response of incorrect length");
             return;
         }
-        ActorProvider.IRCChannel whoChannel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
+        String target = event.getParameters().get(1);
+        this.client.getReplyManager().endWho(target);
+        List<ServerMessage> messages = this.whoMessages.remove(this.getKey(target));
+        ActorProvider.IRCChannel whoChannel = this.client.getActorProvider().getChannel(target);
         if (whoChannel != null) {
             whoChannel.setListReceived();
-            this.whoMessages.add(event.getServerMessage());
-            this.fire(new ChannelUsersUpdatedEvent(this.client, this.whoMessages, whoChannel.snapshot()));
-            this.whoMessages.clear();
+            if (messages == null) {
+                messages = new ArrayList<>();
+            }
+            messages.add(event.getServerMessage());
+            Channel snapshot = whoChannel.snapshot();
+            this.fire(new ChannelUsersUpdatedEvent(this.client, messages, snapshot));
+            this.client.getReplyManager().complete(ReplyManager.ReplyType.WHO, target, snapshot);
         } // No else, server might send other WHO information about non-channels.
     }
 
@@ -408,7 +444,9 @@ class EventListener {
                 this.trackException(event, e.getMessage());
                 return;
             }
+            channel.confirmModes();
             channel.updateChannelModes(statusList);
+            this.client.getReplyManager().complete(ReplyManager.ReplyType.CHANNEL_MODE, channel.getName(), channel.snapshot());
         } else {
             this.trackException(event, "Channel mode info message sent for invalid channel name");
         }
@@ -424,11 +462,27 @@ class EventListener {
         ActorProvider.IRCChannel topicChannel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
         if (topicChannel != null) {
             topicChannel.setTopic(event.getParameters().get(2));
+            this.client.getReplyManager().complete(ReplyManager.ReplyType.TOPIC, topicChannel.getName(), topicChannel.snapshot());
         } else {
             this.trackException(event, "Topic message sent for invalid channel name");
         }
     }
 
+    @NumericFilter(331) // No topic
+    @Handler(priority = Integer.MAX_VALUE - 1)
+    public void noTopic(ClientReceiveNumericEvent event) {
+        if (event.getParameters().size() < 2) {
+            this.trackException(event, "No topic message of incorrect length");
+            return;
+        }
+        ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
+        if (channel != null) {
+            this.client.getReplyManager().complete(ReplyManager.ReplyType.TOPIC, channel.getName(), channel.snapshot());
+        } else {
+            this.trackException(event, "No topic message sent for invalid channel name");
+        }
+    }
+
     @NumericFilter(333) // Topic info
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void topicInfo(ClientReceiveNumericEvent event) {
@@ -445,7 +499,7 @@ class EventListener {
         }
     }
 
-    private final List<ServerMessage> namesMessages = new ArrayList<>();
+    private final Map<String, List<ServerMessage>> namesMessages = new HashMap<>();
 
     @NumericFilter(353) // NAMES
     @Handler(priority = Integer.MAX_VALUE - 1)
@@ -470,7 +524,7 @@ class EventListener {
                     }
                 }
             }
-            this.namesMessages.add(event.getServerMessage());
+            this.namesMessages.computeIfAbsent(this.getKey(channel.getName()), key -> new ArrayList<>()).add(event.getServerMessage());
         } else {
             this.trackException(event, "NAMES response sent for invalid channel name");
         }
@@ -485,63 +539,68 @@ class EventListener {
         }
         ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
         if (channel != null) {
-            this.namesMessages.add(event.getServerMessage());
-            this.fire(new ChannelNamesUpdatedEvent(this.client, this.namesMessages, channel.snapshot()));
-            this.namesMessages.clear();
+            channel.confirmTopic(); // Topic, if any, comes before NAMES on joining
+            List<ServerMessage> messages = this.namesMessages.remove(this.getKey(channel.getName()));
+            if (messages == null) {
+                messages = new ArrayList<>();
+            }
+            messages.add(event.getServerMessage());
+            if (this.client.getCapabilityManager().providesMemberData()) {
+                channel.setListReceived();
+            }
+            Channel snapshot = channel.snapshot();
+            this.fire(new ChannelNamesUpdatedEvent(this.client, messages, snapshot));
+            this.client.getReplyManager().complete(ReplyManager.ReplyType.NAMES, channel.getName(), snapshot);
         } else {
             this.trackException(event, "NAMES response sent for invalid channel name");
         }
     }
 
-    private final List<ServerMessage> banMessages = new ArrayList<>();
-    private final List<ModeInfo> bans = new ArrayList<>();
-
-    private final List<ServerMessage> inviteMessages = new ArrayList<>();
-    private final List<ModeInfo> invites = new ArrayList<>();
-
-    private final List<ServerMessage> exceptMessages = new ArrayList<>();
-    private final List<ModeInfo> excepts = new ArrayList<>();
+    private static final class ModeInfoAccumulator {
+        private final List<ServerMessage> messages = new ArrayList<>();
+        private final List<ModeInfo> infos = new ArrayList<>();
+    }
 
-    private final List<ServerMessage> quietMessages = new ArrayList<>();
-    private final List<ModeInfo> quiets = new ArrayList<>();
+    private final Map<String, ModeInfoAccumulator> modeInfoLists = new HashMap<>();
 
     @NumericFilter(367) // BANLIST
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void banList(ClientReceiveNumericEvent event) {
-        this.modeInfoList(event, "BANLIST", 'b', this.banMessages, this.bans);
+        this.modeInfoList(event, "BANLIST", 'b');
     }
 
     @NumericFilter(346) // INVITELIST
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void inviteList(ClientReceiveNumericEvent event) {
-        this.modeInfoList(event, "INVITELIST", 'I', this.inviteMessages, this.invites);
+        this.modeInfoList(event, "INVITELIST", 'I');
     }
 
     @NumericFilter(348) // EXCEPTLIST
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void exceptList(ClientReceiveNumericEvent event) {
-        this.modeInfoList(event, "EXCEPTLIST", 'e', this.exceptMessages, this.excepts);
+        this.modeInfoList(event, "EXCEPTLIST", 'e');
     }
 
     @NumericFilter(344) // QUIETLIST
     @NumericFilter(728) // QUIETLIST
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void quietList(ClientReceiveNumericEvent event) {
-        this.modeInfoList(event, "QUIETLIST", 'q', this.quietMessages, this.quiets, (event.getNumeric() == 344) ? 0 : 1);
+        this.modeInfoList(event, "QUIETLIST", 'q', (event.getNumeric() == 344) ? 0 : 1);
     }
 
-    private void modeInfoList(@Nonnull ClientReceiveNumericEvent event, @Nonnull String name, char mode, @Nonnull List<ServerMessage> messageList, @Nonnull List<ModeInfo> infoList) {
-        this.modeInfoList(event, name, mode, messageList, infoList, 0);
+    private void modeInfoList(@Nonnull ClientReceiveNumericEvent event, @Nonnull String name, char mode) {
+        this.modeInfoList(event, name, mode, 0);
     }
 
-    private void modeInfoList(@Nonnull ClientReceiveNumericEvent event, @Nonnull String name, char mode, @Nonnull List<ServerMessage> messageList, @Nonnull List<ModeInfo> infoList, int offset) {
+    private void modeInfoList(@Nonnull ClientReceiveNumericEvent event, @Nonnull String name, char mode, int offset) {
         if (event.getParameters().size() < (3 + offset)) {
             this.trackException(event, name + " response of incorrect length");
             return;
         }
         ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
         if (channel != null) {
-            messageList.add(event.getServerMessage());
+            ModeInfoAccumulator accumulator = this.modeInfoLists.computeIfAbsent(mode + this.getKey(channel.getName()), key -> new ModeInfoAccumulator());
+            accumulator.messages.add(event.getServerMessage());
             String creator = (event.getParameters().size() > (3 + offset)) ? event.getParameters().get((3 + offset)) : null;
             Instant creationTime = null;
             if (event.getParameters().size() > (4 + offset)) {
@@ -552,7 +611,7 @@ class EventListener {
             }
             Optional<ChannelMode> channelMode = this.client.getServerInfo().getChannelMode(mode);
             if (channelMode.isPresent()) {
-                infoList.add(new ModeData.IRCModeInfo(this.client, channel.snapshot(), channelMode.get(), event.getParameters().get((2 + offset)), Optional.ofNullable(creator), Optional.ofNullable(creationTime)));
+                accumulator.infos.add(new ModeData.IRCModeInfo(this.client, channel.snapshot(), channelMode.get(), event.getParameters().get((2 + offset)), Optional.ofNullable(creator), Optional.ofNullable(creationTime)));
             } else {
                 this.trackException(event, name + " can't list if there's no '" + mode + "' mode");
             }
@@ -564,46 +623,49 @@ class EventListener {
     @NumericFilter(368) // End of ban list
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void banListEnd(ClientReceiveNumericEvent event) {
-        this.endModeInfoList(event, "BANLIST", 'b', this.banMessages, this.bans);
+        this.endModeInfoList(event, "BANLIST", 'b');
     }
 
     @NumericFilter(347) // End of invite list
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void inviteListEnd(ClientReceiveNumericEvent event) {
-        this.endModeInfoList(event, "INVITELIST", 'I', this.inviteMessages, this.invites);
+        this.endModeInfoList(event, "INVITELIST", 'I');
     }
 
     @NumericFilter(349) // End of except list
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void exceptListEnd(ClientReceiveNumericEvent event) {
-        this.endModeInfoList(event, "EXCEPTLIST", 'e', this.exceptMessages, this.excepts);
+        this.endModeInfoList(event, "EXCEPTLIST", 'e');
     }
 
     @NumericFilter(345) // End of quiet list
     @NumericFilter(729) // End of quiet list
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void quietListEnd(ClientReceiveNumericEvent event) {
-        this.endModeInfoList(event, "QUIETLIST", 'q', this.quietMessages, this.quiets);
+        this.endModeInfoList(event, "QUIETLIST", 'q');
     }
 
-    private void endModeInfoList(@Nonnull ClientReceiveNumericEvent event, @Nonnull String name, char mode, @Nonnull List<ServerMessage> messageList, @Nonnull List<ModeInfo> infoList) {
+    private void endModeInfoList(@Nonnull ClientReceiveNumericEvent event, @Nonnull String name, char mode) {
         if (event.getParameters().size() < 2) {
             this.trackException(event, name + " response of incorrect length");
             return;
         }
         ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(1));
         if (channel != null) {
-            messageList.add(event.getServerMessage());
+            ModeInfoAccumulator accumulator = this.modeInfoLists.remove(mode + this.getKey(channel.getName()));
+            if (accumulator == null) {
+                accumulator = new ModeInfoAccumulator();
+            }
+            accumulator.messages.add(event.getServerMessage());
             Optional<ChannelMode> channelMode = this.client.getServerInfo().getChannelMode(mode);
             if (channelMode.isPresent()) {
-                List<ModeInfo> modeInfos = new ArrayList<>(infoList);
-                this.fire(new ChannelModeInfoListEvent(this.client, messageList, channel.snapshot(), channelMode.get(), modeInfos));
+                List<ModeInfo> modeInfos = accumulator.infos;
+                this.fire(new ChannelModeInfoListEvent(this.client, accumulator.messages, channel.snapshot(), channelMode.get(), modeInfos));
                 channel.setModeInfoList(mode, modeInfos);
+                this.client.getReplyManager().complete(ReplyManager.ReplyType.modeInfoList(mode), channel.getName(), Collections.unmodifiableList(new ArrayList<>(modeInfos)));
             } else {
                 this.trackException(event, name + " can't list if there's no '" + mode + "' mode");
             }
-            infoList.clear();
-            messageList.clear();
         } else {
             this.trackException(event, name + " response sent for invalid channel name");
         }
@@ -673,6 +735,12 @@ class EventListener {
             return;
         }
         List<ServerMessage> originalMessages = event.getOriginalMessages();
+        List<String> nicks = new ArrayList<>();
+        for (String target : event.getParameters().get(1).split(",")) {
+            int bang = target.indexOf('!');
+            nicks.add((bang == -1) ? target : target.substring(0, bang));
+        }
+        this.client.getMonitorManager().setStatus(nicks, event.getNumeric() == 730);
         for (String nick : event.getParameters().get(1).split(",")) {
             MonitoredNickStatusEvent monitorEvent;
             if (event.getNumeric() == 730) {
@@ -720,7 +788,61 @@ class EventListener {
             this.trackException(event, "MONITOR list full message using non-int limit");
             return;
         }
-        this.fire(new MonitoredNickListFullEvent(this.client, event.getOriginalMessages(), limit, Arrays.stream(event.getParameters().get(2).split(",")).collect(Collectors.toList())));
+        List<String> nicks = Arrays.stream(event.getParameters().get(2).split(",")).collect(Collectors.toList());
+        this.client.getMonitorManager().setFull(limit, nicks);
+        this.fire(new MonitoredNickListFullEvent(this.client, event.getOriginalMessages(), limit, nicks));
+    }
+
+    @NumericFilter(401) // No such nick
+    @NumericFilter(402) // No such server
+    @NumericFilter(403) // No such channel
+    @NumericFilter(405) // Too many channels
+    @NumericFilter(437) // Temporarily unavailable
+    @NumericFilter(441) // User not in channel
+    @NumericFilter(442) // Not on channel
+    @NumericFilter(470) // Forwarded
+    @NumericFilter(471) // Channel full
+    @NumericFilter(473) // Invite only
+    @NumericFilter(474) // Banned
+    @NumericFilter(475) // Bad key
+    @NumericFilter(477) // Registration required
+    @NumericFilter(482) // Not channel operator
+    @Handler(priority = Integer.MAX_VALUE - 1)
+    public void requestRefused(ClientReceiveNumericEvent event) {
+        int numeric = event.getNumeric();
+        int targetIndex = (numeric == 441) ? 2 : 1;
+        if (event.getParameters().size() <= targetIndex) {
+            this.trackException(event, "Error message of incorrect length");
+            return;
+        }
+        String target = event.getParameters().get(targetIndex);
+        ManagerReply replies = this.client.getReplyManager();
+        KittehRequestRefusedException exception = new KittehRequestRefusedException(event.getServerMessage(), numeric, event.getParameters().get(event.getParameters().size() - 1));
+        switch (numeric) {
+            case 401:
+            case 402:
+                if (numeric == 401) {
+                    replies.invalidateWhois(target);
+                }
+                replies.fail(ReplyManager.ReplyType.WHOIS, target, exception);
+                break;
+            case 441:
+                replies.fail(ReplyManager.ReplyType.KICK, target, exception);
+                break;
+            case 403:
+            case 442:
+            case 482:
+                // The request refused is not named, so fail all that could be
+                replies.failAll(ReplyManager.ReplyType.TOPIC, target, exception);
+                replies.failAll(ReplyManager.ReplyType.CHANNEL_MODE, target, exception);
+                replies.failAll(ReplyManager.ReplyType.KICK, target, exception);
+                if (numeric == 403) {
+                    replies.fail(ReplyManager.ReplyType.JOIN, target, exception);
+                }
+                break;
+            default:
+                replies.fail(ReplyManager.ReplyType.JOIN, target, exception);
+        }
     }
 
     private final List<CapabilityState> capList = new ArrayList<>();
@@ -847,6 +969,7 @@ class EventListener {
         }
 
         User user = (User) event.getActor();
+        this.client.getReplyManager().invalidateWhois(user.getNick());
         ActorProvider.IRCUser ircUser = this.client.getActorProvider().getUser(user.getNick());
 
         if (ircUser == null) {
@@ -878,12 +1001,14 @@ class EventListener {
             return;
         }
         String account = event.getParameters().get(0);
+        this.client.getReplyManager().invalidateWhois(((User) event.getActor()).getNick());
         this.client.getActorProvider().setUserAccount(((User) event.getActor()).getNick(), "*".equals(account) ? null : account);
     }
 
     @CommandFilter("AWAY")
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void away(ClientReceiveCommandEvent event) {
+        this.client.getReplyManager().invalidateWhois(((User) event.getActor()).getNick());
         this.client.getActorProvider().setUserAway(((User) event.getActor()).getNick(), !event.getParameters().isEmpty());
     }
 
@@ -1027,11 +1152,155 @@ class EventListener {
             this.fire(new ChannelModeEvent(this.client, event.getOriginalMessages(), event.getActor(), channelSnapshot, statusList));
             statusList.getStatuses().stream().filter(status -> status.getMode().getType() == ChannelMode.Type.A_MASK).forEach(status -> channel.trackModeInfo(status.isSetting(), new ModeData.IRCModeInfo(this.client, channelSnapshot, status.getMode(), status.getParameter().get(), Optional.of(event.getActor().getName()), Optional.of(Instant.now()))));
             channel.updateChannelModes(statusList);
+            if (this.isSelf(event.getActor())) {
+                this.client.getReplyManager().complete(ReplyManager.ReplyType.CHANNEL_MODE, channel.getName(), channel.snapshot());
+            }
         } else {
             this.trackException(event, "MODE message sent for invalid target");
         }
     }
 
+    private static final class NetBatch {
+        private final boolean split;
+        private final List<String> servers;
+        private final List<ServerMessage> messages = new ArrayList<>();
+        private final List<ClientReceiveCommandEvent> events = new ArrayList<>();
+
+        private NetBatch(boolean split, @Nonnull List<String> servers, @Nullable ServerMessage start) {
+            this.split = split;
+            this.servers = servers;
+            if (start != null) {
+                this.messages.add(start);
+            }
+        }
+
+        private void add(@Nonnull ClientReceiveCommandEvent event) {
+            this.events.add(event);
+            this.messages.add(event.getServerMessage());
+        }
+    }
+
+    private final Map<String, NetBatch> batches = new HashMap<>();
+    private NetBatch heuristicSplit;
+    private String heuristicSplitReason;
+
+    @CommandFilter("BATCH")
+    @Handler(priority = Integer.MAX_VALUE - 1)
+    public void batch(ClientReceiveCommandEvent event) {
+        if ((event.getParameters().size() < 1) || (event.getParameters().get(0).length() < 2)) {
+            this.trackException(event, "BATCH message of incorrect length");
+            return;
+        }
+        String reference = event.getParameters().get(0).substring(1);
+        switch (event.getParameters().get(0).charAt(0)) {
+            case '+':
+                if (event.getParameters().size() < 2) {
+                    this.trackException(event, "BATCH message of incorrect length");
+                    return;
+                }
+                String type = event.getParameters().get(1);
+                if ("netsplit".equalsIgnoreCase(type) || "netjoin".equalsIgnoreCase(type)) {
+                    this.batches.put(reference, new NetBatch("netsplit".equalsIgnoreCase(type), new ArrayList<>(event.getParameters().subList(2, event.getParameters().size())), event.getServerMessage()));
+                }
+                break;
+            case '-':
+                NetBatch batch = this.batches.remove(reference);
+                if (batch != null) {
+                    batch.messages.add(event.getServerMessage());
+                    this.applyBatch(batch);
+                }
+                break;
+            default:
+                this.trackException(event, "BATCH message with invalid reference");
+        }
+    }
+
+    @Nullable
+    private NetBatch getBatch(@Nonnull ClientReceiveCommandEvent event, boolean split) {
+        for (MessageTag tag : event.getServerMessage().getTags()) {
+            if ("batch".equals(tag.getName()) && tag.getValue().isPresent()) {
+                NetBatch batch = this.batches.get(tag.getValue().get());
+                return ((batch != null) && (batch.split == split)) ? batch : null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSplitReason(@Nonnull String reason) {
+        int space = reason.indexOf(' ');
+        return (space > 0) && (reason.indexOf(' ', space + 1) < 0) && ActorProvider.isServerName(reason.substring(0, space)) && ActorProvider.isServerName(reason.substring(space + 1));
+    }
+
+    /**
+     * Applies the netsplit recognized by quit message, if any. Called when
+     * a message other than another quit of the split is processed, or when
+     * there are no further messages to process.
+     */
+    void flushHeuristicSplit() {
+        NetBatch batch = this.heuristicSplit;
+        if (batch != null) {
+            this.heuristicSplit = null;
+            this.heuristicSplitReason = null;
+            this.applyBatch(batch);
+        }
+    }
+
+    private void applyBatch(@Nonnull NetBatch batch) {
+        ActorProvider actorProvider = this.client.getActorProvider();
+        if (batch.split) {
+            List<User> users = new ArrayList<>(batch.events.size());
+            List<String> nicks = new ArrayList<>(batch.events.size());
+            for (ClientReceiveCommandEvent event : batch.events) {
+                User user = (User) event.getActor();
+                users.add(user);
+                nicks.add(user.getNick());
+                this.fire(new UserQuitEvent(this.client, event.getOriginalMessages(), user, event.getParameters().isEmpty() ? "" : event.getParameters().get(0)));
+            }
+            this.fire(new NetsplitEvent(this.client, batch.messages, users, batch.servers));
+            actorProvider.trackUserQuits(nicks);
+        } else {
+            Map<ActorProvider.IRCChannel, List<ActorProvider.IRCUser>> joins = new LinkedHashMap<>();
+            Map<String, ActorProvider.IRCUser> users = new LinkedHashMap<>();
+            List<ClientReceiveCommandEvent> tracked = new ArrayList<>(batch.events.size());
+            for (ClientReceiveCommandEvent event : batch.events) {
+                ActorProvider.IRCChannel channel = actorProvider.getTrackedChannel(event.getParameters().get(0));
+                if (channel == null) { // Not a channel we're in
+                    continue;
+                }
+                tracked.add(event);
+                ActorProvider.IRCUser user = (ActorProvider.IRCUser) actorProvider.getActor(event.getActor().getName());
+                if (event.getParameters().size() > 2) {
+                    if (!"*".equals(event.getParameters().get(1))) {
+                        user.setAccount(event.getParameters().get(1));
+                    }
+                    user.setRealName(event.getParameters().get(2));
+                }
+                users.putIfAbsent(user.getName(), user);
+                joins.computeIfAbsent(channel, key -> new ArrayList<>()).add(user);
+            }
+            joins.forEach(ActorProvider.IRCChannel::trackUsers);
+            for (ClientReceiveCommandEvent event : tracked) {
+                this.fire(new ChannelJoinEvent(this.client, event.getOriginalMessages(), actorProvider.getTrackedChannel(event.getParameters().get(0)).snapshot(), users.get(event.getActor().getName()).snapshot()));
+            }
+            if (joins.isEmpty()) {
+                return;
+            }
+            this.fire(new NetjoinEvent(this.client, batch.messages, users.values().stream().map(ActorProvider.IRCUser::snapshot).collect(Collectors.toList()),
+                    joins.keySet().stream().map(ActorProvider.IRCChannel::snapshot).collect(Collectors.toList()), batch.servers));
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.whoisBuilders.clear();
+        this.whoMessages.clear();
+        this.namesMessages.clear();
+        this.modeInfoLists.clear();
+        this.batches.clear();
+        this.heuristicSplit = null;
+        this.heuristicSplitReason = null;
+    }
+
     @CommandFilter("JOIN")
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void join(ClientReceiveCommandEvent event) {
@@ -1042,14 +1311,24 @@ class EventListener {
         ActorProvider.IRCChannel channel = this.client.getActorProvider().getChannel(event.getParameters().get(0));
         if (channel != null) {
             if (event.getActor() instanceof User) {
+                NetBatch batch = this.getBatch(event, false);
+                if ((batch != null) && !((User) event.getActor()).getNick().equals(this.client.getNick())) {
+                    batch.add(event);
+                    return;
+                }
                 ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.client.getActorProvider().getActor(event.getActor().getName());
                 channel.trackUser(user, new HashSet<>());
                 ChannelJoinEvent joinEvent = null;
                 if (user.getNick().equals(this.client.getNick())) {
                     this.client.getActorProvider().trackChannel(channel);
                     if (this.client.getConfig().getNotNull(Config.QUERY_CHANNEL_INFO)) {
-                        this.client.sendRawLine("MODE " + channel.getName());
-                        this.client.sendRawLine("WHO " + channel.getName() + (this.client.getServerInfo().hasWhoXSupport() ? " %cuhsnfar" : ""));
+                        if (!channel.isProvisional()) { // Restored modes are confirmed later
+                            this.client.getReplyManager().expect(ReplyManager.ReplyType.CHANNEL_MODE, channel.getName());
+                            this.client.sendRawLine("MODE " + channel.getName());
+                        }
+                        if (!this.client.getCapabilityManager().providesMemberData()) { // Else complete upon NAMES
+                            this.client.sendRawLine(this.client.getReplyManager().getWhoLine(channel.getName()));
+                        }
                     }
                     if (this.client.getIntendedChannels().contains(channel.getName())) {
                         joinEvent = new RequestedChannelJoinCompleteEvent(this.client, event.getOriginalMessages(), channel.snapshot(), user.snapshot());
@@ -1065,6 +1344,9 @@ class EventListener {
                     joinEvent = new ChannelJoinEvent(this.client, event.getOriginalMessages(), channel.snapshot(), user.snapshot());
                 }
                 this.fire(joinEvent);
+                if (user.getNick().equals(this.client.getNick())) {
+                    this.client.getReplyManager().complete(ReplyManager.ReplyType.JOIN, channel.getName(), joinEvent.getChannel());
+                }
             } else {
                 this.trackException(event, "JOIN message sent for non-user");
             }
@@ -1109,7 +1391,22 @@ class EventListener {
     @Handler(priority = Integer.MAX_VALUE - 1)
     public void quit(ClientReceiveCommandEvent event) {
         if (event.getActor() instanceof User) {
-            this.fire(new UserQuitEvent(this.client, event.getOriginalMessages(), (User) event.getActor(), (event.getParameters().isEmpty()) ? "" : event.getParameters().get(0)));
+            this.client.getReplyManager().invalidateWhois(((User) event.getActor()).getNick());
+            String reason = (event.getParameters().isEmpty()) ? "" : event.getParameters().get(0);
+            NetBatch batch = this.getBatch(event, true);
+            if ((batch == null) && isSplitReason(reason)) {
+                if (!reason.equals(this.heuristicSplitReason)) {
+                    this.flushHeuristicSplit();
+                    this.heuristicSplit = new NetBatch(true, Arrays.asList(reason.split(" ")), null);
+                    this.heuristicSplitReason = reason;
+                }
+                batch = this.heuristicSplit;
+            }
+            if (batch != null) {
+                batch.add(event);
+                return;
+            }
+            this.fire(new UserQuitEvent(this.client, event.getOriginalMessages(), (User) event.getActor(), reason));
             this.client.getActorProvider().trackUserQuit(((User) event.getActor()).getNick());
         } else {
             this.trackException(event, "QUIT message sent for non-user");
@@ -1140,6 +1437,9 @@ class EventListener {
                 if (isSelf) {
                     this.client.getActorProvider().unTrackChannel(channel);
                 }
+                if (this.isSelf(event.getActor())) {
+                    this.client.getReplyManager().complete(ReplyManager.ReplyType.KICK, channel.getName(), channel.snapshot());
+                }
             } else {
                 this.trackException(event, "KICK message sent for non-user");
             }
@@ -1156,6 +1456,8 @@ class EventListener {
             return;
         }
         if (event.getActor() instanceof User) {
+            this.client.getReplyManager().invalidateWhois(((User) event.getActor()).getNick());
+            this.client.getReplyManager().invalidateWhois(event.getParameters().get(0));
             boolean isSelf = ((User) event.getActor()).getNick().equals(this.client.getNick());
             ActorProvider.IRCUser user = this.client.getActorProvider().getUser(((User) event.getActor()).getNick());
             if (user == null) {
@@ -1208,6 +1510,9 @@ class EventListener {
             channel.setTopic(event.getParameters().get(1));
             channel.setTopic(System.currentTimeMillis(), event.getActor());
             this.fire(new ChannelTopicEvent(this.client, event.getOriginalMessages(), channel.snapshot(), true));
+            if (this.isSelf(event.getActor())) {
+                this.client.getReplyManager().complete(ReplyManager.ReplyType.TOPIC, channel.getName(), channel.snapshot());
+            }
         } else {
             this.trackException(event, "TOPIC message sent for invalid channel name");
         }
@@ -1305,6 +1610,10 @@ class EventListener {
         return MessageTargetInfo.Private.INSTANCE;
     }
 
+    private boolean isSelf(@Nonnull Actor actor) {
+        return (actor instanceof User) && this.client.getServerInfo().getCaseMapping().areEqualIgnoringCase(((User) actor).getNick(), this.client.getNick());
+    }
+
     private void trackException(ClientReceiveServerMessageEvent event, String reason) {
         this.client.getExceptionListener().queue(new KittehServerMessageException(event.getServerMessage(), reason));
     }
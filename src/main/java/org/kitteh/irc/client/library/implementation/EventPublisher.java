@@ -0,0 +1,225 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.exception.KittehEventException;
+import org.kitteh.irc.client.library.feature.EventManager;
+import org.kitteh.irc.client.library.util.Flow;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes events of one type to subscribers, each with a bounded buffer
+ * drained as the subscriber requests events.
+ *
+ * @param <T> type of events
+ */
+final class EventPublisher<T> implements Flow.Publisher<T> {
+    final class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Deque<T> buffer = new ArrayDeque<>();
+        // Counts requests to drain, so that only one drain runs at a time
+        private final AtomicInteger work = new AtomicInteger();
+        private long demand;
+        private boolean cancelled;
+        private boolean completing;
+        private boolean done;
+        private Throwable failure;
+
+        private EventSubscription(@Nonnull Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Buffers an event, if of the published type.
+         *
+         * @param event event
+         */
+        void offer(@Nonnull Object event) {
+            if (!EventPublisher.this.eventType.isInstance(event)) {
+                return;
+            }
+            synchronized (this) {
+                if (this.cancelled || this.completing || (this.failure != null)) {
+                    return;
+                }
+                if (this.buffer.size() >= EventPublisher.this.bufferSize) {
+                    switch (EventPublisher.this.strategy) {
+                        case BLOCK:
+                            while (!this.cancelled && !this.completing && (this.buffer.size() >= EventPublisher.this.bufferSize)) {
+                                try {
+                                    this.wait();
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    return;
+                                }
+                            }
+                            if (this.cancelled || this.completing) {
+                                return;
+                            }
+                            break;
+                        case DROP_NEWEST:
+                            return;
+                        case DROP_OLDEST:
+                            this.buffer.poll();
+                            break;
+                        case ERROR:
+                            this.fail(new IllegalStateException("Buffer of " + EventPublisher.this.bufferSize + " events overflowed"));
+                            this.schedule();
+                            return;
+                    }
+                }
+                this.buffer.add(EventPublisher.this.eventType.cast(event));
+            }
+            this.schedule();
+        }
+
+        /**
+         * Completes the subscription once buffered events are delivered.
+         */
+        void complete() {
+            synchronized (this) {
+                this.completing = true;
+                this.notifyAll();
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    if (!this.cancelled && (this.failure == null)) {
+                        this.fail(new IllegalArgumentException("Requested " + n + " events, must be positive"));
+                    }
+                } else {
+                    this.demand = ((this.demand + n) < 0) ? Long.MAX_VALUE : (this.demand + n);
+                }
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                this.cancelled = true;
+                this.buffer.clear();
+                this.notifyAll();
+            }
+            EventPublisher.this.manager.unsubscribe(this);
+        }
+
+        private void fail(@Nonnull Throwable throwable) {
+            this.failure = throwable;
+            this.buffer.clear();
+            this.notifyAll();
+            EventPublisher.this.manager.unsubscribe(this);
+        }
+
+        private void schedule() {
+            if (this.work.getAndIncrement() == 0) {
+                EventPublisher.this.manager.getSubscriberExecutor().execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                while (true) {
+                    T event = null;
+                    Throwable error = null;
+                    synchronized (this) {
+                        if (this.done || this.cancelled) {
+                            break;
+                        }
+                        if (this.failure != null) {
+                            this.done = true;
+                            error = this.failure;
+                        } else if (!this.buffer.isEmpty() && (this.demand > 0)) {
+                            event = this.buffer.poll();
+                            if (this.demand != Long.MAX_VALUE) {
+                                this.demand--;
+                            }
+                            this.notifyAll(); // Room for blocked dispatch
+                        } else if (this.buffer.isEmpty() && this.completing) {
+                            this.done = true;
+                        } else {
+                            break;
+                        }
+                    }
+                    if (error != null) {
+                        this.subscriber.onError(error);
+                    } else if (event == null) {
+                        this.subscriber.onComplete();
+                    } else {
+                        try {
+                            this.subscriber.onNext(event);
+                        } catch (Throwable thrown) {
+                            this.cancel();
+                            EventPublisher.this.manager.reportException(new KittehEventException(thrown));
+                        }
+                    }
+                }
+                missed = this.work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @Nonnull
+        @Override
+        public synchronized String toString() {
+            return new ToStringer(this).add("subscriber", this.subscriber).add("buffered", this.buffer.size()).add("demand", this.demand).add("cancelled", this.cancelled).toString();
+        }
+    }
+
+    private final ManagerEvent manager;
+    private final Class<T> eventType;
+    private final int bufferSize;
+    private final EventManager.OverflowStrategy strategy;
+
+    EventPublisher(@Nonnull ManagerEvent manager, @Nonnull Class<T> eventType, int bufferSize, @Nonnull EventManager.OverflowStrategy strategy) {
+        this.manager = manager;
+        this.eventType = eventType;
+        this.bufferSize = bufferSize;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public void subscribe(@Nonnull Flow.Subscriber<? super T> subscriber) {
+        Sanity.nullCheck(subscriber, "Subscriber cannot be null");
+        EventSubscription subscription = new EventSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        this.manager.subscribe(subscription);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("eventType", this.eventType).add("bufferSize", this.bufferSize).add("strategy", this.strategy).toString();
+    }
+}
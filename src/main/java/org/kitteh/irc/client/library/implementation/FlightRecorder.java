@@ -0,0 +1,64 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Checks for Java Flight Recorder support, kept apart from {@link
+ * FlightRecorderMetrics} so that runtimes without the jdk.jfr API never
+ * load it.
+ */
+final class FlightRecorder {
+    private static final boolean SUPPORTED;
+
+    static {
+        boolean supported;
+        try {
+            Class.forName("jdk.jfr.Event");
+            supported = true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            supported = false;
+        }
+        SUPPORTED = supported;
+    }
+
+    private FlightRecorder() {
+    }
+
+    /**
+     * Wraps a metrics receiver to also record Flight Recorder events, if
+     * supported by the runtime.
+     *
+     * @param metrics metrics receiver
+     * @return receiver recording events, or the given receiver if
+     * unsupported
+     */
+    @Nonnull
+    static ClientMetrics wrap(@Nonnull ClientMetrics metrics) {
+        return SUPPORTED ? new FlightRecorderMetrics(metrics) : metrics;
+    }
+}
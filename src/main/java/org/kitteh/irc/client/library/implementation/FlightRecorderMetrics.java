@@ -0,0 +1,292 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.kitteh.irc.client.library.feature.EventManager;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+
+/**
+ * Records Java Flight Recorder events for each stage of a line's life,
+ * passing all measurements on to another metrics receiver.
+ * <p>
+ * Events are only allocated when their type is enabled in a running
+ * recording, so nothing is allocated per line while no recording is
+ * interested. Measurements arrive after the fact, so each event carries
+ * them as an elapsed field rather than a recorded duration. Only create
+ * via {@link FlightRecorder#wrap(ClientMetrics)}.
+ */
+final class FlightRecorderMetrics implements ClientMetrics {
+    private static final String CATEGORY = "Kitteh IRC Client Library";
+
+    @Name("org.kitteh.irc.LineReceived")
+    @Label("Line Received")
+    @Category(CATEGORY)
+    static final class LineReceived extends Event {
+        @Label("Client")
+        String client;
+        @Label("Size")
+        @DataAmount
+        int bytes;
+    }
+
+    @Name("org.kitteh.irc.LineParsed")
+    @Label("Line Parsed")
+    @Category(CATEGORY)
+    static final class LineParsed extends Event {
+        @Label("Client")
+        String client;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("org.kitteh.irc.EventDispatched")
+    @Label("Event Dispatched")
+    @Category(CATEGORY)
+    static final class EventDispatched extends Event {
+        @Label("Client")
+        String client;
+        @Label("Event Type")
+        Class<?> eventType;
+        @Label("Handlers")
+        int handlers;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("org.kitteh.irc.SlowHandler")
+    @Label("Slow Handler")
+    @Category(CATEGORY)
+    static final class SlowHandler extends Event {
+        @Label("Client")
+        String client;
+        @Label("Handler")
+        String handler;
+        @Label("Event Type")
+        Class<?> eventType;
+        @Label("Elapsed")
+        @Timespan(Timespan.MILLISECONDS)
+        long elapsed;
+    }
+
+    @Name("org.kitteh.irc.SnapshotBuilt")
+    @Label("Snapshot Built")
+    @Category(CATEGORY)
+    static final class SnapshotBuilt extends Event {
+        @Label("Client")
+        String client;
+        @Label("Snapshot Type")
+        Class<?> snapshotType;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("org.kitteh.irc.MessageQueued")
+    @Label("Message Queued")
+    @Category(CATEGORY)
+    static final class MessageQueued extends Event {
+        @Label("Client")
+        String client;
+        @Label("Queue")
+        String queue;
+        @Label("Queue Depth")
+        int depth;
+    }
+
+    @Name("org.kitteh.irc.MessageDelayed")
+    @Label("Message Delayed")
+    @Category(CATEGORY)
+    static final class MessageDelayed extends Event {
+        @Label("Client")
+        String client;
+        @Label("Elapsed")
+        @Timespan(Timespan.MILLISECONDS)
+        long elapsed;
+    }
+
+    @Name("org.kitteh.irc.MessageWritten")
+    @Label("Message Written")
+    @Category(CATEGORY)
+    static final class MessageWritten extends Event {
+        @Label("Client")
+        String client;
+        @Label("Size")
+        @DataAmount
+        int bytes;
+    }
+
+    @Name("org.kitteh.irc.Reconnect")
+    @Label("Reconnect")
+    @Category(CATEGORY)
+    static final class Reconnect extends Event {
+        @Label("Client")
+        String client;
+    }
+
+    private static final EventType LINE_RECEIVED = EventType.getEventType(LineReceived.class);
+    private static final EventType MESSAGE_WRITTEN = EventType.getEventType(MessageWritten.class);
+    private static final EventType MESSAGE_QUEUED = EventType.getEventType(MessageQueued.class);
+    private static final EventType LINE_PARSED = EventType.getEventType(LineParsed.class);
+    private static final EventType EVENT_DISPATCHED = EventType.getEventType(EventDispatched.class);
+    private static final EventType SLOW_HANDLER = EventType.getEventType(SlowHandler.class);
+    private static final EventType SNAPSHOT_BUILT = EventType.getEventType(SnapshotBuilt.class);
+    private static final EventType RECONNECT = EventType.getEventType(Reconnect.class);
+    private static final EventType MESSAGE_DELAYED = EventType.getEventType(MessageDelayed.class);
+
+    private final ClientMetrics metrics;
+
+    FlightRecorderMetrics(@Nonnull ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void lineReceived(@Nonnull Client client, int bytes) {
+        if (LINE_RECEIVED.isEnabled()) {
+            LineReceived event = new LineReceived();
+            event.client = client.getName();
+            event.bytes = bytes;
+            event.commit();
+        }
+        this.metrics.lineReceived(client, bytes);
+    }
+
+    @Override
+    public void lineSent(@Nonnull Client client, int bytes) {
+        if (MESSAGE_WRITTEN.isEnabled()) {
+            MessageWritten event = new MessageWritten();
+            event.client = client.getName();
+            event.bytes = bytes;
+            event.commit();
+        }
+        this.metrics.lineSent(client, bytes);
+    }
+
+    @Override
+    public void inputQueueDepth(@Nonnull Client client, int depth) {
+        this.metrics.inputQueueDepth(client, depth);
+    }
+
+    @Override
+    public void sendQueueDepth(@Nonnull Client client, @Nonnull String queue, int depth) {
+        if (MESSAGE_QUEUED.isEnabled()) {
+            MessageQueued event = new MessageQueued();
+            event.client = client.getName();
+            event.queue = queue;
+            event.depth = depth;
+            event.commit();
+        }
+        this.metrics.sendQueueDepth(client, queue, depth);
+    }
+
+    @Override
+    public void lineParsed(@Nonnull Client client, long nanos) {
+        if (LINE_PARSED.isEnabled()) {
+            LineParsed event = new LineParsed();
+            event.client = client.getName();
+            event.elapsed = nanos;
+            event.commit();
+        }
+        this.metrics.lineParsed(client, nanos);
+    }
+
+    @Override
+    public void eventDispatched(@Nonnull Client client, @Nonnull Class<?> eventType, long nanos) {
+        if (EVENT_DISPATCHED.isEnabled()) {
+            EventDispatched event = new EventDispatched();
+            EventManager eventManager = client.getEventManager();
+            event.client = client.getName();
+            event.eventType = eventType;
+            event.handlers = (eventManager instanceof ManagerEvent) ? ((ManagerEvent) eventManager).getHandlerCount(eventType) : -1;
+            event.elapsed = nanos;
+            event.commit();
+        }
+        this.metrics.eventDispatched(client, eventType, nanos);
+    }
+
+    @Override
+    public void slowHandler(@Nonnull Client client, @Nonnull Method handler, @Nonnull Class<?> eventType, long millis, @Nonnull StackTraceElement[] stack) {
+        if (SLOW_HANDLER.isEnabled()) {
+            SlowHandler event = new SlowHandler();
+            event.client = client.getName();
+            event.handler = handler.getDeclaringClass().getName() + '#' + handler.getName();
+            event.eventType = eventType;
+            event.elapsed = millis;
+            event.commit();
+        }
+        this.metrics.slowHandler(client, handler, eventType, millis, stack);
+    }
+
+    @Override
+    public void snapshotBuilt(@Nonnull Client client, @Nonnull Class<?> snapshotType, long nanos) {
+        if (SNAPSHOT_BUILT.isEnabled()) {
+            SnapshotBuilt event = new SnapshotBuilt();
+            event.client = client.getName();
+            event.snapshotType = snapshotType;
+            event.elapsed = nanos;
+            event.commit();
+        }
+        this.metrics.snapshotBuilt(client, snapshotType, nanos);
+    }
+
+    @Override
+    public void reconnecting(@Nonnull Client client) {
+        if (RECONNECT.isEnabled()) {
+            Reconnect event = new Reconnect();
+            event.client = client.getName();
+            event.commit();
+        }
+        this.metrics.reconnecting(client);
+    }
+
+    @Override
+    public void sendDelayed(@Nonnull Client client, long millis) {
+        if (MESSAGE_DELAYED.isEnabled()) {
+            MessageDelayed event = new MessageDelayed();
+            event.client = client.getName();
+            event.elapsed = millis;
+            event.commit();
+        }
+        this.metrics.sendDelayed(client, millis);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("metrics", this.metrics).toString();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.exception.KittehSlowHandlerException;
+import org.kitteh.irc.client.library.feature.auth.AuthProtocol;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times event handler invocations, reporting those exceeding a threshold
+ * with a stack sampled from the still running handler.
+ * <p>
+ * A single thread shared by all clients checks running handlers.
+ */
+final class HandlerWatchdog {
+    /**
+     * A running handler invocation.
+     */
+    static final class Watch {
+        private final HandlerWatchdog watchdog;
+        private final Thread thread = Thread.currentThread();
+        private final Method handler;
+        private final Class<?> eventType;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        private Watch(@Nonnull HandlerWatchdog watchdog, @Nonnull Method handler, @Nonnull Class<?> eventType) {
+            this.watchdog = watchdog;
+            this.handler = handler;
+            this.eventType = eventType;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("handler", this.handler).add("eventType", this.eventType).toString();
+        }
+    }
+
+    private static final long SCAN_PERIOD = 25;
+    private static final StackTraceElement[] NO_STACK = new StackTraceElement[0];
+    private static final Set<Watch> RUNNING = ConcurrentHashMap.newKeySet();
+    private static final Set<Class<?>> LIBRARY_LISTENERS = new HashSet<>(Arrays.asList(EventListener.class, IRCClientGroup.Listener.class, STSHandler.class));
+    // Derived rather than written out, so it follows the library if relocated by shading
+    private static final String AUTH_PACKAGE = AuthProtocol.class.getPackage().getName() + '.';
+
+    static {
+        ScheduledExecutorService scanner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Kitteh IRC Client Handler Watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scanner.scheduleAtFixedRate(HandlerWatchdog::scan, SCAN_PERIOD, SCAN_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    private static void scan() {
+        long now = System.nanoTime();
+        for (Watch watch : RUNNING) {
+            long elapsed = now - watch.start;
+            if ((elapsed > watch.watchdog.threshold) && watch.reported.compareAndSet(false, true)) {
+                watch.watchdog.report(watch, elapsed, watch.thread.getStackTrace());
+            }
+        }
+    }
+
+    private final InternalClient client;
+    private final long threshold;
+    private final ExecutorService isolationExecutor;
+    private final Set<Method> offenders = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a watchdog.
+     *
+     * @param client client firing events
+     * @param threshold time, in milliseconds, a handler may run before
+     * being reported
+     * @param isolate true to run reported handlers on a separate executor
+     * from then on
+     */
+    HandlerWatchdog(@Nonnull InternalClient client, long threshold, boolean isolate) {
+        this.client = client;
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.isolationExecutor = isolate ? Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Kitteh IRC Client Isolated Handler (" + client.getName() + ')');
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Gets if a handler is to be run on the isolation executor.
+     *
+     * @param handler handler
+     * @return true if isolated
+     */
+    boolean isIsolated(@Nonnull Method handler) {
+        return (this.isolationExecutor != null) && this.offenders.contains(handler);
+    }
+
+    /**
+     * Runs a task on the isolation executor.
+     *
+     * @param task task to run
+     */
+    void isolate(@Nonnull Runnable task) {
+        try {
+            this.isolationExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run(); // Shut down while the event was being dispatched
+        }
+    }
+
+    /**
+     * Shuts down the isolation executor, letting running handlers finish.
+     */
+    void shutdown() {
+        if (this.isolationExecutor != null) {
+            this.isolationExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Starts timing a handler invocation on the current thread.
+     *
+     * @param handler handler being invoked
+     * @param eventType type of event being handled
+     * @return the watch, to be passed to {@link #finish(Watch)}
+     */
+    @Nonnull
+    Watch start(@Nonnull Method handler, @Nonnull Class<?> eventType) {
+        Watch watch = new Watch(this, handler, eventType);
+        RUNNING.add(watch);
+        return watch;
+    }
+
+    /**
+     * Stops timing a handler invocation, reporting it if it ran over the
+     * threshold without being caught running.
+     *
+     * @param watch the watch from {@link #start(Method, Class)}
+     */
+    void finish(@Nonnull Watch watch) {
+        RUNNING.remove(watch);
+        long elapsed = System.nanoTime() - watch.start;
+        if ((elapsed > this.threshold) && watch.reported.compareAndSet(false, true)) {
+            this.report(watch, elapsed, NO_STACK);
+        }
+    }
+
+    /**
+     * Gets if a handler belongs to one of the library's own listeners,
+     * judged by class rather than code source as a shaded library shares
+     * its code source with the application.
+     *
+     * @param handler handler
+     * @return true if a library handler
+     */
+    static boolean isLibraryHandler(@Nonnull Method handler) {
+        Class<?> declaringClass = handler.getDeclaringClass();
+        return LIBRARY_LISTENERS.contains(declaringClass) || declaringClass.getName().startsWith(AUTH_PACKAGE);
+    }
+
+    private void report(@Nonnull Watch watch, long elapsedNanos, @Nonnull StackTraceElement[] stack) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        // The library's own listeners track state in order, never isolate them
+        if ((this.isolationExecutor != null) && !isLibraryHandler(watch.handler)) {
+            this.offenders.add(watch.handler);
+        }
+        this.client.getMetrics().slowHandler(this.client, watch.handler, watch.eventType, elapsed, stack);
+        this.client.getExceptionListener().queue(new KittehSlowHandlerException(watch.handler, watch.eventType, elapsed, stack));
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("client", this.client).add("threshold", TimeUnit.NANOSECONDS.toMillis(this.threshold)).add("isolate", this.isolationExecutor != null).toString();
+    }
+}
@@ -42,19 +42,26 @@ import org.kitteh.irc.client.library.element.mode.UserMode;
 import org.kitteh.irc.client.library.event.client.ClientReceiveCommandEvent;
 import org.kitteh.irc.client.library.event.client.ClientReceiveNumericEvent;
 import org.kitteh.irc.client.library.exception.KittehNagException;
+import org.kitteh.irc.client.library.exception.KittehSTSException;
 import org.kitteh.irc.client.library.exception.KittehServerMessageException;
 import org.kitteh.irc.client.library.exception.KittehServerMessageTagException;
 import org.kitteh.irc.client.library.feature.AuthManager;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
 import org.kitteh.irc.client.library.feature.EventManager;
 import org.kitteh.irc.client.library.feature.MessageTagManager;
+import org.kitteh.irc.client.library.feature.ReplyManager;
+import org.kitteh.irc.client.library.feature.UserRegistry;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageMap;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageType;
 import org.kitteh.irc.client.library.feature.defaultmessage.SimpleDefaultMessageMap;
 import org.kitteh.irc.client.library.feature.sending.MessageSendingQueue;
 import org.kitteh.irc.client.library.feature.sending.QueueProcessingThreadSender;
+import org.kitteh.irc.client.library.feature.sts.STSIndexedStorageManager;
 import org.kitteh.irc.client.library.feature.sts.STSMachine;
+import org.kitteh.irc.client.library.feature.sts.STSStorageManager;
 import org.kitteh.irc.client.library.util.CISet;
 import org.kitteh.irc.client.library.util.Cutter;
+import org.kitteh.irc.client.library.util.LineBuilder;
 import org.kitteh.irc.client.library.util.Pair;
 import org.kitteh.irc.client.library.util.QueueProcessingThread;
 import org.kitteh.irc.client.library.util.Sanity;
@@ -63,6 +70,9 @@ import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -70,6 +80,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -142,21 +153,65 @@ final class IRCClient extends InternalClient {
             super("Kitteh IRC Client Input Processor (" + IRCClient.this.getName() + ')');
         }
 
+        private final Object idleLock = new Object();
+        private long queued;
+        private long processed;
+
+        @Override
+        public void queue(@Nonnull String item) {
+            synchronized (this.idleLock) {
+                this.queued++;
+            }
+            super.queue(item);
+        }
+
         @Override
         protected void processElement(@Nonnull String element) {
             try {
                 IRCClient.this.handleLine(element);
+                if (this.getQueueSize() == 0) {
+                    IRCClient.this.eventListener.flushHeuristicSplit();
+                }
             } catch (final Exception thrown) {
                 IRCClient.this.exceptionListener.queue(thrown);
+            } finally {
+                synchronized (this.idleLock) {
+                    if (++this.processed == this.queued) {
+                        this.idleLock.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void awaitIdle() throws InterruptedException {
+            synchronized (this.idleLock) {
+                while (this.processed != this.queued) {
+                    this.idleLock.wait();
+                }
             }
         }
     }
 
+    private static final class SelfPrefix {
+        private final String prefix;
+        private final int length;
+
+        private SelfPrefix(@Nonnull String prefix, int length) {
+            this.prefix = prefix;
+            this.length = length;
+        }
+    }
+
+    // Milliseconds to wait on shutdown for the line being processed
+    private static final long PROCESSOR_SHUTDOWN_WAIT = 5000;
+
     private final String[] pingPurr = new String[]{"MEOW", "MEOW!", "PURR", "PURRRRRRR", "MEOWMEOW", ":3", "HISS"};
     private int pingPurrCount;
 
     private final Config config;
+    private final ClientMetrics metrics;
     private final InputProcessor processor;
+    private final EventListener eventListener;
     private IRCServerInfo serverInfo = new IRCServerInfo(this);
 
     private String goalNick;
@@ -167,19 +222,22 @@ final class IRCClient extends InternalClient {
 
     private NettyManager.ClientConnection connection;
 
-    private Cutter messageCutter = new Cutter.DefaultWordCutter();
+    private Cutter messageCutter = new Cutter.Utf8WordCutter();
+    private volatile SelfPrefix selfPrefix;
 
     private final AuthManager authManager = new ManagerAuth(this);
     private final ManagerCapability capabilityManager = new ManagerCapability(this);
-    private final EventManager eventManager = new ManagerEvent(this);
+    private final ManagerEvent eventManager = new ManagerEvent(this);
     private final ManagerISupport iSupportManager = new ManagerISupport(this);
     private final ManagerMessageTag messageTagManager = new ManagerMessageTag(this);
+    private final ManagerMonitor monitorManager = new ManagerMonitor(this);
 
     private final Listener<Exception> exceptionListener;
     private final Listener<String> inputListener;
     private final Listener<String> outputListener;
 
-    private final ActorProvider actorProvider = new ActorProvider(this);
+    private final ActorProvider actorProvider;
+    private final ManagerReply replyManager;
 
     private DefaultMessageMap defaultMessageMap;
 
@@ -194,17 +252,20 @@ final class IRCClient extends InternalClient {
 
     IRCClient(@Nonnull Config config) {
         this.config = config;
+        this.metrics = FlightRecorder.wrap(this.config.getNotNull(Config.METRICS));
+        UserRegistry userRegistry = this.config.get(Config.USER_REGISTRY);
+        this.actorProvider = new ActorProvider(this, (userRegistry == null) ? new SharedUserRegistry(false) : (SharedUserRegistry) userRegistry);
 
         this.currentNick = this.requestedNick = this.goalNick = this.config.get(Config.NICK);
 
         final String name = this.config.getNotNull(Config.NAME);
 
         Config.ExceptionConsumerWrapper exceptionListenerWrapper = this.config.get(Config.LISTENER_EXCEPTION);
-        this.exceptionListener = new Listener<>(name, (exceptionListenerWrapper == null) ? null : exceptionListenerWrapper.getConsumer());
+        this.exceptionListener = (exceptionListenerWrapper == null) ? new Listener<>(name, null) : exceptionListenerWrapper.createListener(name);
         Config.StringConsumerWrapper inputListenerWrapper = this.config.get(Config.LISTENER_INPUT);
-        this.inputListener = new Listener<>(name, (inputListenerWrapper == null) ? null : inputListenerWrapper.getConsumer());
+        this.inputListener = (inputListenerWrapper == null) ? new Listener<>(name, null) : inputListenerWrapper.createListener(name);
         Config.StringConsumerWrapper outputListenerWrapper = this.config.get(Config.LISTENER_OUTPUT);
-        this.outputListener = new Listener<>(name, (outputListenerWrapper == null) ? null : outputListenerWrapper.getConsumer());
+        this.outputListener = (outputListenerWrapper == null) ? new Listener<>(name, null) : outputListenerWrapper.createListener(name);
 
         if (this.config.get(Config.STS_STORAGE_MANAGER) != null) {
             this.configureSts();
@@ -215,9 +276,20 @@ final class IRCClient extends InternalClient {
             ));
         }
 
+        this.eventManager.setHandlerWatchdog(this.config.getNotNull(Config.HANDLER_WATCHDOG_THRESHOLD), this.config.getNotNull(Config.HANDLER_WATCHDOG_ISOLATE));
+        this.replyManager = new ManagerReply(this, this.config.getNotNull(Config.REPLY_TIMEOUT), this.config.getNotNull(Config.WHOIS_CACHE_LIFETIME));
         this.processor = new InputProcessor();
-        this.eventManager.registerEventListener(new EventListener(this));
+        this.eventListener = new EventListener(this);
+        this.eventManager.registerEventListener(this.eventListener);
 
+        Path channelStateFile = this.config.get(Config.CHANNEL_STATE_FILE);
+        if ((channelStateFile != null) && Files.exists(channelStateFile)) {
+            try {
+                this.actorProvider.setRestoredChannels(ChannelStateStore.read(channelStateFile));
+            } catch (IOException e) {
+                this.exceptionListener.queue(e);
+            }
+        }
 
         DefaultMessageMap defaultMessageMap = this.config.get(Config.DEFAULT_MESSAGE_MAP);
         if (defaultMessageMap == null) {
@@ -247,6 +319,21 @@ final class IRCClient extends InternalClient {
         }
     }
 
+    @Nonnull
+    @Override
+    public CompletableFuture<Channel> addChannelAsync(@Nonnull String channel) {
+        Sanity.nullCheck(channel, "Channel cannot be null");
+        Sanity.truthiness(this.serverInfo.isValidChannel(channel), "Invalid channel name " + channel);
+        ActorProvider.IRCChannel joined = this.actorProvider.getTrackedChannel(channel);
+        if ((joined != null) && joined.hasMember(this.getNick())) {
+            this.channelsIntended.add(joined.getName());
+            return CompletableFuture.completedFuture(joined.snapshot());
+        }
+        CompletableFuture<Channel> future = this.replyManager.await(ReplyManager.ReplyType.JOIN, channel);
+        this.addChannel(channel);
+        return future;
+    }
+
     @Override
     public void addKeyProtectedChannel(@Nonnull String channel, @Nonnull String key) {
         Sanity.nullCheck(channel, "Channel cannot be null");
@@ -345,6 +432,18 @@ final class IRCClient extends InternalClient {
         return this.messageTagManager;
     }
 
+    @Nonnull
+    @Override
+    public ManagerMonitor getMonitorManager() {
+        return this.monitorManager;
+    }
+
+    @Nonnull
+    @Override
+    public ClientMetrics getMetrics() {
+        return this.metrics;
+    }
+
     @Nonnull
     @Override
     public String getName() {
@@ -413,10 +512,7 @@ final class IRCClient extends InternalClient {
 
     @Override
     public void sendMessage(@Nonnull String target, @Nonnull String message) {
-        Sanity.safeMessageCheck(target, "Target");
-        Sanity.safeMessageCheck(message);
-        Sanity.truthiness(target.indexOf(' ') == -1, "Target cannot have spaces");
-        this.sendRawLine("PRIVMSG " + target + " :" + message);
+        this.sendTargeted("PRIVMSG ", target, message);
     }
 
     @Override
@@ -437,42 +533,58 @@ final class IRCClient extends InternalClient {
 
     private int getRemainingLength(@Nonnull String type, @Nonnull String target) {
         // :nick!name@host PRIVMSG/NOTICE TARGET :MESSAGE\r\n
-        // So that's two colons, three spaces, CR, and LF. 7 chars.
+        // So that's two colons, three spaces, CR, and LF. 7 bytes.
         // 512 - 7 = 505
         // Then, drop the user's full name (nick!name@host) and target
         // If self name is unknown, let's just do 100 for now
         // This will only happen for messages prior to getting a self WHOIS
         // Lastly drop the PRIVMSG or NOTICE length
-        return 505 - this.getUser().map(user -> user.getName().length()).orElse(100) - target.length() - type.length();
+        return 505 - this.getSelfPrefixLength() - LineBuilder.getByteLength(target, "Target") - type.length();
+    }
+
+    private int getSelfPrefixLength() {
+        ActorProvider.IRCUser user = this.actorProvider.getUser(this.getNick());
+        if (user == null) {
+            return 100;
+        }
+        String prefix = user.getName();
+        SelfPrefix selfPrefix = this.selfPrefix;
+        if ((selfPrefix == null) || (selfPrefix.prefix != prefix)) { // Only remeasured when the user's name changes
+            this.selfPrefix = selfPrefix = new SelfPrefix(prefix, LineBuilder.getByteLength(prefix));
+        }
+        return selfPrefix.length;
     }
 
     @Override
     public void sendNotice(@Nonnull String target, @Nonnull String message) {
-        Sanity.safeMessageCheck(target, "Target");
-        Sanity.safeMessageCheck(message);
+        this.sendTargeted("NOTICE ", target, message);
+    }
+
+    private void sendTargeted(@Nonnull String command, @Nonnull String target, @Nonnull String message) {
+        LineBuilder line = new LineBuilder().append(command).append(target, "Target");
         Sanity.truthiness(target.indexOf(' ') == -1, "Target cannot have spaces");
-        this.sendRawLine("NOTICE " + target + " :" + message);
+        line.append(" :").append(message, "Message");
+        this.sendRawLine(line.toString(), line.getByteLength(), false, false);
     }
 
     @Override
     public void sendRawLine(@Nonnull String message) {
-        this.sendRawLine(message, false, false);
+        this.sendRawLine(message, LineBuilder.getByteLength(message, "Message"), false, false);
     }
 
     @Override
     public void sendRawLineAvoidingDuplication(@Nonnull String message) {
-        this.sendRawLine(message, false, true);
+        this.sendRawLine(message, LineBuilder.getByteLength(message, "Message"), false, true);
     }
 
     @Override
     public void sendRawLineImmediately(@Nonnull String message) {
-        this.sendRawLine(message, true, false);
+        this.sendRawLine(message, LineBuilder.getByteLength(message, "Message"), true, false);
     }
 
-    private void sendRawLine(@Nonnull String message, boolean priority, boolean avoidDuplicates) {
-        Sanity.safeMessageCheck(message);
-        if (!message.isEmpty() && (message.length() > ((message.charAt(0) == '@') ? 1022 : 510))) {
-            throw new IllegalArgumentException("Message too long: " + message.length());
+    private void sendRawLine(@Nonnull String message, int byteLength, boolean priority, boolean avoidDuplicates) {
+        if (!message.isEmpty() && (byteLength > ((message.charAt(0) == '@') ? 1022 : 510))) {
+            throw new IllegalArgumentException("Message too long: " + byteLength + " bytes");
         }
         synchronized (this.messageSendingLock) {
             if (priority) {
@@ -507,6 +619,17 @@ final class IRCClient extends InternalClient {
         }
     }
 
+    @Override
+    public void setInputListener(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait) {
+        Sanity.truthiness(maxBatch > 0, "Batch size must be positive");
+        Sanity.truthiness(maxWait >= 0, "Wait cannot be negative");
+        if (listener == null) {
+            this.inputListener.removeConsumer();
+        } else {
+            this.inputListener.setBatchConsumer(listener, maxBatch, maxWait);
+        }
+    }
+
     @Override
     public void setMessageCutter(@Nonnull Cutter cutter) {
         this.messageCutter = Sanity.nullCheck(cutter, "Cutter cannot be null");
@@ -540,6 +663,17 @@ final class IRCClient extends InternalClient {
         }
     }
 
+    @Override
+    public void setOutputListener(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait) {
+        Sanity.truthiness(maxBatch > 0, "Batch size must be positive");
+        Sanity.truthiness(maxWait >= 0, "Wait cannot be negative");
+        if (listener == null) {
+            this.outputListener.removeConsumer();
+        } else {
+            this.outputListener.setBatchConsumer(listener, maxBatch, maxWait);
+        }
+    }
+
     @Override
     public void shutdown() {
         this.shutdownInternal(this.defaultMessageMap.getDefault(DefaultMessageType.QUIT).orElse(null));
@@ -555,13 +689,43 @@ final class IRCClient extends InternalClient {
 
     private void shutdownInternal(@Nullable String reason) {
         this.processor.interrupt();
+        if (Thread.currentThread() != this.processor) {
+            try {
+                // Let the line in progress finish, so channel state is not read mid-change
+                this.processor.join(PROCESSOR_SHUTDOWN_WAIT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
         this.messageSendingImmediate.shutdown();
         this.messageSendingScheduled.shutdown();
 
+        Path channelStateFile = this.config.get(Config.CHANNEL_STATE_FILE);
+        if (channelStateFile != null) {
+            try {
+                ChannelStateStore.write(channelStateFile, this.actorProvider.getChannelStates());
+            } catch (IOException e) {
+                this.exceptionListener.queue(e);
+            }
+        }
+
         if (this.connection != null) { // In case shutdown is called while building.
             this.connection.shutdown(reason, false);
         }
+        this.replyManager.disconnected();
+
+        this.eventManager.completePublishers();
+        this.eventManager.stopHandlerWatchdog();
+
+        STSStorageManager stsStorageManager = this.config.get(Config.STS_STORAGE_MANAGER);
+        if (stsStorageManager instanceof STSIndexedStorageManager) {
+            try {
+                ((STSIndexedStorageManager) stsStorageManager).flush();
+            } catch (KittehSTSException e) {
+                this.exceptionListener.queue(e);
+            }
+        }
 
         // Shut these down last, so they get any last firings
         this.exceptionListener.shutdown();
@@ -586,6 +750,7 @@ final class IRCClient extends InternalClient {
             this.sendRawLineImmediately("PONG " + line.substring(5));
         } else if (!line.isEmpty()) {
             this.processor.queue(line);
+            this.getMetrics().inputQueueDepth(this, this.processor.getQueueSize());
         }
     }
 
@@ -625,6 +790,12 @@ final class IRCClient extends InternalClient {
         return this.outputListener;
     }
 
+    @Nonnull
+    @Override
+    public ManagerReply getReplyManager() {
+        return this.replyManager;
+    }
+
     @Nonnull
     @Override
     String getRequestedNick() {
@@ -654,6 +825,28 @@ final class IRCClient extends InternalClient {
         this.sendNickChange(this.goalNick);
     }
 
+    /**
+     * Starts the client without a connection, for replaying captured
+     * traffic. Client state is reset as on connecting and sent lines go
+     * only to the output listener.
+     */
+    void startReplay() {
+        this.processor.queue("");
+        synchronized (this.messageSendingLock) {
+            this.messageSendingImmediate.beginSending(this.outputListener::queue);
+            this.messageSendingScheduled.beginSending(this.messageSendingImmediate::queue);
+        }
+    }
+
+    /**
+     * Waits until all lines queued for processing have been processed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitProcessing() throws InterruptedException {
+        this.processor.awaitIdle();
+    }
+
     @Override
     void beginMessageSendingImmediate(@Nonnull Consumer<String> consumer) {
         synchronized (this.messageSendingLock) {
@@ -704,7 +897,10 @@ final class IRCClient extends InternalClient {
 
     @Override
     void startSending() {
-        this.connection.startSending();
+        if (this.connection != null) { // Not connected when replaying
+            this.connection.startSending();
+        }
+        this.replyManager.connected();
         synchronized (this.messageSendingLock) {
             this.messageSendingScheduled.beginSending(this.messageSendingImmediate::queue);
         }
@@ -726,6 +922,9 @@ final class IRCClient extends InternalClient {
 
     @Override
     void reconnect() {
+        if (this.connection == null) {
+            return;
+        }
         this.connection.shutdown(DefaultMessageType.RECONNECT, true);
     }
 
@@ -751,10 +950,14 @@ final class IRCClient extends InternalClient {
     }
 
     private void handleLine(@Nonnull final String line) {
+        final long start = System.nanoTime();
         if (line.isEmpty()) {
             this.actorProvider.reset();
             this.capabilityManager.reset();
             this.serverInfo.reset();
+            this.eventListener.reset();
+            this.monitorManager.reset();
+            this.replyManager.reset();
         }
 
         final String[] split = line.split(" ");
@@ -789,16 +992,22 @@ final class IRCClient extends InternalClient {
             throw new KittehServerMessageException(new IRCServerMessage(line, tags), "Server sent a message without a command");
         }
 
-        final String commandString = split[index++];
+        final String commandString = this.actorProvider.intern(split[index++]);
 
         final List<String> args = this.handleArgs(split, index);
 
+        Object event;
         try {
             int numeric = Integer.parseInt(commandString);
-            this.eventManager.callEvent(new ClientReceiveNumericEvent(this, new IRCServerMessage.IRCNumericCommandServerMessage(numeric, line, tags), actor.snapshot(), commandString, numeric, args));
+            event = new ClientReceiveNumericEvent(this, new IRCServerMessage.IRCNumericCommandServerMessage(numeric, line, tags), actor.snapshot(), commandString, numeric, args);
         } catch (NumberFormatException exception) {
-            this.eventManager.callEvent(new ClientReceiveCommandEvent(this, new IRCServerMessage.IRCStringCommandServerMessage(commandString, line, tags), actor.snapshot(), commandString, args));
+            event = new ClientReceiveCommandEvent(this, new IRCServerMessage.IRCStringCommandServerMessage(commandString, line, tags), actor.snapshot(), commandString, args);
+        }
+        this.getMetrics().lineParsed(this, System.nanoTime() - start);
+        if (!"QUIT".equals(commandString)) { // Any other message ends a netsplit recognized by quit message
+            this.eventListener.flushHeuristicSplit();
         }
+        this.eventManager.callEvent(event);
     }
 
     @Nonnull
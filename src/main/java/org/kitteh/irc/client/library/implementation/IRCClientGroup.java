@@ -0,0 +1,303 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import net.engio.mbassy.listener.Handler;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.ClientGroup;
+import org.kitteh.irc.client.library.element.ISupportParameter;
+import org.kitteh.irc.client.library.event.client.ClientReceiveNumericEvent;
+import org.kitteh.irc.client.library.feature.filter.NumericFilter;
+import org.kitteh.irc.client.library.util.CIKeyMap;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Clients sharing out channels by consistent hashing, each client owning
+ * a number of points on a hash ring and each channel going to the first
+ * client after the channel's hash with room under its channel limits.
+ */
+final class IRCClientGroup implements ClientGroup {
+    class Listener {
+        private final int index;
+
+        private Listener(int index) {
+            this.index = index;
+        }
+
+        @NumericFilter(5)
+        @Handler
+        public void iSupport(ClientReceiveNumericEvent event) {
+            for (String parameter : event.getParameters()) {
+                if (parameter.startsWith(ISupportParameter.NickLen.NAME + '=')) {
+                    IRCClientGroup.this.fitNick(event.getClient(), this.index);
+                } else if (parameter.startsWith(ISupportParameter.ChanLimit.NAME + '=')) {
+                    IRCClientGroup.this.rebalance();
+                }
+            }
+        }
+    }
+
+    /**
+     * Points on the hash ring per client, evening out the share of each.
+     */
+    private static final int POINTS = 64;
+
+    private final String nick;
+    private final List<Client> clients;
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+    private final Map<String, Integer> channels;
+
+    /**
+     * Builds the clients of a group, the first with the given nick and the
+     * rest with the nick followed by their index, cut short to fit the
+     * server's nick length limit once known. Each client after the first
+     * has its index appended to the name of any channel state file.
+     *
+     * @param builder builder of each client
+     * @param after consumer run for each client after building, or null
+     * @param nick nick
+     * @param connections number of clients
+     */
+    IRCClientGroup(@Nonnull ClientBuilder builder, @Nullable Consumer<Client> after, @Nonnull String nick, int connections) {
+        this.nick = nick;
+        List<Client> clients = new ArrayList<>(connections);
+        synchronized (this) { // Channel limits may arrive before all clients are built
+            for (int index = 0; index < connections; index++) {
+                for (int point = 0; point < POINTS; point++) {
+                    this.ring.put(hash(index + " " + point), index);
+                }
+                Listener listener = new Listener(index);
+                clients.add(builder.cloneForGroup(index).nick(getNick(nick, index, -1)).afterBuildConsumer(client -> {
+                    client.getEventManager().registerEventListener(listener);
+                    if (after != null) {
+                        after.accept(client);
+                    }
+                }).build());
+            }
+            this.clients = Collections.unmodifiableList(clients);
+            this.channels = new CIKeyMap<>(clients.get(0));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<Client> getClients() {
+        return this.clients;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized Optional<Client> getClient(@Nonnull String channel) {
+        Sanity.nullCheck(channel, "Channel cannot be null");
+        Integer index = this.channels.get(channel);
+        return (index == null) ? Optional.empty() : Optional.of(this.clients.get(index));
+    }
+
+    @Override
+    public synchronized void addChannel(@Nonnull String... channels) {
+        Sanity.nullCheck(channels, "Channels cannot be null");
+        for (String channel : channels) {
+            Sanity.nullCheck(channel, "Channel cannot be null");
+            Sanity.truthiness(this.clients.get(0).getServerInfo().isValidChannel(channel), "Invalid channel name " + channel);
+        }
+        Map<Character, int[]> counts = this.count();
+        for (String channel : channels) {
+            if (!this.channels.containsKey(channel)) {
+                int index = this.choose(channel, counts);
+                this.channels.put(channel, index);
+                this.clients.get(index).addChannel(channel);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removeChannel(@Nonnull String channel) {
+        Sanity.nullCheck(channel, "Channel cannot be null");
+        Integer index = this.channels.remove(channel);
+        if (index != null) {
+            this.clients.get(index).removeChannel(channel);
+        }
+    }
+
+    @Override
+    public void registerEventListener(@Nonnull Object listener) {
+        Sanity.nullCheck(listener, "Listener cannot be null");
+        this.clients.forEach(client -> client.getEventManager().registerEventListener(listener));
+    }
+
+    @Override
+    public void unregisterEventListener(@Nonnull Object listener) {
+        Sanity.nullCheck(listener, "Listener cannot be null");
+        this.clients.forEach(client -> client.getEventManager().unregisterEventListener(listener));
+    }
+
+    @Override
+    public void sendMessage(@Nonnull String target, @Nonnull String message) {
+        Sanity.nullCheck(target, "Target cannot be null");
+        this.route(target).sendMessage(target, message);
+    }
+
+    @Override
+    public void sendNotice(@Nonnull String target, @Nonnull String message) {
+        Sanity.nullCheck(target, "Target cannot be null");
+        this.route(target).sendNotice(target, message);
+    }
+
+    @Override
+    public void shutdown() {
+        this.clients.forEach(Client::shutdown);
+    }
+
+    /**
+     * Moves channels off clients over their channel limits, keeping all
+     * others in place.
+     */
+    synchronized void rebalance() {
+        Map<Character, int[]> counts = new HashMap<>();
+        List<String> moving = new ArrayList<>();
+        List<String> names = new ArrayList<>(this.channels.keySet());
+        Collections.sort(names);
+        for (String channel : names) {
+            int index = this.channels.get(channel);
+            int[] count = counts.computeIfAbsent(channel.charAt(0), prefix -> new int[this.clients.size()]);
+            if (count[index] < this.getLimit(index, channel.charAt(0))) {
+                count[index]++;
+            } else {
+                moving.add(channel);
+            }
+        }
+        for (String channel : moving) {
+            int from = this.channels.get(channel);
+            int to = this.choose(channel, counts);
+            if (to != from) {
+                this.channels.put(channel, to);
+                this.clients.get(from).removeChannel(channel);
+                this.clients.get(to).addChannel(channel);
+            }
+        }
+    }
+
+    @Nonnull
+    private Client route(@Nonnull String target) {
+        Integer index;
+        synchronized (this) {
+            index = this.channels.get(target);
+        }
+        return this.clients.get((index == null) ? 0 : index);
+    }
+
+    @Nonnull
+    private Map<Character, int[]> count() {
+        Map<Character, int[]> counts = new HashMap<>();
+        this.channels.forEach((channel, index) -> counts.computeIfAbsent(channel.charAt(0), prefix -> new int[this.clients.size()])[index]++);
+        return counts;
+    }
+
+    /**
+     * Chooses the client for a channel, being the first on the ring after
+     * the channel's hash with room for it, or the very first if none has
+     * room, and counts the channel against it.
+     *
+     * @param channel channel
+     * @param counts channels per client by prefix
+     * @return index of the chosen client
+     */
+    private int choose(@Nonnull String channel, @Nonnull Map<Character, int[]> counts) {
+        int hash = hash(this.clients.get(0).getServerInfo().getCaseMapping().toLowerCase(channel));
+        int[] count = counts.computeIfAbsent(channel.charAt(0), prefix -> new int[this.clients.size()]);
+        List<Integer> order = new ArrayList<>(this.clients.size());
+        List<Integer> points = new ArrayList<>(this.ring.tailMap(hash).values());
+        points.addAll(this.ring.headMap(hash).values());
+        for (Integer index : points) {
+            if (!order.contains(index)) {
+                order.add(index);
+                if (count[index] < this.getLimit(index, channel.charAt(0))) {
+                    count[index]++;
+                    return index;
+                }
+            }
+        }
+        count[order.get(0)]++;
+        return order.get(0);
+    }
+
+    /**
+     * Changes the nick of a client to fit the server's nick length limit,
+     * if needed.
+     *
+     * @param client client
+     * @param index index of the client
+     */
+    private void fitNick(@Nonnull Client client, int index) {
+        String nick = getNick(this.nick, index, client.getServerInfo().getNickLengthLimit());
+        if (!nick.equals(client.getIntendedNick())) {
+            client.setNick(nick);
+        }
+    }
+
+    /**
+     * Gets the nick of a client, being the group's nick followed by the
+     * client's index after the first, cutting the group's nick short so
+     * that the index fits within the limit.
+     *
+     * @param nick nick of the group
+     * @param index index of the client
+     * @param limit nick length limit, or -1 if unknown
+     * @return nick of the client
+     */
+    @Nonnull
+    static String getNick(@Nonnull String nick, int index, int limit) {
+        String suffix = (index == 0) ? "" : Integer.toString(index);
+        int length = (limit < 0) ? nick.length() : Math.min(nick.length(), Math.max(1, limit - suffix.length()));
+        return nick.substring(0, length) + suffix;
+    }
+
+    private int getLimit(int index, char prefix) {
+        Integer limit = this.clients.get(index).getServerInfo().getChannelLimits().get(prefix);
+        return (limit == null) ? Integer.MAX_VALUE : limit;
+    }
+
+    private static int hash(@Nonnull String string) {
+        int hash = string.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Nonnull
+    @Override
+    public synchronized String toString() {
+        return new ToStringer(this).add("clients", this.clients).add("channels", this.channels.size()).toString();
+    }
+}
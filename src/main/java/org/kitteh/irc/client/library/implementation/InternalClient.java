@@ -61,9 +61,17 @@ abstract class InternalClient implements Client {
     @Nonnull
     public abstract ManagerISupport getISupportManager();
 
+    @Override
+    @Nonnull
+    public abstract ManagerMonitor getMonitorManager();
+
     @Nonnull
     abstract Listener<String> getOutputListener();
 
+    @Nonnull
+    @Override
+    public abstract ManagerReply getReplyManager();
+
     @Nonnull
     abstract String getRequestedNick();
 
@@ -23,42 +23,125 @@
  */
 package org.kitteh.irc.client.library.implementation;
 
-import org.kitteh.irc.client.library.util.QueueProcessingThread;
 import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 class Listener<Type> {
-    private final class ListenerThread extends QueueProcessingThread<Type> {
-        private volatile Consumer<Type> consumer;
+    /**
+     * Consumer of batches of elements.
+     *
+     * @param <Type> type of elements
+     */
+    private static final class Batcher<Type> {
+        private final Consumer<List<Type>> consumer;
+        private final int maxSize;
+        private final long maxWaitNanos;
 
-        private ListenerThread(@Nonnull String clientName, @Nonnull Consumer<Type> consumer) {
-            super("Kitteh IRC Client Listener (" + clientName + ')');
+        private Batcher(@Nonnull Consumer<List<Type>> consumer, int maxSize, long maxWaitNanos) {
             this.consumer = consumer;
+            this.maxSize = maxSize;
+            this.maxWaitNanos = maxWaitNanos;
         }
 
-        @Override
-        protected void processElement(@Nonnull Type element) {
+        private static <Type> Batcher<Type> single(@Nonnull Consumer<Type> consumer) {
+            // Takes whatever is waiting without lingering, but still hands each element over alone
+            return new Batcher<>(elements -> {
+                for (Type element : elements) {
+                    try {
+                        consumer.accept(element);
+                    } catch (final Throwable thrown) {
+                        // NOOP
+                    }
+                }
+            }, Integer.MAX_VALUE, 0);
+        }
+
+        private void accept(@Nonnull List<Type> elements) {
             try {
-                this.consumer.accept(element);
+                this.consumer.accept(elements);
             } catch (final Throwable thrown) {
                 // NOOP
             }
         }
 
+        @Nonnull
         @Override
-        protected void cleanup(@Nonnull Queue<Type> remainingQueue) {
-            while (!remainingQueue.isEmpty()) {
-                try {
-                    this.consumer.accept(remainingQueue.poll());
-                } catch (final Throwable thrown) {
-                    // NOOP
+        public String toString() {
+            return new ToStringer(this).add("maxSize", this.maxSize).add("maxWaitNanos", this.maxWaitNanos).toString();
+        }
+    }
+
+    private final class ListenerThread extends Thread {
+        private final BlockingQueue<Type> queue = new LinkedBlockingQueue<>();
+        private volatile Batcher<Type> batcher;
+        // Consumers may swallow the interrupt, so it is remembered here too
+        private volatile boolean running = true;
+
+        private ListenerThread(@Nonnull String clientName, @Nonnull Batcher<Type> batcher) {
+            this.setName("Kitteh IRC Client Listener (" + clientName + ')');
+            this.batcher = batcher;
+            this.start();
+        }
+
+        @Override
+        public void run() {
+            List<Type> elements = new ArrayList<>();
+            try {
+                while (this.running && !this.isInterrupted()) {
+                    elements.add(this.queue.take());
+                    Batcher<Type> current = this.batcher;
+                    if (current.maxWaitNanos > 0) {
+                        long deadline = System.nanoTime() + current.maxWaitNanos;
+                        while (elements.size() < current.maxSize) {
+                            this.queue.drainTo(elements, current.maxSize - elements.size());
+                            long remaining = deadline - System.nanoTime();
+                            if ((elements.size() >= current.maxSize) || (remaining <= 0)) {
+                                break;
+                            }
+                            Type element = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                            if (element == null) {
+                                break;
+                            }
+                            elements.add(element);
+                        }
+                    } else {
+                        this.queue.drainTo(elements, current.maxSize - 1);
+                    }
+                    current.accept(elements);
+                    elements = new ArrayList<>();
                 }
+            } catch (InterruptedException e) {
+                // Shutting down
+            }
+            // Cleared so final batches can still be written, such as to an interruptible channel
+            Thread.interrupted();
+            this.cleanup(elements);
+        }
+
+        private void cleanup(@Nonnull List<Type> elements) {
+            Batcher<Type> current = this.batcher;
+            this.queue.drainTo(elements);
+            for (int start = 0; start < elements.size(); start += current.maxSize) {
+                current.accept(new ArrayList<>(elements.subList(start, (int) Math.min(elements.size(), (long) start + current.maxSize))));
             }
         }
+
+        private void queue(@Nonnull Type element) {
+            this.queue.add(element);
+        }
+
+        private void shutdown() {
+            this.running = false;
+            this.interrupt();
+        }
     }
 
     private final String clientName;
@@ -67,7 +150,21 @@ class Listener<Type> {
 
     Listener(@Nonnull String clientName, @Nullable Consumer<Type> consumer) {
         this.clientName = clientName;
-        this.thread = (consumer == null) ? null : new ListenerThread(clientName, consumer);
+        this.thread = (consumer == null) ? null : new ListenerThread(clientName, Batcher.single(consumer));
+    }
+
+    /**
+     * Creates a listener handing elements over in batches.
+     *
+     * @param clientName name of the client
+     * @param consumer consumer of batches
+     * @param maxBatch most elements in one batch
+     * @param maxWait milliseconds to wait for a batch to fill, after
+     * its first element, or 0 to pass whatever is waiting
+     */
+    Listener(@Nonnull String clientName, @Nonnull Consumer<List<Type>> consumer, int maxBatch, long maxWait) {
+        this.clientName = clientName;
+        this.thread = new ListenerThread(clientName, new Batcher<>(consumer, maxBatch, TimeUnit.MILLISECONDS.toNanos(maxWait)));
     }
 
     void queue(@Nonnull Type item) {
@@ -82,16 +179,32 @@ class Listener<Type> {
     }
 
     void setConsumer(@Nonnull Consumer<Type> consumer) {
+        this.setBatcher(Batcher.single(consumer));
+    }
+
+    /**
+     * Sets a consumer of batches, replacing any consumer.
+     *
+     * @param consumer consumer of batches
+     * @param maxBatch most elements in one batch
+     * @param maxWait milliseconds to wait for a batch to fill, after
+     * its first element, or 0 to pass whatever is waiting
+     */
+    void setBatchConsumer(@Nonnull Consumer<List<Type>> consumer, int maxBatch, long maxWait) {
+        this.setBatcher(new Batcher<>(consumer, maxBatch, TimeUnit.MILLISECONDS.toNanos(maxWait)));
+    }
+
+    private void setBatcher(@Nonnull Batcher<Type> batcher) {
         if (this.thread == null) {
-            this.thread = new ListenerThread(this.clientName, consumer);
+            this.thread = new ListenerThread(this.clientName, batcher);
         } else {
-            this.thread.consumer = consumer;
+            this.thread.batcher = batcher;
         }
     }
 
     void shutdown() {
         if (this.thread != null) {
-            this.thread.interrupt();
+            this.thread.shutdown();
         }
     }
 
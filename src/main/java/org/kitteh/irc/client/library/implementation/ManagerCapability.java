@@ -30,6 +30,7 @@ import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -107,6 +108,13 @@ final class ManagerCapability implements CapabilityManager, Resettable {
         }
     }
 
+    /**
+     * Capabilities with which NAMES carries every member's full identity
+     * and all prefixes, and joins, account changes and away changes are
+     * all announced.
+     */
+    private static final List<String> MEMBER_DATA_CAPABILITIES = Arrays.asList(Defaults.USERHOST_IN_NAMES, Defaults.MULTI_PREFIX, Defaults.EXTENDED_JOIN, Defaults.ACCOUNT_NOTIFY, Defaults.AWAY_NOTIFY);
+
     private final InternalClient client;
     private final Map<String, CapabilityState> capabilities = new ConcurrentHashMap<>();
     private List<CapabilityState> supportedCapabilities = new ArrayList<>();
@@ -134,6 +142,16 @@ final class ManagerCapability implements CapabilityManager, Resettable {
         return new ArrayList<>(this.supportedCapabilities);
     }
 
+    /**
+     * Gets if the enabled capabilities keep channel member data current
+     * without WHO, making a channel complete once NAMES is received.
+     *
+     * @return true if WHO is not needed for channel members
+     */
+    boolean providesMemberData() {
+        return this.capabilities.keySet().containsAll(MEMBER_DATA_CAPABILITIES);
+    }
+
     boolean isNegotiating() {
         return this.negotiating;
     }
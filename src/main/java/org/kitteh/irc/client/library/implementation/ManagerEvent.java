@@ -26,8 +26,14 @@ package org.kitteh.irc.client.library.implementation;
 import net.engio.mbassy.bus.MBassador;
 import net.engio.mbassy.bus.config.BusConfiguration;
 import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
 import net.engio.mbassy.bus.error.IPublicationErrorHandler;
+import net.engio.mbassy.bus.error.MessageBusException;
 import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.dispatch.HandlerInvocation;
+import net.engio.mbassy.dispatch.IHandlerInvocation;
+import net.engio.mbassy.subscription.Subscription;
+import net.engio.mbassy.subscription.SubscriptionContext;
 import org.kitteh.irc.client.library.event.helper.ClientEvent;
 import org.kitteh.irc.client.library.exception.KittehEventException;
 import org.kitteh.irc.client.library.exception.KittehNagException;
@@ -38,18 +44,25 @@ import org.kitteh.irc.client.library.feature.filter.FilterProcessor;
 import org.kitteh.irc.client.library.feature.filter.FilteringSubscriptionFactory;
 import org.kitteh.irc.client.library.feature.filter.NumericFilter;
 import org.kitteh.irc.client.library.feature.filter.ToSelfOnly;
+import org.kitteh.irc.client.library.util.Flow;
 import org.kitteh.irc.client.library.util.Sanity;
 import org.kitteh.irc.client.library.util.ToStringer;
 
 import javax.annotation.Nonnull;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 class ManagerEvent implements EventManager {
     private class Exceptional implements IPublicationErrorHandler {
@@ -74,19 +87,99 @@ class ManagerEvent implements EventManager {
         }
     }
 
-    private final MBassador<Object> bus;
+    private static final class Bus extends MBassador<Object> {
+        private Bus(@Nonnull IBusConfiguration configuration) {
+            super(configuration);
+        }
+
+        private int getHandlerCount(@Nonnull Class<?> type) {
+            int count = 0;
+            for (Subscription subscription : this.getSubscriptionsByMessageType(type)) {
+                count += subscription.size();
+            }
+            return count;
+        }
+    }
+
+    private class WatchingSubscriptionFactory extends FilteringSubscriptionFactory {
+        private WatchingSubscriptionFactory() {
+            super(ManagerEvent.this.filters);
+        }
+
+        @Override
+        protected IHandlerInvocation<?, ?> createBaseHandlerInvocation(SubscriptionContext context) throws MessageBusException {
+            return new WatchedHandlerInvocation(context, super.createBaseHandlerInvocation(context));
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).toString();
+        }
+    }
+
+    private class WatchedHandlerInvocation extends HandlerInvocation<Object, Object> {
+        private final IHandlerInvocation<Object, Object> delegate;
+        private final Method handler;
+
+        @SuppressWarnings("unchecked")
+        private WatchedHandlerInvocation(@Nonnull SubscriptionContext context, @Nonnull IHandlerInvocation<?, ?> delegate) {
+            super(context);
+            this.delegate = (IHandlerInvocation<Object, Object>) delegate;
+            this.handler = context.getHandler().getMethod();
+        }
+
+        @Override
+        public void invoke(Object listener, Object message) {
+            HandlerWatchdog watchdog = ManagerEvent.this.watchdog;
+            if (watchdog == null) {
+                this.delegate.invoke(listener, message);
+            } else if (watchdog.isIsolated(this.handler)) {
+                watchdog.isolate(() -> this.invokeWatched(watchdog, listener, message));
+            } else {
+                this.invokeWatched(watchdog, listener, message);
+            }
+        }
+
+        private void invokeWatched(@Nonnull HandlerWatchdog watchdog, Object listener, Object message) {
+            HandlerWatchdog.Watch watch = watchdog.start(this.handler, message.getClass());
+            try {
+                this.delegate.invoke(listener, message);
+            } finally {
+                watchdog.finish(watch);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("handler", this.handler).toString();
+        }
+    }
+
+    private final Bus bus;
     private final InternalClient client;
     private final Map<Class<? extends Annotation>, FilterProcessor<?, ? extends Annotation>> filters = new ConcurrentHashMap<>();
     private final Set<Object> listeners = new HashSet<>();
+    private final List<EventPublisher<?>.EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService subscriberExecutor;
+    private volatile boolean publishersComplete;
+    private volatile HandlerWatchdog watchdog;
 
     ManagerEvent(@Nonnull InternalClient client) {
         BusConfiguration configuration = new BusConfiguration()
-                .addFeature(Feature.SyncPubSub.Default().setSubscriptionFactory(new FilteringSubscriptionFactory(this.filters)))
+                .addFeature(Feature.SyncPubSub.Default().setSubscriptionFactory(new WatchingSubscriptionFactory()))
                 .addFeature(Feature.AsynchronousHandlerInvocation.Default())
                 .addFeature(Feature.AsynchronousMessageDispatch.Default())
                 .addPublicationErrorHandler(new Exceptional());
-        this.bus = new MBassador<>(configuration);
+        this.bus = new Bus(configuration);
         this.client = client;
+        // Idle threads expire, so nothing lingers once subscribers are done
+        this.subscriberExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Kitteh IRC Client Event Subscriber (" + client.getName() + ')');
+            thread.setDaemon(true);
+            return thread;
+        });
         // Defaults!
         this.registerAnnotationFilter(CommandFilter.class, new CommandFilter.Processor());
         this.registerAnnotationFilter(NumericFilter.class, new NumericFilter.Processor());
@@ -99,7 +192,98 @@ class ManagerEvent implements EventManager {
         if (event instanceof ClientEvent) {
             Sanity.truthiness(((ClientEvent) event).getClient() == this.client, "Event cannot be from another client!");
         }
+        long start = System.nanoTime();
         this.bus.publish(event);
+        for (EventPublisher<?>.EventSubscription subscription : this.subscriptions) {
+            subscription.offer(event);
+        }
+        this.client.getMetrics().eventDispatched(this.client, event.getClass(), System.nanoTime() - start);
+    }
+
+    /**
+     * Completes all publisher subscriptions, and any made from now on.
+     */
+    void completePublishers() {
+        this.publishersComplete = true;
+        for (EventPublisher<?>.EventSubscription subscription : this.subscriptions) {
+            subscription.complete();
+        }
+        this.subscriptions.clear();
+    }
+
+    /**
+     * Adds a publisher subscription to receive events.
+     *
+     * @param subscription subscription
+     */
+    void subscribe(@Nonnull EventPublisher<?>.EventSubscription subscription) {
+        this.subscriptions.add(subscription);
+        if (this.publishersComplete) {
+            this.subscriptions.remove(subscription);
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Removes a publisher subscription.
+     *
+     * @param subscription subscription
+     */
+    void unsubscribe(@Nonnull EventPublisher<?>.EventSubscription subscription) {
+        this.subscriptions.remove(subscription);
+    }
+
+    /**
+     * Gets the executor on which publisher subscribers are called.
+     *
+     * @return subscriber executor
+     */
+    @Nonnull
+    Executor getSubscriberExecutor() {
+        return this.subscriberExecutor;
+    }
+
+    /**
+     * Reports an exception thrown by a publisher subscriber.
+     *
+     * @param exception exception
+     */
+    void reportException(@Nonnull Exception exception) {
+        this.client.getExceptionListener().queue(exception);
+    }
+
+    /**
+     * Sets up timing of event handlers, replacing any previous setup.
+     *
+     * @param threshold time, in milliseconds, a handler may run before
+     * being reported, or 0 to not time handlers
+     * @param isolate true to run reported handlers on a separate executor
+     * from then on
+     */
+    void setHandlerWatchdog(long threshold, boolean isolate) {
+        HandlerWatchdog previous = this.watchdog;
+        this.watchdog = (threshold > 0) ? new HandlerWatchdog(this.client, threshold, isolate) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Stops timing event handlers, shutting down any isolated handler
+     * threads.
+     */
+    void stopHandlerWatchdog() {
+        this.setHandlerWatchdog(0, false);
+    }
+
+    /**
+     * Gets the number of listeners subscribed to an event type.
+     *
+     * @param type event type
+     * @return number of listeners
+     */
+    int getHandlerCount(@Nonnull Class<?> type) {
+        return this.bus.getHandlerCount(type);
     }
 
     @Nonnull
@@ -114,6 +298,15 @@ class ManagerEvent implements EventManager {
         return Collections.unmodifiableMap(new HashMap<>(this.filters));
     }
 
+    @Nonnull
+    @Override
+    public <T> Flow.Publisher<T> getPublisher(@Nonnull Class<T> eventType, int bufferSize, @Nonnull OverflowStrategy strategy) {
+        Sanity.nullCheck(eventType, "Event type cannot be null");
+        Sanity.truthiness(bufferSize > 0, "Buffer size must be positive");
+        Sanity.nullCheck(strategy, "Overflow strategy cannot be null");
+        return new EventPublisher<>(this, eventType, bufferSize, strategy);
+    }
+
     @Override
     public <A extends Annotation> void registerAnnotationFilter(Class<A> annotationClass, FilterProcessor<?, A> filterProcessor) {
         this.filters.put(annotationClass, filterProcessor);
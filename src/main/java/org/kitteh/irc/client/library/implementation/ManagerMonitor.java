@@ -0,0 +1,222 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.element.ISupportParameter;
+import org.kitteh.irc.client.library.feature.MonitorManager;
+import org.kitteh.irc.client.library.util.CIKeyMap;
+import org.kitteh.irc.client.library.util.LineBuilder;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Maintains the server's MONITOR list as the difference between the nicks
+ * wanted and the nicks the server has been sent.
+ */
+final class ManagerMonitor implements MonitorManager, Resettable {
+    private static final class Wanted {
+        private final int priority;
+        private final long order;
+
+        private Wanted(int priority, long order) {
+            this.priority = priority;
+            this.order = order;
+        }
+    }
+
+    private static final class Monitored {
+        private volatile Status status = Status.UNKNOWN;
+    }
+
+    private static final Comparator<Map.Entry<String, Wanted>> PRIORITY = Comparator.<Map.Entry<String, Wanted>>comparingInt(entry -> -entry.getValue().priority).thenComparingLong(entry -> entry.getValue().order);
+
+    private static final int MAXIMUM_LINE_LENGTH = 510;
+
+    private final InternalClient client;
+    private final CIKeyMap<Wanted> wanted;
+    private final CIKeyMap<Monitored> monitored;
+    private long nextOrder;
+    private int fullLimit = -1;
+
+    ManagerMonitor(@Nonnull InternalClient client) {
+        this.client = client;
+        this.wanted = new CIKeyMap<>(client);
+        this.monitored = new CIKeyMap<>(client);
+    }
+
+    @Override
+    public void addNick(@Nonnull String nick) {
+        this.addNicks(Collections.singletonList(Sanity.nullCheck(nick, "Nick cannot be null")), 0);
+    }
+
+    @Override
+    public synchronized void addNicks(@Nonnull Collection<String> nicks, int priority) {
+        Sanity.nullCheck(nicks, "Nicks cannot be null");
+        for (String nick : nicks) {
+            Sanity.safeMessageCheck(nick, "Nick");
+            Sanity.truthiness((nick.indexOf(',') == -1) && (nick.indexOf(' ') == -1), "Nick cannot contain a comma or space");
+        }
+        for (String nick : nicks) {
+            Wanted previous = this.wanted.get(nick);
+            this.wanted.put(nick, new Wanted(priority, (previous == null) ? this.nextOrder++ : previous.order));
+        }
+        this.sync();
+    }
+
+    @Override
+    public void removeNick(@Nonnull String nick) {
+        this.removeNicks(Collections.singletonList(Sanity.nullCheck(nick, "Nick cannot be null")));
+    }
+
+    @Override
+    public synchronized void removeNicks(@Nonnull Collection<String> nicks) {
+        Sanity.nullCheck(nicks, "Nicks cannot be null");
+        nicks.forEach(this.wanted::remove);
+        this.sync();
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getNicks() {
+        return Collections.unmodifiableSet(this.wanted.keySet());
+    }
+
+    @Nonnull
+    @Override
+    public Status getStatus(@Nonnull String nick) {
+        Monitored monitored = this.monitored.get(Sanity.nullCheck(nick, "Nick cannot be null"));
+        return (monitored == null) ? Status.NOT_MONITORED : monitored.status;
+    }
+
+    /**
+     * Sends the difference between the wanted nicks and the server's list,
+     * if the server supports MONITOR.
+     */
+    synchronized void sync() {
+        Optional<ISupportParameter.Monitor> monitor = this.client.getServerInfo().getISupportParameter(ISupportParameter.Monitor.NAME, ISupportParameter.Monitor.class);
+        if (!monitor.isPresent()) {
+            return;
+        }
+        int limit = monitor.get().getLimit().orElse(Integer.MAX_VALUE);
+        if (this.fullLimit >= 0) {
+            limit = Math.min(limit, this.fullLimit);
+        }
+        List<Map.Entry<String, Wanted>> chosen = new ArrayList<>(this.wanted.entrySet());
+        chosen.sort(PRIORITY); // If the server refuses some anyway, it refuses the last
+        if (chosen.size() > limit) {
+            chosen = chosen.subList(0, limit);
+        }
+        CIKeyMap<Boolean> chosenNicks = new CIKeyMap<>(this.client);
+        chosen.forEach(entry -> chosenNicks.put(entry.getKey(), true));
+        List<String> removing = new ArrayList<>();
+        for (String nick : this.monitored.keySet()) {
+            if (!chosenNicks.containsKey(nick)) {
+                removing.add(nick);
+                this.monitored.remove(nick);
+            }
+        }
+        List<String> adding = new ArrayList<>();
+        for (Map.Entry<String, Wanted> entry : chosen) {
+            if (!this.monitored.containsKey(entry.getKey())) {
+                adding.add(entry.getKey());
+                this.monitored.put(entry.getKey(), new Monitored());
+            }
+        }
+        // Removals first, making room for additions
+        this.send('-', removing);
+        this.send('+', adding);
+    }
+
+    private void send(char action, @Nonnull List<String> nicks) {
+        String prefix = "MONITOR " + action + ' ';
+        StringBuilder line = new StringBuilder(prefix);
+        int length = prefix.length();
+        for (String nick : nicks) {
+            int nickLength = LineBuilder.getByteLength(nick, "Nick");
+            if ((line.length() > prefix.length()) && ((length + 1 + nickLength) > MAXIMUM_LINE_LENGTH)) {
+                this.client.sendRawLine(line.toString());
+                line.setLength(prefix.length());
+                length = prefix.length();
+            }
+            if (line.length() > prefix.length()) {
+                line.append(',');
+                length++;
+            }
+            line.append(nick);
+            length += nickLength;
+        }
+        if (line.length() > prefix.length()) {
+            this.client.sendRawLine(line.toString());
+        }
+    }
+
+    /**
+     * Records the status of monitored nicks.
+     *
+     * @param nicks nicks
+     * @param online true if online
+     */
+    synchronized void setStatus(@Nonnull Collection<String> nicks, boolean online) {
+        for (String nick : nicks) {
+            Monitored monitored = this.monitored.get(nick);
+            if (monitored != null) {
+                monitored.status = online ? Status.ONLINE : Status.OFFLINE;
+            }
+        }
+    }
+
+    /**
+     * Records nicks refused by the server for lack of room on its list,
+     * using the given limit from then on.
+     *
+     * @param limit limit given by the server
+     * @param nicks refused nicks
+     */
+    synchronized void setFull(int limit, @Nonnull Collection<String> nicks) {
+        this.fullLimit = limit;
+        nicks.forEach(this.monitored::remove);
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.monitored.clear();
+        this.fullLimit = -1;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized String toString() {
+        return new ToStringer(this).add("wanted", this.wanted.size()).add("monitored", this.monitored.size()).toString();
+    }
+}
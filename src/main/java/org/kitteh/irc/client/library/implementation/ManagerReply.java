@@ -0,0 +1,408 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.element.WhoisData;
+import org.kitteh.irc.client.library.exception.KittehConnectionException;
+import org.kitteh.irc.client.library.feature.ReplyManager;
+import org.kitteh.irc.client.library.util.Sanity;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Futures awaiting replies, matched to requests by reply type and target,
+ * as every reply line names its target, and WHO replies additionally by
+ * WHOX query token. WHOIS replies are also cached for a configurable
+ * lifetime, until a change to the user is seen.
+ * <p>
+ * Timeouts of requests made while disconnected start once the client
+ * connects, and requests still awaiting a reply fail when the connection
+ * is lost.
+ */
+final class ManagerReply implements ReplyManager, Resettable {
+    /**
+     * WHOX fields requested when tracking channel members, preceded by a
+     * query token.
+     */
+    static final String WHOX_FIELDS = "%tcuhsnfar";
+
+    private static final int MAXIMUM_TOKEN = 999;
+
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "Kitteh IRC Client Reply Timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+
+    private static final class CachedWhois {
+        private final WhoisData data;
+        private final long expiry;
+
+        private CachedWhois(@Nonnull WhoisData data, long expiry) {
+            this.data = data;
+            this.expiry = expiry;
+        }
+    }
+
+    private final InternalClient client;
+    private final long defaultTimeout;
+    private final long whoisLifetime;
+    private final Map<String, Deque<CompletableFuture<?>>> futures = new HashMap<>();
+    // Guarded by futures
+    private final Map<CompletableFuture<?>, Runnable> awaitingConnection = new HashMap<>();
+    private boolean connected;
+    // In order of expiry, as every entry has the same lifetime
+    private final Map<String, CachedWhois> whoisCache = new LinkedHashMap<>();
+    private final Map<String, Deque<String>> whoTokens = new HashMap<>();
+    private final Map<String, String> whoTargets = new HashMap<>();
+    private int lastToken;
+
+    /**
+     * Creates the manager.
+     *
+     * @param client client
+     * @param defaultTimeout default timeout, in milliseconds, or 0 for none
+     * @param whoisLifetime time WHOIS replies are cached, in milliseconds,
+     * or 0 to not cache them
+     */
+    ManagerReply(@Nonnull InternalClient client, long defaultTimeout, long whoisLifetime) {
+        this.client = client;
+        this.defaultTimeout = defaultTimeout;
+        this.whoisLifetime = whoisLifetime;
+    }
+
+    /**
+     * Gets the key for a reply.
+     *
+     * @param type reply type
+     * @param target target
+     * @return key
+     */
+    @Nonnull
+    private String getKey(@Nonnull ReplyType<?> type, @Nonnull String target) {
+        return type.getName() + ' ' + this.client.getServerInfo().getCaseMapping().toLowerCase(target);
+    }
+
+    @Nonnull
+    @Override
+    public <T> CompletableFuture<T> await(@Nonnull ReplyType<T> type, @Nonnull String target) {
+        return this.await(type, target, this.defaultTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Nonnull
+    @Override
+    public <T> CompletableFuture<T> await(@Nonnull ReplyType<T> type, @Nonnull String target, long timeout, @Nonnull TimeUnit unit) {
+        Sanity.nullCheck(type, "Type cannot be null");
+        Sanity.nullCheck(target, "Target cannot be null");
+        Sanity.nullCheck(unit, "Unit cannot be null");
+        Sanity.truthiness(timeout >= 0, "Timeout cannot be negative");
+        String key = this.getKey(type, target);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable startTimeout = (timeout == 0) ? null : () -> {
+            ScheduledFuture<?> expiry = TIMEOUTS.schedule(() -> {
+                future.completeExceptionally(new TimeoutException("No " + type.getName() + " reply for " + target + " within " + unit.toMillis(timeout) + "ms"));
+            }, timeout, unit);
+            future.whenComplete((value, throwable) -> expiry.cancel(false));
+        };
+        synchronized (this.futures) {
+            this.futures.computeIfAbsent(key, k -> new ArrayDeque<>()).add(future);
+            if (startTimeout != null) {
+                if (this.connected) {
+                    startTimeout.run();
+                } else { // Nothing can be sent yet
+                    this.awaitingConnection.put(future, startTimeout);
+                }
+            }
+        }
+        future.whenComplete((value, throwable) -> this.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Reserves the next reply of a type for a request made by the client
+     * itself, so that it completes no request awaiting a later reply.
+     *
+     * @param type reply type
+     * @param target target
+     */
+    void expect(@Nonnull ReplyType<?> type, @Nonnull String target) {
+        this.await(type, target);
+    }
+
+    /**
+     * Starts the timeouts of requests made before the client connected,
+     * once lines can be sent.
+     */
+    void connected() {
+        List<Runnable> timeouts;
+        synchronized (this.futures) {
+            this.connected = true;
+            timeouts = new ArrayList<>(this.awaitingConnection.values());
+            this.awaitingConnection.clear();
+        }
+        timeouts.forEach(Runnable::run);
+    }
+
+    /**
+     * Fails the requests made while connected, as replies to them will
+     * never arrive. Requests made since are kept for the next connection.
+     */
+    void disconnected() {
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        synchronized (this.futures) {
+            if (!this.connected) {
+                return;
+            }
+            this.connected = false;
+            this.futures.values().forEach(pending::addAll);
+        }
+        KittehConnectionException exception = new KittehConnectionException("Disconnected before reply", true);
+        pending.forEach(future -> future.completeExceptionally(exception));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<WhoisData> getWhois(@Nonnull String nick) {
+        Sanity.safeMessageCheck(nick, "Nick");
+        Sanity.truthiness(nick.indexOf(' ') == -1, "Nick cannot contain spaces");
+        String key = this.getKey(ReplyType.WHOIS, nick);
+        CompletableFuture<WhoisData> future;
+        boolean inFlight;
+        synchronized (this.futures) {
+            synchronized (this.whoisCache) {
+                CachedWhois cached = this.whoisCache.get(key);
+                if (cached != null) {
+                    if ((cached.expiry - System.nanoTime()) > 0) {
+                        return CompletableFuture.completedFuture(cached.data);
+                    }
+                    this.whoisCache.remove(key);
+                }
+            }
+            inFlight = this.futures.containsKey(key);
+            future = this.await(ReplyType.WHOIS, nick);
+        }
+        if (!inFlight) {
+            this.client.sendRawLine("WHOIS " + nick);
+        }
+        return future;
+    }
+
+    /**
+     * Caches a WHOIS reply and completes the requests awaiting it.
+     *
+     * @param nick nick
+     * @param whois reply
+     */
+    void completeWhois(@Nonnull String nick, @Nonnull WhoisData whois) {
+        if (this.whoisLifetime > 0) {
+            long now = System.nanoTime();
+            synchronized (this.whoisCache) {
+                Iterator<CachedWhois> iterator = this.whoisCache.values().iterator();
+                while (iterator.hasNext() && ((iterator.next().expiry - now) <= 0)) {
+                    iterator.remove();
+                }
+                String key = this.getKey(ReplyType.WHOIS, nick);
+                this.whoisCache.remove(key); // Re-insert at the end to keep expiry order
+                this.whoisCache.put(key, new CachedWhois(whois, now + TimeUnit.MILLISECONDS.toNanos(this.whoisLifetime)));
+            }
+        }
+        this.complete(ReplyType.WHOIS, nick, whois);
+    }
+
+    /**
+     * Discards the cached WHOIS reply for a nick, after a change to the
+     * user.
+     *
+     * @param nick nick
+     */
+    void invalidateWhois(@Nonnull String nick) {
+        synchronized (this.whoisCache) {
+            this.whoisCache.remove(this.getKey(ReplyType.WHOIS, nick));
+        }
+    }
+
+    @Override
+    public void reset() {
+        synchronized (this.whoisCache) {
+            this.whoisCache.clear();
+        }
+        synchronized (this.whoTokens) {
+            this.whoTokens.clear();
+            this.whoTargets.clear();
+        }
+    }
+
+    /**
+     * Completes the requests awaiting the given reply, being all of them for
+     * shared reply types or else the oldest.
+     *
+     * @param type reply type
+     * @param target target
+     * @param value value to complete with
+     * @param <T> type of value
+     */
+    @SuppressWarnings("unchecked")
+    <T> void complete(@Nonnull ReplyType<T> type, @Nonnull String target, @Nonnull T value) {
+        this.take(type, target, type.isShared()).forEach(future -> ((CompletableFuture<T>) future).complete(value));
+    }
+
+    /**
+     * Fails the requests awaiting the given reply, being all of them for
+     * shared reply types or else the oldest.
+     *
+     * @param type reply type
+     * @param target target
+     * @param exception reason for failure
+     */
+    void fail(@Nonnull ReplyType<?> type, @Nonnull String target, @Nonnull Throwable exception) {
+        this.take(type, target, type.isShared()).forEach(future -> future.completeExceptionally(exception));
+    }
+
+    /**
+     * Fails all requests awaiting the given reply.
+     *
+     * @param type reply type
+     * @param target target
+     * @param exception reason for failure
+     */
+    void failAll(@Nonnull ReplyType<?> type, @Nonnull String target, @Nonnull Throwable exception) {
+        this.take(type, target, true).forEach(future -> future.completeExceptionally(exception));
+    }
+
+    @Nonnull
+    private List<CompletableFuture<?>> take(@Nonnull ReplyType<?> type, @Nonnull String target, boolean all) {
+        String key = this.getKey(type, target);
+        List<CompletableFuture<?>> taken = new ArrayList<>();
+        synchronized (this.futures) {
+            Deque<CompletableFuture<?>> awaiting = this.futures.get(key);
+            if (awaiting != null) {
+                if (all) {
+                    taken.addAll(awaiting);
+                    awaiting.clear();
+                } else {
+                    taken.add(awaiting.poll());
+                }
+                if (awaiting.isEmpty()) {
+                    this.futures.remove(key);
+                }
+            }
+        }
+        return taken;
+    }
+
+    private void remove(@Nonnull String key, @Nonnull CompletableFuture<?> future) {
+        synchronized (this.futures) {
+            Deque<CompletableFuture<?>> awaiting = this.futures.get(key);
+            if ((awaiting != null) && awaiting.remove(future) && awaiting.isEmpty()) {
+                this.futures.remove(key);
+            }
+            this.awaitingConnection.remove(future);
+        }
+    }
+
+    /**
+     * Gets the WHO command for a target, using WHOX with a query token if
+     * supported. Each call takes a new token, as several requests for a
+     * target may be in flight, and tokens are released in order as each
+     * reply ends.
+     *
+     * @param target channel or mask
+     * @return WHO command
+     */
+    @Nonnull
+    String getWhoLine(@Nonnull String target) {
+        if (!this.client.getServerInfo().hasWhoXSupport()) {
+            return "WHO " + target;
+        }
+        String token;
+        synchronized (this.whoTokens) {
+            do {
+                this.lastToken = (this.lastToken % MAXIMUM_TOKEN) + 1;
+                token = Integer.toString(this.lastToken);
+            } while (this.whoTargets.containsKey(token) && (this.whoTargets.size() < MAXIMUM_TOKEN));
+            this.whoTargets.put(token, target);
+            this.whoTokens.computeIfAbsent(this.getKey(ReplyType.WHO, target), key -> new ArrayDeque<>()).add(token);
+        }
+        return "WHO " + target + ' ' + WHOX_FIELDS + ',' + token;
+    }
+
+    /**
+     * Gets the target of the WHO request with the given query token.
+     *
+     * @param token query token
+     * @return target, or null if the token is not of a pending request
+     */
+    @Nullable
+    String getWhoTarget(@Nonnull String token) {
+        synchronized (this.whoTokens) {
+            return this.whoTargets.get(token);
+        }
+    }
+
+    /**
+     * Releases the query token of the oldest WHO request of a target, as
+     * its reply has ended.
+     *
+     * @param target target
+     */
+    void endWho(@Nonnull String target) {
+        synchronized (this.whoTokens) {
+            String key = this.getKey(ReplyType.WHO, target);
+            Deque<String> tokens = this.whoTokens.get(key);
+            if (tokens != null) {
+                this.whoTargets.remove(tokens.poll());
+                if (tokens.isEmpty()) {
+                    this.whoTokens.remove(key);
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        synchronized (this.futures) {
+            return new ToStringer(this).add("pending", this.futures.size()).add("defaultTimeout", this.defaultTimeout).add("whoisLifetime", this.whoisLifetime).toString();
+        }
+    }
+}
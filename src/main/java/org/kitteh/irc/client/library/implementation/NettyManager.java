@@ -24,6 +24,7 @@
 package org.kitteh.irc.client.library.implementation;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
@@ -33,6 +34,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -114,6 +116,15 @@ final class NettyManager {
                 }
             });
             this.channel.pipeline().addFirst("[OUTPUT] String encoder", new StringEncoder(CharsetUtil.UTF_8));
+            this.channel.pipeline().addFirst("[OUTPUT] Metrics", new ChannelOutboundHandlerAdapter() {
+                @Override
+                public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                    if (msg instanceof ByteBuf) {
+                        ClientConnection.this.client.getMetrics().lineSent(ClientConnection.this.client, ((ByteBuf) msg).readableBytes());
+                    }
+                    super.write(ctx, msg, promise);
+                }
+            });
 
             // Handle timeout
             this.channel.pipeline().addLast("[INPUT] Idle state handler", new IdleStateHandler(250, 0, 0));
@@ -131,6 +142,15 @@ final class NettyManager {
 
             // Inbound
             this.channel.pipeline().addLast("[INPUT] Line splitter", new DelimiterBasedFrameDecoder(MAX_LINE_LENGTH, Unpooled.wrappedBuffer(new byte[]{(byte) '\r', (byte) '\n'})));
+            this.channel.pipeline().addLast("[INPUT] Metrics", new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                    if (msg instanceof ByteBuf) {
+                        ClientConnection.this.client.getMetrics().lineReceived(ClientConnection.this.client, ((ByteBuf) msg).readableBytes());
+                    }
+                    super.channelRead(ctx, msg);
+                }
+            });
             this.channel.pipeline().addLast("[INPUT] String decoder", new StringDecoder(CharsetUtil.UTF_8));
             this.channel.pipeline().addLast("[INPUT] Send to client", new SimpleChannelInboundHandler<String>() {
                 @Override
@@ -196,6 +216,7 @@ final class NettyManager {
 
             // Clean up on disconnect
             this.channel.closeFuture().addListener(futureListener -> {
+                ClientConnection.this.client.getReplyManager().disconnected();
                 if (ClientConnection.this.reconnect) {
                     this.scheduleReconnect();
                 }
@@ -205,7 +226,10 @@ final class NettyManager {
         }
 
         private void scheduleReconnect() {
-            ClientConnection.this.channel.eventLoop().schedule(ClientConnection.this.client::connect, 5, TimeUnit.SECONDS);
+            ClientConnection.this.channel.eventLoop().schedule(() -> {
+                ClientConnection.this.client.getMetrics().reconnecting(ClientConnection.this.client);
+                ClientConnection.this.client.connect();
+            }, 5, TimeUnit.SECONDS);
         }
 
         private void handleException(Exception thrown) {
@@ -217,6 +241,7 @@ final class NettyManager {
 
         void startSending() {
             this.channel.eventLoop().scheduleWithFixedDelay(this.client::ping, 60, 60, TimeUnit.SECONDS);
+            this.channel.eventLoop().scheduleWithFixedDelay(this.client.getActorProvider()::resyncProvisionalChannel, 1, 1, TimeUnit.SECONDS);
         }
 
         void shutdown(DefaultMessageType messageType, boolean reconnect) {
@@ -0,0 +1,146 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.feature.UserRegistry;
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Pools of user identities and the strings within them, split into
+ * stripes each under its own lock so that clients sharing the registry
+ * rarely wait on each other.
+ */
+final class SharedUserRegistry implements UserRegistry {
+    private static final int STRIPES = 16;
+
+    private final StringPool[] strings = new StringPool[STRIPES];
+    private final List<Map<UserIdentity, WeakReference<UserIdentity>>> identities = new ArrayList<>(STRIPES);
+    private final boolean shared;
+
+    SharedUserRegistry() {
+        this(true);
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param shared false if only one client uses the registry, so that
+     * identities need not be pooled as they change
+     */
+    SharedUserRegistry(boolean shared) {
+        this.shared = shared;
+        for (int i = 0; i < STRIPES; i++) {
+            this.strings[i] = new StringPool();
+            this.identities.add(new WeakHashMap<>());
+        }
+    }
+
+    /**
+     * Gets the pooled instance equal to the given string.
+     *
+     * @param string string to pool
+     * @return pooled string
+     */
+    @Nonnull
+    String intern(@Nonnull String string) {
+        return this.getStringPool(string).intern(string);
+    }
+
+    /**
+     * Gets the pooled instance equal to the given string, if not null.
+     *
+     * @param string string to pool
+     * @return pooled string or null
+     */
+    @Nullable
+    String internNullable(@Nullable String string) {
+        return this.getStringPool(string).internNullable(string);
+    }
+
+    /**
+     * Gets if the registry is shared between clients, so that changed
+     * identities are to be pooled.
+     *
+     * @return true if shared
+     */
+    boolean isShared() {
+        return this.shared;
+    }
+
+    @Nonnull
+    private StringPool getStringPool(@Nullable String string) {
+        return this.strings[(string == null) ? 0 : stripe(string.hashCode())];
+    }
+
+    /**
+     * Gets the pooled instance equal to the given identity, pooling an
+     * identity of pooled strings if no equal identity is present.
+     *
+     * @param identity identity to pool
+     * @return pooled identity
+     */
+    @Nonnull
+    UserIdentity intern(@Nonnull UserIdentity identity) {
+        Map<UserIdentity, WeakReference<UserIdentity>> pool = this.identities.get(stripe(identity.hashCode()));
+        synchronized (pool) {
+            WeakReference<UserIdentity> reference = pool.get(identity);
+            UserIdentity pooled = (reference == null) ? null : reference.get();
+            if (pooled == null) {
+                pooled = new UserIdentity(this.intern(identity.getMask()), this.intern(identity.getNick()), this.intern(identity.getUser()), this.intern(identity.getHost()),
+                        this.internNullable(identity.getAccount()), this.internNullable(identity.getRealName()), this.internNullable(identity.getServer()), identity.isAway());
+                pool.put(pooled, new WeakReference<>(pooled));
+            }
+            return pooled;
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Map<UserIdentity, WeakReference<UserIdentity>> pool : this.identities) {
+            synchronized (pool) {
+                size += pool.size();
+            }
+        }
+        return size;
+    }
+
+    private static int stripe(int hash) {
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("size", this.size()).toString();
+    }
+}
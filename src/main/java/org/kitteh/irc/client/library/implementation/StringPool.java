@@ -0,0 +1,85 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of strings, so that equal nicks, idents, hosts and the like share a
+ * single instance. Strings are only weakly held, vanishing from the pool
+ * once nothing else references them.
+ */
+final class StringPool {
+    private final Map<String, WeakReference<String>> pool = new WeakHashMap<>();
+
+    /**
+     * Gets the pooled instance equal to the given string, pooling the given
+     * string if no equal string is present.
+     *
+     * @param string string to pool
+     * @return pooled string
+     */
+    @Nonnull
+    synchronized String intern(@Nonnull String string) {
+        WeakReference<String> reference = this.pool.get(string);
+        String pooled = (reference == null) ? null : reference.get();
+        if (pooled == null) {
+            this.pool.put(string, new WeakReference<>(string));
+            return string;
+        }
+        return pooled;
+    }
+
+    /**
+     * Gets the pooled instance equal to the given string, if not null.
+     *
+     * @param string string to pool or null
+     * @return pooled string or null if null
+     */
+    @Nullable
+    String internNullable(@Nullable String string) {
+        return (string == null) ? null : this.intern(string);
+    }
+
+    /**
+     * Gets the number of strings currently pooled.
+     *
+     * @return pool size
+     */
+    synchronized int size() {
+        return this.pool.size();
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("size", this.size()).toString();
+    }
+}
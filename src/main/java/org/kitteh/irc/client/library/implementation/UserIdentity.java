@@ -0,0 +1,156 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.implementation;
+
+import org.kitteh.irc.client.library.util.ToStringer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * The identity of a user as seen at one moment, immutable so that clients
+ * seeing the same user the same way can share one instance.
+ */
+final class UserIdentity {
+    private final String mask;
+    private final String nick;
+    private final String user;
+    private final String host;
+    private final String account;
+    private final String realName;
+    private final String server;
+    private final boolean away;
+    private final int hash;
+
+    UserIdentity(@Nonnull String nick, @Nonnull String user, @Nonnull String host) {
+        this(nick + '!' + user + '@' + host, nick, user, host, null, null, null, false);
+    }
+
+    UserIdentity(@Nonnull String mask, @Nonnull String nick, @Nonnull String user, @Nonnull String host, @Nullable String account, @Nullable String realName, @Nullable String server, boolean away) {
+        this.mask = mask;
+        this.nick = nick;
+        this.user = user;
+        this.host = host;
+        this.account = account;
+        this.realName = realName;
+        this.server = server;
+        this.away = away;
+        this.hash = Objects.hash(mask, account, realName, server, away);
+    }
+
+    @Nonnull
+    String getMask() {
+        return this.mask;
+    }
+
+    @Nonnull
+    String getNick() {
+        return this.nick;
+    }
+
+    @Nonnull
+    String getUser() {
+        return this.user;
+    }
+
+    @Nonnull
+    String getHost() {
+        return this.host;
+    }
+
+    @Nullable
+    String getAccount() {
+        return this.account;
+    }
+
+    @Nullable
+    String getRealName() {
+        return this.realName;
+    }
+
+    @Nullable
+    String getServer() {
+        return this.server;
+    }
+
+    boolean isAway() {
+        return this.away;
+    }
+
+    @Nonnull
+    UserIdentity withNick(@Nonnull String nick) {
+        return new UserIdentity(nick + '!' + this.user + '@' + this.host, nick, this.user, this.host, this.account, this.realName, this.server, this.away);
+    }
+
+    @Nonnull
+    UserIdentity withUser(@Nonnull String user) {
+        return new UserIdentity(this.nick + '!' + user + '@' + this.host, this.nick, user, this.host, this.account, this.realName, this.server, this.away);
+    }
+
+    @Nonnull
+    UserIdentity withHost(@Nonnull String host) {
+        return new UserIdentity(this.nick + '!' + this.user + '@' + host, this.nick, this.user, host, this.account, this.realName, this.server, this.away);
+    }
+
+    @Nonnull
+    UserIdentity withAccount(@Nullable String account) {
+        return new UserIdentity(this.mask, this.nick, this.user, this.host, account, this.realName, this.server, this.away);
+    }
+
+    @Nonnull
+    UserIdentity withRealName(@Nonnull String realName) {
+        return new UserIdentity(this.mask, this.nick, this.user, this.host, this.account, realName, this.server, this.away);
+    }
+
+    @Nonnull
+    UserIdentity withServer(@Nonnull String server) {
+        return new UserIdentity(this.mask, this.nick, this.user, this.host, this.account, this.realName, server, this.away);
+    }
+
+    @Nonnull
+    UserIdentity withAway(boolean away) {
+        return new UserIdentity(this.mask, this.nick, this.user, this.host, this.account, this.realName, this.server, away);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof UserIdentity)) {
+            return false;
+        }
+        UserIdentity identity = (UserIdentity) o;
+        return (this.hash == identity.hash) && (this.away == identity.away) && this.mask.equals(identity.mask) && Objects.equals(this.account, identity.account) && Objects.equals(this.realName, identity.realName) && Objects.equals(this.server, identity.server);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return new ToStringer(this).add("mask", this.mask).add("account", this.account).add("away", this.away).toString();
+    }
+}
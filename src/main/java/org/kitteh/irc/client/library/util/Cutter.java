@@ -77,6 +77,66 @@ public interface Cutter {
         }
     }
 
+    /**
+     * Cuts by words, unless word is too long, measuring the size limit in
+     * UTF-8 encoded bytes rather than characters.
+     */
+    class Utf8WordCutter implements Cutter {
+        @Nonnull
+        @Override
+        public List<String> split(@Nonnull String message, int size) {
+            Sanity.nullCheck(message, "Message cannot be null");
+            Sanity.truthiness(size > 0, "Size must be positive");
+            List<String> list = new ArrayList<>();
+            if (LineBuilder.getByteLength(message, "Message") <= size) {
+                list.add(message);
+                return list;
+            }
+            StringBuilder builder = new StringBuilder();
+            int builderBytes = 0;
+            for (String word : message.split(" ")) {
+                int wordBytes = LineBuilder.getByteLength(word);
+                if ((builderBytes + wordBytes + ((builder.length() == 0) ? 0 : 1)) > size) {
+                    if ((wordBytes > size) && ((builderBytes + 1) < size)) {
+                        if (builder.length() > 0) {
+                            builder.append(' ');
+                            builderBytes++;
+                        }
+                        int cut = LineBuilder.getCutIndex(word, 0, size - builderBytes);
+                        builder.append(word, 0, cut);
+                        word = word.substring(cut);
+                        wordBytes = LineBuilder.getByteLength(word);
+                    }
+                    this.add(list, builder);
+                    builder.setLength(0);
+                    builderBytes = 0;
+                    while (wordBytes > size) {
+                        // A single character may not fit a tiny size, so always take at least one
+                        int cut = Math.max(LineBuilder.getCutIndex(word, 0, size), Character.charCount(word.codePointAt(0)));
+                        list.add(word.substring(0, cut));
+                        word = word.substring(cut);
+                        wordBytes = LineBuilder.getByteLength(word);
+                    }
+                }
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                    builderBytes++;
+                }
+                builder.append(word);
+                builderBytes += wordBytes;
+            }
+            this.add(list, builder);
+            return list;
+        }
+
+        private void add(@Nonnull List<String> list, @Nonnull StringBuilder builder) {
+            String line = builder.toString().trim();
+            if (!line.isEmpty()) {
+                list.add(line);
+            }
+        }
+    }
+
     /**
      * Splits a message into items no longer than the size limit.
      *
@@ -0,0 +1,111 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.util;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Interfaces for streams with demand-driven backpressure, matching those
+ * of {@code java.util.concurrent.Flow} from Java 9. The two are distinct
+ * types, so use with the Java 9 interfaces needs a small adapter wrapping
+ * the publisher, subscriber and subscription, each method delegating to
+ * its counterpart.
+ */
+public final class Flow {
+    /**
+     * Produces items for subscribers, each receiving only as many items as
+     * it has requested.
+     *
+     * @param <T> the type of items published
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * Adds a subscriber, which is passed its subscription through
+         * {@link Subscriber#onSubscribe(Subscription)}.
+         *
+         * @param subscriber subscriber
+         * @throws IllegalArgumentException if subscriber is null
+         */
+        void subscribe(@Nonnull Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receives items from a publisher, one method call at a time.
+     *
+     * @param <T> the type of items received
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called before any other method, with the subscription through
+         * which to request items.
+         *
+         * @param subscription subscription
+         */
+        void onSubscribe(@Nonnull Subscription subscription);
+
+        /**
+         * Called with the next item, once per item requested.
+         *
+         * @param item item
+         */
+        void onNext(@Nonnull T item);
+
+        /**
+         * Called once the subscription has failed, after which no other
+         * method is called.
+         *
+         * @param throwable reason for failure
+         */
+        void onError(@Nonnull Throwable throwable);
+
+        /**
+         * Called once no more items will be published, after which no
+         * other method is called.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Links a publisher to a subscriber.
+     */
+    public interface Subscription {
+        /**
+         * Requests more items. Requesting a total of {@link Long#MAX_VALUE}
+         * or more is unbounded.
+         *
+         * @param n number of items to add to those requested, which must be
+         * positive or the subscription fails
+         */
+        void request(long n);
+
+        /**
+         * Stops items being sent, possibly after some already on their way.
+         */
+        void cancel();
+    }
+
+    private Flow() {
+    }
+}
@@ -24,7 +24,8 @@
 package org.kitteh.irc.client.library.util;
 
 import javax.annotation.Nonnull;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents various formatting available in IRC.
@@ -133,12 +134,108 @@ public enum Format {
         this.toString = COLOR_CHAR + ((color < 10) ? "0" : "") + color;
     }
 
+    /**
+     * A run of text sharing the same formatting.
+     *
+     * @see #parse(String)
+     */
+    public static final class Span {
+        private final String text;
+        private final int foreground;
+        private final int background;
+        private final boolean bold;
+        private final boolean italic;
+        private final boolean reverse;
+        private final boolean underline;
+
+        private Span(@Nonnull String text, int foreground, int background, boolean bold, boolean italic, boolean reverse, boolean underline) {
+            this.text = text;
+            this.foreground = foreground;
+            this.background = background;
+            this.bold = bold;
+            this.italic = italic;
+            this.reverse = reverse;
+            this.underline = underline;
+        }
+
+        /**
+         * Gets the text, without formatting.
+         *
+         * @return text
+         */
+        @Nonnull
+        public String getText() {
+            return this.text;
+        }
+
+        /**
+         * Gets the foreground color number.
+         *
+         * @return color number or -1 if no color is set
+         * @see Format#getColorChar()
+         */
+        public int getForeground() {
+            return this.foreground;
+        }
+
+        /**
+         * Gets the background color number.
+         *
+         * @return color number or -1 if no color is set
+         * @see Format#getColorChar()
+         */
+        public int getBackground() {
+            return this.background;
+        }
+
+        /**
+         * Gets if the text is bold.
+         *
+         * @return true if bold
+         */
+        public boolean isBold() {
+            return this.bold;
+        }
+
+        /**
+         * Gets if the text is italic.
+         *
+         * @return true if italic
+         */
+        public boolean isItalic() {
+            return this.italic;
+        }
+
+        /**
+         * Gets if the text has its colors reversed.
+         *
+         * @return true if reversed
+         */
+        public boolean isReverse() {
+            return this.reverse;
+        }
+
+        /**
+         * Gets if the text is underlined.
+         *
+         * @return true if underlined
+         */
+        public boolean isUnderline() {
+            return this.underline;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return new ToStringer(this).add("text", this.text).add("foreground", this.foreground).add("background", this.background)
+                    .add("bold", this.bold).add("italic", this.italic).add("reverse", this.reverse).add("underline", this.underline).toString();
+        }
+    }
+
     /**
      * Character indicating color.
      */
     public static final char COLOR_CHAR = '\u0003';
-    private static final Pattern COLOR_REGEX = Pattern.compile(COLOR_CHAR + "[0-9]{1,2}(?:,[0-9]{1,2})?");
-    private static final Pattern FORMAT_REGEX = Pattern.compile("[" + BOLD + RESET + REVERSE + UNDERLINE + ']');
 
     /**
      * Strips color and formatting from a given input.
@@ -150,7 +247,8 @@ public enum Format {
      */
     @Nonnull
     public static String stripAll(@Nonnull String input) {
-        return stripColor(stripFormatting(input));
+        Sanity.nullCheck(input, "Input cannot be null");
+        return strip(input, true, true);
     }
 
     /**
@@ -162,7 +260,7 @@ public enum Format {
     @Nonnull
     public static String stripColor(@Nonnull String input) {
         Sanity.nullCheck(input, "Input cannot be null");
-        return COLOR_REGEX.matcher(input).replaceAll("");
+        return strip(input, true, false);
     }
 
     /**
@@ -174,7 +272,142 @@ public enum Format {
     @Nonnull
     public static String stripFormatting(@Nonnull String input) {
         Sanity.nullCheck(input, "Input cannot be null");
-        return FORMAT_REGEX.matcher(input).replaceAll("");
+        return strip(input, false, true);
+    }
+
+    /**
+     * Parses color and formatting from a given input into runs of text
+     * sharing the same formatting.
+     *
+     * @param input input to parse
+     * @return spans of text, in order, without empty spans
+     */
+    @Nonnull
+    public static List<Span> parse(@Nonnull String input) {
+        Sanity.nullCheck(input, "Input cannot be null");
+        List<Span> spans = new ArrayList<>();
+        int foreground = -1;
+        int background = -1;
+        boolean bold = false;
+        boolean italic = false;
+        boolean reverse = false;
+        boolean underline = false;
+        int textStart = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char ch = input.charAt(i);
+            if ((ch != COLOR_CHAR) && !isFormattingChar(ch)) {
+                continue;
+            }
+            if (i > textStart) {
+                spans.add(new Span(input.substring(textStart, i), foreground, background, bold, italic, reverse, underline));
+            }
+            int end = i + 1;
+            switch (ch) {
+                case COLOR_CHAR:
+                    end = colorEnd(input, i);
+                    int foregroundEnd = digitsEnd(input, i + 1);
+                    if (foregroundEnd == (i + 1)) {
+                        foreground = background = -1; // Bare color character resets colors
+                    } else {
+                        foreground = parseNumber(input, i + 1, foregroundEnd);
+                        if (foregroundEnd < end) {
+                            background = parseNumber(input, foregroundEnd + 1, end);
+                        }
+                    }
+                    break;
+                case '\u0002':
+                    bold = !bold;
+                    break;
+                case '\u001d':
+                    italic = !italic;
+                    break;
+                case '\u0016':
+                    reverse = !reverse;
+                    break;
+                case '\u001f':
+                    underline = !underline;
+                    break;
+                default: // Reset
+                    foreground = background = -1;
+                    bold = italic = reverse = underline = false;
+            }
+            textStart = end;
+            i = end - 1;
+        }
+        if (textStart < input.length()) {
+            spans.add(new Span(input.substring(textStart), foreground, background, bold, italic, reverse, underline));
+        }
+        return spans;
+    }
+
+    @Nonnull
+    private static String strip(@Nonnull String input, boolean color, boolean formatting) {
+        StringBuilder builder = null;
+        int copied = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char ch = input.charAt(i);
+            int end;
+            if (color && (ch == COLOR_CHAR)) {
+                end = colorEnd(input, i);
+            } else if (formatting && isFormattingChar(ch)) {
+                end = i + 1;
+            } else {
+                continue;
+            }
+            if (builder == null) {
+                builder = new StringBuilder(input.length());
+            }
+            builder.append(input, copied, i);
+            copied = end;
+            i = end - 1;
+        }
+        if (builder == null) {
+            return input; // Nothing to strip, no copy needed
+        }
+        return builder.append(input, copied, input.length()).toString();
+    }
+
+    private static boolean isFormattingChar(char ch) {
+        switch (ch) {
+            case '\u0002': // Bold
+            case '\u000f': // Reset
+            case '\u0016': // Reverse
+            case '\u001d': // Italic
+            case '\u001f': // Underline
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // A color code is the color character, up to two digits of foreground
+    // and, only if a foreground is present, a comma and up to two digits of background
+    private static int colorEnd(@Nonnull String input, int index) {
+        int end = digitsEnd(input, index + 1);
+        if ((end > (index + 1)) && ((end + 1) < input.length()) && (input.charAt(end) == ',') && isDigit(input.charAt(end + 1))) {
+            end = digitsEnd(input, end + 1);
+        }
+        return end;
+    }
+
+    private static int digitsEnd(@Nonnull String input, int start) {
+        int end = start;
+        while ((end < input.length()) && ((end - start) < 2) && isDigit(input.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int parseNumber(@Nonnull String input, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            number = (number * 10) + (input.charAt(i) - '0');
+        }
+        return number;
+    }
+
+    private static boolean isDigit(char ch) {
+        return (ch >= '0') && (ch <= '9');
     }
 
     /**
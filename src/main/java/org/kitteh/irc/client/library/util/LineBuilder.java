@@ -0,0 +1,170 @@
+/*
+ * * Copyright (C) 2013-2016 Matt Baxter http://kitteh.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.kitteh.irc.client.library.util;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Builds an outbound line, rejecting CR, LF and NUL and counting the
+ * UTF-8 encoded length in the same pass over each appended part.
+ */
+public final class LineBuilder {
+    private final StringBuilder builder;
+    private int byteLength;
+
+    /**
+     * Creates an empty line builder.
+     */
+    public LineBuilder() {
+        this.builder = new StringBuilder(64);
+    }
+
+    /**
+     * Appends a part of the line.
+     *
+     * @param part part to append
+     * @param name name of the part, for error messages
+     * @return this builder
+     * @throws IllegalArgumentException if null or containing CR, LF, or NUL
+     */
+    @Nonnull
+    public LineBuilder append(@Nonnull CharSequence part, @Nonnull String name) {
+        this.byteLength += getByteLength(part, name);
+        this.builder.append(part);
+        return this;
+    }
+
+    /**
+     * Appends a part of the line.
+     *
+     * @param part part to append
+     * @return this builder
+     * @throws IllegalArgumentException if null or containing CR, LF, or NUL
+     */
+    @Nonnull
+    public LineBuilder append(@Nonnull CharSequence part) {
+        return this.append(part, "Part");
+    }
+
+    /**
+     * Gets the UTF-8 encoded length of the line so far.
+     *
+     * @return length in bytes
+     */
+    public int getByteLength() {
+        return this.byteLength;
+    }
+
+    /**
+     * Gets the line built so far.
+     *
+     * @return line
+     */
+    @Nonnull
+    @Override
+    public String toString() {
+        return this.builder.toString();
+    }
+
+    /**
+     * Gets the UTF-8 encoded length of a string, checking that it contains
+     * no CR, LF, or NUL. Unpaired surrogates count as the single byte of
+     * the replacement the encoder writes.
+     *
+     * @param string string to measure
+     * @param name name of the string, for error messages
+     * @return length in bytes
+     * @throws IllegalArgumentException if null or containing CR, LF, or NUL
+     */
+    public static int getByteLength(@Nonnull CharSequence string, @Nonnull String name) {
+        Sanity.nullCheck(string, name + " cannot be null");
+        int length = string.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char ch = string.charAt(i);
+            if (ch < 0x80) {
+                if ((ch == '\n') || (ch == '\r') || (ch == '\0')) {
+                    throw new IllegalArgumentException(name + " cannot contain CR, LF, or NUL");
+                }
+            } else if (ch < 0x800) {
+                bytes++;
+            } else if (Character.isHighSurrogate(ch) && ((i + 1) < length) && Character.isLowSurrogate(string.charAt(i + 1))) {
+                bytes += 2; // Four bytes for the two chars
+                i++;
+            } else if (!Character.isSurrogate(ch)) {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the UTF-8 encoded length of a string.
+     *
+     * @param string string to measure
+     * @return length in bytes
+     * @throws IllegalArgumentException if null or containing CR, LF, or NUL
+     * @see #getByteLength(CharSequence, String)
+     */
+    public static int getByteLength(@Nonnull CharSequence string) {
+        return getByteLength(string, "String");
+    }
+
+    /**
+     * Gets the index at which to cut a string so that the part before it
+     * is as long as possible without exceeding the given UTF-8 encoded
+     * length. Surrogate pairs are never cut apart.
+     *
+     * @param string string to cut
+     * @param start index to start from
+     * @param maxBytes maximum length in bytes of the part
+     * @return index at which to cut, which is start if not even one
+     * character fits
+     */
+    public static int getCutIndex(@Nonnull CharSequence string, int start, int maxBytes) {
+        int bytes = 0;
+        int i = start;
+        while (i < string.length()) {
+            char ch = string.charAt(i);
+            int charBytes;
+            int chars = 1;
+            if (ch < 0x80) {
+                charBytes = 1;
+            } else if (ch < 0x800) {
+                charBytes = 2;
+            } else if (Character.isHighSurrogate(ch) && ((i + 1) < string.length()) && Character.isLowSurrogate(string.charAt(i + 1))) {
+                charBytes = 4;
+                chars = 2;
+            } else {
+                charBytes = Character.isSurrogate(ch) ? 1 : 3;
+            }
+            if ((bytes + charBytes) > maxBytes) {
+                break;
+            }
+            bytes += charBytes;
+            i += chars;
+        }
+        return i;
+    }
+}
@@ -27,6 +27,7 @@ import javax.annotation.Nonnull;
 import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Self starting processor of queued items on its own thread.
@@ -35,6 +36,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public abstract class QueueProcessingThread<Type> extends Thread {
     private final Queue<Type> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
 
     /**
      * Creates a thread and starts itself.
@@ -59,7 +61,9 @@ public abstract class QueueProcessingThread<Type> extends Thread {
                     }
                 }
             }
-            this.processElement(this.queue.poll());
+            Type element = this.queue.poll();
+            this.queueSize.decrementAndGet();
+            this.processElement(element);
         }
         this.interrupt();
         this.cleanup(this.queue);
@@ -101,6 +105,16 @@ public abstract class QueueProcessingThread<Type> extends Thread {
         return new ArrayDeque<>(this.queue);
     }
 
+    /**
+     * Gets the number of items waiting in the queue, without the cost of
+     * traversing it.
+     *
+     * @return queue size
+     */
+    public int getQueueSize() {
+        return this.queueSize.get();
+    }
+
     /**
      * Queues an item.
      *
@@ -110,6 +124,7 @@ public abstract class QueueProcessingThread<Type> extends Thread {
         Sanity.nullCheck(item, "Item cannot be null");
         synchronized (this.queue) {
             this.queue.add(item);
+            this.queueSize.incrementAndGet();
             this.queue.notify();
         }
     }
@@ -23,8 +23,8 @@
  */
 package org.kitteh.irc.client.library.util;
 
+import org.kitteh.irc.client.library.feature.sts.STSIndexedStorageManager;
 import org.kitteh.irc.client.library.feature.sts.STSPolicy;
-import org.kitteh.irc.client.library.feature.sts.STSPropertiesStorageManager;
 import org.kitteh.irc.client.library.feature.sts.STSStorageManager;
 
 import javax.annotation.Nonnull;
@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility methods for dealing with STS.
@@ -44,6 +45,8 @@ public final class STSUtil {
      */
     public static final String DEFAULT_FILENAME = ".kicl_sts.properties";
 
+    private static final Map<Path, STSStorageManager> STORAGE_MANAGERS = new ConcurrentHashMap<>();
+
     private STSUtil() {
     }
 
@@ -59,13 +62,16 @@ public final class STSUtil {
 
     /**
      * Gets the default storage implementation using an alternative file.
+     * <p>
+     * All calls for the same file share one storage instance.
      *
      * @param stsFile File instance
      * @return an STSStorageManager implementer
      */
     @Nonnull
     public static STSStorageManager getDefaultStorageManager(@Nonnull Path stsFile) {
-        return new STSPropertiesStorageManager(stsFile);
+        Sanity.nullCheck(stsFile, "Must provide a valid path to the properties file to use.");
+        return STORAGE_MANAGERS.computeIfAbsent(stsFile.toAbsolutePath().normalize(), STSIndexedStorageManager::new);
     }
 
     /**
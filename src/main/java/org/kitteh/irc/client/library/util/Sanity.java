@@ -104,7 +104,8 @@ public final class Sanity {
     @Nonnull
     public static String safeMessageCheck(@Nullable String message, @Nonnull String name) {
         Sanity.nullCheck(message, name + " cannot be null");
-        for (char ch : message.toCharArray()) {
+        for (int i = 0; i < message.length(); i++) {
+            char ch = message.charAt(i);
             if ((ch == '\n') || (ch == '\r') || (ch == '\0')) {
                 throw new IllegalArgumentException(name + " cannot contain CR, LF, or NUL");
             }
@@ -4,10 +4,21 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.kitteh.irc.client.library.util.Format;
 
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 /**
  * Make sure nothing has gone horribly wrong at the format factory.
  */
 public class FormatTest {
+    // The patterns previously used for stripping, kept for comparison. Italics and bare color characters are now also stripped.
+    private static final Pattern COLOR_REGEX = Pattern.compile(Format.COLOR_CHAR + "(?:[0-9]{1,2}(?:,[0-9]{1,2})?)?");
+    private static final Pattern FORMAT_REGEX = Pattern.compile("[" + Format.BOLD + Format.ITALIC + Format.RESET + Format.REVERSE + Format.UNDERLINE + ']');
+    // Stripping all is now one pass, so digits are no longer joined to a color character across removed formatting
+    private static final Pattern ALL_REGEX = Pattern.compile(COLOR_REGEX.pattern() + '|' + FORMAT_REGEX.pattern());
+    private static final char[] ALPHABET = {'a', 'b', ' ', ',', '0', '1', '9', '\u0002', '\u0003', '\u000f', '\u0016', '\u001d', '\u001f', 'é'};
+
     /**
      * Tests valid background input.
      */
@@ -82,4 +93,66 @@ public class FormatTest {
             }
         }
     }
+
+    /**
+     * Tests stripping italics.
+     */
+    @Test
+    public void stripItalic() {
+        Assert.assertEquals("meow", Format.stripFormatting(Format.ITALIC + "meow" + Format.ITALIC));
+        Assert.assertEquals("meow", Format.stripAll(Format.ITALIC + "" + Format.RED + "meow"));
+    }
+
+    /**
+     * Tests stripping against the reference patterns with random input.
+     */
+    @Test
+    public void stripRandom() {
+        Random random = new Random(1337);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(20)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+            String input = new String(chars);
+            Assert.assertEquals(input, COLOR_REGEX.matcher(input).replaceAll(""), Format.stripColor(input));
+            Assert.assertEquals(input, FORMAT_REGEX.matcher(input).replaceAll(""), Format.stripFormatting(input));
+            Assert.assertEquals(input, ALL_REGEX.matcher(input).replaceAll(""), Format.stripAll(input));
+            StringBuilder text = new StringBuilder();
+            Format.parse(input).forEach(span -> text.append(span.getText()));
+            Assert.assertEquals(input, Format.stripAll(input), text.toString());
+        }
+    }
+
+    /**
+     * Tests that unformatted input is returned as is.
+     */
+    @Test
+    public void stripNothing() {
+        String input = "Meow meow";
+        Assert.assertSame(input, Format.stripAll(input));
+    }
+
+    /**
+     * Tests parsing formatting into spans.
+     */
+    @Test
+    public void parse() {
+        List<Format.Span> spans = Format.parse("a" + Format.BOLD + "b" + Format.RED.withBackground(Format.BLUE) + Format.ITALIC + "c" + Format.COLOR_CHAR + "7d" + Format.COLOR_CHAR + Format.RESET + "e");
+        Assert.assertEquals(5, spans.size());
+        Assert.assertEquals("a", spans.get(0).getText());
+        Assert.assertFalse(spans.get(0).isBold());
+        Assert.assertTrue(spans.get(1).isBold());
+        Assert.assertEquals(-1, spans.get(1).getForeground());
+        Assert.assertEquals("c", spans.get(2).getText());
+        Assert.assertEquals(Format.RED.getColorChar(), spans.get(2).getForeground());
+        Assert.assertEquals(Format.BLUE.getColorChar(), spans.get(2).getBackground());
+        Assert.assertTrue(spans.get(2).isItalic());
+        Assert.assertEquals(7, spans.get(3).getForeground());
+        Assert.assertEquals(Format.BLUE.getColorChar(), spans.get(3).getBackground());
+        Assert.assertEquals("e", spans.get(4).getText());
+        Assert.assertFalse(spans.get(4).isBold());
+        Assert.assertFalse(spans.get(4).isItalic());
+        Assert.assertEquals(-1, spans.get(4).getForeground());
+    }
 }
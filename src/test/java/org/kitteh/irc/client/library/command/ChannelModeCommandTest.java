@@ -9,10 +9,12 @@ import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.element.mode.ChannelMode;
 import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
 import org.kitteh.irc.client.library.feature.ServerInfo;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
 import java.util.Optional;
 
 /**
@@ -97,6 +99,53 @@ public class ChannelModeCommandTest {
         inOrder.verify(clientMock, Mockito.times(1)).sendRawLine("MODE " + CHANNEL + " +D meow");
     }
 
+    @Test
+    public void testWithFourParameterizedModeChangesAfterSimple() {
+        Client clientMock = this.getClient();
+
+        ChannelModeCommand sut = new ChannelModeCommand(clientMock, CHANNEL);
+        sut.add(true, this.getChannelMode('A', clientMock, ChannelMode.Type.D_PARAMETER_NEVER));
+        for (char c = 'B'; c <= 'H'; c++) {
+            sut.add(false, this.getChannelMode(c, clientMock, ChannelMode.Type.B_PARAMETER_ALWAYS), String.valueOf(c));
+        }
+        sut.execute();
+        InOrder inOrder = Mockito.inOrder(clientMock, clientMock);
+        inOrder.verify(clientMock, Mockito.times(1)).sendRawLine("MODE " + CHANNEL + " +A-BCD B C D");
+        inOrder.verify(clientMock, Mockito.times(1)).sendRawLine("MODE " + CHANNEL + " -EFG E F G");
+        inOrder.verify(clientMock, Mockito.times(1)).sendRawLine("MODE " + CHANNEL + " -H H");
+    }
+
+    @Test
+    public void testWithLongMasks() {
+        Client clientMock = this.getClient();
+        String self = "Kitteh!kitteh@" + String.join("", Collections.nCopies(100, "h"));
+        User selfUser = Mockito.mock(User.class);
+        Mockito.when(selfUser.getName()).thenReturn(self);
+        Mockito.when(clientMock.getUser()).thenReturn(Optional.of(selfUser));
+        ISupportParameter.Modes modes = Mockito.mock(ISupportParameter.Modes.class);
+        Mockito.when(modes.getInteger()).thenReturn(100);
+        Mockito.when(clientMock.getServerInfo().getISupportParameter("MODES", ISupportParameter.Modes.class)).thenReturn(Optional.of(modes));
+
+        ChannelModeCommand sut = new ChannelModeCommand(clientMock, CHANNEL);
+        ChannelMode ban = this.getChannelMode('b', clientMock, ChannelMode.Type.A_MASK);
+        StringBuilder host = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            host.append('h');
+        }
+        for (int i = 0; i < 20; i++) {
+            sut.add(true, ban, "*!*@" + i + host);
+        }
+        sut.execute();
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(clientMock, Mockito.times(4)).sendRawLine(lines.capture());
+        int bans = 0;
+        for (String line : lines.getAllValues()) {
+            Assert.assertTrue((1 + self.length() + 1 + line.length()) <= 510);
+            bans += line.split(" ")[2].length() - 1;
+        }
+        Assert.assertEquals(20, bans);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testWithOneSimpleModeChangeButWrongClient() {
         Client clientMock = this.getClient();
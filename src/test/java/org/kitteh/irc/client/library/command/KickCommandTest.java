@@ -4,11 +4,16 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.ISupportParameter;
 import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.feature.ServerInfo;
 import org.kitteh.irc.client.library.feature.defaultmessage.SimpleDefaultMessageMap;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.Collections;
+import java.util.Optional;
+
 /**
  * Tests the KickCommand
  */
@@ -76,6 +81,54 @@ public class KickCommandTest {
         Mockito.verify(this.client).sendRawLine("KICK " + CHANNEL + ' ' + USER + " :" + REASON);
     }
 
+    /**
+     * Tests packing targets within the TARGMAX limit.
+     */
+    @Test
+    public void multipleTargets() {
+        ISupportParameter.TargMax targMax = Mockito.mock(ISupportParameter.TargMax.class);
+        Mockito.when(targMax.getLimit("KICK")).thenReturn(2);
+        Mockito.when(this.client.getServerInfo().getISupportParameter(ISupportParameter.TargMax.NAME, ISupportParameter.TargMax.class)).thenReturn(Optional.of(targMax));
+
+        KickCommand command = new KickCommand(this.client, CHANNEL);
+        command.target(USER).addTarget("meow").addTarget("purr");
+        command.reason(REASON);
+        command.execute();
+
+        Mockito.verify(this.client).sendRawLine("KICK " + CHANNEL + ' ' + USER + ",meow :" + REASON);
+        Mockito.verify(this.client).sendRawLine("KICK " + CHANNEL + " purr :" + REASON);
+    }
+
+    /**
+     * Tests packing targets within the line length limit, leaving room for
+     * the client's own prefix when relayed.
+     */
+    @Test
+    public void multipleTargetsLength() {
+        String self = "Kitteh!kitteh@" + String.join("", Collections.nCopies(100, "h"));
+        User selfUser = Mockito.mock(User.class);
+        Mockito.when(selfUser.getName()).thenReturn(self);
+        Mockito.when(this.client.getUser()).thenReturn(Optional.of(selfUser));
+        ISupportParameter.TargMax targMax = Mockito.mock(ISupportParameter.TargMax.class);
+        Mockito.when(targMax.getLimit("KICK")).thenReturn(Integer.MAX_VALUE);
+        Mockito.when(this.client.getServerInfo().getISupportParameter(ISupportParameter.TargMax.NAME, ISupportParameter.TargMax.class)).thenReturn(Optional.of(targMax));
+
+        KickCommand command = new KickCommand(this.client, CHANNEL);
+        for (int i = 0; i < 100; i++) {
+            command.addTarget(String.format("nick%04d", i));
+        }
+        command.execute();
+
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(this.client, Mockito.times(3)).sendRawLine(lines.capture());
+        int targets = 0;
+        for (String line : lines.getAllValues()) {
+            Assert.assertTrue((1 + self.length() + 1 + line.length()) <= 510);
+            targets += line.split(" ")[2].split(",").length;
+        }
+        Assert.assertEquals(100, targets);
+    }
+
     /**
      * Tests a targetless execution.
      */
@@ -0,0 +1,117 @@
+package org.kitteh.irc.client.library.feature.capture;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Tests recording and replaying traffic.
+ */
+public class TrafficCaptureTest {
+    private static final String[] SESSION = {
+            ":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh",
+            ":irc.kitteh.org 005 Kitteh PREFIX=(ov)@+ CHANTYPES=# :are supported by this server",
+            ":Kitteh!kitteh@kitteh.org JOIN #kitteh",
+            ":irc.kitteh.org 353 Kitteh = #kitteh :Kitteh @Meow +Purr",
+            ":irc.kitteh.org 366 Kitteh #kitteh :End of /NAMES list.",
+            ":Purr!purr@kitteh.org PRIVMSG #kitteh :été 🐱",
+            ":Meow!meow@kitteh.org PART #kitteh :Bye"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests that records read back in order across rotated files.
+     */
+    @Test
+    public void recordAndRead() throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, "kitteh", 128, 100)) {
+            for (String line : SESSION) {
+                recorder.input().accept(line);
+                recorder.output().accept("PONG " + line.length());
+            }
+        }
+        List<Path> files = TrafficCapture.getFiles(directory, "kitteh");
+        Assert.assertTrue(files.size() > 1);
+        List<TrafficCapture.Record> records = new ArrayList<>();
+        try (TrafficCapture.Reader reader = new TrafficCapture.Reader(files)) {
+            TrafficCapture.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        Assert.assertEquals(SESSION.length * 2, records.size());
+        long timestamp = 0;
+        for (int i = 0; i < SESSION.length; i++) {
+            TrafficCapture.Record input = records.get(i * 2);
+            TrafficCapture.Record output = records.get((i * 2) + 1);
+            Assert.assertEquals(TrafficCapture.Direction.INPUT, input.getDirection());
+            Assert.assertEquals(SESSION[i], input.getLine());
+            Assert.assertEquals(TrafficCapture.Direction.OUTPUT, output.getDirection());
+            Assert.assertEquals("PONG " + SESSION[i].length(), output.getLine());
+            Assert.assertTrue(input.getTimestamp() >= timestamp);
+            timestamp = input.getTimestamp();
+        }
+    }
+
+    /**
+     * Tests that only the newest files are kept, and that a new recorder
+     * continues the sequence.
+     */
+    @Test
+    public void rotation() throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, "kitteh", 1, 3)) {
+            for (int i = 0; i < 10; i++) {
+                recorder.input().accept("line " + i);
+            }
+        }
+        List<Path> files = TrafficCapture.getFiles(directory, "kitteh");
+        Assert.assertEquals(3, files.size());
+        Assert.assertEquals("kitteh.000007.kcap", files.get(0).getFileName().toString());
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, "kitteh", 1, 3)) {
+            recorder.input().accept("line 10");
+        }
+        files = TrafficCapture.getFiles(directory, "kitteh");
+        Assert.assertEquals("kitteh.000010.kcap", files.get(files.size() - 1).getFileName().toString());
+        try (TrafficCapture.Reader reader = new TrafficCapture.Reader(files)) {
+            Assert.assertEquals("line 8", reader.next().getLine());
+        }
+    }
+
+    /**
+     * Tests that replaying a capture builds channel and user state.
+     */
+    @Test
+    public void replay() throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, "kitteh", 1024 * 1024, 1)) {
+            for (String line : SESSION) {
+                recorder.input().accept(line);
+            }
+            recorder.output().accept("PRIVMSG #kitteh :ignored");
+        }
+        TrafficReplay replay = Client.builder().nick("Kitteh").serverHost("127.0.0.1").buildReplay();
+        Client client = replay.getClient();
+        try (TrafficCapture.Reader reader = new TrafficCapture.Reader(TrafficCapture.getFiles(directory, "kitteh"))) {
+            Assert.assertEquals(SESSION.length, replay.replay(reader, TrafficReplay.Speed.MAXIMUM));
+        }
+        Optional<Channel> channel = client.getChannel("#kitteh");
+        Assert.assertTrue(channel.isPresent());
+        Assert.assertEquals(Arrays.asList("Kitteh", "Purr"), channel.get().getNicknames().stream().sorted().collect(Collectors.toList()));
+        Assert.assertTrue(channel.get().getUserModes("Purr").isPresent());
+        client.shutdown();
+    }
+}
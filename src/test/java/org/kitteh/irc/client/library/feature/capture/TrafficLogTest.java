@@ -0,0 +1,177 @@
+package org.kitteh.irc.client.library.feature.capture;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests writing traffic logs.
+ */
+public class TrafficLogTest {
+    private static final Pattern LINE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z [<>!] .*");
+    private static final String PADDING = String.join("", Collections.nCopies(100, "Meow "));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests that lines read back in order across rotated segments, cut to
+     * the length written.
+     */
+    @Test
+    public void rotation() throws Exception {
+        this.roundTrip(false, false);
+    }
+
+    /**
+     * Tests writing through memory mapped segments.
+     */
+    @Test
+    public void memoryMapped() throws Exception {
+        this.roundTrip(true, false);
+    }
+
+    /**
+     * Tests compressing completed segments.
+     */
+    @Test
+    public void compressed() throws Exception {
+        List<Path> files = this.roundTrip(false, true);
+        for (Path file : files) {
+            Assert.assertTrue(file.toString().endsWith(TrafficLog.EXTENSION + TrafficLog.COMPRESSED_EXTENSION));
+        }
+    }
+
+    /**
+     * Tests that only the newest segments are kept, and that a new log
+     * continues the sequence.
+     */
+    @Test
+    public void retention() throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        for (int run = 0; run < 2; run++) {
+            try (TrafficLog log = TrafficLog.builder(directory, "kitteh").segmentSize(TrafficLog.MINIMUM_BUFFER_SIZE).bufferSize(TrafficLog.MINIMUM_BUFFER_SIZE).maxSegments(3).build()) {
+                for (int i = 0; i < 400; i++) {
+                    log.record(TrafficCapture.Direction.INPUT, "PRIVMSG #kitteh :" + PADDING + "number " + i + " of the run " + run);
+                    log.flush();
+                }
+            }
+        }
+        List<Path> files = this.getFiles(directory);
+        Assert.assertEquals(3, files.size());
+        Assert.assertTrue(files.get(2).getFileName().toString().compareTo("kitteh.000010.log") > 0);
+    }
+
+    /**
+     * Tests that lines beyond the memory limit are dropped and noted.
+     */
+    @Test
+    public void bounded() throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        long dropped;
+        try (TrafficLog log = TrafficLog.builder(directory, "kitteh").maxPendingBytes(1).build()) {
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                batch.add("line" + i);
+            }
+            log.inputBatches().accept(batch);
+            log.flush();
+            dropped = log.getDroppedLines();
+        }
+        Assert.assertEquals(999, dropped);
+        List<String> lines = this.readLines(this.getFiles(directory));
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(0).endsWith(" < line0"));
+        Assert.assertTrue(lines.get(1).endsWith(" ! 999 lines dropped"));
+    }
+
+    /**
+     * Tests that the longest IRC line is written whole, and that lines too
+     * long for the buffer are cut short and noted.
+     */
+    @Test
+    public void truncated() throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        String longest = '@' + String.join("", Collections.nCopies(8190, "€")) + ' ' + String.join("", Collections.nCopies(512, "🐱")).substring(0, 512);
+        String tooLong = String.join("", Collections.nCopies(TrafficLog.MINIMUM_BUFFER_SIZE, "x"));
+        long truncated;
+        try (TrafficLog log = TrafficLog.builder(directory, "kitteh").bufferSize(TrafficLog.MINIMUM_BUFFER_SIZE).build()) {
+            log.record(TrafficCapture.Direction.INPUT, longest);
+            log.record(TrafficCapture.Direction.INPUT, tooLong);
+            log.flush();
+            truncated = log.getTruncatedLines();
+        }
+        Assert.assertEquals(1, truncated);
+        List<String> lines = this.readLines(this.getFiles(directory));
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals("< " + longest, lines.get(0).substring(25));
+        Assert.assertTrue(lines.get(1).length() < tooLong.length());
+        Assert.assertTrue(lines.get(2).endsWith(" ! 1 lines truncated"));
+    }
+
+    private List<Path> roundTrip(boolean memoryMapped, boolean compressed) throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        List<String> expected = new ArrayList<>();
+        try (TrafficLog log = TrafficLog.builder(directory, "kitteh").segmentSize(2 * TrafficLog.MINIMUM_BUFFER_SIZE).bufferSize(TrafficLog.MINIMUM_BUFFER_SIZE).maxSegments(100).memoryMapped(memoryMapped).compressRotated(compressed).build()) {
+            for (int i = 0; i < 300; i++) {
+                String line = ":Purr!purr@kitteh.org PRIVMSG #kitteh :été 🐱 " + PADDING + i;
+                log.record((i % 2 == 0) ? TrafficCapture.Direction.INPUT : TrafficCapture.Direction.OUTPUT, line);
+                expected.add(((i % 2 == 0) ? "< " : "> ") + line);
+            }
+        }
+        List<Path> files = this.getFiles(directory);
+        Assert.assertTrue(files.size() > 1);
+        for (Path file : files) {
+            Assert.assertTrue(Files.size(file) <= (2 * TrafficLog.MINIMUM_BUFFER_SIZE));
+        }
+        List<String> lines = this.readLines(files);
+        Assert.assertEquals(expected.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertTrue(lines.get(i), LINE.matcher(lines.get(i)).matches());
+            Assert.assertEquals(expected.get(i), lines.get(i).substring(25));
+        }
+        return files;
+    }
+
+    private List<Path> getFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private List<String> readLines(List<Path> files) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Path file : files) {
+            InputStream input = Files.newInputStream(file);
+            if (file.toString().endsWith(TrafficLog.COMPRESSED_EXTENSION)) {
+                input = new GZIPInputStream(input);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Assert.assertFalse(line, line.indexOf('\0') >= 0);
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+}
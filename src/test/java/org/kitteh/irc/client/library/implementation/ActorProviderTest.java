@@ -0,0 +1,184 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.feature.CaseMapping;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.mockito.Mockito;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Tests the ActorProvider.
+ */
+public class ActorProviderTest {
+    // The patterns previously used for classification, kept for comparison.
+    private static final Pattern NICK_PATTERN = Pattern.compile("([^!@]+)!([^!@]+)@([^!@]+)");
+    private static final Pattern SERVER_PATTERN = Pattern.compile("(?!-)(?:[a-zA-Z\\d\\-]{0,62}[a-zA-Z\\d]\\.){1,126}(?!\\d+)[a-zA-Z\\d]{1,63}");
+
+    private static final String[] PREFIXES = {
+            "Kitteh!kitteh@kitteh.org", "Kitteh!~kitteh@user/kitteh", "a!b@c", "Nick!user@2001:db8::1", "[Meow]!~purr@gateway/web/irccloud.com/x-abcdef",
+            "irc.kitteh.org", "chat.freenode.net", "services.", "-bad.example.com", "bad-.example.com", "example.123", "example.a123", "localhost", "a.b",
+            "Nick!user@", "!user@host", "Nick!@host", "Nick@host!user", "Nick!us!er@host", "Nick!user@ho@st", "Nick", "", "*status", "a..b", ".a.b", "a.b."
+    };
+
+    private InternalClient client;
+    private ActorProvider actorProvider;
+
+    /**
+     * Sets up a client with ASCII case mapping and no valid channels.
+     */
+    @Before
+    public void before() {
+        this.client = Mockito.mock(InternalClient.class);
+        IRCServerInfo serverInfo = Mockito.mock(IRCServerInfo.class);
+        Mockito.when(this.client.getServerInfo()).thenReturn(serverInfo);
+        Mockito.when(this.client.getMetrics()).thenReturn(ClientMetrics.NONE);
+        Mockito.when(serverInfo.getCaseMapping()).thenReturn(CaseMapping.ASCII);
+        this.actorProvider = new ActorProvider(this.client);
+    }
+
+    /**
+     * Tests that classification matches the former regular expressions.
+     */
+    @Test
+    public void classification() {
+        for (String prefix : PREFIXES) {
+            ActorProvider.IRCActor actor = this.actorProvider.getActor(prefix);
+            boolean user = NICK_PATTERN.matcher(prefix).matches();
+            Assert.assertEquals(prefix, user, actor instanceof ActorProvider.IRCUser);
+            if (!user) {
+                Assert.assertEquals(prefix, prefix.isEmpty() || SERVER_PATTERN.matcher(prefix).matches(), actor instanceof ActorProvider.IRCServer);
+                Assert.assertEquals(prefix, SERVER_PATTERN.matcher(prefix).matches(), ActorProvider.isServerName(prefix));
+            }
+            Assert.assertEquals(prefix, actor.getName());
+        }
+    }
+
+    /**
+     * Tests the split of a user prefix.
+     */
+    @Test
+    public void userSplit() {
+        ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.actorProvider.getActor("Kitteh!~kitteh@user/kitteh");
+        ActorProvider.IRCUserSnapshot snapshot = user.snapshot();
+        Assert.assertEquals("Kitteh", snapshot.getNick());
+        Assert.assertEquals("~kitteh", snapshot.getUserString());
+        Assert.assertEquals("user/kitteh", snapshot.getHost());
+    }
+
+    /**
+     * Tests reuse of recently seen untracked actors.
+     */
+    @Test
+    public void untrackedReuse() {
+        Assert.assertSame(this.actorProvider.getActor("irc.kitteh.org"), this.actorProvider.getActor("irc.kitteh.org"));
+        ActorProvider.IRCActor user = this.actorProvider.getActor("Kitteh!kitteh@kitteh.org");
+        Assert.assertSame(user, this.actorProvider.getActor("Kitteh!kitteh@kitteh.org"));
+        Assert.assertNotSame(user, this.actorProvider.getActor("Kitteh!kitteh@meow.kitteh.org"));
+        this.actorProvider.reset();
+        Assert.assertNotSame(user, this.actorProvider.getActor("Kitteh!kitteh@kitteh.org"));
+    }
+
+    /**
+     * Tests that repeated identities share storage across users.
+     */
+    @Test
+    public void sharedStrings() {
+        ActorProvider.IRCUser first = null;
+        for (int i = 0; i < 1000; i++) {
+            ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.actorProvider.getActor("Kitteh" + i + "!~kitteh@" + new String("user/kitteh"));
+            user.setServer(new String("irc.kitteh.org"));
+            this.actorProvider.trackUser(user);
+            if (first == null) {
+                first = user;
+            } else {
+                Assert.assertSame(first.snapshot().getHost(), user.snapshot().getHost());
+                Assert.assertSame(first.snapshot().getUserString(), user.snapshot().getUserString());
+                Assert.assertSame(first.snapshot().getServer().get(), user.snapshot().getServer().get());
+            }
+        }
+        Assert.assertSame(this.actorProvider.intern(new String("user/kitteh")), first.snapshot().getHost());
+    }
+
+    /**
+     * Tests clients sharing a registry sharing identities, but not changes.
+     */
+    @Test
+    public void sharedRegistry() {
+        SharedUserRegistry registry = new SharedUserRegistry();
+        ActorProvider one = new ActorProvider(this.client, registry);
+        ActorProvider two = new ActorProvider(this.client, registry);
+        ActorProvider.IRCUser first = (ActorProvider.IRCUser) one.getActor("Kitteh!~kitteh@" + new String("user/kitteh"));
+        ActorProvider.IRCUser second = (ActorProvider.IRCUser) two.getActor("Kitteh!~kitteh@" + new String("user/kitteh"));
+        one.trackUser(first);
+        two.trackUser(second);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.getName(), second.getName());
+        Assert.assertSame(first.snapshot().getHost(), second.snapshot().getHost());
+        first.setAccount("kitteh");
+        Assert.assertFalse(second.snapshot().getAccount().isPresent());
+        second.setAccount(new String("kitteh"));
+        Assert.assertSame(first.snapshot().getAccount().get(), second.snapshot().getAccount().get());
+        Assert.assertTrue(registry.size() >= 1);
+        Assert.assertTrue(registry.size() <= 2); // The identity without account may not yet be collected
+    }
+
+    /**
+     * Tests that tracked users are not served from the untracked cache.
+     */
+    @Test
+    public void trackedNotCached() {
+        ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.actorProvider.getActor("Kitteh!kitteh@kitteh.org");
+        this.actorProvider.trackUser(user);
+        Assert.assertSame(user, this.actorProvider.getActor("Kitteh!kitteh@kitteh.org"));
+        Mockito.when(this.client.getNick()).thenReturn("Meow");
+        this.actorProvider.trackUserQuit("Kitteh");
+        Assert.assertNull(this.actorProvider.getUser("Kitteh"));
+        Assert.assertNotSame(user, this.actorProvider.getActor("Kitteh!kitteh@kitteh.org"));
+    }
+
+    /**
+     * Tests that snapshots are reused until the actor changes.
+     */
+    @Test
+    public void snapshotVersioning() {
+        ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.actorProvider.getActor("Kitteh!kitteh@kitteh.org");
+        this.actorProvider.trackUser(user);
+        ActorProvider.IRCUserSnapshot snapshot = user.snapshot();
+        Assert.assertSame(snapshot, user.snapshot());
+        Assert.assertFalse(snapshot.isStale());
+        user.setRealName("Kitteh Meow");
+        Assert.assertTrue(snapshot.isStale());
+        ActorProvider.IRCUserSnapshot fresh = user.snapshot();
+        Assert.assertNotSame(snapshot, fresh);
+        Assert.assertEquals("Kitteh Meow", fresh.getRealName().get());
+        Assert.assertFalse(fresh.isStale());
+    }
+
+    /**
+     * Tests that snapshot rebuilds are reported to metrics.
+     */
+    @Test
+    public void snapshotMetrics() {
+        AtomicInteger builds = new AtomicInteger();
+        Mockito.when(this.client.getMetrics()).thenReturn(new ClientMetrics() {
+            @Override
+            public void snapshotBuilt(@Nonnull Client client, @Nonnull Class<?> snapshotType, long nanos) {
+                Assert.assertSame(ActorProvider.IRCUserSnapshot.class, snapshotType);
+                builds.incrementAndGet();
+            }
+        });
+        ActorProvider.IRCUser user = (ActorProvider.IRCUser) this.actorProvider.getActor("Kitteh!kitteh@kitteh.org");
+        user.snapshot();
+        user.snapshot();
+        Assert.assertEquals(1, builds.get());
+        user.setRealName("Kitteh Meow");
+        user.snapshot();
+        Assert.assertEquals(2, builds.get());
+    }
+}
@@ -5,11 +5,17 @@ import org.junit.Test;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 /**
  * Test the pants off the CTCP conversion.
  */
 public class CTCPUtilTest {
+    // The pattern previously used for detection, kept for comparison.
+    private static final Pattern CTCP_MESSAGE = Pattern.compile("\u0001([^\u0001]*)\u0001[^\u0001]*");
+    private static final char[] ALPHABET = {'a', ' ', '\\', 'n', '\n', '\r', '\u0000', '\u0001', '\u0016'};
+
     private static final String CONVERTED_1 = "\u0001Meow\u0016n\u0016rMe\u00160w\\aMeow\u0016\u0016\\\\\u0001";
     private static final String SNIP_1 = CONVERTED_1 + "Meow";
     private static final String UNCONVERTED_1 = "Meow\n\rMe\u0000w\u0001Meow\u0016\\";
@@ -94,4 +100,24 @@ public class CTCPUtilTest {
             throw new AssertionError("Halp", e);
         }
     }
+
+    /**
+     * Tests detection against the reference pattern and conversion both
+     * ways with random input.
+     */
+    @Test
+    public void random() {
+        Random random = new Random(1337);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(16)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+            String input = new String(chars);
+            Assert.assertEquals(CTCP_MESSAGE.matcher(input).matches(), CTCPUtil.isCTCP(input));
+            String converted = CTCPUtil.toCTCP(input);
+            Assert.assertTrue(CTCPUtil.isCTCP(converted));
+            Assert.assertEquals(input, CTCPUtil.fromCTCP(converted));
+        }
+    }
 }
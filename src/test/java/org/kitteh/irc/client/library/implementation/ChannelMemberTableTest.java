@@ -0,0 +1,131 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
+import org.kitteh.irc.client.library.feature.CaseMapping;
+import org.kitteh.irc.client.library.feature.ServerInfo;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+
+/**
+ * Tests the ChannelMemberTable.
+ */
+public class ChannelMemberTableTest {
+    private Client client;
+    private ServerInfo serverInfo;
+
+    /**
+     * Sets up a client with RFC1459 case mapping.
+     */
+    @Before
+    public void before() {
+        this.client = Mockito.mock(Client.class);
+        this.serverInfo = Mockito.mock(ServerInfo.class);
+        Mockito.when(this.client.getServerInfo()).thenReturn(this.serverInfo);
+        Mockito.when(this.serverInfo.getCaseMapping()).thenReturn(CaseMapping.RFC1459);
+    }
+
+    /**
+     * Tests case insensitive operations.
+     */
+    @Test
+    public void caseInsensitive() {
+        ChannelMemberTable table = new ChannelMemberTable(this.client);
+        Assert.assertEquals(ChannelMemberTable.ABSENT, table.put("Kitteh[]", 1));
+        Assert.assertTrue(table.contains("kitteh{}"));
+        Assert.assertEquals(1, table.get("KITTEH[}"));
+        table.update("kitteh{]", 4, 1);
+        Assert.assertEquals(4, table.get("Kitteh[]"));
+        Assert.assertEquals(Collections.singletonList("Kitteh[]"), table.getNicks());
+        Assert.assertEquals(4, table.remove("KITTEH{}"));
+        Assert.assertFalse(table.contains("Kitteh[]"));
+        Assert.assertEquals(0, table.size());
+    }
+
+    /**
+     * Tests against a reference map with many insertions and removals.
+     */
+    @Test
+    public void manyMembers() {
+        ChannelMemberTable table = new ChannelMemberTable(this.client);
+        Map<String, Integer> reference = new HashMap<>();
+        Random random = new Random(1337);
+        for (int i = 0; i < 20000; i++) {
+            String nick = "nick" + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                Integer expected = reference.remove(nick);
+                Assert.assertEquals((expected == null) ? ChannelMemberTable.ABSENT : expected, table.remove(nick));
+            } else {
+                int modes = random.nextInt(16);
+                Integer expected = reference.put(nick, modes);
+                Assert.assertEquals((expected == null) ? ChannelMemberTable.ABSENT : expected, table.put(nick, modes));
+            }
+        }
+        Assert.assertEquals(reference.size(), table.size());
+        for (int i = 0; i < 3000; i++) {
+            Integer expected = reference.get("nick" + i);
+            Assert.assertEquals((expected == null) ? ChannelMemberTable.ABSENT : expected, table.get("NICK" + i));
+        }
+        List<String> nicks = new ArrayList<>(table.getNicks());
+        Collections.sort(nicks);
+        List<String> expectedNicks = new ArrayList<>(reference.keySet());
+        Collections.sort(expectedNicks);
+        Assert.assertEquals(expectedNicks, nicks);
+    }
+
+    /**
+     * Tests that copies are independent.
+     */
+    @Test
+    public void copy() {
+        ChannelMemberTable table = new ChannelMemberTable(this.client);
+        table.put("Kitteh", 2);
+        ChannelMemberTable copy = table.copy();
+        table.remove("Kitteh");
+        table.put("Meow", 1);
+        Assert.assertEquals(2, copy.get("kitteh"));
+        Assert.assertFalse(copy.contains("Meow"));
+    }
+
+    /**
+     * Tests rekeying when the case mapping changes.
+     */
+    @Test
+    public void caseMappingChange() {
+        Mockito.when(this.serverInfo.getCaseMapping()).thenReturn(CaseMapping.ASCII);
+        ChannelMemberTable table = new ChannelMemberTable(this.client);
+        table.put("Kitteh[", 1);
+        table.put("kitteh{", 2);
+        Assert.assertEquals(2, table.size());
+        Mockito.when(this.serverInfo.getCaseMapping()).thenReturn(CaseMapping.RFC1459);
+        Assert.assertEquals(3, table.get("KITTEH["));
+        Assert.assertEquals(1, table.size());
+    }
+
+    /**
+     * Tests encoding and decoding prefix modes.
+     */
+    @Test
+    public void encoding() {
+        ChannelUserMode op = new ModeData.IRCChannelUserMode(this.client, 'o', '@');
+        ChannelUserMode halfop = new ModeData.IRCChannelUserMode(this.client, 'h', '%');
+        ChannelUserMode voice = new ModeData.IRCChannelUserMode(this.client, 'v', '+');
+        List<ChannelUserMode> order = Arrays.asList(op, halfop, voice);
+        int bits = ChannelMemberTable.encode(order, Arrays.asList(voice, op));
+        Assert.assertEquals(5, bits);
+        SortedSet<ChannelUserMode> decoded = ChannelMemberTable.decode(order, bits);
+        Assert.assertEquals(Arrays.asList(op, voice), new ArrayList<>(decoded));
+        Assert.assertEquals(0, ChannelMemberTable.bit(order, new ModeData.IRCChannelUserMode(this.client, 'q', '~')));
+    }
+}
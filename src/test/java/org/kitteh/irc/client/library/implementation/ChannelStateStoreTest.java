@@ -0,0 +1,183 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.feature.capture.TrafficCapture;
+import org.kitteh.irc.client.library.feature.capture.TrafficRecorder;
+import org.kitteh.irc.client.library.feature.capture.TrafficReplay;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests storing and restoring channel state.
+ */
+public class ChannelStateStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests that written state reads back the same.
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        Path file = this.temporaryFolder.getRoot().toPath().resolve("channels.state");
+        Map<Character, String> modes = new LinkedHashMap<>();
+        modes.put('n', null);
+        modes.put('k', "meow");
+        Map<Character, List<ChannelStateStore.ModeInfoState>> lists = new HashMap<>();
+        lists.put('b', Arrays.asList(new ChannelStateStore.ModeInfoState("*!*@bad.example.com", "Kitteh", 1234L), new ChannelStateStore.ModeInfoState("*!*@worse.example.com", null, -1L)));
+        ChannelStateStore.write(file, Arrays.asList(
+                new ChannelStateStore.ChannelState("#kitteh", "Meow été 🐱", 5678L, "Kitteh!kitteh@kitteh.org", modes, lists, 9012L),
+                new ChannelStateStore.ChannelState("#purr", null, -1L, null, Collections.emptyMap(), Collections.emptyMap(), 3456L)));
+        List<ChannelStateStore.ChannelState> states = ChannelStateStore.read(file);
+        Assert.assertEquals(2, states.size());
+        ChannelStateStore.ChannelState kitteh = states.get(0);
+        Assert.assertEquals("#kitteh", kitteh.getName());
+        Assert.assertEquals("Meow été 🐱", kitteh.getTopic());
+        Assert.assertEquals(5678L, kitteh.getTopicTime());
+        Assert.assertEquals("Kitteh!kitteh@kitteh.org", kitteh.getTopicSetter());
+        Assert.assertEquals(modes, kitteh.getModes());
+        Assert.assertEquals(2, kitteh.getModeInfoLists().get('b').size());
+        Assert.assertNull(kitteh.getModeInfoLists().get('b').get(1).getCreator());
+        Assert.assertEquals(1234L, kitteh.getModeInfoLists().get('b').get(0).getCreationTime());
+        Assert.assertEquals(9012L, kitteh.getLastJoined());
+        ChannelStateStore.ChannelState purr = states.get(1);
+        Assert.assertNull(purr.getTopic());
+        Assert.assertTrue(purr.getModes().isEmpty());
+    }
+
+    /**
+     * Tests that a restarted client starts from provisional state, which
+     * the server then confirms.
+     */
+    @Test
+    public void warmRestart() throws Exception {
+        Path file = this.temporaryFolder.getRoot().toPath().resolve("channels.state");
+        Client first = this.replay(file, "first",
+                ":Kitteh!kitteh@kitteh.org JOIN #kitteh",
+                ":irc.kitteh.org 332 Kitteh #kitteh :Meow",
+                ":irc.kitteh.org 324 Kitteh #kitteh +nt",
+                ":irc.kitteh.org 366 Kitteh #kitteh :End of /NAMES list.");
+        Assert.assertFalse(first.getChannel("#kitteh").get().isProvisional());
+        first.shutdown();
+
+        TrafficReplay replay = ((ClientBuilder) Client.builder().nick("Kitteh").serverHost("127.0.0.1").channelStateFile(file)).buildReplay(true);
+        this.replay(replay, "joined", ":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh", ":Kitteh!kitteh@kitteh.org JOIN #kitteh");
+        Channel channel = replay.getClient().getChannel("#kitteh").get();
+        Assert.assertTrue(channel.isProvisional());
+        Assert.assertEquals("Meow", channel.getTopic().getValue().get());
+        Assert.assertEquals(2, channel.getModes().getStatuses().size());
+
+        this.replay(replay, "confirmed",
+                ":irc.kitteh.org 324 Kitteh #kitteh +s",
+                ":irc.kitteh.org 366 Kitteh #kitteh :End of /NAMES list.");
+        channel = replay.getClient().getChannel("#kitteh").get();
+        Assert.assertFalse(channel.isProvisional());
+        Assert.assertFalse(channel.getTopic().getValue().isPresent());
+        Assert.assertEquals(1, channel.getModes().getStatuses().size());
+        Assert.assertEquals('s', channel.getModes().getStatuses().get(0).getMode().getChar());
+        replay.getClient().shutdown();
+    }
+
+    /**
+     * Tests that restored state for channels not yet rejoined survives
+     * another shutdown.
+     */
+    @Test
+    public void shutdownBeforeRejoin() throws Exception {
+        Path file = this.temporaryFolder.getRoot().toPath().resolve("channels.state");
+        Client first = this.replay(file, "first",
+                ":Kitteh!kitteh@kitteh.org JOIN #kitteh",
+                ":irc.kitteh.org 332 Kitteh #kitteh :Meow",
+                ":Kitteh!kitteh@kitteh.org JOIN #purr",
+                ":irc.kitteh.org 332 Kitteh #purr :Purr");
+        first.shutdown();
+
+        Client second = this.replay(file, "second", ":Kitteh!kitteh@kitteh.org JOIN #purr");
+        second.shutdown();
+
+        List<ChannelStateStore.ChannelState> states = ChannelStateStore.read(file);
+        Assert.assertEquals(2, states.size());
+        Map<String, String> topics = new HashMap<>();
+        states.forEach(state -> topics.put(state.getName(), state.getTopic()));
+        Assert.assertEquals("Meow", topics.get("#kitteh"));
+        Assert.assertEquals("Purr", topics.get("#purr"));
+    }
+
+    /**
+     * Tests that restored state for channels not joined for too long is
+     * not kept.
+     */
+    @Test
+    public void expireUnjoined() throws Exception {
+        Path file = this.temporaryFolder.getRoot().toPath().resolve("channels.state");
+        long now = System.currentTimeMillis();
+        ChannelStateStore.write(file, Arrays.asList(
+                new ChannelStateStore.ChannelState("#kitteh", "Meow", -1L, null, Collections.emptyMap(), Collections.emptyMap(), now - TimeUnit.DAYS.toMillis(8)),
+                new ChannelStateStore.ChannelState("#purr", "Purr", -1L, null, Collections.emptyMap(), Collections.emptyMap(), now - TimeUnit.DAYS.toMillis(1))));
+
+        this.replay(file, "expiring", ":Kitteh!kitteh@kitteh.org JOIN #kitteh").shutdown();
+
+        List<ChannelStateStore.ChannelState> states = ChannelStateStore.read(file);
+        Map<String, String> topics = new HashMap<>();
+        states.forEach(state -> topics.put(state.getName(), state.getTopic()));
+        Assert.assertEquals(2, states.size());
+        Assert.assertNull(topics.get("#kitteh")); // Joined fresh, so nothing restored
+        Assert.assertEquals("Purr", topics.get("#purr"));
+
+        ChannelStateStore.write(file, Collections.singletonList(
+                new ChannelStateStore.ChannelState("#kitteh", "Meow", -1L, null, Collections.emptyMap(), Collections.emptyMap(), now - TimeUnit.DAYS.toMillis(8))));
+        this.replay(file, "expired", ":Kitteh!kitteh@kitteh.org JOIN #purr").shutdown();
+        states = ChannelStateStore.read(file);
+        Assert.assertEquals(1, states.size());
+        Assert.assertEquals("#purr", states.get(0).getName());
+    }
+
+    /**
+     * Tests that a plain replay leaves the channel state file alone.
+     */
+    @Test
+    public void replayIgnoresState() throws Exception {
+        Path file = this.temporaryFolder.getRoot().toPath().resolve("channels.state");
+        ChannelStateStore.write(file, Collections.singletonList(
+                new ChannelStateStore.ChannelState("#kitteh", "Meow", -1L, null, Collections.emptyMap(), Collections.emptyMap(), System.currentTimeMillis())));
+        TrafficReplay replay = Client.builder().nick("Kitteh").serverHost("127.0.0.1").channelStateFile(file).buildReplay();
+        this.replay(replay, "live", ":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh",
+                ":Kitteh!kitteh@kitteh.org JOIN #kitteh", ":Kitteh!kitteh@kitteh.org JOIN #purr");
+        Assert.assertFalse(replay.getClient().getChannel("#kitteh").get().isProvisional());
+        replay.getClient().shutdown();
+        List<ChannelStateStore.ChannelState> states = ChannelStateStore.read(file);
+        Assert.assertEquals(1, states.size());
+        Assert.assertEquals("Meow", states.get(0).getTopic());
+    }
+
+    private Client replay(Path file, String name, String... lines) throws Exception {
+        TrafficReplay replay = ((ClientBuilder) Client.builder().nick("Kitteh").serverHost("127.0.0.1").channelStateFile(file)).buildReplay(true);
+        this.replay(replay, name, ":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh");
+        this.replay(replay, name + "-session", lines);
+        return replay.getClient();
+    }
+
+    private void replay(TrafficReplay replay, String name, String... lines) throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, name, 1024 * 1024, 1)) {
+            for (String line : lines) {
+                recorder.input().accept(line);
+            }
+        }
+        try (TrafficCapture.Reader reader = new TrafficCapture.Reader(TrafficCapture.getFiles(directory, name))) {
+            replay.replay(reader, TrafficReplay.Speed.MAXIMUM);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.kitteh.irc.client.library.implementation;
+
+import net.engio.mbassy.listener.Handler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.ClientGroup;
+import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
+import org.kitteh.irc.client.library.feature.sending.QueueProcessingThreadSender;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tests a {@link ClientGroup} sharing channels against a
+ * {@link SimulatedServer}.
+ */
+public class ClientGroupTest {
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    public static class Receiver {
+        private final Map<String, Integer> channels = new ConcurrentHashMap<>();
+
+        @Handler
+        public void message(ChannelMessageEvent event) {
+            this.channels.merge(event.getChannel().getName(), 1, Integer::sum);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SimulatedServer server;
+
+    /**
+     * Starts a server limiting clients to four channels.
+     */
+    @Before
+    public void before() throws Exception {
+        this.server = new SimulatedServer();
+        this.server.setChannelLimit(4);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        this.server.close();
+    }
+
+    /**
+     * Tests channels, added before channel limits are known, being joined
+     * by one client each within the limits, with events from all clients
+     * received once.
+     */
+    @Test
+    public void sharding() throws Exception {
+        ClientGroup group = Client.builder().serverHost("127.0.0.1").serverPort(this.server.getPort()).secure(false)
+                .messageSendingQueueSupplier(c -> new QueueProcessingThreadSender(c, "Scheduled"))
+                .listenException(exception -> {
+                })
+                .buildGroup("Kitteh", 3);
+        try {
+            Receiver receiver = new Receiver();
+            group.registerEventListener(receiver);
+            for (int i = 0; i < 10; i++) {
+                group.addChannel("#meow" + i);
+            }
+            this.await(() -> this.getJoined(group).size() == 10);
+            Set<String> joined = new HashSet<>();
+            for (Client client : group.getClients()) {
+                Set<String> channels = this.server.getChannels(client.getNick());
+                Assert.assertTrue(channels.size() <= 4);
+                for (String channel : channels) {
+                    Assert.assertTrue(joined.add(channel));
+                    Assert.assertSame(client, group.getClient(channel).get());
+                }
+            }
+            this.server.addUser("Purr");
+            for (int i = 0; i < 10; i++) {
+                this.server.join("Purr", "#meow" + i);
+                this.server.privmsg("Purr", "#meow" + i, "Meow");
+            }
+            this.await(() -> receiver.channels.size() == 10);
+            Thread.sleep(100);
+            Assert.assertTrue(receiver.channels.values().stream().allMatch(count -> count == 1));
+            group.removeChannel("#meow0");
+            this.await(() -> this.getJoined(group).size() == 9);
+            Assert.assertFalse(group.getClient("#meow0").isPresent());
+        } finally {
+            group.shutdown();
+        }
+    }
+
+    /**
+     * Tests nicks being cut short to fit the server's nick length limit,
+     * and each client getting its own channel state file.
+     */
+    @Test
+    public void nicksAndFiles() throws Exception {
+        Assert.assertEquals("KittehB12", IRCClientGroup.getNick("KittehBot", 12, 9));
+        Assert.assertEquals("KittehBot", IRCClientGroup.getNick("KittehBot", 0, 9));
+        Assert.assertEquals("KittehBot1", IRCClientGroup.getNick("KittehBot", 1, -1));
+        this.server.setNickLength(8);
+        Path file = this.temporaryFolder.getRoot().toPath().resolve("channels.state");
+        ClientGroup group = Client.builder().serverHost("127.0.0.1").serverPort(this.server.getPort()).secure(false).channelStateFile(file)
+                .listenException(exception -> {
+                })
+                .buildGroup("KittehBot", 3);
+        try {
+            this.await(() -> group.getClients().stream().map(Client::getNick).collect(Collectors.toSet()).equals(new HashSet<>(Arrays.asList("KittehBo", "KittehB1", "KittehB2"))));
+            Assert.assertEquals(file, ((IRCClient) group.getClients().get(0)).getConfig().get(Config.CHANNEL_STATE_FILE));
+            Assert.assertEquals(file.resolveSibling("channels.state.2"), ((IRCClient) group.getClients().get(2)).getConfig().get(Config.CHANNEL_STATE_FILE));
+        } finally {
+            group.shutdown();
+        }
+    }
+
+    private Set<String> getJoined(ClientGroup group) throws InterruptedException {
+        Set<String> joined = new HashSet<>();
+        for (Client client : group.getClients()) {
+            joined.addAll(this.server.getChannels(client.getNick()));
+        }
+        return joined;
+    }
+
+    private void await(Condition condition) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.met()) {
+            Assert.assertTrue("Timed out", System.currentTimeMillis() < end);
+            Thread.sleep(20);
+        }
+    }
+
+    private interface Condition {
+        boolean met() throws Exception;
+    }
+}
@@ -9,6 +9,7 @@ import org.kitteh.irc.client.library.event.client.ClientReceiveNumericEvent;
 import org.kitteh.irc.client.library.event.user.WallopsEvent;
 import org.kitteh.irc.client.library.exception.KittehServerMessageException;
 import org.kitteh.irc.client.library.feature.CaseMapping;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
 import org.kitteh.irc.client.library.util.StringUtil;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
@@ -41,6 +42,7 @@ public class EventListenerTest {
         this.exceptionListener = Mockito.mock(Listener.class);
         this.serverInfo = Mockito.mock(IRCServerInfo.class);
         Mockito.when(this.client.getServerInfo()).thenReturn(this.serverInfo);
+        Mockito.when(this.client.getMetrics()).thenReturn(ClientMetrics.NONE);
         Mockito.when(this.client.getEventManager()).thenReturn(this.eventManager);
         Mockito.when(this.client.getExceptionListener()).thenReturn(this.exceptionListener);
         Mockito.when(this.serverInfo.getCaseMapping()).thenReturn(CaseMapping.ASCII);
@@ -0,0 +1,175 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.kitteh.irc.client.library.feature.EventManager;
+import org.kitteh.irc.client.library.util.Flow;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests publishing events with backpressure.
+ */
+public class EventPublisherTest {
+    private static final class Recorder implements Flow.Subscriber<String> {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean completed;
+        private volatile String thread;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String item) {
+            this.thread = Thread.currentThread().getName();
+            this.events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+            this.finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+            this.finished.countDown();
+        }
+
+        private void awaitEvents(int count) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while ((this.events.size() < count) && (System.currentTimeMillis() < end)) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(count, this.events.size());
+        }
+    }
+
+    private ManagerEvent manager;
+
+    /**
+     * Sets up an event manager.
+     */
+    @Before
+    public void before() {
+        InternalClient client = Mockito.mock(InternalClient.class);
+        Mockito.when(client.getMetrics()).thenReturn(ClientMetrics.NONE);
+        Mockito.when(client.getName()).thenReturn("Meow");
+        this.manager = new ManagerEvent(client);
+    }
+
+    /**
+     * Tests that events are only delivered as requested, only of the
+     * published type, and on the client's subscriber threads.
+     */
+    @Test
+    public void demand() throws Exception {
+        Recorder recorder = new Recorder();
+        this.manager.getPublisher(String.class, 10, EventManager.OverflowStrategy.ERROR).subscribe(recorder);
+        this.manager.callEvent("one");
+        this.manager.callEvent(2);
+        this.manager.callEvent("three");
+        this.manager.callEvent("four");
+        Thread.sleep(50);
+        Assert.assertTrue(recorder.events.isEmpty());
+        recorder.subscription.request(2);
+        recorder.awaitEvents(2);
+        Thread.sleep(50);
+        Assert.assertEquals(2, recorder.events.size());
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.awaitEvents(3);
+        this.manager.callEvent("five");
+        recorder.awaitEvents(4);
+        Assert.assertEquals("four", recorder.events.get(2));
+        Assert.assertEquals("Kitteh IRC Client Event Subscriber (Meow)", recorder.thread);
+        Assert.assertNull(recorder.error);
+    }
+
+    /**
+     * Tests the overflow strategies that drop events.
+     */
+    @Test
+    public void drop() throws Exception {
+        Recorder oldest = new Recorder();
+        Recorder newest = new Recorder();
+        this.manager.getPublisher(String.class, 2, EventManager.OverflowStrategy.DROP_OLDEST).subscribe(oldest);
+        this.manager.getPublisher(String.class, 2, EventManager.OverflowStrategy.DROP_NEWEST).subscribe(newest);
+        for (int i = 0; i < 5; i++) {
+            this.manager.callEvent("event" + i);
+        }
+        oldest.subscription.request(10);
+        newest.subscription.request(10);
+        oldest.awaitEvents(2);
+        newest.awaitEvents(2);
+        Assert.assertEquals("event3", oldest.events.get(0));
+        Assert.assertEquals("event4", oldest.events.get(1));
+        Assert.assertEquals("event0", newest.events.get(0));
+        Assert.assertEquals("event1", newest.events.get(1));
+    }
+
+    /**
+     * Tests that overflowing fails an erroring subscription.
+     */
+    @Test
+    public void overflowError() throws Exception {
+        Recorder recorder = new Recorder();
+        this.manager.getPublisher(String.class, 1, EventManager.OverflowStrategy.ERROR).subscribe(recorder);
+        this.manager.callEvent("one");
+        this.manager.callEvent("two");
+        Assert.assertTrue(recorder.finished.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(recorder.error instanceof IllegalStateException);
+        Assert.assertTrue(recorder.events.isEmpty());
+    }
+
+    /**
+     * Tests that blocking dispatch resumes once events are requested.
+     */
+    @Test
+    public void block() throws Exception {
+        Recorder recorder = new Recorder();
+        this.manager.getPublisher(String.class, 1, EventManager.OverflowStrategy.BLOCK).subscribe(recorder);
+        this.manager.callEvent("one");
+        Thread dispatch = new Thread(() -> this.manager.callEvent("two"));
+        dispatch.start();
+        dispatch.join(100);
+        Assert.assertTrue(dispatch.isAlive());
+        recorder.subscription.request(2);
+        dispatch.join(5000);
+        Assert.assertFalse(dispatch.isAlive());
+        recorder.awaitEvents(2);
+    }
+
+    /**
+     * Tests that completion waits for buffered events to be delivered.
+     */
+    @Test
+    public void complete() throws Exception {
+        Recorder recorder = new Recorder();
+        this.manager.getPublisher(String.class, 10, EventManager.OverflowStrategy.ERROR).subscribe(recorder);
+        this.manager.callEvent("one");
+        this.manager.completePublishers();
+        this.manager.callEvent("two");
+        Thread.sleep(50);
+        Assert.assertFalse(recorder.completed);
+        recorder.subscription.request(10);
+        Assert.assertTrue(recorder.finished.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(recorder.completed);
+        Assert.assertEquals(1, recorder.events.size());
+        Recorder late = new Recorder();
+        this.manager.getPublisher(String.class, 10, EventManager.OverflowStrategy.ERROR).subscribe(late);
+        Assert.assertTrue(late.finished.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -7,6 +7,7 @@ import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.element.mode.ModeStatusList;
 import org.kitteh.irc.client.library.element.mode.UserMode;
 import org.kitteh.irc.client.library.feature.AuthManager;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
 import org.kitteh.irc.client.library.feature.EventManager;
 import org.kitteh.irc.client.library.feature.defaultmessage.DefaultMessageMap;
 import org.kitteh.irc.client.library.feature.defaultmessage.SimpleDefaultMessageMap;
@@ -19,8 +20,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -114,6 +117,11 @@ class FakeClient extends InternalClient {
 
     }
 
+    @Override
+    public void setInputListener(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait) {
+
+    }
+
     @Override
     public void setMessageCutter(@Nonnull Cutter cutter) {
         this.messageCutter = cutter;
@@ -136,6 +144,12 @@ class FakeClient extends InternalClient {
         return null;
     }
 
+    @Nonnull
+    @Override
+    public ManagerMonitor getMonitorManager() {
+        return null;
+    }
+
     @Nonnull
     @Override
     public Optional<STSMachine> getSTSMachine() {
@@ -154,17 +168,34 @@ class FakeClient extends InternalClient {
         return null;
     }
 
+    @Nonnull
+    @Override
+    public ClientMetrics getMetrics() {
+        return ClientMetrics.NONE;
+    }
+
     @Nonnull
     @Override
     Listener<String> getOutputListener() {
         return this.listenerOutput;
     }
 
+    @Nonnull
+    @Override
+    public ManagerReply getReplyManager() {
+        return null;
+    }
+
     @Override
     public void setOutputListener(@Nullable Consumer<String> listener) {
 
     }
 
+    @Override
+    public void setOutputListener(@Nullable Consumer<List<String>> listener, int maxBatch, long maxWait) {
+
+    }
+
     @Nonnull
     @Override
     String getRequestedNick() {
@@ -202,6 +233,12 @@ class FakeClient extends InternalClient {
 
     }
 
+    @Nonnull
+    @Override
+    public CompletableFuture<Channel> addChannelAsync(@Nonnull String channel) {
+        return null;
+    }
+
     @Override
     public void addKeyProtectedChannel(@Nonnull String channel, @Nonnull String key) {
 
@@ -0,0 +1,57 @@
+package org.kitteh.irc.client.library.implementation;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.mockito.Mockito;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the Flight Recorder events.
+ */
+public class FlightRecorderMetricsTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests that events are recorded and measurements passed along.
+     */
+    @Test
+    public void recording() throws Exception {
+        AtomicLong parsed = new AtomicLong();
+        ClientMetrics metrics = FlightRecorder.wrap(new ClientMetrics() {
+            @Override
+            public void lineParsed(@Nonnull Client client, long nanos) {
+                parsed.addAndGet(nanos);
+            }
+        });
+        Assert.assertTrue(metrics instanceof FlightRecorderMetrics);
+        Client client = Mockito.mock(Client.class);
+        Mockito.when(client.getName()).thenReturn("Kitteh");
+
+        metrics.lineParsed(client, 5);
+        Path path = this.temporaryFolder.getRoot().toPath().resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.kitteh.irc.LineParsed");
+            recording.start();
+            metrics.lineParsed(client, 1234);
+            recording.stop();
+            recording.dump(path);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("Kitteh", events.get(0).getString("client"));
+        Assert.assertEquals(1234, events.get(0).getDuration("elapsed").toNanos());
+        Assert.assertEquals(1239, parsed.get());
+    }
+}
@@ -0,0 +1,112 @@
+package org.kitteh.irc.client.library.implementation;
+
+import net.engio.mbassy.listener.Handler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.event.client.ClientReceiveNumericEvent;
+import org.kitteh.irc.client.library.exception.KittehSlowHandlerException;
+import org.kitteh.irc.client.library.feature.ClientMetrics;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests timing of event handlers.
+ */
+public class HandlerWatchdogTest {
+    public static class Event {
+    }
+
+    public static class SlowListener {
+        private final CountDownLatch handled = new CountDownLatch(2);
+        private volatile Thread lastThread;
+
+        @Handler
+        public void onEvent(Event event) throws InterruptedException {
+            this.lastThread = Thread.currentThread();
+            if (this.handled.getCount() == 2) {
+                Thread.sleep(200);
+            }
+            this.handled.countDown();
+        }
+    }
+
+    private InternalClient client;
+    private Listener<Exception> exceptionListener;
+    private ManagerEvent eventManager;
+
+    /**
+     * Sets up an event manager.
+     */
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() {
+        this.client = Mockito.mock(InternalClient.class);
+        this.exceptionListener = Mockito.mock(Listener.class);
+        Mockito.when(this.client.getExceptionListener()).thenReturn(this.exceptionListener);
+        Mockito.when(this.client.getMetrics()).thenReturn(ClientMetrics.NONE);
+        Mockito.when(this.client.getName()).thenReturn("Kitteh");
+        this.eventManager = new ManagerEvent(this.client);
+    }
+
+    /**
+     * Tests that a slow handler is reported with a sampled stack, and then
+     * isolated.
+     */
+    @Test
+    public void slowHandler() throws InterruptedException {
+        this.eventManager.setHandlerWatchdog(50, true);
+        SlowListener listener = new SlowListener();
+        this.eventManager.registerEventListener(listener);
+
+        this.eventManager.callEvent(new Event());
+        ArgumentCaptor<Exception> captor = ArgumentCaptor.forClass(Exception.class);
+        Mockito.verify(this.exceptionListener).queue(captor.capture());
+        KittehSlowHandlerException exception = (KittehSlowHandlerException) captor.getValue();
+        Assert.assertEquals("onEvent", exception.getHandler().getName());
+        Assert.assertEquals(Event.class, exception.getEventType());
+        Assert.assertTrue(Arrays.stream(exception.getStackTrace()).anyMatch(element -> element.getMethodName().equals("sleep")));
+
+        this.eventManager.callEvent(new Event());
+        Assert.assertTrue(listener.handled.await(1, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), listener.lastThread);
+    }
+
+    /**
+     * Tests that the library's own handlers are never isolated, and that
+     * replacing the watchdog shuts down its isolation threads.
+     */
+    @Test
+    public void libraryHandlers() throws Exception {
+        Assert.assertTrue(HandlerWatchdog.isLibraryHandler(EventListener.class.getDeclaredMethod("welcome", ClientReceiveNumericEvent.class)));
+        Assert.assertFalse(HandlerWatchdog.isLibraryHandler(SlowListener.class.getMethod("onEvent", Event.class)));
+
+        this.eventManager.setHandlerWatchdog(50, true);
+        SlowListener listener = new SlowListener();
+        this.eventManager.registerEventListener(listener);
+        this.eventManager.callEvent(new Event());
+        this.eventManager.stopHandlerWatchdog();
+        this.eventManager.callEvent(new Event());
+        Assert.assertEquals(0, listener.handled.getCount());
+        Assert.assertSame(Thread.currentThread(), listener.lastThread);
+    }
+
+    /**
+     * Tests that fast handlers are left alone.
+     */
+    @Test
+    public void fastHandler() {
+        this.eventManager.setHandlerWatchdog(5000, true);
+        SlowListener listener = new SlowListener();
+        this.eventManager.registerEventListener(listener);
+        this.eventManager.callEvent(new Event());
+        this.eventManager.callEvent(new Event());
+        Assert.assertEquals(0, listener.handled.getCount());
+        Assert.assertSame(Thread.currentThread(), listener.lastThread);
+        Mockito.verifyZeroInteractions(this.exceptionListener);
+    }
+}
@@ -98,6 +98,21 @@ public class ISupportManagerTest {
         Assert.assertEquals(3, limit.getLimits().get('!').intValue());
     }
 
+    /**
+     * Tests targmax.
+     */
+    @Test
+    public void targmax() {
+        ManagerISupport manager = this.getManager();
+        ISupportParameter param = manager.getParameter(ISupportParameter.TargMax.NAME + "=KICK:4,privmsg:3,JOIN:");
+        Assert.assertTrue(ISupportParameter.TargMax.class.isAssignableFrom(param.getClass()));
+        ISupportParameter.TargMax targMax = (ISupportParameter.TargMax) param;
+        Assert.assertEquals(4, targMax.getLimit("kick"));
+        Assert.assertEquals(3, targMax.getLimit("PRIVMSG"));
+        Assert.assertEquals(Integer.MAX_VALUE, targMax.getLimit("JOIN"));
+        Assert.assertEquals(1, targMax.getLimit("NOTICE"));
+    }
+
     /**
      * Tests chanlimit.
      */
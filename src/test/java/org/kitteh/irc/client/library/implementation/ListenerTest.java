@@ -0,0 +1,124 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the Listener.
+ */
+public class ListenerTest {
+    /**
+     * Tests that single consumers see every element in order, despite
+     * throwing.
+     */
+    @Test
+    public void single() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(100);
+        Listener<String> listener = new Listener<>("Test", element -> {
+            received.add(element);
+            latch.countDown();
+            throw new RuntimeException("Meow");
+        });
+        for (int i = 0; i < 100; i++) {
+            listener.queue("line" + i);
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("line" + i, received.get(i));
+        }
+        listener.shutdown();
+    }
+
+    /**
+     * Tests that batches wait to fill, but never exceed their size.
+     */
+    @Test
+    public void batches() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        Listener<String> listener = new Listener<>("Test", batches::add, 10, 200);
+        for (int i = 0; i < 25; i++) {
+            listener.queue("line" + i);
+        }
+        long end = System.currentTimeMillis() + 5000;
+        while ((count(batches) < 25) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(25, count(batches));
+        Assert.assertEquals(3, batches.size());
+        Assert.assertEquals(10, batches.get(0).size());
+        Assert.assertEquals(10, batches.get(1).size());
+        Assert.assertEquals(5, batches.get(2).size());
+        Assert.assertEquals("line24", batches.get(2).get(4));
+        listener.shutdown();
+    }
+
+    /**
+     * Tests that a batch consumer can be set on a listener without one.
+     */
+    @Test
+    public void setBatchConsumer() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        Listener<String> listener = new Listener<>("Test", null);
+        listener.queue("ignored");
+        listener.setBatchConsumer(batches::add, 3, 200);
+        for (int i = 0; i < 6; i++) {
+            listener.queue("line" + i);
+        }
+        long end = System.currentTimeMillis() + 5000;
+        while ((count(batches) < 6) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals("line0", batches.get(0).get(0));
+        Assert.assertEquals("line5", batches.get(1).get(2));
+        listener.shutdown();
+    }
+
+    /**
+     * Tests that shutting down delivers what remains in batches, without
+     * the interrupt that stopped the listener.
+     */
+    @Test
+    public void shutdown() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        List<Boolean> interrupted = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Listener<String> listener = new Listener<>("Test", batch -> {
+            batches.add(batch);
+            interrupted.add(Thread.currentThread().isInterrupted());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Interrupted by shutdown
+            }
+        }, 4, 0);
+        listener.queue("first");
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 9; i++) {
+            listener.queue("line" + i);
+        }
+        listener.shutdown();
+        release.countDown();
+        long end = System.currentTimeMillis() + 5000;
+        while ((count(batches) < 10) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+        }
+        List<Integer> sizes = new ArrayList<>();
+        batches.forEach(batch -> sizes.add(batch.size()));
+        Assert.assertEquals("[1, 4, 4, 1]", sizes.toString());
+        Assert.assertEquals("[false, false, false, false]", interrupted.toString());
+    }
+
+    private static int count(List<List<String>> batches) {
+        return batches.stream().mapToInt(List::size).sum();
+    }
+}
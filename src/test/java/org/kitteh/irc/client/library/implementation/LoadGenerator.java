@@ -0,0 +1,161 @@
+package org.kitteh.irc.client.library.implementation;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives synthetic users on a {@link SimulatedServer}: joins, parts, quits,
+ * channel messages and netsplits, reproducibly from a seed.
+ */
+class LoadGenerator {
+    /**
+     * Prefix of generated messages, followed by the send time from
+     * {@link System#nanoTime()}.
+     */
+    static final String TIMESTAMP_PREFIX = "t=";
+
+    private final SimulatedServer server;
+    private final Random random;
+    private final List<String> channels = new ArrayList<>();
+    private final List<String> users = new ArrayList<>();
+    private final Map<String, Set<String>> userChannels = new HashMap<>();
+    private int nextUser;
+
+    LoadGenerator(@Nonnull SimulatedServer server, long seed) {
+        this.server = server;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates users and channels, joining each user to random channels.
+     *
+     * @param users number of users
+     * @param channels number of channels
+     * @param channelsPerUser number of channels each user joins
+     */
+    void populate(int users, int channels, int channelsPerUser) {
+        for (int i = 0; i < channels; i++) {
+            this.channels.add("#sim" + i);
+        }
+        for (int i = 0; i < users; i++) {
+            String nick = this.addUser();
+            for (int j = 0; j < channelsPerUser; j++) {
+                this.join(nick, this.randomChannel());
+            }
+        }
+    }
+
+    @Nonnull
+    List<String> getChannels() {
+        return this.channels;
+    }
+
+    /**
+     * Performs random joins, parts and quits, replacing quitting users
+     * with new ones.
+     *
+     * @param operations number of operations
+     */
+    void churn(int operations) {
+        for (int i = 0; i < operations; i++) {
+            String nick = this.randomUser();
+            int roll = this.random.nextInt(10);
+            if (roll < 4) {
+                this.join(nick, this.randomChannel());
+            } else if (roll < 8) {
+                Set<String> joined = this.userChannels.get(nick);
+                if (!joined.isEmpty()) {
+                    String channel = new ArrayList<>(joined).get(this.random.nextInt(joined.size()));
+                    joined.remove(channel);
+                    this.server.part(nick, channel);
+                }
+            } else {
+                this.server.quit(nick, "Quit: churn");
+                this.users.remove(nick);
+                this.userChannels.remove(nick);
+                String replacement = this.addUser();
+                this.join(replacement, this.randomChannel());
+            }
+        }
+    }
+
+    /**
+     * Sends channel messages from random users, each carrying its send
+     * time.
+     *
+     * @param count number of messages
+     * @param perSecond messages per second, or 0 for no limit
+     */
+    void messages(int count, int perSecond) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (perSecond > 0) {
+                long wait = ((TimeUnit.SECONDS.toNanos(1) * i) / perSecond) - (System.nanoTime() - start);
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            String nick = this.randomUser();
+            Set<String> joined = this.userChannels.get(nick);
+            String channel = joined.isEmpty() ? this.randomChannel() : joined.iterator().next();
+            if (joined.isEmpty()) {
+                this.join(nick, channel);
+            }
+            this.server.privmsg(nick, channel, TIMESTAMP_PREFIX + System.nanoTime());
+        }
+    }
+
+    /**
+     * Splits a fraction of users off the network.
+     *
+     * @param fraction fraction of users to split
+     * @return split users, for {@link #netjoin(Map)}
+     */
+    @Nonnull
+    Map<String, List<String>> netsplit(double fraction) throws InterruptedException {
+        List<String> split = new ArrayList<>();
+        for (String nick : this.users) {
+            if (this.random.nextDouble() < fraction) {
+                split.add(nick);
+            }
+        }
+        return this.server.netsplit(split);
+    }
+
+    /**
+     * Rejoins users after a netsplit.
+     *
+     * @param split split users
+     */
+    void netjoin(@Nonnull Map<String, List<String>> split) {
+        this.server.netjoin(split);
+    }
+
+    private String addUser() {
+        String nick = "user" + this.nextUser++;
+        this.server.addUser(nick);
+        this.users.add(nick);
+        this.userChannels.put(nick, new LinkedHashSet<>());
+        return nick;
+    }
+
+    private void join(@Nonnull String nick, @Nonnull String channel) {
+        this.userChannels.get(nick).add(channel);
+        this.server.join(nick, channel);
+    }
+
+    private String randomChannel() {
+        return this.channels.get(this.random.nextInt(this.channels.size()));
+    }
+
+    private String randomUser() {
+        return this.users.get(this.random.nextInt(this.users.size()));
+    }
+}
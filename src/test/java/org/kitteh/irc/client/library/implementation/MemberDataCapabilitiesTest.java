@@ -0,0 +1,70 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+
+/**
+ * Tests channels becoming complete from NAMES when capabilities keep
+ * member data current.
+ */
+public class MemberDataCapabilitiesTest {
+    private IRCClient client;
+
+    /**
+     * Sets up a client fed by hand.
+     */
+    @Before
+    public void before() {
+        this.client = (IRCClient) Client.builder().nick("Kitteh").serverHost("127.0.0.1").buildReplay().getClient();
+    }
+
+    /**
+     * Shuts down the client.
+     */
+    @After
+    public void after() {
+        this.client.shutdown();
+    }
+
+    /**
+     * Tests a channel completing from NAMES with all capabilities enabled.
+     */
+    @Test
+    public void completeFromNames() throws Exception {
+        this.feed(":irc.kitteh.org CAP * ACK :userhost-in-names multi-prefix extended-join account-notify away-notify");
+        Assert.assertTrue(this.client.getCapabilityManager().providesMemberData());
+        Channel channel = this.join();
+        Assert.assertTrue(channel.hasCompleteUserData());
+        Assert.assertEquals("meow.kitteh.org", channel.getUser("Meow").get().getHost());
+    }
+
+    /**
+     * Tests a channel awaiting WHO without all capabilities enabled.
+     */
+    @Test
+    public void incompleteWithoutCapabilities() throws Exception {
+        this.feed(":irc.kitteh.org CAP * ACK :userhost-in-names multi-prefix extended-join account-notify");
+        Assert.assertFalse(this.client.getCapabilityManager().providesMemberData());
+        Assert.assertFalse(this.join().hasCompleteUserData());
+    }
+
+    private Channel join() throws InterruptedException {
+        this.feed(":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh",
+                ":irc.kitteh.org 005 Kitteh CHANTYPES=# PREFIX=(ov)@+ :are supported by this server",
+                ":Kitteh!kitteh@kitteh.org JOIN #meow * :Kitteh",
+                ":irc.kitteh.org 353 Kitteh = #meow :Kitteh!kitteh@kitteh.org @+Meow!meow@meow.kitteh.org",
+                ":irc.kitteh.org 366 Kitteh #meow :End of /NAMES list.");
+        return this.client.getChannel("#meow").get();
+    }
+
+    private void feed(String... lines) throws InterruptedException {
+        for (String line : lines) {
+            this.client.processLine(line);
+        }
+        this.client.awaitProcessing();
+    }
+}
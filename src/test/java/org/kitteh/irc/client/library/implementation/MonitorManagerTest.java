@@ -0,0 +1,99 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.element.ISupportParameter;
+import org.kitteh.irc.client.library.feature.CaseMapping;
+import org.kitteh.irc.client.library.feature.MonitorManager;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Tests the MonitorManager.
+ */
+public class MonitorManagerTest {
+    private InternalClient client;
+    private IRCServerInfo serverInfo;
+    private ManagerMonitor manager;
+
+    /**
+     * Sets up a client with RFC1459 case mapping and no MONITOR support.
+     */
+    @Before
+    public void before() {
+        this.client = Mockito.mock(InternalClient.class);
+        this.serverInfo = Mockito.mock(IRCServerInfo.class);
+        Mockito.when(this.client.getServerInfo()).thenReturn(this.serverInfo);
+        Mockito.when(this.serverInfo.getCaseMapping()).thenReturn(CaseMapping.RFC1459);
+        this.manager = new ManagerMonitor(this.client);
+    }
+
+    /**
+     * Tests that only differences are sent, once supported.
+     */
+    @Test
+    public void diff() {
+        this.manager.addNicks(Arrays.asList("Meow", "Purr"), 0);
+        Mockito.verify(this.client, Mockito.never()).sendRawLine(Mockito.anyString());
+        Assert.assertEquals(MonitorManager.Status.NOT_MONITORED, this.manager.getStatus("meow"));
+
+        this.support(null);
+        this.manager.sync();
+        Mockito.verify(this.client).sendRawLine("MONITOR + Meow,Purr");
+        Assert.assertEquals(MonitorManager.Status.UNKNOWN, this.manager.getStatus("MEOW"));
+
+        this.manager.setStatus(Collections.singletonList("purr"), true);
+        this.manager.addNick("meow");
+        this.manager.removeNick("PURR");
+        Mockito.verify(this.client).sendRawLine("MONITOR - Purr");
+        Mockito.verify(this.client, Mockito.times(2)).sendRawLine(Mockito.anyString());
+        Assert.assertEquals(MonitorManager.Status.NOT_MONITORED, this.manager.getStatus("Purr"));
+    }
+
+    /**
+     * Tests that the limit keeps the nicks of highest priority.
+     */
+    @Test
+    public void limit() {
+        this.support("2");
+        this.manager.addNicks(Arrays.asList("Meow", "Purr"), 0);
+        this.manager.addNicks(Collections.singletonList("Boss"), 5);
+        InOrder inOrder = Mockito.inOrder(this.client);
+        inOrder.verify(this.client).sendRawLine("MONITOR + Meow,Purr");
+        inOrder.verify(this.client).sendRawLine("MONITOR - Purr");
+        inOrder.verify(this.client).sendRawLine("MONITOR + Boss");
+        Assert.assertEquals(3, this.manager.getNicks().size());
+
+        this.manager.setFull(1, Collections.singletonList("Meow"));
+        Assert.assertEquals(MonitorManager.Status.NOT_MONITORED, this.manager.getStatus("Meow"));
+        this.manager.removeNick("Boss");
+        inOrder.verify(this.client).sendRawLine("MONITOR - Boss");
+        inOrder.verify(this.client).sendRawLine("MONITOR + Meow");
+    }
+
+    /**
+     * Tests that the whole list is sent again after reconnecting.
+     */
+    @Test
+    public void resync() {
+        this.support(null);
+        this.manager.addNicks(Arrays.asList("Meow", "Purr"), 0);
+        this.manager.setStatus(Collections.singletonList("Meow"), true);
+        Assert.assertEquals(MonitorManager.Status.ONLINE, this.manager.getStatus("Meow"));
+        this.manager.reset();
+        Assert.assertEquals(MonitorManager.Status.NOT_MONITORED, this.manager.getStatus("Meow"));
+        this.manager.sync();
+        Mockito.verify(this.client, Mockito.times(2)).sendRawLine("MONITOR + Meow,Purr");
+    }
+
+    private void support(String limit) {
+        ISupportParameter.Monitor monitor = Mockito.mock(ISupportParameter.Monitor.class);
+        Mockito.when(monitor.getLimit()).thenReturn(Optional.ofNullable(limit).map(Integer::parseInt));
+        Mockito.when(this.serverInfo.getISupportParameter(ISupportParameter.Monitor.NAME, ISupportParameter.Monitor.class)).thenReturn(Optional.of(monitor));
+    }
+}
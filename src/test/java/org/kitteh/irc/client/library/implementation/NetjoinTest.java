@@ -0,0 +1,60 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
+import org.kitteh.irc.client.library.feature.capture.TrafficCapture;
+import org.kitteh.irc.client.library.feature.capture.TrafficRecorder;
+import org.kitteh.irc.client.library.feature.capture.TrafficReplay;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Tests applying netjoin batches.
+ */
+public class NetjoinTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests that modes set within a netjoin batch are kept, and channels
+     * left before the batch ends are not tracked again.
+     */
+    @Test
+    public void modesInBatch() throws Exception {
+        TrafficReplay replay = Client.builder().nick("Kitteh").serverHost("127.0.0.1").buildReplay();
+        this.replay(replay,
+                ":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh",
+                ":Kitteh!kitteh@kitteh.org JOIN #kitteh",
+                ":Kitteh!kitteh@kitteh.org JOIN #purr",
+                ":irc.kitteh.org BATCH +b1 netjoin irc.kitteh.org hub.kitteh.org",
+                "@batch=b1 :Meow!meow@kitteh.org JOIN #kitteh",
+                "@batch=b1 :Meow!meow@kitteh.org JOIN #purr",
+                "@batch=b1 :hub.kitteh.org MODE #kitteh +o Meow",
+                ":Kitteh!kitteh@kitteh.org PART #purr",
+                ":irc.kitteh.org BATCH -b1");
+        Channel channel = replay.getClient().getChannel("#kitteh").get();
+        Set<ChannelUserMode> modes = channel.getUserModes("Meow").get();
+        Assert.assertEquals(1, modes.size());
+        Assert.assertEquals('o', modes.iterator().next().getChar());
+        Assert.assertFalse(replay.getClient().getChannel("#purr").isPresent());
+        replay.getClient().shutdown();
+    }
+
+    private void replay(TrafficReplay replay, String... lines) throws Exception {
+        Path directory = this.temporaryFolder.getRoot().toPath();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, "netjoin", 1024 * 1024, 1)) {
+            for (String line : lines) {
+                recorder.input().accept(line);
+            }
+        }
+        try (TrafficCapture.Reader reader = new TrafficCapture.Reader(TrafficCapture.getFiles(directory, "netjoin"))) {
+            replay.replay(reader, TrafficReplay.Speed.MAXIMUM);
+        }
+    }
+}
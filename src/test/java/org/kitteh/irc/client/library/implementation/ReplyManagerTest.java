@@ -0,0 +1,290 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.command.ChannelModeCommand;
+import org.kitteh.irc.client.library.command.KickCommand;
+import org.kitteh.irc.client.library.command.TopicCommand;
+import org.kitteh.irc.client.library.command.WhoisCommand;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.User;
+import org.kitteh.irc.client.library.element.WhoisData;
+import org.kitteh.irc.client.library.element.mode.ModeInfo;
+import org.kitteh.irc.client.library.exception.KittehConnectionException;
+import org.kitteh.irc.client.library.exception.KittehRequestRefusedException;
+import org.kitteh.irc.client.library.feature.ReplyManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests replies to concurrent requests completing independently.
+ */
+public class ReplyManagerTest {
+    private IRCClient client;
+
+    /**
+     * Sets up a registered client fed by hand.
+     */
+    @Before
+    public void before() throws Exception {
+        this.client = (IRCClient) Client.builder().nick("Kitteh").serverHost("127.0.0.1").buildReplay().getClient();
+        this.feed(":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh",
+                ":irc.kitteh.org 004 Kitteh irc.kitteh.org kitteh-1.0 iw beIklmnopqstv",
+                ":irc.kitteh.org 005 Kitteh CHANTYPES=# CHANMODES=beIq,k,l,imnpst WHOX :are supported by this server");
+    }
+
+    /**
+     * Shuts down the client.
+     */
+    @After
+    public void after() {
+        this.client.shutdown();
+    }
+
+    /**
+     * Tests WHOIS replies for different nicks interleaving.
+     */
+    @Test
+    public void interleavedWhois() throws Exception {
+        CompletableFuture<WhoisData> meow = this.client.getReplyManager().await(ReplyManager.ReplyType.WHOIS, "Meow");
+        CompletableFuture<WhoisData> purr = this.client.getReplyManager().await(ReplyManager.ReplyType.WHOIS, "Purr");
+        this.feed(":irc.kitteh.org 311 Kitteh Meow meow meow.kitteh.org * :Meow Meow",
+                ":irc.kitteh.org 311 Kitteh Purr purr purr.kitteh.org * :Purr Purr",
+                ":irc.kitteh.org 330 Kitteh Meow meowaccount :is logged in as",
+                ":irc.kitteh.org 318 Kitteh PURR :End of /WHOIS list.");
+        Assert.assertTrue(purr.isDone());
+        Assert.assertFalse(meow.isDone());
+        Assert.assertEquals("purr.kitteh.org", purr.get().getHost());
+        Assert.assertFalse(purr.get().getAccount().isPresent());
+        this.feed(":irc.kitteh.org 318 Kitteh Meow :End of /WHOIS list.");
+        WhoisData whois = meow.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals("Meow Meow", whois.getRealName().get());
+        Assert.assertEquals("meowaccount", whois.getAccount().get());
+    }
+
+    /**
+     * Tests ban lists of different channels interleaving.
+     */
+    @Test
+    public void interleavedModeInfoLists() throws Exception {
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow", ":Kitteh!kitteh@kitteh.org JOIN #purr");
+        CompletableFuture<List<ModeInfo>> meow = this.client.getReplyManager().await(ReplyManager.ReplyType.modeInfoList('b'), "#meow");
+        CompletableFuture<List<ModeInfo>> purr = this.client.getReplyManager().await(ReplyManager.ReplyType.modeInfoList('b'), "#purr");
+        CompletableFuture<List<ModeInfo>> invites = this.client.getReplyManager().await(ReplyManager.ReplyType.modeInfoList('I'), "#meow");
+        this.feed(":irc.kitteh.org 367 Kitteh #meow *!*@one.example.com Kitteh 1000000000",
+                ":irc.kitteh.org 367 Kitteh #purr *!*@two.example.com",
+                ":irc.kitteh.org 346 Kitteh #meow *!*@friend.example.com",
+                ":irc.kitteh.org 367 Kitteh #meow *!*@three.example.com",
+                ":irc.kitteh.org 368 Kitteh #purr :End of Channel Ban List",
+                ":irc.kitteh.org 347 Kitteh #meow :End of Channel Invite List",
+                ":irc.kitteh.org 368 Kitteh #meow :End of Channel Ban List");
+        Assert.assertEquals(1, purr.get(5, TimeUnit.SECONDS).size());
+        Assert.assertEquals(1, invites.get(5, TimeUnit.SECONDS).size());
+        List<ModeInfo> bans = meow.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, bans.size());
+        Assert.assertEquals("*!*@one.example.com", bans.get(0).getMask().asString());
+        Assert.assertEquals("Kitteh", bans.get(0).getCreator().get());
+    }
+
+    /**
+     * Tests WHOX replies being matched by query token, including two
+     * requests for the same channel in flight at once.
+     */
+    @Test
+    public void whoxToken() throws Exception {
+        // Empty reply to the client's own request on joining
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow", ":irc.kitteh.org 315 Kitteh #meow :End of /WHO list.");
+        String line = this.client.getReplyManager().getWhoLine("#meow");
+        Assert.assertTrue(line.startsWith("WHO #meow " + ManagerReply.WHOX_FIELDS + ','));
+        String token = line.substring(line.indexOf(',') + 1);
+        String second = this.client.getReplyManager().getWhoLine("#MEOW");
+        String secondToken = second.substring(second.indexOf(',') + 1);
+        Assert.assertNotEquals(token, secondToken);
+        CompletableFuture<Channel> who = this.client.getReplyManager().await(ReplyManager.ReplyType.WHO, "#meow");
+        this.feed(":irc.kitteh.org 354 Kitteh " + token + " #meow meow meow.kitteh.org irc.kitteh.org Meow H@ meowaccount :Meow Meow",
+                ":irc.kitteh.org 354 Kitteh #meow purr purr.kitteh.org irc.kitteh.org Purr H 0 :Other fields",
+                ":irc.kitteh.org 315 Kitteh #meow :End of /WHO list.");
+        Channel channel = who.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(channel.hasCompleteUserData());
+        User meow = channel.getUser("Meow").get();
+        Assert.assertEquals("meowaccount", meow.getAccount().get());
+        Assert.assertEquals("irc.kitteh.org", meow.getServer().get());
+        Assert.assertFalse(channel.getUser("Purr").isPresent());
+        this.feed(":irc.kitteh.org 354 Kitteh " + secondToken + " #meow kitty kitty.kitteh.org irc.kitteh.org Kitty H 0 :Kitty",
+                ":irc.kitteh.org 315 Kitteh #MEOW :End of /WHO list.");
+        Assert.assertTrue(this.client.getChannel("#meow").get().getUser("Kitty").isPresent());
+        Assert.assertNull(this.client.getReplyManager().getWhoTarget(secondToken));
+    }
+
+    /**
+     * Tests commands completing on acknowledgement or failing on refusal.
+     */
+    @Test
+    public void asyncCommands() throws Exception {
+        CompletableFuture<Channel> join = this.client.addChannelAsync("#meow");
+        CompletableFuture<Channel> refusedJoin = this.client.addChannelAsync("#purr");
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow", ":irc.kitteh.org 474 Kitteh #purr :Cannot join channel (+b)",
+                ":irc.kitteh.org 324 Kitteh #meow +n");
+        Assert.assertEquals("#meow", join.get(5, TimeUnit.SECONDS).getName());
+        Assert.assertEquals(474, this.getRefusal(refusedJoin).getNumeric());
+
+        CompletableFuture<Channel> modes = new ChannelModeCommand(this.client, "#meow").executeAsync();
+        CompletableFuture<Channel> topic = new TopicCommand(this.client, "#meow").topic("Meow").executeAsync();
+        CompletableFuture<Channel> kick = new KickCommand(this.client, "#meow").target("Purr").executeAsync();
+        CompletableFuture<WhoisData> whois = new WhoisCommand(this.client).target("Purr").executeAsync();
+        this.feed(":irc.kitteh.org 324 Kitteh #meow +nt", ":Kitteh!kitteh@kitteh.org TOPIC #meow :Meow");
+        Assert.assertEquals(2, modes.get(5, TimeUnit.SECONDS).getModes().getStatuses().size());
+        Assert.assertEquals("Meow", topic.get(5, TimeUnit.SECONDS).getTopic().getValue().get());
+        this.feed(":irc.kitteh.org 441 Kitteh Purr #meow :They aren't on that channel", ":irc.kitteh.org 401 Kitteh Purr :No such nick/channel");
+        Assert.assertEquals(441, this.getRefusal(kick).getNumeric());
+        Assert.assertEquals(401, this.getRefusal(whois).getNumeric());
+    }
+
+    /**
+     * Tests WHOIS requests sharing replies in flight and cached, until the
+     * user changes.
+     */
+    @Test
+    public void whoisCache() throws Exception {
+        CompletableFuture<WhoisData> first = this.client.getReplyManager().getWhois("Meow");
+        CompletableFuture<WhoisData> second = new WhoisCommand(this.client).target("MEOW").executeAsync();
+        Assert.assertNotSame(first, second);
+        this.feed(":irc.kitteh.org 311 Kitteh Meow meow meow.kitteh.org * :Meow Meow",
+                ":irc.kitteh.org 318 Kitteh Meow :End of /WHOIS list.");
+        WhoisData whois = first.get(5, TimeUnit.SECONDS);
+        Assert.assertSame(whois, second.get(5, TimeUnit.SECONDS));
+        CompletableFuture<WhoisData> cached = this.client.getReplyManager().getWhois("meow");
+        Assert.assertTrue(cached.isDone());
+        Assert.assertSame(whois, cached.get());
+        Assert.assertFalse(new WhoisCommand(this.client).target("Meow").server("Meow").executeAsync().isDone());
+        this.feed(":Meow!meow@meow.kitteh.org NICK Purr");
+        Assert.assertFalse(this.client.getReplyManager().getWhois("Meow").isDone());
+        this.feed(":irc.kitteh.org 318 Kitteh Meow :End of /WHOIS list.",
+                ":Purr!meow@meow.kitteh.org QUIT :Leaving");
+        Assert.assertTrue(this.client.getReplyManager().getWhois("Meow").isDone());
+    }
+
+    /**
+     * Tests requests awaiting a reply timing out.
+     */
+    @Test
+    public void timeout() throws Exception {
+        CompletableFuture<WhoisData> whois = this.client.getReplyManager().await(ReplyManager.ReplyType.WHOIS, "Meow", 10, TimeUnit.MILLISECONDS);
+        try {
+            whois.get(5, TimeUnit.SECONDS);
+            Assert.fail("Request did not time out");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        CompletableFuture<WhoisData> next = this.client.getReplyManager().await(ReplyManager.ReplyType.WHOIS, "Meow");
+        this.feed(":irc.kitteh.org 318 Kitteh Meow :End of /WHOIS list.");
+        Assert.assertTrue(next.isDone());
+    }
+
+    /**
+     * Tests mode changes by the client completing requests regardless of
+     * the case of its nick.
+     */
+    @Test
+    public void selfModeCase() throws Exception {
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow", ":irc.kitteh.org 324 Kitteh #meow +nt");
+        CompletableFuture<Channel> modes = this.client.getReplyManager().await(ReplyManager.ReplyType.CHANNEL_MODE, "#meow");
+        this.feed(":KITTEH!kitteh@kitteh.org MODE #meow +s");
+        Assert.assertTrue(modes.isDone());
+    }
+
+    /**
+     * Tests WHOX tokens being forgotten on reset for a new connection, and
+     * requests in flight failing once disconnected.
+     */
+    @Test
+    public void reset() throws Exception {
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow");
+        String line = this.client.getReplyManager().getWhoLine("#meow");
+        String token = line.substring(line.indexOf(',') + 1);
+        CompletableFuture<WhoisData> whois = this.client.getReplyManager().await(ReplyManager.ReplyType.WHOIS, "Meow");
+        this.client.getReplyManager().reset();
+        Assert.assertNull(this.client.getReplyManager().getWhoTarget(token));
+        Assert.assertFalse(whois.isDone());
+        this.client.getReplyManager().disconnected();
+        try {
+            whois.get(5, TimeUnit.SECONDS);
+            Assert.fail("Request did not fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof KittehConnectionException);
+        }
+    }
+
+    /**
+     * Tests that a request made right after building is neither failed by
+     * the reset for the new connection nor timed out before connecting.
+     */
+    @Test
+    public void beforeConnecting() throws Exception {
+        IRCClient client = (IRCClient) Client.builder().nick("Kitteh").serverHost("127.0.0.1").buildReplay().getClient();
+        try {
+            CompletableFuture<WhoisData> whois = client.getReplyManager().await(ReplyManager.ReplyType.WHOIS, "Meow", 10, TimeUnit.MILLISECONDS);
+            client.awaitProcessing();
+            Thread.sleep(100);
+            Assert.assertFalse(whois.isDone());
+            client.processLine(":irc.kitteh.org 001 Kitteh :Welcome to the network, Kitteh");
+            client.processLine(":irc.kitteh.org 004 Kitteh irc.kitteh.org kitteh-1.0 iw beIklmnopqstv");
+            try {
+                whois.get(5, TimeUnit.SECONDS);
+                Assert.fail("Request did not time out");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Tests that replies to the client's own mode query on joining do not
+     * complete a later mode change.
+     */
+    @Test
+    public void ownModeQuery() throws Exception {
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow");
+        CompletableFuture<Channel> change = new ChannelModeCommand(this.client, "#meow").add(true, this.client.getServerInfo().getChannelMode('s').get()).executeAsync();
+        this.feed(":irc.kitteh.org 324 Kitteh #meow +nt");
+        Assert.assertFalse(change.isDone());
+        this.feed(":Kitteh!kitteh@kitteh.org MODE #meow +s");
+        Assert.assertEquals(3, change.get(5, TimeUnit.SECONDS).getModes().getStatuses().size());
+    }
+
+    /**
+     * Tests joining a channel the client is already in completing at once.
+     */
+    @Test
+    public void alreadyJoined() throws Exception {
+        this.feed(":Kitteh!kitteh@kitteh.org JOIN #meow");
+        CompletableFuture<Channel> join = this.client.addChannelAsync("#MEOW");
+        Assert.assertTrue(join.isDone());
+        Assert.assertEquals("#meow", join.get().getName());
+    }
+
+    private KittehRequestRefusedException getRefusal(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return (KittehRequestRefusedException) e.getCause();
+        }
+        throw new AssertionError("Request was not refused");
+    }
+
+    private void feed(String... lines) throws InterruptedException {
+        for (String line : lines) {
+            this.client.processLine(line);
+        }
+        this.client.awaitProcessing();
+    }
+}
@@ -0,0 +1,115 @@
+package org.kitteh.irc.client.library.implementation;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kitteh.irc.client.library.feature.sts.STSIndexedStorageManager;
+import org.kitteh.irc.client.library.feature.sts.STSPolicy;
+import org.kitteh.irc.client.library.feature.sts.STSPropertiesStorageManager;
+import org.kitteh.irc.client.library.util.STSUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public class STSIndexedStorageManagerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Checks simple operations.
+     */
+    @Test
+    public void testSimpleOperations() throws IOException {
+        Path path = this.temporaryFolder.newFile("sts.properties").toPath();
+        STSIndexedStorageManager sut = new STSIndexedStorageManager(path);
+        sut.addEntry("kitteh.org", 500, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697,cats"));
+
+        Assert.assertTrue(sut.hasEntry("kitteh.org"));
+        Optional<STSPolicy> optionalPolicy = sut.getEntry("kitteh.org");
+        Assert.assertTrue(optionalPolicy.isPresent());
+        Assert.assertEquals("6697", optionalPolicy.get().getOptions().get(STSPolicy.POLICY_OPTION_KEY_PORT));
+        Assert.assertEquals("500", optionalPolicy.get().getOptions().get(STSPolicy.POLICY_OPTION_KEY_DURATION));
+        Assert.assertTrue(optionalPolicy.get().getFlags().contains("cats"));
+
+        sut.removeEntry("kitteh.org");
+        sut.removeEntry("kitteh.org");
+        Assert.assertFalse(sut.hasEntry("kitteh.org"));
+    }
+
+    /**
+     * Checks that reads do not write and writes are deferred until flushed.
+     */
+    @Test
+    public void testWriteBehind() throws IOException {
+        Path path = this.temporaryFolder.getRoot().toPath().resolve("sts.properties");
+        STSIndexedStorageManager sut = new STSIndexedStorageManager(path, 60000);
+        sut.addEntry("kitteh.org", 500, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697"));
+        Assert.assertFalse(Files.exists(path));
+        sut.flush();
+        Assert.assertTrue(Files.exists(path));
+        Assert.assertEquals(1, this.temporaryFolder.getRoot().list().length);
+
+        Files.delete(path);
+        sut.hasEntry("kitteh.org");
+        sut.getEntry("kitteh.org");
+        sut.flush();
+        Assert.assertFalse(Files.exists(path));
+    }
+
+    /**
+     * Checks that a write delay of 0 writes each change immediately.
+     */
+    @Test
+    public void testImmediateWrite() throws IOException {
+        Path path = this.temporaryFolder.getRoot().toPath().resolve("sts.properties");
+        STSIndexedStorageManager sut = new STSIndexedStorageManager(path, 0);
+        sut.addEntry("kitteh.org", 500, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697"));
+        Assert.assertTrue(new STSIndexedStorageManager(path).hasEntry("kitteh.org"));
+        sut.removeEntry("kitteh.org");
+        Assert.assertFalse(new STSIndexedStorageManager(path).hasEntry("kitteh.org"));
+    }
+
+    /**
+     * Checks reading a file written by either storage manager.
+     */
+    @Test
+    public void testReading() throws IOException {
+        Path path = this.temporaryFolder.newFile("sts.properties").toPath();
+        new STSPropertiesStorageManager(path).addEntry("kitteh.org", 500, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697,cats"));
+        STSIndexedStorageManager sut1 = new STSIndexedStorageManager(path);
+        Assert.assertTrue(sut1.hasEntry("kitteh.org"));
+
+        sut1.addEntry("meow.kitteh.org", 500, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697"));
+        sut1.flush();
+        STSPropertiesStorageManager sut2 = new STSPropertiesStorageManager(path);
+        Assert.assertTrue(sut2.hasEntry("kitteh.org"));
+        Assert.assertEquals("6697", sut2.getEntry("meow.kitteh.org").get().getOptions().get(STSPolicy.POLICY_OPTION_KEY_PORT));
+    }
+
+    /**
+     * Checks expiry, including of replaced entries.
+     */
+    @Test
+    public void testExpiry() throws IOException, InterruptedException {
+        Path path = this.temporaryFolder.newFile("sts.properties").toPath();
+        STSIndexedStorageManager sut = new STSIndexedStorageManager(path);
+        sut.addEntry("kitteh.org", 0, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697"));
+        sut.addEntry("meow.kitteh.org", 0, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697"));
+        sut.addEntry("meow.kitteh.org", 500, STSUtil.getSTSPolicyFromString(",", STSPolicy.POLICY_OPTION_KEY_PORT + "=6697"));
+        Thread.sleep(10);
+        Assert.assertFalse(sut.hasEntry("kitteh.org"));
+        Assert.assertTrue(sut.hasEntry("meow.kitteh.org"));
+    }
+
+    /**
+     * Checks that the default storage manager is shared per file.
+     */
+    @Test
+    public void testShared() throws IOException {
+        Path path = this.temporaryFolder.newFile("sts.properties").toPath();
+        Assert.assertSame(STSUtil.getDefaultStorageManager(path), STSUtil.getDefaultStorageManager(path.getParent().resolve(".").resolve("sts.properties")));
+    }
+}
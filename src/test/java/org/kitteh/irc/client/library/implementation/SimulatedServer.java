@@ -0,0 +1,593 @@
+package org.kitteh.irc.client.library.implementation;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal IRC server on loopback, speaking registration, CAP, JOIN,
+ * PART, NAMES, WHO, WHOIS, MODE and PRIVMSG to real clients while hosting
+ * any number of synthetic users driven by the test. All network state is
+ * confined to a single event loop thread.
+ */
+class SimulatedServer implements AutoCloseable {
+    static final String NAME = "sim.kitteh.org";
+    static final String SPLIT_REASON = NAME + " split.kitteh.org";
+    private static final int NAMES_LENGTH = 400;
+
+    private static final class Member {
+        private String nick;
+        private final String user;
+        private final String host;
+        private final Set<String> channels = new LinkedHashSet<>();
+        @Nullable
+        private final Session session;
+
+        private Member(@Nonnull String nick, @Nonnull String user, @Nonnull String host, @Nullable Session session) {
+            this.nick = nick;
+            this.user = user;
+            this.host = host;
+            this.session = session;
+        }
+
+        private String mask() {
+            return this.nick + '!' + this.user + '@' + this.host;
+        }
+    }
+
+    private final class Session extends SimpleChannelInboundHandler<String> {
+        private Channel channel;
+        private String nick;
+        private String user;
+        private boolean negotiating;
+        private boolean batch;
+        private Member member;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            this.channel = ctx.channel();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (this.member != null) {
+                SimulatedServer.this.quit(this.member, "Connection closed");
+            }
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, String line) {
+            SimulatedServer.this.linesReceived.incrementAndGet();
+            SimulatedServer.this.handle(this, line);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+
+        private void send(@Nonnull String line) {
+            SimulatedServer.this.linesSent.incrementAndGet();
+            this.channel.writeAndFlush(line + "\r\n");
+        }
+
+        private void numeric(@Nonnull String numeric, @Nonnull String message) {
+            this.send(':' + NAME + ' ' + numeric + ' ' + ((this.member == null) ? "*" : this.member.nick) + ' ' + message);
+        }
+    }
+
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final EventLoop loop = this.group.next();
+    private final Channel serverChannel;
+    private final Map<String, Member> members = new HashMap<>();
+    private final Map<String, Set<Member>> channels = new HashMap<>();
+    private final AtomicLong linesReceived = new AtomicLong();
+    private final AtomicLong linesSent = new AtomicLong();
+    private volatile boolean batchSupported;
+    private volatile int channelLimit;
+    private volatile int nickLength;
+    private int batchCount;
+    @Nullable
+    private String currentBatch;
+
+    SimulatedServer() throws InterruptedException {
+        this.serverChannel = new ServerBootstrap()
+                .group(this.group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(new LineBasedFrameDecoder(8192));
+                        channel.pipeline().addLast(new StringDecoder(StandardCharsets.UTF_8));
+                        channel.pipeline().addLast(new StringEncoder(StandardCharsets.UTF_8));
+                        channel.pipeline().addLast(new Session());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    /**
+     * Sets if the batch capability is offered to clients connecting after,
+     * grouping netsplits and netjoins.
+     *
+     * @param batchSupported true to offer batch
+     */
+    void setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+    }
+
+    /**
+     * Sets the number of channels clients connecting after may join, or 0
+     * for no limit.
+     *
+     * @param channelLimit channel limit
+     */
+    void setChannelLimit(int channelLimit) {
+        this.channelLimit = channelLimit;
+    }
+
+    /**
+     * Sets the nick length limit advertised to clients connecting after,
+     * or 0 for none. Longer nicks are still accepted.
+     *
+     * @param nickLength nick length limit
+     */
+    void setNickLength(int nickLength) {
+        this.nickLength = nickLength;
+    }
+
+    int getPort() {
+        return ((InetSocketAddress) this.serverChannel.localAddress()).getPort();
+    }
+
+    long getLinesReceived() {
+        return this.linesReceived.get();
+    }
+
+    long getLinesSent() {
+        return this.linesSent.get();
+    }
+
+    /**
+     * Adds a synthetic user, in no channels.
+     *
+     * @param nick nick
+     */
+    void addUser(@Nonnull String nick) {
+        this.loop.execute(() -> this.members.put(lower(nick), new Member(nick, "~" + nick, nick + ".users.kitteh.org", null)));
+    }
+
+    void join(@Nonnull String nick, @Nonnull String channel) {
+        this.loop.execute(() -> {
+            Member member = this.members.get(lower(nick));
+            if (member != null) {
+                this.join(member, channel);
+            }
+        });
+    }
+
+    void part(@Nonnull String nick, @Nonnull String channel) {
+        this.loop.execute(() -> {
+            Member member = this.members.get(lower(nick));
+            if (member != null) {
+                this.part(member, channel, "Leaving");
+            }
+        });
+    }
+
+    void quit(@Nonnull String nick, @Nonnull String reason) {
+        this.loop.execute(() -> {
+            Member member = this.members.get(lower(nick));
+            if (member != null) {
+                this.quit(member, reason);
+            }
+        });
+    }
+
+    void privmsg(@Nonnull String nick, @Nonnull String target, @Nonnull String message) {
+        this.loop.execute(() -> {
+            Member member = this.members.get(lower(nick));
+            if (member != null) {
+                this.privmsg(member, target, message);
+            }
+        });
+    }
+
+    /**
+     * Splits synthetic users off the network, each quitting with a split
+     * reason. Their channels are kept for {@link #netjoin(Map)}.
+     *
+     * @param nicks nicks of users to split
+     * @return channels each split user was in, by nick
+     */
+    @Nonnull
+    Map<String, List<String>> netsplit(@Nonnull Collection<String> nicks) throws InterruptedException {
+        return this.call(() -> {
+            Map<String, List<String>> split = new HashMap<>();
+            this.startBatch("netsplit");
+            for (String nick : nicks) {
+                Member member = this.members.get(lower(nick));
+                if ((member != null) && (member.session == null)) {
+                    split.put(member.nick, new ArrayList<>(member.channels));
+                    this.quit(member, SPLIT_REASON);
+                }
+            }
+            this.endBatch();
+            return split;
+        });
+    }
+
+    /**
+     * Rejoins users removed by {@link #netsplit(Collection)}.
+     *
+     * @param split channels of each split user, by nick
+     */
+    void netjoin(@Nonnull Map<String, List<String>> split) {
+        this.loop.execute(() -> {
+            this.startBatch("netjoin");
+            split.forEach((nick, channels) -> {
+                Member member = new Member(nick, "~" + nick, nick + ".users.kitteh.org", null);
+                this.members.put(lower(nick), member);
+                channels.forEach(channel -> this.join(member, channel));
+            });
+            this.endBatch();
+        });
+    }
+
+    /**
+     * Gets the nicks of all users sharing a channel with the given nick,
+     * including the nick itself if in any channel.
+     *
+     * @param nick nick
+     * @return nicks of visible users
+     */
+    @Nonnull
+    Set<String> getVisibleNicks(@Nonnull String nick) throws InterruptedException {
+        return this.call(() -> {
+            Set<String> visible = new HashSet<>();
+            Member member = this.members.get(lower(nick));
+            if (member != null) {
+                member.channels.forEach(channel -> this.channels.get(channel).forEach(other -> visible.add(other.nick)));
+            }
+            return visible;
+        });
+    }
+
+    /**
+     * Gets the channels a nick is in.
+     *
+     * @param nick nick
+     * @return channels
+     */
+    @Nonnull
+    Set<String> getChannels(@Nonnull String nick) throws InterruptedException {
+        return this.call(() -> {
+            Member member = this.members.get(lower(nick));
+            return (member == null) ? new HashSet<>() : new HashSet<>(member.channels);
+        });
+    }
+
+    /**
+     * Waits until all previously requested operations have run.
+     */
+    void sync() throws InterruptedException {
+        this.call(() -> null);
+    }
+
+    private <T> T call(@Nonnull Callable<T> callable) throws InterruptedException {
+        try {
+            return this.loop.submit(callable).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        this.serverChannel.close().syncUninterruptibly();
+        this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private static String lower(@Nonnull String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    private void handle(@Nonnull Session session, @Nonnull String line) {
+        String[] split = line.split(" ", 2);
+        String command = split[0].toUpperCase(Locale.ENGLISH);
+        String rest = (split.length > 1) ? split[1] : "";
+        List<String> args = new ArrayList<>();
+        while (!rest.isEmpty()) {
+            if (rest.startsWith(":")) {
+                args.add(rest.substring(1));
+                break;
+            }
+            int space = rest.indexOf(' ');
+            args.add((space < 0) ? rest : rest.substring(0, space));
+            rest = (space < 0) ? "" : rest.substring(space + 1);
+        }
+        if (session.member == null) {
+            this.handleRegistration(session, command, args);
+            return;
+        }
+        Member member = session.member;
+        switch (command) {
+            case "PING":
+                session.send(':' + NAME + " PONG " + NAME + " :" + (args.isEmpty() ? "" : args.get(0)));
+                break;
+            case "PONG":
+            case "CAP":
+                break;
+            case "JOIN":
+                for (String channel : args.get(0).split(",")) {
+                    this.join(member, channel);
+                }
+                break;
+            case "PART":
+                for (String channel : args.get(0).split(",")) {
+                    this.part(member, channel, (args.size() > 1) ? args.get(1) : null);
+                }
+                break;
+            case "NAMES":
+                this.names(session, args.get(0));
+                break;
+            case "WHO":
+                this.who(session, args.get(0));
+                break;
+            case "WHOIS":
+                this.whois(session, args.get(args.size() - 1));
+                break;
+            case "MODE":
+                if (args.get(0).startsWith("#")) {
+                    session.numeric("324", args.get(0) + " +nt");
+                }
+                break;
+            case "PRIVMSG":
+            case "NOTICE":
+                if (args.size() > 1) {
+                    for (String target : args.get(0).split(",")) {
+                        this.privmsg(member, target, args.get(1), command);
+                    }
+                }
+                break;
+            case "NICK":
+                this.nick(member, args.get(0));
+                break;
+            case "QUIT":
+                this.quit(member, "Quit: " + (args.isEmpty() ? "" : args.get(0)));
+                session.channel.close();
+                break;
+            default:
+                session.numeric("421", command + " :Unknown command");
+        }
+    }
+
+    private void handleRegistration(@Nonnull Session session, @Nonnull String command, @Nonnull List<String> args) {
+        switch (command) {
+            case "CAP":
+                if (args.isEmpty()) {
+                    return;
+                }
+                switch (args.get(0).toUpperCase(Locale.ENGLISH)) {
+                    case "LS":
+                        session.negotiating = true;
+                        session.send(':' + NAME + " CAP * LS :" + (this.batchSupported ? "batch" : ""));
+                        break;
+                    case "REQ":
+                        String requested = (args.size() > 1) ? args.get(1).trim() : "";
+                        if (this.batchSupported && requested.equals("batch")) {
+                            session.batch = true;
+                            session.send(':' + NAME + " CAP * ACK :" + requested);
+                        } else {
+                            session.send(':' + NAME + " CAP * NAK :" + requested);
+                        }
+                        break;
+                    case "END":
+                        session.negotiating = false;
+                        break;
+                }
+                break;
+            case "NICK":
+                if (this.members.containsKey(lower(args.get(0)))) {
+                    session.numeric("433", args.get(0) + " :Nickname is already in use");
+                    return;
+                }
+                session.nick = args.get(0);
+                break;
+            case "USER":
+                session.user = args.get(0);
+                break;
+            default:
+                return;
+        }
+        if ((session.nick != null) && (session.user != null) && !session.negotiating) {
+            session.member = new Member(session.nick, session.user, "127.0.0.1", session);
+            this.members.put(lower(session.nick), session.member);
+            session.numeric("001", ":Welcome to the simulated network, " + session.nick);
+            session.numeric("002", ":Your host is " + NAME);
+            session.numeric("003", ":This server was created today");
+            session.numeric("004", NAME + " sim-1 iow ntov");
+            session.numeric("005", "PREFIX=(ov)@+ CHANTYPES=# CHANMODES=b,k,l,nt CASEMAPPING=ascii NETWORK=Simulated" + ((this.channelLimit > 0) ? (" CHANLIMIT=#:" + this.channelLimit) : "") + ((this.nickLength > 0) ? (" NICKLEN=" + this.nickLength) : "") + " :are supported by this server");
+            session.numeric("422", ":MOTD File is missing");
+        }
+    }
+
+    private void join(@Nonnull Member member, @Nonnull String channel) {
+        if ((member.session != null) && (this.channelLimit > 0) && (member.channels.size() >= this.channelLimit) && !member.channels.contains(lower(channel))) {
+            member.session.numeric("405", channel + " :You have joined too many channels");
+            return;
+        }
+        if (!channel.startsWith("#") || !member.channels.add(lower(channel))) {
+            return;
+        }
+        Set<Member> channelMembers = this.channels.computeIfAbsent(lower(channel), key -> new LinkedHashSet<>());
+        channelMembers.add(member);
+        this.broadcast(channelMembers, ':' + member.mask() + " JOIN " + channel, null);
+        if (member.session != null) {
+            this.names(member.session, channel);
+        }
+    }
+
+    private void part(@Nonnull Member member, @Nonnull String channel, @Nullable String reason) {
+        Set<Member> channelMembers = this.channels.get(lower(channel));
+        if ((channelMembers == null) || !member.channels.contains(lower(channel))) {
+            return;
+        }
+        this.broadcast(channelMembers, ':' + member.mask() + " PART " + channel + ((reason == null) ? "" : (" :" + reason)), null);
+        member.channels.remove(lower(channel));
+        channelMembers.remove(member);
+        if (channelMembers.isEmpty()) {
+            this.channels.remove(lower(channel));
+        }
+    }
+
+    private void quit(@Nonnull Member member, @Nonnull String reason) {
+        if (this.members.get(lower(member.nick)) != member) {
+            return;
+        }
+        this.members.remove(lower(member.nick));
+        Set<Member> recipients = new LinkedHashSet<>();
+        for (String channel : member.channels) {
+            Set<Member> channelMembers = this.channels.get(channel);
+            channelMembers.remove(member);
+            recipients.addAll(channelMembers);
+            if (channelMembers.isEmpty()) {
+                this.channels.remove(channel);
+            }
+        }
+        member.channels.clear();
+        this.broadcast(recipients, ':' + member.mask() + " QUIT :" + reason, member);
+    }
+
+    private void nick(@Nonnull Member member, @Nonnull String nick) {
+        if (this.members.containsKey(lower(nick))) {
+            if (member.session != null) {
+                member.session.numeric("433", nick + " :Nickname is already in use");
+            }
+            return;
+        }
+        Set<Member> recipients = new LinkedHashSet<>();
+        recipients.add(member);
+        member.channels.forEach(channel -> recipients.addAll(this.channels.get(channel)));
+        this.broadcast(recipients, ':' + member.mask() + " NICK :" + nick, null);
+        this.members.remove(lower(member.nick));
+        member.nick = nick;
+        this.members.put(lower(nick), member);
+    }
+
+    private void privmsg(@Nonnull Member member, @Nonnull String target, @Nonnull String message) {
+        this.privmsg(member, target, message, "PRIVMSG");
+    }
+
+    private void privmsg(@Nonnull Member member, @Nonnull String target, @Nonnull String message, @Nonnull String command) {
+        String line = ':' + member.mask() + ' ' + command + ' ' + target + " :" + message;
+        if (target.startsWith("#")) {
+            Set<Member> channelMembers = this.channels.get(lower(target));
+            if (channelMembers != null) {
+                this.broadcast(channelMembers, line, member);
+            }
+        } else {
+            Member recipient = this.members.get(lower(target));
+            if ((recipient != null) && (recipient.session != null)) {
+                recipient.session.send(line);
+            }
+        }
+    }
+
+    private void names(@Nonnull Session session, @Nonnull String channel) {
+        Set<Member> channelMembers = this.channels.get(lower(channel));
+        if (channelMembers != null) {
+            StringBuilder names = new StringBuilder();
+            for (Member member : channelMembers) {
+                if ((names.length() + member.nick.length()) > NAMES_LENGTH) {
+                    session.numeric("353", "= " + channel + " :" + names);
+                    names.setLength(0);
+                }
+                if (names.length() > 0) {
+                    names.append(' ');
+                }
+                names.append(member.nick);
+            }
+            session.numeric("353", "= " + channel + " :" + names);
+        }
+        session.numeric("366", channel + " :End of /NAMES list.");
+    }
+
+    private void who(@Nonnull Session session, @Nonnull String channel) {
+        Set<Member> channelMembers = this.channels.get(lower(channel));
+        if (channelMembers != null) {
+            for (Member member : channelMembers) {
+                session.numeric("352", channel + ' ' + member.user + ' ' + member.host + ' ' + NAME + ' ' + member.nick + " H :0 " + member.nick);
+            }
+        }
+        session.numeric("315", channel + " :End of /WHO list.");
+    }
+
+    private void whois(@Nonnull Session session, @Nonnull String nick) {
+        Member member = this.members.get(lower(nick));
+        if (member == null) {
+            session.numeric("401", nick + " :No such nick/channel");
+        } else {
+            session.numeric("311", member.nick + ' ' + member.user + ' ' + member.host + " * :" + member.nick);
+            session.numeric("312", member.nick + ' ' + NAME + " :Simulated");
+        }
+        session.numeric("318", nick + " :End of /WHOIS list.");
+    }
+
+    private void broadcast(@Nonnull Collection<Member> recipients, @Nonnull String line, @Nullable Member except) {
+        for (Member recipient : recipients) {
+            if ((recipient != except) && (recipient.session != null)) {
+                recipient.session.send(((this.currentBatch != null) && recipient.session.batch) ? ("@batch=" + this.currentBatch + ' ' + line) : line);
+            }
+        }
+    }
+
+    private void startBatch(@Nonnull String type) {
+        this.currentBatch = "b" + (++this.batchCount);
+        this.batchSessions().forEach(session -> session.send(':' + NAME + " BATCH +" + this.currentBatch + ' ' + type + ' ' + SPLIT_REASON));
+    }
+
+    private void endBatch() {
+        this.batchSessions().forEach(session -> session.send(':' + NAME + " BATCH -" + this.currentBatch));
+        this.currentBatch = null;
+    }
+
+    @Nonnull
+    private List<Session> batchSessions() {
+        List<Session> sessions = new ArrayList<>();
+        for (Member member : this.members.values()) {
+            if ((member.session != null) && member.session.batch) {
+                sessions.add(member.session);
+            }
+        }
+        return sessions;
+    }
+}
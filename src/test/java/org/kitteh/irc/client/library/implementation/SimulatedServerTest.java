@@ -0,0 +1,244 @@
+package org.kitteh.irc.client.library.implementation;
+
+import net.engio.mbassy.listener.Handler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.event.channel.ChannelJoinEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
+import org.kitteh.irc.client.library.event.channel.RequestedChannelJoinCompleteEvent;
+import org.kitteh.irc.client.library.event.user.NetjoinEvent;
+import org.kitteh.irc.client.library.event.user.NetsplitEvent;
+import org.kitteh.irc.client.library.event.user.PrivateMessageEvent;
+import org.kitteh.irc.client.library.event.user.UserQuitEvent;
+import org.kitteh.irc.client.library.exception.KittehNagException;
+import org.kitteh.irc.client.library.feature.sending.QueueProcessingThreadSender;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tests a client end to end against a {@link SimulatedServer} on loopback.
+ */
+public class SimulatedServerTest {
+    private static final long TIMEOUT = 30;
+
+    public static class Receiver {
+        private final CountDownLatch joined;
+        private final Semaphore synced = new Semaphore(0);
+        private final AtomicInteger received = new AtomicInteger();
+        private final LongSummaryStatistics latency = new LongSummaryStatistics();
+        private final AtomicInteger netsplits = new AtomicInteger();
+        private final AtomicInteger netjoins = new AtomicInteger();
+        private final AtomicInteger splitUsers = new AtomicInteger();
+        private final AtomicInteger quits = new AtomicInteger();
+        private final AtomicInteger joins = new AtomicInteger();
+
+        private Receiver(int channels) {
+            this.joined = new CountDownLatch(channels);
+        }
+
+        @Handler
+        public void join(RequestedChannelJoinCompleteEvent event) {
+            this.joined.countDown();
+        }
+
+        @Handler
+        public void message(ChannelMessageEvent event) {
+            if (event.getMessage().startsWith(LoadGenerator.TIMESTAMP_PREFIX)) {
+                long sent = Long.parseLong(event.getMessage().substring(LoadGenerator.TIMESTAMP_PREFIX.length()));
+                synchronized (this.latency) {
+                    this.latency.accept(System.nanoTime() - sent);
+                }
+                this.received.incrementAndGet();
+            }
+        }
+
+        @Handler
+        public void netsplit(NetsplitEvent event) {
+            this.netsplits.incrementAndGet();
+            this.splitUsers.addAndGet(event.getUsers().size());
+        }
+
+        @Handler
+        public void netjoin(NetjoinEvent event) {
+            this.netjoins.incrementAndGet();
+        }
+
+        @Handler
+        public void quit(UserQuitEvent event) {
+            this.quits.incrementAndGet();
+        }
+
+        @Handler
+        public void join(ChannelJoinEvent event) {
+            if (!(event instanceof RequestedChannelJoinCompleteEvent)) {
+                this.joins.incrementAndGet();
+            }
+        }
+
+        @Handler
+        public void sync(PrivateMessageEvent event) {
+            if (event.getMessage().equals("sync")) {
+                this.synced.release();
+            }
+        }
+    }
+
+    private SimulatedServer server;
+    private LoadGenerator generator;
+    private final Queue<Exception> exceptions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Starts a server with synthetic users.
+     */
+    @Before
+    public void before() throws Exception {
+        this.server = new SimulatedServer();
+        this.generator = new LoadGenerator(this.server, 1337);
+        this.generator.populate(300, 12, 3);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        this.server.close();
+    }
+
+    /**
+     * Tests that every message reaches the client, measuring latency.
+     */
+    @Test
+    public void throughput() throws Exception {
+        Receiver receiver = new Receiver(this.generator.getChannels().size());
+        Client client = this.connect(receiver);
+        try {
+            this.generator.messages(5000, 0);
+            this.sync(client, receiver);
+            Assert.assertEquals(5000, receiver.received.get());
+            synchronized (receiver.latency) {
+                Assert.assertEquals(5000, receiver.latency.getCount());
+                Assert.assertTrue(receiver.latency.getMin() >= 0);
+            }
+            Assert.assertTrue(this.exceptions.isEmpty());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Tests that tracked users match the server's view after churn and
+     * netsplits, finding users leaked by actor tracking.
+     */
+    @Test
+    public void soak() throws Exception {
+        Receiver receiver = new Receiver(this.generator.getChannels().size());
+        Client client = this.connect(receiver);
+        try {
+            ActorProvider actorProvider = ((IRCClient) client).getActorProvider();
+            for (int round = 0; round < 10; round++) {
+                this.generator.churn(500);
+                Map<String, List<String>> split = this.generator.netsplit(0.2);
+                this.sync(client, receiver);
+                this.assertTracking(client, actorProvider);
+                this.generator.netjoin(split);
+                this.generator.messages(100, 0);
+                this.sync(client, receiver);
+                this.assertTracking(client, actorProvider);
+            }
+            Assert.assertTrue(this.exceptions.isEmpty());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a batched netsplit and netjoin each arrive as one event.
+     */
+    @Test
+    public void batchedNetsplit() throws Exception {
+        this.server.setBatchSupported(true);
+        Receiver receiver = new Receiver(this.generator.getChannels().size());
+        Client client = this.connect(receiver);
+        try {
+            ActorProvider actorProvider = ((IRCClient) client).getActorProvider();
+            Map<String, List<String>> split = this.generator.netsplit(0.2);
+            this.sync(client, receiver);
+            Assert.assertEquals(1, receiver.netsplits.get());
+            Assert.assertEquals(split.values().stream().filter(channels -> !channels.isEmpty()).count(), receiver.splitUsers.get());
+            Assert.assertEquals(receiver.splitUsers.get(), receiver.quits.get());
+            this.assertTracking(client, actorProvider);
+            this.generator.netjoin(split);
+            this.sync(client, receiver);
+            Assert.assertEquals(1, receiver.netjoins.get());
+            Assert.assertEquals(split.values().stream().mapToInt(List::size).sum(), receiver.joins.get());
+            this.assertTracking(client, actorProvider);
+            Assert.assertTrue(this.exceptions.isEmpty());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a netsplit is recognized by quit message without batches.
+     */
+    @Test
+    public void heuristicNetsplit() throws Exception {
+        Receiver receiver = new Receiver(this.generator.getChannels().size());
+        Client client = this.connect(receiver);
+        try {
+            Map<String, List<String>> split = this.generator.netsplit(0.2);
+            this.sync(client, receiver);
+            Assert.assertTrue(receiver.netsplits.get() > 0);
+            Assert.assertEquals(split.values().stream().filter(channels -> !channels.isEmpty()).count(), receiver.splitUsers.get());
+            Assert.assertEquals(receiver.splitUsers.get(), receiver.quits.get());
+            this.assertTracking(client, ((IRCClient) client).getActorProvider());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private Client connect(Receiver receiver) throws Exception {
+        Client client = Client.builder().nick("Kitteh").serverHost("127.0.0.1").serverPort(this.server.getPort()).secure(false)
+                .messageSendingQueueSupplier(c -> new QueueProcessingThreadSender(c, "Scheduled"))
+                .listenException(exception -> {
+                    if (!(exception instanceof KittehNagException)) {
+                        this.exceptions.add(exception);
+                    }
+                })
+                .afterBuildConsumer(c -> c.getEventManager().registerEventListener(receiver))
+                .build();
+        this.generator.getChannels().forEach(client::addChannel);
+        Assert.assertTrue(receiver.joined.await(TIMEOUT, TimeUnit.SECONDS));
+        this.sync(client, receiver);
+        return client;
+    }
+
+    private void sync(Client client, Receiver receiver) throws InterruptedException {
+        this.server.sync();
+        client.sendMessage(client.getNick(), "sync");
+        Assert.assertTrue(receiver.synced.tryAcquire(TIMEOUT, TimeUnit.SECONDS));
+        ((IRCClient) client).awaitProcessing();
+    }
+
+    private void assertTracking(Client client, ActorProvider actorProvider) throws InterruptedException {
+        Set<String> expected = this.server.getVisibleNicks(client.getNick());
+        Set<String> tracked = new HashSet<>(actorProvider.getTrackedUserNicks());
+        Assert.assertEquals(expected, tracked);
+        Assert.assertEquals(this.server.getChannels(client.getNick()), actorProvider.getTrackedChannelNames().stream().map(String::toLowerCase).collect(Collectors.toSet()));
+    }
+}
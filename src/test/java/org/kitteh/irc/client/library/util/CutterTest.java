@@ -3,10 +3,11 @@ package org.kitteh.irc.client.library.util;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
- * Tests {@link Cutter.DefaultWordCutter}.
+ * Tests {@link Cutter.DefaultWordCutter} and {@link Cutter.Utf8WordCutter}.
  */
 public class CutterTest {
     /**
@@ -72,4 +73,31 @@ public class CutterTest {
         List<String> output = new Cutter.DefaultWordCutter().split("                     ", 3);
         Assert.assertEquals(0, output.size());
     }
+
+    /**
+     * Tests cutting by UTF-8 length.
+     */
+    @Test
+    public void cutUtf8() {
+        String message = "été 猫猫猫 🐱🐱🐱 purr";
+        List<String> output = new Cutter.Utf8WordCutter().split(message, 7);
+        StringBuilder joined = new StringBuilder();
+        for (String line : output) {
+            Assert.assertTrue(line, line.getBytes(StandardCharsets.UTF_8).length <= 7);
+            Assert.assertFalse(line, Character.isHighSurrogate(line.charAt(line.length() - 1)));
+            joined.append(line);
+        }
+        Assert.assertEquals(message.replace(" ", ""), joined.toString().replace(" ", ""));
+        Assert.assertEquals(1, new Cutter.Utf8WordCutter().split(message, 100).size());
+    }
+
+    /**
+     * Tests cutting by UTF-8 length when a character exceeds the size.
+     */
+    @Test
+    public void cutUtf8Tiny() {
+        List<String> output = new Cutter.Utf8WordCutter().split("🐱🐱", 2);
+        Assert.assertEquals(2, output.size());
+        Assert.assertEquals("🐱", output.get(0));
+    }
 }
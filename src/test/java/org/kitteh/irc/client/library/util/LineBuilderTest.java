@@ -0,0 +1,53 @@
+package org.kitteh.irc.client.library.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests {@link LineBuilder}.
+ */
+public class LineBuilderTest {
+    private static final String[] STRINGS = {"", "Meow", "été", "猫", "🐱 purr", "a\uD83Db", "\uDC31", "Kitteh ñ 猫 🐈🐈"};
+
+    /**
+     * Tests that byte lengths match the encoder.
+     */
+    @Test
+    public void byteLength() {
+        for (String string : STRINGS) {
+            Assert.assertEquals(string, string.getBytes(StandardCharsets.UTF_8).length, LineBuilder.getByteLength(string));
+        }
+    }
+
+    /**
+     * Tests building a line from parts.
+     */
+    @Test
+    public void build() {
+        LineBuilder builder = new LineBuilder().append("PRIVMSG ").append("#kitteh", "Target").append(" :").append("été 🐱", "Message");
+        Assert.assertEquals("PRIVMSG #kitteh :été 🐱", builder.toString());
+        Assert.assertEquals(builder.toString().getBytes(StandardCharsets.UTF_8).length, builder.getByteLength());
+    }
+
+    /**
+     * Tests rejection of unsafe parts.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unsafe() {
+        new LineBuilder().append("PRIVMSG #kitteh :").append("Meow\r\nQUIT", "Message");
+    }
+
+    /**
+     * Tests that cuts never exceed the budget or split surrogate pairs.
+     */
+    @Test
+    public void cutIndex() {
+        Assert.assertEquals(1, LineBuilder.getCutIndex("é🐱", 0, 5));
+        Assert.assertEquals(0, LineBuilder.getCutIndex("é🐱", 0, 1));
+        Assert.assertEquals(1, LineBuilder.getCutIndex("é🐱", 0, 4));
+        Assert.assertEquals(3, LineBuilder.getCutIndex("é🐱", 0, 6));
+        Assert.assertEquals(1, LineBuilder.getCutIndex("é🐱", 1, 3));
+    }
+}